@@ -13,6 +13,8 @@ public class Link {
     public static final String REL_ALTERNATE = "alternate";
     public static final String REL_ABOUT = "about";
     public static final String REL_DESCRIBEDBY = "describedBy";
+    public static final String REL_NEXT = "next";
+    public static final String REL_PREV = "prev";
     static final String ATOM_NS = "http://www.w3.org/2005/Atom";
     
     String href;
@@ -9,9 +9,11 @@ import org.geoserver.config.GeoServer;
 import org.geoserver.ows.Dispatcher;
 import org.geoserver.ows.Request;
 import org.geoserver.ows.URLMangler;
+import org.geoserver.ows.util.KvpUtils;
 import org.geoserver.ows.util.ResponseUtils;
 import org.geoserver.platform.Operation;
 import org.geoserver.platform.ServiceException;
+import org.geoserver.wfs.KeysetPaging;
 import org.geoserver.wfs.json.GeoJSONBuilder;
 import org.geoserver.wfs.json.GeoJSONGetFeatureResponse;
 import org.geoserver.wfs.request.FeatureCollectionResponse;
@@ -33,8 +35,14 @@ import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.UnsupportedEncodingException;
 import java.math.BigInteger;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 
 import static org.geoserver.wfs3.DefaultWebFeatureService30.getAvailableFormats;
 
@@ -45,6 +53,18 @@ public class RFCGeoJSONFeaturesResponse extends GeoJSONGetFeatureResponse {
     /** The MIME type requested by WFS3 for GeoJSON Responses */
     public static final String MIME = "application/geo+json";
 
+    /** Parameters added by the WFS3 filter, not to be repeated in the paging links */
+    static final Set<String> WFS3_PARAMETERS =
+            new HashSet<>(
+                    Arrays.asList(
+                            "service",
+                            "version",
+                            "request",
+                            "srsname",
+                            "typename",
+                            "outputformat",
+                            "f"));
+
     public RFCGeoJSONFeaturesResponse(GeoServer gs) {
         super(gs, MIME);
     }
@@ -112,17 +132,27 @@ public class RFCGeoJSONFeaturesResponse extends GeoJSONGetFeatureResponse {
             Feature feature, Operation operation, GeoJSONBuilder jw) {
         String featureId = WFS3_FEATURE_ID.get();
         if (featureId != null) {
-            writeLinks(operation, jw, featureId);
+            writeLinks(null, operation, jw, featureId);
         }
     }
 
     @Override
     protected void writeExtraCollectionProperties(
             FeatureCollectionResponse response, Operation operation, GeoJSONBuilder jw) {
-        writeLinks(operation, jw, null);
+        writeLinks(response, operation, jw, null);
+    }
+
+    @Override
+    protected void writePagingLinks(
+            FeatureCollectionResponse response, Operation operation, GeoJSONBuilder jw) {
+        // written along with the other collection links
     }
 
-    private void writeLinks(Operation operation, GeoJSONBuilder jw, String featureId) {
+    private void writeLinks(
+            FeatureCollectionResponse response,
+            Operation operation,
+            GeoJSONBuilder jw,
+            String featureId) {
         List<String> formats = getAvailableFormats(FeatureCollectionResponse.class);
         GetFeatureRequest request = GetFeatureRequest.adapt(operation.getParameters()[0]);
         FeatureTypeInfo featureType = getFeatureType(request);
@@ -148,9 +178,48 @@ public class RFCGeoJSONFeaturesResponse extends GeoJSONGetFeatureResponse {
             }
             writeLink(jw, linkTitle, format, linkType, href);
         }
+        if (response != null) {
+            String path = "wfs3/collections/" + NCNameResourceCodec.encode(featureType) + "/items";
+            if (response.getPrevious() != null) {
+                String href = getPagingHref(baseUrl, path, response.getPrevious());
+                writeLink(jw, "Previous page", MIME, Link.REL_PREV, href);
+            }
+            if (response.getNext() != null) {
+                String href = getPagingHref(baseUrl, path, response.getNext());
+                writeLink(jw, "Next page", MIME, Link.REL_NEXT, href);
+            }
+        }
         jw.endArray();
     }
 
+    /**
+     * Turns a WFS paging link into a WFS3 one, keeping the request parameters, start index,
+     * limit and keyset paging continuation token
+     */
+    private String getPagingHref(String baseUrl, String path, String wfsLink) {
+        Map<String, String> kvp = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> entry : KvpUtils.parseQueryString(wfsLink).entrySet()) {
+            String key = entry.getKey().toLowerCase(Locale.ENGLISH);
+            if (WFS3_PARAMETERS.contains(key)) {
+                continue;
+            }
+            Object value = entry.getValue();
+            if (value instanceof String[]) {
+                value = ((String[]) value)[0];
+            }
+            if ("count".equals(key)) {
+                key = "limit";
+            } else if ("startindex".equals(key)) {
+                key = "startIndex";
+            } else if (KeysetPaging.TOKEN.equalsIgnoreCase(key)) {
+                key = KeysetPaging.TOKEN;
+            }
+            kvp.put(key, String.valueOf(value));
+        }
+        kvp.put("f", MIME);
+        return ResponseUtils.buildURL(baseUrl, path, kvp, URLMangler.URLType.SERVICE);
+    }
+
     private FeatureTypeInfo getFeatureType(GetFeatureRequest request) {
         // a WFS3 always has a collection reference, so one query
         Query query = request.getQueries().get(0);
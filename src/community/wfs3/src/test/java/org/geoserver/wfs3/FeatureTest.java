@@ -5,7 +5,9 @@
 package org.geoserver.wfs3;
 
 import com.jayway.jsonpath.DocumentContext;
+import org.geoserver.catalog.FeatureTypeInfo;
 import org.geoserver.data.test.MockData;
+import org.geoserver.wfs.KeysetPaging;
 import org.junit.Test;
 
 import java.util.List;
@@ -13,6 +15,7 @@ import java.util.List;
 import static org.hamcrest.CoreMatchers.both;
 import static org.hamcrest.CoreMatchers.containsString;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertThat;
 
 public class FeatureTest extends WFS3TestSupport {
@@ -136,6 +139,56 @@ public class FeatureTest extends WFS3TestSupport {
         assertEquals(3, (int) json.read("features.length()", Integer.class));
     }
 
+    @Test
+    public void testKeysetPagingLinks() throws Exception {
+        FeatureTypeInfo ft =
+                getCatalog().getFeatureTypeByName(getLayerId(MockData.PRIMITIVEGEOFEATURE));
+        ft.getMetadata().put(KeysetPaging.KEY_ATTRIBUTES, "intProperty");
+        getCatalog().save(ft);
+        System.setProperty(KeysetPaging.KEYSET_PAGING_KEY, "true");
+        try {
+            String primitive = getEncodedName(MockData.PRIMITIVEGEOFEATURE);
+            DocumentContext json =
+                    getAsJSONPath("wfs3/collections/" + primitive + "/items?limit=2", 200);
+            assertEquals(
+                    1,
+                    json.read("features[?(@.id == 'PrimitiveGeoFeature.f015')]", List.class)
+                            .size());
+            assertEquals(
+                    1,
+                    json.read("features[?(@.id == 'PrimitiveGeoFeature.f002')]", List.class)
+                            .size());
+
+            // the next link is a WFS3 one, carrying the continuation token
+            List<String> next = json.read("links[?(@.rel == 'next')].href");
+            assertEquals(1, next.size());
+            String href = next.get(0);
+            assertTrue(
+                    href.startsWith(
+                            "http://localhost:8080/geoserver/wfs3/collections/"
+                                    + primitive
+                                    + "/items?"));
+            assertTrue(href.contains(KeysetPaging.TOKEN + "="));
+            assertTrue(href.contains("limit=2"));
+
+            json = getAsJSONPath(href.substring(href.indexOf("wfs3/")), 200);
+            assertEquals(2, (int) json.read("features.length()", Integer.class));
+            assertEquals(
+                    1,
+                    json.read("features[?(@.id == 'PrimitiveGeoFeature.f001')]", List.class)
+                            .size());
+            assertEquals(
+                    1,
+                    json.read("features[?(@.id == 'PrimitiveGeoFeature.f003')]", List.class)
+                            .size());
+            assertEquals(1, json.read("links[?(@.rel == 'prev')]", List.class).size());
+        } finally {
+            System.clearProperty(KeysetPaging.KEYSET_PAGING_KEY);
+            ft.getMetadata().remove(KeysetPaging.KEY_ATTRIBUTES);
+            getCatalog().save(ft);
+        }
+    }
+
     @Test
     public void testErrorHandling() throws Exception {
         String roadSegments = getEncodedName(MockData.ROAD_SEGMENTS);
@@ -8,15 +8,24 @@ import org.geoserver.catalog.DimensionInfo;
 import org.geoserver.catalog.FeatureTypeInfo;
 import org.geoserver.catalog.LayerInfo;
 import org.geoserver.wms.WMS;
+import org.geoserver.wms.dimension.DimensionDomain;
+import org.geoserver.wms.dimension.DimensionDomainIndex;
 import org.geotools.data.FeatureSource;
 import org.geotools.data.Query;
 import org.geotools.factory.GeoTools;
 import org.geotools.feature.FeatureCollection;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
 import org.opengis.filter.Filter;
+import org.opengis.filter.expression.Expression;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 
 /**
  * Base class for vector based dimension
@@ -51,8 +60,29 @@ public abstract class VectorDimension extends Dimension {
         }
     }
 
+    /**
+     * Returns the indexed domain of this dimension, or null if the index is not available or
+     * cannot answer for the given filter (only the whole domain is indexed)
+     */
+    protected DimensionDomain getIndexedDomain(Filter filter) {
+        if (filter != null && filter != Filter.INCLUDE) {
+            return null;
+        }
+        DimensionDomainIndex index = wms.getDimensionDomainIndex();
+        if (index == null) {
+            return null;
+        }
+        return index.getDomain((FeatureTypeInfo) getResourceInfo(), dimensionName, dimensionInfo);
+    }
+
     @Override
     public List<Object> getDomainValues(Filter filter, boolean noDuplicates) {
+        if (noDuplicates) {
+            DimensionDomain domain = getIndexedDomain(filter);
+            if (domain != null) {
+                return new ArrayList<>(domain.getValues());
+            }
+        }
         FeatureCollection featureCollection = getDomain(new Query(null, filter));
         if (noDuplicates) {
             // no duplicate values should be included
@@ -66,10 +96,47 @@ public abstract class VectorDimension extends Dimension {
 
     @Override
     protected DomainSummary getDomainSummary(Filter filter, int expandLimit) {
+        DimensionDomain domain = getIndexedDomain(filter);
+        if (domain != null) {
+            if (expandLimit != 0 && (domain.size() <= expandLimit || expandLimit < 0)) {
+                return new DomainSummary(domain.getValues());
+            }
+            return new DomainSummary(domain.getMin(), domain.getMax(), 2);
+        }
         FeatureCollection features = getDomain(new Query(null, filter));
         String attribute = dimensionInfo.getAttribute();
 
         return getDomainSummary(features, attribute, expandLimit);
     }
 
+    @Override
+    public TreeMap<Object, Object> groupByDomainOnExpression(Filter filter, Expression classifier,
+            String dimensionAttribute, Class classifierType) {
+        DimensionDomain domain = getIndexedDomain(filter);
+        if (domain == null || !dimensionAttribute.equals(domain.getAttribute())) {
+            return super.groupByDomainOnExpression(filter, classifier, dimensionAttribute,
+                    classifierType);
+        }
+        // classify each distinct value once, adding up the feature counts
+        TreeMap<Object, Object> results = new TreeMap<>();
+        Map<Object, Long> counts = domain.getCounts();
+        if (counts.isEmpty()) {
+            return results;
+        }
+        SimpleFeatureTypeBuilder typeBuilder = new SimpleFeatureTypeBuilder();
+        typeBuilder.setName(resourceInfo.getName());
+        typeBuilder.add(dimensionAttribute, counts.keySet().iterator().next().getClass());
+        SimpleFeatureType type = typeBuilder.buildFeatureType();
+        for (Map.Entry<Object, Long> entry : counts.entrySet()) {
+            SimpleFeature feature = SimpleFeatureBuilder.build(type,
+                    new Object[] { entry.getKey() }, null);
+            Object classifierValue = classifier.evaluate(feature, classifierType);
+            if (classifierValue != null) {
+                results.merge(classifierValue, entry.getValue(),
+                        (a, b) -> ((Number) a).longValue() + ((Number) b).longValue());
+            }
+        }
+        return results;
+    }
+
 }
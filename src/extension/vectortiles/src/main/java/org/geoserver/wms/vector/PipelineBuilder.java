@@ -38,6 +38,7 @@ import com.vividsolutions.jts.geom.MultiPoint;
 import com.vividsolutions.jts.geom.MultiPolygon;
 import com.vividsolutions.jts.geom.Point;
 import com.vividsolutions.jts.geom.Polygon;
+import com.vividsolutions.jts.geom.util.AffineTransformation;
 import com.vividsolutions.jts.simplify.TopologyPreservingSimplifier;
 
 class PipelineBuilder {
@@ -286,25 +287,83 @@ class PipelineBuilder {
      */
     public PipelineBuilder clip(boolean clipToMapBounds, boolean transformToScreenCoordinates) {
         if (clipToMapBounds) {
+            Envelope clippingEnvelope = getClippingEnvelope(transformToScreenCoordinates);
+            addLast(new ClipRemoveDegenerateGeometries(clippingEnvelope));
+        }
+        return this;
+    }
 
-            Envelope clippingEnvelope;
+    /**
+     * Drops the geometries not touching the area of the tile plus its gutter, cheaper than
+     * clipping when most geometries are outside of the tile
+     * @param transformToScreenCoordinates is the pipeline working in screen coordinates
+     * @return
+     */
+    public PipelineBuilder intersecting(boolean transformToScreenCoordinates) {
+        addLast(new Intersecting(getClippingEnvelope(transformToScreenCoordinates)));
+        return this;
+    }
 
-            if (transformToScreenCoordinates) {
-                Rectangle screen = context.paintArea;
+    /**
+     * Moves the geometries from the screen space of a meta tile to the screen space of one of its
+     * tiles. Does nothing if the pipeline is not working in screen coordinates, as the target CRS
+     * is the same for the meta tile and the tiles
+     * @param tileArea The area of the tile in the meta tile, in pixels
+     * @param transformToScreenCoordinates is the pipeline working in screen coordinates
+     * @return
+     */
+    public PipelineBuilder offset(Rectangle tileArea, boolean transformToScreenCoordinates) {
+        if (transformToScreenCoordinates && (tileArea.x != 0 || tileArea.y != 0)) {
+            addLast(new Offset(
+                    AffineTransformation.translationInstance(-tileArea.x, -tileArea.y)));
+        }
+        return this;
+    }
 
-                Envelope paintArea = new Envelope(0, screen.getWidth(), 0, screen.getHeight());
-                paintArea.expandBy(clipBBOXSizeIncreasePixels+context.queryBuffer);
+    private Envelope getClippingEnvelope(boolean transformToScreenCoordinates) {
+        if (transformToScreenCoordinates) {
+            Rectangle screen = context.paintArea;
 
-                clippingEnvelope = paintArea;
-            } else {
-                ReferencedEnvelope renderingArea = context.renderingArea;
-                renderingArea.expandBy((clipBBOXSizeIncreasePixels+context.queryBuffer) * context.pixelSizeInTargetCRS);
-                clippingEnvelope = renderingArea;
+            Envelope paintArea = new Envelope(0, screen.getWidth(), 0, screen.getHeight());
+            paintArea.expandBy(clipBBOXSizeIncreasePixels + context.queryBuffer);
+            return paintArea;
+        } else {
+            ReferencedEnvelope renderingArea = new ReferencedEnvelope(context.renderingArea);
+            renderingArea.expandBy((clipBBOXSizeIncreasePixels + context.queryBuffer)
+                    * context.pixelSizeInTargetCRS);
+            return renderingArea;
+        }
+    }
+
+    private static final class Intersecting extends Pipeline {
+
+        private final Envelope envelope;
+
+        Intersecting(Envelope envelope) {
+            this.envelope = envelope;
+        }
+
+        @Override
+        protected Geometry _run(Geometry geom) throws Exception {
+            if (!envelope.intersects(geom.getEnvelopeInternal())) {
+                return EMPTY;
             }
+            return geom;
+        }
+    }
 
-            addLast(new ClipRemoveDegenerateGeometries(clippingEnvelope));
+    private static final class Offset extends Pipeline {
+
+        private final AffineTransformation offset;
+
+        Offset(AffineTransformation offset) {
+            this.offset = offset;
+        }
+
+        @Override
+        protected Geometry _run(Geometry geom) throws Exception {
+            return offset.transform(geom);
         }
-        return this;
     }
 
     private static final class Transform extends Pipeline {
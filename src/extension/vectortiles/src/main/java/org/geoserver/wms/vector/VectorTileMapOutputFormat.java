@@ -9,18 +9,26 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import static org.geotools.renderer.lite.VectorMapRenderUtils.getStyleQuery;
 
 import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.NoninvertibleTransformException;
+import java.awt.geom.Point2D;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.geoserver.platform.ServiceException;
+import org.geoserver.wms.GetMapRequest;
 import org.geoserver.wms.MapProducerCapabilities;
 import org.geoserver.wms.WMS;
 import org.geoserver.wms.WMSMapContent;
 import org.geoserver.wms.WebMap;
 import org.geoserver.wms.map.AbstractMapOutputFormat;
+import org.geoserver.wms.map.MetaTileMap;
+import org.geoserver.wms.map.MetaTileMapOutputFormat;
 import org.geotools.data.FeatureSource;
 import org.geotools.data.Query;
 import org.geotools.factory.Hints;
@@ -28,6 +36,7 @@ import org.geotools.feature.FeatureCollection;
 import org.geotools.feature.FeatureIterator;
 import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geotools.map.Layer;
+import org.geotools.renderer.lite.RendererUtilities;
 import org.geotools.renderer.lite.VectorMapRenderUtils;
 import org.geotools.util.logging.Logging;
 import org.opengis.feature.Attribute;
@@ -43,7 +52,8 @@ import org.opengis.referencing.crs.CoordinateReferenceSystem;
 import com.google.common.base.Stopwatch;
 import com.vividsolutions.jts.geom.Geometry;
 
-public class VectorTileMapOutputFormat extends AbstractMapOutputFormat {
+public class VectorTileMapOutputFormat extends AbstractMapOutputFormat
+        implements MetaTileMapOutputFormat {
 
     /** A logger for this class. */
     private static final Logger LOGGER = Logging.getLogger(VectorTileMapOutputFormat.class);
@@ -102,6 +112,11 @@ public class VectorTileMapOutputFormat extends AbstractMapOutputFormat {
         final Rectangle paintArea = new Rectangle(mapContent.getMapWidth(),
                 mapContent.getMapHeight());
 
+        final Rectangle tileSize = getMetaTileSize(mapContent, paintArea);
+        if (tileSize != null) {
+            return produceMetaTile(mapContent, renderingArea, paintArea, tileSize);
+        }
+
         VectorTileBuilder vectorTileBuilder;
         vectorTileBuilder = this.tileBuilderFactory.newBuilder(paintArea, renderingArea);
 
@@ -116,10 +131,7 @@ public class VectorTileMapOutputFormat extends AbstractMapOutputFormat {
             }
 
             sourceCrs = geometryDescriptor.getType().getCoordinateReferenceSystem();
-            int buffer = VectorMapRenderUtils.getComputedBuffer(mapContent.getBuffer(), 
-                    VectorMapRenderUtils.getFeatureStyles(layer, paintArea, 
-                        VectorMapRenderUtils.getMapScale(mapContent, renderingArea), 
-                        (FeatureType)featureSource.getSchema()));
+            int buffer = getBuffer(mapContent, renderingArea, paintArea, layer);
             Pipeline pipeline = getPipeline(mapContent, renderingArea, paintArea, sourceCrs, buffer);
             
             Query query = getStyleQuery(layer, mapContent);
@@ -134,6 +146,117 @@ public class VectorTileMapOutputFormat extends AbstractMapOutputFormat {
         return map;
     }
 
+    /**
+     * Builds all the tiles of a meta tile out of a single query per layer: the features are
+     * read, transformed and simplified once for the whole meta tile, and then clipped and encoded
+     * in each tile.
+     */
+    protected MetaTileMap produceMetaTile(final WMSMapContent mapContent,
+            final ReferencedEnvelope renderingArea, final Rectangle paintArea,
+            final Rectangle tileSize) throws IOException {
+        final List<Rectangle> tiles = new ArrayList<>();
+        for (int y = 0; y < paintArea.height; y += tileSize.height) {
+            for (int x = 0; x < paintArea.width; x += tileSize.width) {
+                tiles.add(new Rectangle(x, y, tileSize.width, tileSize.height));
+            }
+        }
+        final Rectangle tilePaintArea = new Rectangle(tileSize.width, tileSize.height);
+        final List<ReferencedEnvelope> tileAreas = new ArrayList<>(tiles.size());
+        final VectorTileBuilder[] builders = new VectorTileBuilder[tiles.size()];
+        for (int i = 0; i < tiles.size(); i++) {
+            ReferencedEnvelope tileArea = getTileArea(renderingArea, paintArea, tiles.get(i));
+            tileAreas.add(tileArea);
+            builders[i] = tileBuilderFactory.newBuilder(tilePaintArea,
+                    new ReferencedEnvelope(tileArea));
+        }
+
+        for (Layer layer : mapContent.layers()) {
+            FeatureSource<?, ?> featureSource = layer.getFeatureSource();
+            GeometryDescriptor geometryDescriptor = featureSource.getSchema()
+                    .getGeometryDescriptor();
+            if (null == geometryDescriptor) {
+                continue;
+            }
+
+            CoordinateReferenceSystem sourceCrs = geometryDescriptor.getType()
+                    .getCoordinateReferenceSystem();
+            int buffer = getBuffer(mapContent, renderingArea, paintArea, layer);
+            Pipeline metaTilePipeline = getMetaTilePipeline(renderingArea, paintArea, sourceCrs,
+                    buffer);
+            Pipeline[] tilePipelines = new Pipeline[tiles.size()];
+            for (int i = 0; i < tiles.size(); i++) {
+                tilePipelines[i] = getTilePipeline(tileAreas.get(i), tiles.get(i), sourceCrs,
+                        buffer);
+            }
+
+            Query query = getStyleQuery(layer, mapContent);
+            query.getHints().remove(Hints.SCREENMAP);
+
+            FeatureCollection<?, ?> features = featureSource.getFeatures(query);
+
+            run(features, metaTilePipeline, tilePipelines, geometryDescriptor, builders, layer);
+        }
+
+        MetaTileMap map = new MetaTileMap(mapContent, tileBuilderFactory.getMimeType());
+        for (int i = 0; i < tiles.size(); i++) {
+            map.addTile(tiles.get(i), builders[i].build(mapContent));
+        }
+        return map;
+    }
+
+    /**
+     * Returns the size of the tiles if the request is for a meta tile, that is, if the
+     * {@link MetaTileMap#TILE_SIZE_KVP} parameter is set and the map is made of more than one
+     * tile, {@code null} otherwise
+     */
+    Rectangle getMetaTileSize(WMSMapContent mapContent, Rectangle paintArea) {
+        GetMapRequest request = mapContent.getRequest();
+        if (request == null || request.getRawKvp() == null) {
+            return null;
+        }
+        Rectangle tileSize = MetaTileMap.parseTileSize(
+                request.getRawKvp().get(MetaTileMap.TILE_SIZE_KVP));
+        if (tileSize == null || paintArea.width % tileSize.width != 0
+                || paintArea.height % tileSize.height != 0
+                || paintArea.getSize().equals(tileSize.getSize())) {
+            return null;
+        }
+        return tileSize;
+    }
+
+    /**
+     * Returns the area covered by a tile of the meta tile, in the target CRS
+     */
+    static ReferencedEnvelope getTileArea(ReferencedEnvelope renderingArea, Rectangle paintArea,
+            Rectangle tile) {
+        AffineTransform screenToWorld;
+        try {
+            // takes care of the axis order too
+            screenToWorld = RendererUtilities.worldToScreenTransform(renderingArea, paintArea)
+                    .createInverse();
+        } catch (NoninvertibleTransformException e) {
+            throw new ServiceException(e);
+        }
+        Point2D lower = screenToWorld.transform(new Point2D.Double(tile.getMinX(),
+                tile.getMinY()), null);
+        Point2D upper = screenToWorld.transform(new Point2D.Double(tile.getMaxX(),
+                tile.getMaxY()), null);
+        ReferencedEnvelope tileArea = new ReferencedEnvelope(
+                renderingArea.getCoordinateReferenceSystem());
+        tileArea.expandToInclude(lower.getX(), lower.getY());
+        tileArea.expandToInclude(upper.getX(), upper.getY());
+        return tileArea;
+    }
+
+    int getBuffer(WMSMapContent mapContent, ReferencedEnvelope renderingArea,
+            Rectangle paintArea, Layer layer) {
+        FeatureSource<?, ?> featureSource = layer.getFeatureSource();
+        return VectorMapRenderUtils.getComputedBuffer(mapContent.getBuffer(), 
+                VectorMapRenderUtils.getFeatureStyles(layer, paintArea, 
+                    VectorMapRenderUtils.getMapScale(mapContent, renderingArea), 
+                    (FeatureType)featureSource.getSchema()));
+    }
+
     protected Pipeline getPipeline(final WMSMapContent mapContent,
             final ReferencedEnvelope renderingArea, final Rectangle paintArea,
             CoordinateReferenceSystem sourceCrs, int buffer) {
@@ -152,6 +275,43 @@ public class VectorTileMapOutputFormat extends AbstractMapOutputFormat {
         return pipeline;
     }
     
+    /**
+     * The part of the pipeline shared by all the tiles of a meta tile: pre-processing,
+     * transformation and simplification
+     */
+    protected Pipeline getMetaTilePipeline(final ReferencedEnvelope renderingArea,
+            final Rectangle paintArea, CoordinateReferenceSystem sourceCrs, int buffer) {
+        try {
+            final PipelineBuilder builder = PipelineBuilder.newBuilder(renderingArea, paintArea,
+                    sourceCrs, overSamplingFactor, buffer);
+
+            return builder.preprocess().transform(transformToScreenCoordinates)
+                    .simplify(transformToScreenCoordinates).build();
+        } catch (FactoryException e) {
+            throw new ServiceException(e);
+        }
+    }
+
+    /**
+     * The part of the pipeline specific to a single tile of a meta tile: moves the meta tile
+     * geometries in the tile space, drops the ones not touching it and clips the others
+     */
+    protected Pipeline getTilePipeline(final ReferencedEnvelope tileArea, final Rectangle tile,
+            CoordinateReferenceSystem sourceCrs, int buffer) {
+        try {
+            final PipelineBuilder builder = PipelineBuilder.newBuilder(tileArea,
+                    new Rectangle(tile.width, tile.height), sourceCrs, overSamplingFactor,
+                    buffer);
+
+            return builder.offset(tile, transformToScreenCoordinates)
+                    .intersecting(transformToScreenCoordinates)
+                    .clip(clipToMapBounds, transformToScreenCoordinates).collapseCollections()
+                    .build();
+        } catch (FactoryException e) {
+            throw new ServiceException(e);
+        }
+    }
+    
     private Map<String, Object> getProperties(ComplexAttribute feature) {
         Map<String, Object> props = new TreeMap<>();
         for (Property p : feature.getProperties()) {
@@ -175,6 +335,17 @@ public class VectorTileMapOutputFormat extends AbstractMapOutputFormat {
     void run(FeatureCollection<?, ?> features, Pipeline pipeline, 
             GeometryDescriptor geometryDescriptor, 
             VectorTileBuilder vectorTileBuilder, Layer layer){
+        run(features, pipeline, new Pipeline[] { Pipeline.END }, geometryDescriptor,
+                new VectorTileBuilder[] { vectorTileBuilder }, layer);
+    }
+
+    /**
+     * Runs each feature through the shared pipeline once, and then through each of the tile
+     * pipelines, adding the results to the respective tile builders
+     */
+    void run(FeatureCollection<?, ?> features, Pipeline pipeline, Pipeline[] tilePipelines,
+            GeometryDescriptor geometryDescriptor, VectorTileBuilder[] vectorTileBuilders,
+            Layer layer) {
         Stopwatch sw = Stopwatch.createStarted();
         int count = 0;
         int total = 0;
@@ -185,16 +356,16 @@ public class VectorTileMapOutputFormat extends AbstractMapOutputFormat {
                 feature = it.next();
                 total++;
                 Geometry originalGeom;
-                Geometry finalGeom;
+                Geometry processedGeom;
 
                 originalGeom = (Geometry) feature.getDefaultGeometryProperty().getValue();
                 try {
-                    finalGeom = pipeline.execute(originalGeom);
+                    processedGeom = pipeline.execute(originalGeom);
                 } catch (Exception processingException) {
                     processingException.printStackTrace();
                     continue;
                 }
-                if (finalGeom.isEmpty()) {
+                if (processedGeom.isEmpty()) {
                     continue;
                 }
 
@@ -202,11 +373,31 @@ public class VectorTileMapOutputFormat extends AbstractMapOutputFormat {
                 final String featureId = feature.getIdentifier().toString();
                 final String geometryName = geometryDescriptor.getName().getLocalPart();
 
-                final Map<String, Object> properties = getProperties(feature);
+                Map<String, Object> properties = null;
+                boolean added = false;
+                for (int i = 0; i < tilePipelines.length; i++) {
+                    Geometry finalGeom;
+                    try {
+                        finalGeom = tilePipelines[i].execute(processedGeom);
+                    } catch (Exception processingException) {
+                        LOGGER.log(Level.FINE, "Failed to clip feature " + featureId
+                                + " to tile " + i + " of the meta tile", processingException);
+                        continue;
+                    }
+                    if (finalGeom.isEmpty()) {
+                        continue;
+                    }
 
-                vectorTileBuilder.addFeature(layerName, featureId, geometryName, finalGeom,
-                        properties);
-                count++;
+                    if (properties == null) {
+                        properties = getProperties(feature);
+                    }
+                    vectorTileBuilders[i].addFeature(layerName, featureId, geometryName,
+                            finalGeom, properties);
+                    added = true;
+                }
+                if (added) {
+                    count++;
+                }
             }
         }
         sw.stop();
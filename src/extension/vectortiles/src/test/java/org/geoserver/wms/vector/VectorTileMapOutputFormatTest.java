@@ -7,6 +7,7 @@ package org.geoserver.wms.vector;
 import static org.geotools.renderer.lite.VectorMapRenderUtils.getStyleQuery;
 import static org.junit.Assert.*;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.*;
 
 import java.awt.Rectangle;
@@ -27,6 +28,7 @@ import org.geoserver.wms.MapLayerInfo;
 import org.geoserver.wms.WMS;
 import org.geoserver.wms.WMSMapContent;
 import org.geoserver.wms.WebMap;
+import org.geoserver.wms.map.MetaTileMap;
 import org.geotools.data.DataUtilities;
 import org.geotools.data.Query;
 import org.geotools.data.memory.MemoryDataStore;
@@ -276,6 +278,66 @@ public class VectorTileMapOutputFormatTest {
                 any(Geometry.class), any(Map.class));
     }
 
+    @Test
+    public void testMetaTile() throws Exception {
+        ReferencedEnvelope mapBounds = new ReferencedEnvelope(-90, 90, 0, 180, WGS84);
+        Rectangle renderingArea = new Rectangle(512, 512);
+
+        WMSMapContent mapContent = createMapContent(mapBounds, renderingArea, null, pointLayer);
+        mapContent.getRequest().getRawKvp().put(MetaTileMap.TILE_SIZE_KVP, "256,256");
+
+        // one builder per tile, keyed by the tile area
+        Map<ReferencedEnvelope, VectorTileBuilder> builders = new HashMap<>();
+        VectorTileBuilderFactory tileBuilderFactory = mock(VectorTileBuilderFactory.class);
+        when(tileBuilderFactory.getMimeType()).thenReturn("testMime");
+        when(tileBuilderFactory.getOutputFormats()).thenReturn(ImmutableSet.of("testMime"));
+        when(tileBuilderFactory.newBuilder(any(Rectangle.class), any(ReferencedEnvelope.class)))
+                .thenAnswer(invocation -> {
+                    assertEquals(new Rectangle(256, 256), invocation.getArguments()[0]);
+                    VectorTileBuilder builder = mock(VectorTileBuilder.class);
+                    when(builder.build(any(WMSMapContent.class))).thenReturn(mock(WebMap.class));
+                    builders.put((ReferencedEnvelope) invocation.getArguments()[1], builder);
+                    return builder;
+                });
+        outputFormat = new VectorTileMapOutputFormat(wmsMock, tileBuilderFactory);
+        outputFormat.setClipToMapBounds(true);
+
+        MetaTileMap map = (MetaTileMap) outputFormat.produceMap(mapContent);
+        assertEquals(4, map.getTiles().size());
+        assertEquals(4, builders.size());
+        assertNotNull(map.getTile(new Rectangle(0, 0, 256, 256)));
+        assertNotNull(map.getTile(new Rectangle(256, 0, 256, 256)));
+        assertNotNull(map.getTile(new Rectangle(0, 256, 256, 256)));
+        assertNotNull(map.getTile(new Rectangle(256, 256, 256, 256)));
+
+        // the top left tile covers the northern latitudes and the western longitudes
+        VectorTileBuilder topLeft = getBuilder(builders, 45, 45);
+        verify(topLeft, times(1)).addFeature(eq("points"), eq("point1"), eq("geom"),
+                any(Geometry.class), any(Map.class));
+        verify(topLeft, times(1)).addFeature(eq("points"), eq("point2"), eq("geom"),
+                any(Geometry.class), any(Map.class));
+        verify(topLeft, times(1)).addFeature(eq("points"), eq("point3"), eq("geom"),
+                any(Geometry.class), any(Map.class));
+        VectorTileBuilder topRight = getBuilder(builders, 45, 135);
+        verify(topRight, never()).addFeature(anyString(), anyString(), anyString(),
+                any(Geometry.class), any(Map.class));
+        for (VectorTileBuilder builder : builders.values()) {
+            verify(builder, never()).addFeature(eq("points"), eq("pointFar"), eq("geom"),
+                    any(Geometry.class), any(Map.class));
+        }
+    }
+
+    private VectorTileBuilder getBuilder(Map<ReferencedEnvelope, VectorTileBuilder> builders,
+            double x, double y) {
+        for (Map.Entry<ReferencedEnvelope, VectorTileBuilder> entry : builders.entrySet()) {
+            if (entry.getKey().contains(x, y)) {
+                return entry.getValue();
+            }
+        }
+        fail("No tile contains " + x + ", " + y);
+        return null;
+    }
+
     private WMSMapContent createMapContent(ReferencedEnvelope mapBounds, Rectangle renderingArea, 
             Integer buffer, Layer... layers) throws Exception {
 
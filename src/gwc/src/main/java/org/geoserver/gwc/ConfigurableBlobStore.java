@@ -55,6 +55,9 @@ public class ConfigurableBlobStore extends MemoryBlobStore implements BlobStore
     /** Cache provider to add to the {@link MemoryBlobStore} */
     private CacheProvider cache;
 
+    /** Wrapper of the cache provider collecting the per layer statistics */
+    private LayerStatisticsCacheProvider statisticsCache;
+
     /** {@link NullBlobStore} used for avoiding persistence */
     private NullBlobStore nullStore;
 
@@ -394,6 +397,31 @@ public class ConfigurableBlobStore extends MemoryBlobStore implements BlobStore
         return new CacheStatistics();
     }
 
+    /**
+     * Returns the hit and miss counts of the in memory cache for each layer, sorted by layer name
+     * 
+     * @return the per layer statistics, empty if in memory caching is not enabled
+     */
+    public List<LayerCacheStatistics> getLayerCacheStatistics() {
+        // Check if the blobstore has already been configured
+        if (configured.get()) {
+            // Increment the number of current operations
+            // This behavior is used in order to wait
+            // the end of all the operations after setting
+            // the configured parameter to false
+            actualOperations.incrementAndGet();
+            try {
+                if (delegate == memoryStore && statisticsCache != null) {
+                    return statisticsCache.getLayerStatistics();
+                }
+            } finally {
+                // Decrement the number of current operations.
+                actualOperations.decrementAndGet();
+            }
+        }
+        return Collections.emptyList();
+    }
+
     public void clearCache() {
         // Check if the blobstore has already been configured
         if (configured.get()) {
@@ -549,7 +577,7 @@ public class ConfigurableBlobStore extends MemoryBlobStore implements BlobStore
             delegate.removeListener(listener);
         }
         if (gwcConfig.isInnerCachingEnabled()) {
-            memoryStore.setCacheProvider(cache);
+            memoryStore.setCacheProvider(getStatisticsCache());
             if (!gwcConfig.isPersistenceEnabled()) {
                 memoryStore.setStore(nullStore);
             } else {
@@ -586,7 +614,18 @@ public class ConfigurableBlobStore extends MemoryBlobStore implements BlobStore
         provs.put(cache.getClass().toString(), cache);
         cacheProviders = provs;
         this.cache = cache;
-        memoryStore.setCacheProvider(cache);
+        memoryStore.setCacheProvider(getStatisticsCache());
+    }
+
+    /**
+     * Returns the statistics collecting wrapper of the current cache provider, keeping the
+     * statistics collected so far if the cache provider did not change
+     */
+    private LayerStatisticsCacheProvider getStatisticsCache() {
+        if (statisticsCache == null || statisticsCache.getDelegate() != cache) {
+            statisticsCache = new LayerStatisticsCacheProvider(cache);
+        }
+        return statisticsCache;
     }
 
     @Override
@@ -28,14 +28,15 @@ import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geotools.geometry.jts.ReferencedEnvelope3D;
 import org.geotools.referencing.CRS;
 import org.geotools.util.logging.Logging;
-import org.geowebcache.GeoWebCacheException;
 import org.opengis.referencing.FactoryException;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
 import org.opengis.referencing.operation.TransformException;
 
 /**
  * Listens to transactions (so far only issued by WFS) and truncates the cache for the affected area
- * of the layers involved in the transaction.
+ * of the layers involved in the transaction. The truncation is handed over to a
+ * {@link TruncateQueue}, which can coalesce the areas of many transactions and perform it in the
+ * background.
  * <p>
  * A Spring bean singleton of this class needs to be declared in order for GeoServer transactions to
  * pick it up automatically and forward transaction events to it.
@@ -55,13 +56,26 @@ public class GWCTransactionListener implements TransactionCallback {
 
     final private GWC gwc;
 
+    final private TruncateQueue truncateQueue;
+
     static final String GWC_TRANSACTION_INFO_PLACEHOLDER = "GWC_TRANSACTION_INFO_PLACEHOLDER";
 
     /**
+     * Builds a listener truncating the cache right away, in the transaction thread
+     * 
      * @param gwc
      */
     public GWCTransactionListener(final GWC gwc) {
+        this(gwc, new TruncateQueue(gwc, 0));
+    }
+
+    /**
+     * @param gwc
+     * @param truncateQueue the queue performing the truncations
+     */
+    public GWCTransactionListener(final GWC gwc, final TruncateQueue truncateQueue) {
         this.gwc = gwc;
+        this.truncateQueue = truncateQueue;
     }
 
     /**
@@ -119,12 +133,7 @@ public class GWCTransactionListener implements TransactionCallback {
             if (dirtyRegion == null) {
                 continue;
             }
-            try {
-                gwc.truncate(tileLayerName, dirtyRegion);
-            } catch (GeoWebCacheException e) {
-                log.warning("Error truncating tile layer " + tileLayerName
-                        + " for transaction affected bounds " + dirtyRegion);
-            }
+            truncateQueue.add(tileLayerName, dirtyRegion);
         }
     }
 
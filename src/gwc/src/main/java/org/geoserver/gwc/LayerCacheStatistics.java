@@ -0,0 +1,55 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.gwc;
+
+import java.io.Serializable;
+
+/**
+ * Hit and miss counts of the in memory tile cache for a single layer, see
+ * {@link ConfigurableBlobStore#getLayerCacheStatistics()}
+ */
+public class LayerCacheStatistics implements Serializable {
+
+    private static final long serialVersionUID = 4925187263372781942L;
+
+    private final String layerName;
+
+    private final long hitCount;
+
+    private final long missCount;
+
+    public LayerCacheStatistics(String layerName, long hitCount, long missCount) {
+        this.layerName = layerName;
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+    }
+
+    public String getLayerName() {
+        return layerName;
+    }
+
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    public long getMissCount() {
+        return missCount;
+    }
+
+    public long getRequestCount() {
+        return hitCount + missCount;
+    }
+
+    /**
+     * The hit rate, as a percentage, or -1 if there were no requests
+     */
+    public double getHitRate() {
+        long requests = getRequestCount();
+        if (requests == 0) {
+            return -1;
+        }
+        return ((long) (10000d * hitCount / requests)) / 100d;
+    }
+}
@@ -0,0 +1,140 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.gwc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.geowebcache.storage.TileObject;
+import org.geowebcache.storage.blobstore.memory.CacheConfiguration;
+import org.geowebcache.storage.blobstore.memory.CacheConfiguration.EvictionPolicy;
+import org.geowebcache.storage.blobstore.memory.CacheProvider;
+import org.geowebcache.storage.blobstore.memory.CacheStatistics;
+
+/**
+ * {@link CacheProvider} wrapper collecting the hit and miss counts by layer, the wrapped provider
+ * only reports them globally.
+ */
+class LayerStatisticsCacheProvider implements CacheProvider {
+
+    private final CacheProvider delegate;
+
+    /**
+     * Hit and miss counters by layer name
+     */
+    private final Map<String, AtomicLong[]> counters = new ConcurrentHashMap<>();
+
+    LayerStatisticsCacheProvider(CacheProvider delegate) {
+        this.delegate = delegate;
+    }
+
+    CacheProvider getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * Returns the statistics of all the layers looked up so far, sorted by layer name
+     */
+    List<LayerCacheStatistics> getLayerStatistics() {
+        List<LayerCacheStatistics> result = new ArrayList<>();
+        for (Map.Entry<String, AtomicLong[]> entry : counters.entrySet()) {
+            AtomicLong[] counter = entry.getValue();
+            result.add(new LayerCacheStatistics(entry.getKey(), counter[0].get(),
+                    counter[1].get()));
+        }
+        result.sort((s1, s2) -> s1.getLayerName().compareTo(s2.getLayerName()));
+        return result;
+    }
+
+    void resetLayerStatistics() {
+        counters.clear();
+    }
+
+    @Override
+    public TileObject getTileObj(TileObject obj) {
+        TileObject result = delegate.getTileObj(obj);
+        String layerName = obj.getLayerName();
+        if (layerName != null && !delegate.containsUncachedLayer(layerName)) {
+            AtomicLong[] counter = counters.computeIfAbsent(layerName,
+                    k -> new AtomicLong[] { new AtomicLong(), new AtomicLong() });
+            counter[result != null ? 0 : 1].incrementAndGet();
+        }
+        return result;
+    }
+
+    @Override
+    public void putTileObj(TileObject obj) {
+        delegate.putTileObj(obj);
+    }
+
+    @Override
+    public void removeTileObj(TileObject obj) {
+        delegate.removeTileObj(obj);
+    }
+
+    @Override
+    public void removeLayer(String layername) {
+        delegate.removeLayer(layername);
+    }
+
+    @Override
+    public void clear() {
+        delegate.clear();
+    }
+
+    @Override
+    public void reset() {
+        delegate.reset();
+        counters.clear();
+    }
+
+    @Override
+    public CacheStatistics getStatistics() {
+        return delegate.getStatistics();
+    }
+
+    @Override
+    public void configure(CacheConfiguration configuration) {
+        delegate.configure(configuration);
+    }
+
+    @Override
+    public void addUncachedLayer(String layername) {
+        delegate.addUncachedLayer(layername);
+    }
+
+    @Override
+    public void removeUncachedLayer(String layername) {
+        delegate.removeUncachedLayer(layername);
+    }
+
+    @Override
+    public boolean containsUncachedLayer(String layername) {
+        return delegate.containsUncachedLayer(layername);
+    }
+
+    @Override
+    public List<EvictionPolicy> getSupportedPolicies() {
+        return delegate.getSupportedPolicies();
+    }
+
+    @Override
+    public boolean isImmutable() {
+        return delegate.isImmutable();
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return delegate.isAvailable();
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+}
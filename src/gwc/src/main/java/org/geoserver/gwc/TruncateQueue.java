@@ -0,0 +1,245 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.gwc;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geoserver.platform.GeoServerExtensions;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.util.logging.Logging;
+import org.springframework.beans.factory.DisposableBean;
+
+import com.vividsolutions.jts.geom.Envelope;
+
+/**
+ * Collects the regions of the tile layers made dirty by transactions and truncates them in the
+ * background, so that the transactions do not pay for the cache invalidation.
+ * <p>
+ * The regions added during a time window ({@value #WINDOW_PROPERTY} milliseconds, one second by
+ * default) are coalesced per tile layer, overlapping ones being merged, and then truncated in one
+ * go, so that a burst of small transactions results in a handful of truncate requests instead of
+ * one each. A window of zero or less truncates right away, in the calling thread.
+ * </p>
+ * <p>
+ * The tile layer regions are expected in the layer declared CRS, each truncation covers all the
+ * grid sets, formats and styles of the layer, as {@link GWC#truncate(String, ReferencedEnvelope)}
+ * does.
+ * </p>
+ */
+public class TruncateQueue implements DisposableBean {
+
+    static final Logger LOGGER = Logging.getLogger(TruncateQueue.class);
+
+    /**
+     * Property setting the coalescing window, in milliseconds
+     */
+    public static final String WINDOW_PROPERTY = "GWC_TRUNCATE_COALESCE_WINDOW";
+
+    static final long DEFAULT_WINDOW = 1000;
+
+    /**
+     * Maximum number of disjoint regions kept for a layer, past it they get merged in a single one
+     */
+    static final int MAX_REGIONS = 32;
+
+    private final GWC gwc;
+
+    private final long window;
+
+    /**
+     * The pending regions by tile layer, guarded by this
+     */
+    private Map<String, List<ReferencedEnvelope>> pending = new LinkedHashMap<>();
+
+    /**
+     * When the oldest pending region got added, guarded by this
+     */
+    private long pendingSince;
+
+    private int pendingRegions;
+
+    private final ScheduledExecutorService executor;
+
+    private final AtomicLong queuedCount = new AtomicLong();
+
+    private final AtomicLong truncateCount = new AtomicLong();
+
+    private volatile long lastLatency;
+
+    private volatile long maxLatency;
+
+    public TruncateQueue(GWC gwc) {
+        this(gwc, GeoServerExtensions.getLongProperty(WINDOW_PROPERTY, DEFAULT_WINDOW));
+    }
+
+    TruncateQueue(GWC gwc, long window) {
+        this.gwc = gwc;
+        this.window = window;
+        if (window > 0) {
+            this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "GWCTruncateQueue");
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            this.executor = null;
+        }
+    }
+
+    /**
+     * Queues the truncation of a tile layer region
+     *
+     * @param tileLayerName The tile layer name
+     * @param region The dirty region, in the layer declared CRS
+     */
+    public void add(String tileLayerName, ReferencedEnvelope region) {
+        queuedCount.incrementAndGet();
+        if (executor == null || executor.isShutdown()) {
+            truncate(tileLayerName, region);
+            return;
+        }
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                pendingSince = System.currentTimeMillis();
+                executor.schedule(this::flush, window, TimeUnit.MILLISECONDS);
+            }
+            List<ReferencedEnvelope> regions = pending.get(tileLayerName);
+            if (regions == null) {
+                regions = new ArrayList<>(2);
+                pending.put(tileLayerName, regions);
+            }
+            pendingRegions += merge(regions, region);
+        }
+    }
+
+    /**
+     * Adds the region to the list, merging it with the ones it overlaps, and returns the change
+     * in the number of regions
+     */
+    static int merge(List<ReferencedEnvelope> regions, ReferencedEnvelope region) {
+        int before = regions.size();
+        ReferencedEnvelope merged = new ReferencedEnvelope(region);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Iterator<ReferencedEnvelope> it = regions.iterator(); it.hasNext();) {
+                ReferencedEnvelope other = it.next();
+                if (other.intersects((Envelope) merged)) {
+                    merged.expandToInclude(other);
+                    it.remove();
+                    // the larger region might now overlap others
+                    changed = true;
+                }
+            }
+        }
+        regions.add(merged);
+        if (regions.size() > MAX_REGIONS) {
+            ReferencedEnvelope all = new ReferencedEnvelope(regions.get(0));
+            for (ReferencedEnvelope other : regions) {
+                all.expandToInclude(other);
+            }
+            regions.clear();
+            regions.add(all);
+        }
+        return regions.size() - before;
+    }
+
+    /**
+     * Truncates all the pending regions
+     */
+    public void flush() {
+        Map<String, List<ReferencedEnvelope>> regions;
+        long since;
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            regions = pending;
+            since = pendingSince;
+            pending = new LinkedHashMap<>();
+            pendingRegions = 0;
+        }
+        for (Map.Entry<String, List<ReferencedEnvelope>> entry : regions.entrySet()) {
+            for (ReferencedEnvelope region : entry.getValue()) {
+                truncate(entry.getKey(), region);
+            }
+        }
+        long latency = System.currentTimeMillis() - since;
+        lastLatency = latency;
+        if (latency > maxLatency) {
+            maxLatency = latency;
+        }
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("Truncated the regions of " + regions.size() + " tile layers, "
+                    + latency + "ms after the first change");
+        }
+    }
+
+    private void truncate(String tileLayerName, ReferencedEnvelope region) {
+        truncateCount.incrementAndGet();
+        try {
+            gwc.truncate(tileLayerName, region);
+        } catch (Exception e) {
+            // the layer might have been removed meanwhile
+            LOGGER.log(Level.WARNING, "Error truncating tile layer " + tileLayerName
+                    + " for transaction affected bounds " + region, e);
+        }
+    }
+
+    /**
+     * Number of regions waiting to be truncated
+     */
+    public synchronized int getQueueSize() {
+        return pendingRegions;
+    }
+
+    /**
+     * Number of regions added so far
+     */
+    public long getQueuedCount() {
+        return queuedCount.get();
+    }
+
+    /**
+     * Number of truncations performed so far, at most {@link #getQueuedCount()}, the difference
+     * being the regions saved by coalescing
+     */
+    public long getTruncateCount() {
+        return truncateCount.get();
+    }
+
+    /**
+     * Time between the first change and the truncation of the last batch, in milliseconds
+     */
+    public long getLastLatency() {
+        return lastLatency;
+    }
+
+    /**
+     * The largest latency seen so far, in milliseconds
+     */
+    public long getMaxLatency() {
+        return maxLatency;
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        // do not leave stale tiles behind
+        flush();
+    }
+}
@@ -13,6 +13,7 @@ import java.awt.image.BufferedImage;
 import java.awt.image.RenderedImage;
 import java.awt.image.WritableRaster;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 
 import javax.media.jai.PlanarImage;
@@ -21,6 +22,7 @@ import org.geoserver.gwc.GWC;
 import org.geoserver.ows.Response;
 import org.geoserver.wms.WMSMapContent;
 import org.geoserver.wms.WebMap;
+import org.geoserver.wms.map.MetaTileMap;
 import org.geoserver.wms.map.RawMap;
 import org.geoserver.wms.map.RenderedImageMap;
 import org.geoserver.wms.map.RenderedImageMapResponse;
@@ -35,12 +37,19 @@ import org.geowebcache.layer.MetaTile;
 import org.geowebcache.mime.FormatModifier;
 import org.geowebcache.mime.MimeType;
 
+import com.google.common.io.ByteStreams;
+
 import it.geosolutions.jaiext.BufferedImageAdapter;
 
 public class GeoServerMetaTile extends MetaTile {
 
     private WebMap metaTileMap;
 
+    /**
+     * Copy of the tiles encoded so far, to be handed over to concurrent requests
+     */
+    private byte[][] encodedTiles;
+
     public GeoServerMetaTile(GridSubset gridSubset, MimeType responseFormat,
             FormatModifier formatModifier, long[] tileGridPosition, int metaX, int metaY,
             Integer gutter) {
@@ -66,13 +75,43 @@ public class GeoServerMetaTile extends MetaTile {
      */
     @Override
     public boolean writeTileToStream(final int tileIdx, Resource target) throws IOException {
+        boolean written = writeTile(tileIdx, target);
+        if (written) {
+            if (encodedTiles == null) {
+                encodedTiles = new byte[getTilesGridPositions().length][];
+            }
+            try (InputStream is = target.getInputStream()) {
+                encodedTiles[tileIdx] = ByteStreams.toByteArray(is);
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Returns the tiles encoded so far by {@link #writeTileToStream(int, Resource)}, in the same
+     * order as {@link #getTilesGridPositions()}, or {@code null} if none was encoded
+     */
+    public byte[][] getEncodedTiles() {
+        return encodedTiles;
+    }
+
+    private boolean writeTile(final int tileIdx, Resource target) throws IOException {
 
         checkNotNull(metaTileMap, "webMap is not set");
 
-        if (metaTileMap instanceof RawMap) {
+        WebMap rawMap = metaTileMap;
+        if (metaTileMap instanceof MetaTileMap) {
+            rawMap = ((MetaTileMap) metaTileMap).getTile(getTileArea(tileIdx));
+            checkNotNull(rawMap, "tile " + tileIdx + " not found in the meta tile");
+        }
+        if (rawMap instanceof RawMap) {
+            if (rawMap == metaTileMap && getTilesGridPositions().length > 1) {
+                throw new IllegalStateException("Cannot split an encoded map into tiles: "
+                        + metaTileMap.getClass().getName());
+            }
             OutputStream outStream = target.getOutputStream();
             try {
-                ((RawMap) metaTileMap).writeTo(outStream);
+                ((RawMap) rawMap).writeTo(outStream);
             } finally {
                 outStream.close();
             }
@@ -133,6 +172,26 @@ public class GeoServerMetaTile extends MetaTile {
         }
     }
 
+    /**
+     * Returns the area of the tile at index {@code tileIdx} in the meta tile, in pixels, with the
+     * origin at the top-left corner, for meta tiles without gutter
+     */
+    Rectangle getTileArea(int tileIdx) {
+        long[][] positions = getTilesGridPositions();
+        long minX = Long.MAX_VALUE;
+        long maxY = Long.MIN_VALUE;
+        for (long[] position : positions) {
+            minX = Math.min(minX, position[0]);
+            maxY = Math.max(maxY, position[1]);
+        }
+        // grid rows grow northwards, image rows southwards
+        final int tileWidth = gridSubset.getTileWidth();
+        final int tileHeight = gridSubset.getTileHeight();
+        long[] position = positions[tileIdx];
+        return new Rectangle((int) (position[0] - minX) * tileWidth,
+                (int) (maxY - position[1]) * tileHeight, tileWidth, tileHeight);
+    }
+
     /**
      * Checks if this meta tile has a gutter, or not
      *
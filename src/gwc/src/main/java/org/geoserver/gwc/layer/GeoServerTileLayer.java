@@ -22,11 +22,14 @@ import org.geoserver.ows.util.RequestUtils;
 import org.geoserver.platform.GeoServerExtensions;
 import org.geoserver.rest.RequestInfo;
 import org.geoserver.wms.GetLegendGraphicRequest;
+import org.geoserver.wms.GetMapOutputFormat;
 import org.geoserver.wms.GetMapRequest;
 import org.geoserver.wms.WMS;
 import org.geoserver.wms.WebMap;
 import org.geoserver.wms.capabilities.CapabilityUtil;
 import org.geoserver.wms.capabilities.LegendSample;
+import org.geoserver.wms.map.MetaTileMap;
+import org.geoserver.wms.map.MetaTileMapOutputFormat;
 import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geotools.referencing.CRS;
 import org.geotools.styling.FeatureTypeStyle;
@@ -43,6 +46,7 @@ import org.geowebcache.filter.parameters.ParameterException;
 import org.geowebcache.filter.parameters.ParameterFilter;
 import org.geowebcache.filter.request.RequestFilter;
 import org.geowebcache.grid.*;
+import org.geowebcache.io.ByteArrayResource;
 import org.geowebcache.io.Resource;
 import org.geowebcache.layer.*;
 import org.geowebcache.layer.meta.ContactInformation;
@@ -95,6 +99,8 @@ public class GeoServerTileLayer extends TileLayer implements ProxyLayer {
 
     private static LayerListenerList listeners = new LayerListenerList();
 
+    private static final MetaTileCoalescer COALESCER = new MetaTileCoalescer();
+
     private final GridSetBroker gridSetBroker;
     
     private Catalog catalog;
@@ -527,7 +533,7 @@ public class GeoServerTileLayer extends TileLayer implements ProxyLayer {
 
         int metaX;
         int metaY;
-        if (mime.supportsTiling()) {
+        if (supportsMetaTiling(mime)) {
             metaX = info.getMetaTilingX();
             metaY = info.getMetaTilingY();
         } else {
@@ -570,10 +576,25 @@ public class GeoServerTileLayer extends TileLayer implements ProxyLayer {
         }
 
         final GeoServerMetaTile metaTile = createMetaTile(tile, metaX, metaY);
+        final String lockKey = buildLockKey(tile, metaTile);
+        final MetaTileCoalescer.Flight flight = COALESCER.start(lockKey);
+        if (flight == null && tryCache) {
+            // another request is rendering the meta tile, wait for it and grab our tile
+            byte[] bytes = COALESCER.await(lockKey, tile.getTileIndex());
+            if (bytes != null) {
+                LOGGER.finest("--> " + Thread.currentThread().getName()
+                        + " returns coalesced tile for "
+                        + Arrays.toString(metaTile.getMetaGridPos()));
+                metaTile.dispose();
+                tile.setBlob(new ByteArrayResource(bytes));
+                return finalizeTile(tile);
+            }
+        }
         Lock lock = null;
+        boolean rendered = false;
         try {
             /* ****************** Acquire lock ******************* */
-            lock = GWC.get().getLockProvider().getLock(buildLockKey(tile, metaTile));
+            lock = GWC.get().getLockProvider().getLock(lockKey);
             // got the lock on the meta tile, try again
             if (tryCache && tryCacheFetch(tile)) {
                 LOGGER.finest("--> " + Thread.currentThread().getName() + " returns cache hit for "
@@ -589,6 +610,7 @@ public class GeoServerTileLayer extends TileLayer implements ProxyLayer {
                     checkNotNull(map, "Did not obtain a WebMap from GeoServer's Dispatcher");
                     metaTile.setWebMap(map);
                     saveTiles(metaTile, tile, requestTime);
+                    rendered = true;
                 } catch (Exception e) {
                     Throwables.propagateIfInstanceOf(e, GeoWebCacheException.class);
                     throw new GeoWebCacheException("Problem communicating with GeoServer", e);
@@ -596,6 +618,11 @@ public class GeoServerTileLayer extends TileLayer implements ProxyLayer {
             }
             /* ****************** Return lock and response ****** */
         } finally {
+            if (flight != null) {
+                // release the requests waiting on this meta tile, handing over the tiles
+                COALESCER.complete(flight, rendered ? metaTile.getTilesGridPositions() : null,
+                        rendered ? metaTile.getEncodedTiles() : null);
+            }
             if(lock != null) {
                 lock.release();
             }
@@ -606,6 +633,14 @@ public class GeoServerTileLayer extends TileLayer implements ProxyLayer {
         return finalizeTile(tile);
     }
     
+    /**
+     * Returns the coalescer handing over freshly rendered tiles to the concurrent requests for
+     * the same meta tile, mostly to check its statistics
+     */
+    public static MetaTileCoalescer getMetaTileCoalescer() {
+        return COALESCER;
+    }
+
     private String buildLockKey(ConveyorTile tile, GeoServerMetaTile metaTile) {
         StringBuilder metaKey = new StringBuilder();
         
@@ -653,6 +688,21 @@ public class GeoServerTileLayer extends TileLayer implements ProxyLayer {
         return map;
     }
 
+    /**
+     * Raster formats are sliced after rendering, vector formats can only be meta tiled if their
+     * output format builds each tile of the meta tile on its own, see {@link MetaTileMap}
+     */
+    boolean supportsMetaTiling(MimeType mime) {
+        if (mime.supportsTiling()) {
+            return true;
+        }
+        if (!mime.isVector()) {
+            return false;
+        }
+        GetMapOutputFormat format = getWms().getMapOutputFormat(mime.getFormat());
+        return format instanceof MetaTileMapOutputFormat;
+    }
+
     private GeoServerMetaTile createMetaTile(ConveyorTile tile, final int metaX, final int metaY) {
         GeoServerMetaTile metaTile;
 
@@ -697,6 +747,11 @@ public class GeoServerTileLayer extends TileLayer implements ProxyLayer {
         params.put("STYLES", "");
         params.put("TRANSPARENT", "true");
         params.put(GWC_SEED_INTERCEPT_TOKEN, "true");
+        if (mimeType.isVector() && metaTile.getTilesGridPositions().length > 1) {
+            // have the vector tiles encoded one by one, they cannot be sliced afterwards
+            params.put(MetaTileMap.TILE_SIZE_KVP,
+                    gridSubset.getTileWidth() + "," + gridSubset.getTileHeight());
+        }
 
         Map<String, String> filteredParams = tile.getFilteringParameters();
         if (filteredParams.isEmpty()) {
@@ -777,7 +832,7 @@ public class GeoServerTileLayer extends TileLayer implements ProxyLayer {
 
         int metaX = info.getMetaTilingX();
         int metaY = info.getMetaTilingY();
-        if (!tile.getMimeType().supportsTiling()) {
+        if (!supportsMetaTiling(tile.getMimeType())) {
             metaX = metaY = 1;
         }
         getMetatilingReponse(tile, tryCache, metaX, metaY);
@@ -0,0 +1,150 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.gwc.layer;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesces the concurrent requests hitting the same meta tile before it's cached: the first
+ * request renders the meta tile, the others wait for it to complete and get their tile handed
+ * over in memory, instead of queuing on the meta tile lock and then reading the tile back from
+ * the blob store.
+ * <p>
+ * This works within a single GeoServer instance, the meta tile lock is still used by the rendering
+ * request to coordinate with other instances sharing the same blob store.
+ * </p>
+ */
+public class MetaTileCoalescer {
+
+    private final ConcurrentHashMap<String, Flight> flights = new ConcurrentHashMap<>();
+
+    private final AtomicLong renderedMetaTiles = new AtomicLong();
+
+    private final AtomicLong coalescedTiles = new AtomicLong();
+
+    private final AtomicLong missedTiles = new AtomicLong();
+
+    /**
+     * A meta tile being rendered
+     */
+    public static final class Flight {
+
+        final String key;
+
+        final CountDownLatch done = new CountDownLatch(1);
+
+        volatile long[][] positions;
+
+        volatile byte[][] tiles;
+
+        Flight(String key) {
+            this.key = key;
+        }
+
+        byte[] getTile(long[] position) {
+            long[][] positions = this.positions;
+            byte[][] tiles = this.tiles;
+            if (positions == null || tiles == null) {
+                return null;
+            }
+            for (int i = 0; i < positions.length && i < tiles.length; i++) {
+                if (Arrays.equals(positions[i], position)) {
+                    return tiles[i];
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Starts rendering a meta tile
+     *
+     * @param key The meta tile key
+     * @return The flight to be {@link #complete(Flight, long[][], byte[][]) completed} once done,
+     *         or {@code null} if another request is already rendering the meta tile
+     */
+    public Flight start(String key) {
+        Flight flight = new Flight(key);
+        return flights.putIfAbsent(key, flight) == null ? flight : null;
+    }
+
+    /**
+     * Signals the meta tile rendering is over, releasing the waiting requests. Has to be called
+     * also when rendering fails, passing no tiles, the waiting requests will then go on their own.
+     *
+     * @param flight The flight returned by {@link #start(String)}
+     * @param positions The grid positions of the tiles, or {@code null} if rendering failed
+     * @param tiles The encoded tiles, in the same order as the positions, a tile is {@code null}
+     *        if it was not encoded
+     */
+    public void complete(Flight flight, long[][] positions, byte[][] tiles) {
+        if (positions != null && tiles != null) {
+            flight.positions = positions;
+            flight.tiles = tiles;
+            renderedMetaTiles.incrementAndGet();
+        }
+        flights.remove(flight.key, flight);
+        flight.done.countDown();
+    }
+
+    /**
+     * Waits for the meta tile being rendered, if any, and returns the requested tile
+     *
+     * @param key The meta tile key
+     * @param position The grid position of the requested tile
+     * @return The encoded tile, or {@code null} if the meta tile is not being rendered or the tile
+     *         is not available, in that case the caller has to go the usual way
+     */
+    public byte[] await(String key, long[] position) {
+        Flight flight = flights.get(key);
+        if (flight == null) {
+            return null;
+        }
+        try {
+            flight.done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        byte[] tile = flight.getTile(position);
+        if (tile != null) {
+            coalescedTiles.incrementAndGet();
+        } else {
+            missedTiles.incrementAndGet();
+        }
+        return tile;
+    }
+
+    /**
+     * Number of meta tiles rendered with the results available for the waiting requests
+     */
+    public long getRenderedMetaTiles() {
+        return renderedMetaTiles.get();
+    }
+
+    /**
+     * Number of tiles handed over in memory to waiting requests
+     */
+    public long getCoalescedTiles() {
+        return coalescedTiles.get();
+    }
+
+    /**
+     * Number of tiles waited for that were not available, and had to be looked up in the cache
+     */
+    public long getMissedTiles() {
+        return missedTiles.get();
+    }
+
+    /**
+     * Number of meta tiles currently being rendered
+     */
+    public int getActiveMetaTiles() {
+        return flights.size();
+    }
+}
@@ -260,6 +260,46 @@ public class ConfigurableBlobStoreTest extends GeoServerSystemTestSupport {
 
     }
 
+    @Test
+    public void testLayerCacheStatistics() throws Exception {
+        // Configure the blobstore
+        GWCConfig gwcConfig = new GWCConfig();
+        gwcConfig.setInnerCachingEnabled(true);
+        gwcConfig.setEnabledPersistence(false);
+        blobStore.setChanged(gwcConfig, false);
+
+        Resource bytes = new ByteArrayResource("1 2 3 4 5 6 test".getBytes());
+        long[] xyz = { 1L, 2L, 3L };
+        Map<String, String> parameters = new HashMap<String, String>();
+        blobStore.put(TileObject.createCompleteTileObject("test:stats", xyz, "EPSG:4326",
+                "image/jpeg", parameters, bytes));
+
+        // one hit, two misses
+        assertTrue(blobStore.get(TileObject.createQueryTileObject("test:stats", xyz, "EPSG:4326",
+                "image/jpeg", parameters)));
+        long[] other = { 2L, 2L, 3L };
+        assertFalse(blobStore.get(TileObject.createQueryTileObject("test:stats", other,
+                "EPSG:4326", "image/jpeg", parameters)));
+        assertFalse(blobStore.get(TileObject.createQueryTileObject("test:stats", other,
+                "EPSG:4326", "image/jpeg", parameters)));
+
+        LayerCacheStatistics stats = null;
+        for (LayerCacheStatistics layerStats : blobStore.getLayerCacheStatistics()) {
+            if ("test:stats".equals(layerStats.getLayerName())) {
+                stats = layerStats;
+            }
+        }
+        assertNotNull(stats);
+        assertEquals(1, stats.getHitCount());
+        assertEquals(2, stats.getMissCount());
+        assertEquals(33.33, stats.getHitRate(), 0d);
+
+        // no statistics without in memory caching
+        gwcConfig.setInnerCachingEnabled(false);
+        blobStore.setChanged(gwcConfig, false);
+        assertTrue(blobStore.getLayerCacheStatistics().isEmpty());
+    }
+
     /**
      * Checks if the streams are equals, note that the {@link InputStream}s are also closed.
      */
@@ -28,9 +28,11 @@ import java.util.Map;
 
 import static junit.framework.TestCase.assertTrue;
 import static org.geotools.referencing.crs.DefaultGeographicCRS.WGS84;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.*;
@@ -203,6 +205,34 @@ public class GWCTransactionListenerTest {
 
     }
 
+    @Test
+    public void testAfterTransactionQueued() throws Exception {
+        TruncateQueue queue = new TruncateQueue(mediator, 60 * 60 * 1000);
+        listener = new GWCTransactionListener(mediator, queue);
+        try {
+            Map<Object, Object> extendedProperties = new HashMap<Object, Object>();
+            ReferencedEnvelope affectedBounds = new ReferencedEnvelope(-180, 0, 0, 90, WGS84);
+            issueInsert(extendedProperties, affectedBounds);
+
+            TransactionRequest request = mock(TransactionRequest.class);
+            TransactionResponse result = mock(TransactionResponse.class);
+            when(request.getExtendedProperties()).thenReturn(extendedProperties);
+
+            when(mediator.getDeclaredCrs(anyString())).thenReturn(WGS84);
+            listener.afterTransaction(request, result, true);
+
+            // the transaction does not wait for the truncation
+            verify(mediator, never()).truncate(anyString(), any(ReferencedEnvelope.class));
+            assertEquals(2, queue.getQueueSize());
+
+            queue.flush();
+            verify(mediator, times(1)).truncate(eq("theLayer"), eq(affectedBounds));
+            verify(mediator, times(1)).truncate(eq("theGroup"), eq(affectedBounds));
+        } finally {
+            queue.destroy();
+        }
+    }
+
     /**
      * Issues a fake dataStoreChange insert event that affects two tile layers: "theLayer" and
      * "theGroup"
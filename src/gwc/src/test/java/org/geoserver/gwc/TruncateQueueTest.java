@@ -0,0 +1,122 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.gwc;
+
+import static org.geotools.referencing.crs.DefaultGeographicCRS.WGS84;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geowebcache.GeoWebCacheException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TruncateQueueTest {
+
+    private GWC mediator;
+
+    private TruncateQueue queue;
+
+    @Before
+    public void setUp() throws Exception {
+        mediator = mock(GWC.class);
+        // long enough to flush by hand
+        queue = new TruncateQueue(mediator, 60 * 60 * 1000);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        queue.destroy();
+    }
+
+    @Test
+    public void testSynchronous() throws Exception {
+        TruncateQueue synchronous = new TruncateQueue(mediator, 0);
+        ReferencedEnvelope region = new ReferencedEnvelope(0, 10, 0, 10, WGS84);
+        synchronous.add("theLayer", region);
+
+        verify(mediator, times(1)).truncate(eq("theLayer"), eq(region));
+        assertEquals(0, synchronous.getQueueSize());
+        assertEquals(1, synchronous.getTruncateCount());
+    }
+
+    @Test
+    public void testCoalesce() throws Exception {
+        queue.add("theLayer", new ReferencedEnvelope(0, 10, 0, 10, WGS84));
+        queue.add("theLayer", new ReferencedEnvelope(5, 15, 5, 15, WGS84));
+        queue.add("theLayer", new ReferencedEnvelope(50, 60, 50, 60, WGS84));
+        queue.add("theGroup", new ReferencedEnvelope(0, 10, 0, 10, WGS84));
+
+        // nothing truncated until the window expires
+        verifyNoMoreInteractions(mediator);
+        assertEquals(3, queue.getQueueSize());
+        assertEquals(4, queue.getQueuedCount());
+
+        queue.flush();
+        verify(mediator, times(1)).truncate(eq("theLayer"),
+                eq(new ReferencedEnvelope(0, 15, 0, 15, WGS84)));
+        verify(mediator, times(1)).truncate(eq("theLayer"),
+                eq(new ReferencedEnvelope(50, 60, 50, 60, WGS84)));
+        verify(mediator, times(1)).truncate(eq("theGroup"),
+                eq(new ReferencedEnvelope(0, 10, 0, 10, WGS84)));
+        verifyNoMoreInteractions(mediator);
+        assertEquals(0, queue.getQueueSize());
+        assertEquals(3, queue.getTruncateCount());
+    }
+
+    @Test
+    public void testMergeBridgingRegion() {
+        List<ReferencedEnvelope> regions = new ArrayList<>();
+        assertEquals(1, TruncateQueue.merge(regions, new ReferencedEnvelope(0, 10, 0, 10, WGS84)));
+        assertEquals(1, TruncateQueue.merge(regions, new ReferencedEnvelope(20, 30, 0, 10, WGS84)));
+        // overlaps both, they become one
+        assertEquals(-1, TruncateQueue.merge(regions, new ReferencedEnvelope(5, 25, 0, 10, WGS84)));
+        assertEquals(new ReferencedEnvelope(0, 30, 0, 10, WGS84), regions.get(0));
+    }
+
+    @Test
+    public void testTooManyRegions() {
+        List<ReferencedEnvelope> regions = new ArrayList<>();
+        for (int i = 0; i <= TruncateQueue.MAX_REGIONS; i++) {
+            TruncateQueue.merge(regions, new ReferencedEnvelope(i * 10, i * 10 + 1, 0, 1, WGS84));
+        }
+        assertEquals(1, regions.size());
+        assertEquals(new ReferencedEnvelope(0, TruncateQueue.MAX_REGIONS * 10 + 1, 0, 1, WGS84),
+                regions.get(0));
+    }
+
+    @Test
+    public void testBackgroundFlush() throws Exception {
+        queue.destroy();
+        queue = new TruncateQueue(mediator, 10);
+        ReferencedEnvelope region = new ReferencedEnvelope(0, 10, 0, 10, WGS84);
+        queue.add("theLayer", region);
+
+        verify(mediator, timeout(5000)).truncate(eq("theLayer"), eq(region));
+    }
+
+    @Test
+    public void testTruncateErrorDoesNotStopFlush() throws Exception {
+        doThrow(new GeoWebCacheException("fake")).when(mediator).truncate(eq("theLayer"),
+                any(ReferencedEnvelope.class));
+        queue.add("theLayer", new ReferencedEnvelope(0, 10, 0, 10, WGS84));
+        queue.add("theGroup", new ReferencedEnvelope(0, 10, 0, 10, WGS84));
+
+        queue.flush();
+        verify(mediator, times(1)).truncate(eq("theGroup"),
+                eq(new ReferencedEnvelope(0, 10, 0, 10, WGS84)));
+    }
+}
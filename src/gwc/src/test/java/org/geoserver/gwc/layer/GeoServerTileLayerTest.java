@@ -71,9 +71,11 @@ import org.geoserver.ows.LocalWorkspace;
 import org.geoserver.ows.Dispatcher;
 import org.geoserver.ows.Request;
 import org.geoserver.wms.GetLegendGraphicOutputFormat;
+import org.geoserver.wms.GetMapOutputFormat;
 import org.geoserver.wms.WMS;
 import org.geoserver.wms.WMSMapContent;
 import org.geoserver.wms.capabilities.LegendSample;
+import org.geoserver.wms.map.MetaTileMapOutputFormat;
 import org.geoserver.wms.map.RenderedImageMap;
 import org.geoserver.wms.map.RenderedImageMapResponse;
 import org.geotools.geometry.jts.ReferencedEnvelope;
@@ -764,6 +766,29 @@ public class GeoServerTileLayerTest {
         assertThat(metadata.get(0).getUrl(), is(new URL("http://localhost:8080/geoserver/metadata-content")));
     }
 
+    @Test
+    public void testSupportsMetaTiling() throws Exception {
+        WMS wms = mock(WMS.class);
+        GeoServerTileLayer tileLayer = new GeoServerTileLayer(layerInfo, defaults, gridSetBroker);
+        tileLayer.setWms(wms);
+
+        // raster formats are sliced after rendering
+        assertTrue(tileLayer.supportsMetaTiling(MimeType.createFromFormat("image/png")));
+
+        // vector formats need an output format building the tiles of the meta tile on its own
+        MimeType vector = MimeType.createFromFormat("application/x-protobuf;type=mapbox-vector");
+        assertTrue(vector.isVector());
+        when(wms.getMapOutputFormat(vector.getFormat()))
+                .thenReturn(mock(GetMapOutputFormat.class));
+        assertFalse(tileLayer.supportsMetaTiling(vector));
+        when(wms.getMapOutputFormat(vector.getFormat()))
+                .thenReturn(mock(MetaTileMapOutputFormat.class));
+        assertTrue(tileLayer.supportsMetaTiling(vector));
+        // not even a WMS format
+        when(wms.getMapOutputFormat(vector.getFormat())).thenReturn(null);
+        assertFalse(tileLayer.supportsMetaTiling(vector));
+    }
+
     @Test
     public void testGetLegendsLayer() throws Exception {
         setupUrlContext();
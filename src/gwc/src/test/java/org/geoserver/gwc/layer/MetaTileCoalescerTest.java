@@ -0,0 +1,109 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.gwc.layer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MetaTileCoalescerTest {
+
+    static final long[][] POSITIONS = { { 0, 0, 1 }, { 1, 0, 1 } };
+
+    MetaTileCoalescer coalescer;
+
+    ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        coalescer = new MetaTileCoalescer();
+        executor = Executors.newFixedThreadPool(2);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testNotRendering() {
+        assertNull(coalescer.await("meta", POSITIONS[0]));
+        assertEquals(0, coalescer.getMissedTiles());
+    }
+
+    @Test
+    public void testSingleFlight() throws Exception {
+        MetaTileCoalescer.Flight flight = coalescer.start("meta");
+        assertNotNull(flight);
+        // the second request does not render
+        assertNull(coalescer.start("meta"));
+        assertEquals(1, coalescer.getActiveMetaTiles());
+
+        Future<byte[]> first = executor.submit(() -> coalescer.await("meta", POSITIONS[0]));
+        Future<byte[]> second = executor.submit(() -> coalescer.await("meta", POSITIONS[1]));
+        waitForWaiters(2);
+        byte[][] tiles = { { 1, 2 }, { 3, 4 } };
+        coalescer.complete(flight, POSITIONS, tiles);
+
+        assertArrayEquals(tiles[0], first.get(5, TimeUnit.SECONDS));
+        assertArrayEquals(tiles[1], second.get(5, TimeUnit.SECONDS));
+        assertEquals(1, coalescer.getRenderedMetaTiles());
+        assertEquals(2, coalescer.getCoalescedTiles());
+        assertEquals(0, coalescer.getActiveMetaTiles());
+
+        // a new request renders again
+        assertNotNull(coalescer.start("meta"));
+    }
+
+    /**
+     * Waits for the requests to block on the flight, otherwise they would not find it
+     */
+    void waitForWaiters(int waiters) throws Exception {
+        long timeout = System.currentTimeMillis() + 5000;
+        while (countWaiting() < waiters && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+        assertEquals(waiters, countWaiting());
+    }
+
+    long countWaiting() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(t -> t.getState() == Thread.State.WAITING)
+                .filter(t -> Arrays.stream(t.getStackTrace()).anyMatch(
+                        e -> e.getClassName().equals(MetaTileCoalescer.class.getName())))
+                .count();
+    }
+
+    @Test
+    public void testFailedRendering() throws Exception {
+        MetaTileCoalescer.Flight flight = coalescer.start("meta");
+        Future<byte[]> waiting = executor.submit(() -> coalescer.await("meta", POSITIONS[0]));
+        coalescer.complete(flight, null, null);
+
+        assertNull(waiting.get(5, TimeUnit.SECONDS));
+        assertEquals(0, coalescer.getRenderedMetaTiles());
+        assertEquals(0, coalescer.getActiveMetaTiles());
+    }
+
+    @Test
+    public void testTileNotEncoded() throws Exception {
+        MetaTileCoalescer.Flight flight = coalescer.start("meta");
+        Future<byte[]> waiting = executor.submit(() -> coalescer.await("meta", POSITIONS[1]));
+        coalescer.complete(flight, POSITIONS, new byte[][] { { 1, 2 }, null });
+
+        assertNull(waiting.get(5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,932 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.catalog;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geotools.util.logging.Logging;
+
+/**
+ * A concurrent, optionally bounded cache used to hold the live resources managed by
+ * {@link ResourcePool}.
+ * <p>
+ * Reads never block, and {@link #getOrLoad(Object, Loader)} guarantees that at most one thread
+ * at a time loads the value for a given key, while threads needing other keys proceed undisturbed
+ * (the other threads asking for the same key wait for the first load to complete and share its
+ * result).
+ * </p>
+ * <p>
+ * By default the cache is not bounded, and behaves like a soft value map: the most recently used
+ * {@link #setHardReferences(int) hard references} values are strongly held, the others are only
+ * softly referenced and can be reclaimed by the garbage collector under memory pressure (the
+ * reclaimed values are dropped without calling {@link #dispose(Object, Object)}, as they are not
+ * available anymore). A zero or negative number of hard references keeps all values strongly
+ * referenced.
+ * </p>
+ * <p>
+ * The cache can also be bounded by number of entries and/or by total weight (as computed by a
+ * {@link Weigher}), in which case all values are strongly held. When a bound is exceeded entries
+ * are evicted following the configured {@link EvictionPolicy}, and
+ * {@link #dispose(Object, Object)} is called on them, exactly as it happens on
+ * {@link #remove(Object)} and {@link #clear()}. A bound lower or equal to zero means no bound.
+ * </p>
+ *
+ * @param <K>
+ * @param <V>
+ */
+public class ConcurrentResourceCache<K, V> extends AbstractMap<K, V> {
+
+    static final Logger LOGGER = Logging.getLogger(ConcurrentResourceCache.class);
+
+    /**
+     * The policy used to pick the entries to drop when the cache goes beyond its bounds
+     */
+    public enum EvictionPolicy {
+        /** Evicts the least recently used entries first */
+        LRU,
+        /** Evicts the least frequently used entries first */
+        LFU
+    }
+
+    /**
+     * Builds the value associated to a key on a cache miss
+     */
+    public interface Loader<K, V> {
+        /**
+         * Loads the value, or returns null if there is nothing to cache for the given key
+         */
+        V load(K key) throws Exception;
+    }
+
+    /**
+     * Computes the weight of a cache entry, used to bound caches by something else than the
+     * number of entries
+     */
+    public interface Weigher<K, V> {
+        long weigh(K key, V value);
+    }
+
+    static final class CacheEntry<K, V> {
+        final K key;
+
+        final long weight;
+
+        /** Creation tick, breaks ties among entries with the same LFU order */
+        final long sequence;
+
+        final ValueReference<K, V> reference;
+
+        /** The strong reference to the value, null if the entry has been demoted to soft */
+        volatile V value;
+
+        volatile long lastAccess;
+
+        final LongAdder accessCount = new LongAdder();
+
+        /** Snapshot of the access count and time used by the LFU order, guarded by orderLock */
+        long orderCount;
+
+        long orderTick;
+
+        CacheEntry(K key, V value, long weight, long tick, ReferenceQueue<V> queue) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+            this.sequence = tick;
+            this.lastAccess = tick;
+            this.reference = new ValueReference<>(value, queue, this);
+        }
+
+        V get() {
+            V v = value;
+            return v != null ? v : reference.get();
+        }
+
+        void touch(long tick) {
+            lastAccess = tick;
+            accessCount.increment();
+        }
+    }
+
+    static final class ValueReference<K, V> extends SoftReference<V> {
+        final CacheEntry<K, V> entry;
+
+        ValueReference(V value, ReferenceQueue<V> queue, CacheEntry<K, V> entry) {
+            super(value, queue);
+            this.entry = entry;
+        }
+    }
+
+    static final class LoadTask<V> extends FutureTask<V> {
+        final Thread owner = Thread.currentThread();
+
+        /**
+         * Set when the key is removed while loading, the loaded value might be stale and does not
+         * get cached. Guarded by {@link ConcurrentResourceCache#orderLock}.
+         */
+        boolean invalidated;
+
+        LoadTask(Callable<V> callable) {
+            super(callable);
+        }
+    }
+
+    /**
+     * Keeps the strongly referenced entries sorted in eviction order, the first entry being the
+     * next to go. Guarded by {@link ConcurrentResourceCache#orderLock}.
+     */
+    interface AccessOrder<K, V> {
+        void add(CacheEntry<K, V> entry);
+
+        void remove(CacheEntry<K, V> entry);
+
+        void touch(CacheEntry<K, V> entry);
+
+        /** Returns the next entry to evict, skipping the excluded key */
+        CacheEntry<K, V> first(K exclude);
+
+        int size();
+    }
+
+    static final class LRUOrder<K, V> implements AccessOrder<K, V> {
+        final LinkedHashMap<K, CacheEntry<K, V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+        public void add(CacheEntry<K, V> entry) {
+            entries.put(entry.key, entry);
+        }
+
+        public void remove(CacheEntry<K, V> entry) {
+            entries.remove(entry.key, entry);
+        }
+
+        public void touch(CacheEntry<K, V> entry) {
+            // access order, the lookup moves the entry to the tail
+            entries.get(entry.key);
+        }
+
+        public CacheEntry<K, V> first(K exclude) {
+            for (CacheEntry<K, V> entry : entries.values()) {
+                if (exclude == null || !exclude.equals(entry.key)) {
+                    return entry;
+                }
+            }
+            return null;
+        }
+
+        public int size() {
+            return entries.size();
+        }
+    }
+
+    static final class LFUOrder<K, V> implements AccessOrder<K, V> {
+        // on ties, the least recently used goes first
+        final TreeSet<CacheEntry<K, V>> entries = new TreeSet<>(
+                Comparator.<CacheEntry<K, V>> comparingLong(e -> e.orderCount)
+                        .thenComparingLong(e -> e.orderTick)
+                        .thenComparingLong(e -> e.sequence));
+
+        public void add(CacheEntry<K, V> entry) {
+            entry.orderCount = entry.accessCount.sum();
+            entry.orderTick = entry.lastAccess;
+            entries.add(entry);
+        }
+
+        public void remove(CacheEntry<K, V> entry) {
+            entries.remove(entry);
+        }
+
+        public void touch(CacheEntry<K, V> entry) {
+            if (entries.remove(entry)) {
+                add(entry);
+            }
+        }
+
+        public CacheEntry<K, V> first(K exclude) {
+            for (CacheEntry<K, V> entry : entries) {
+                if (exclude == null || !exclude.equals(entry.key)) {
+                    return entry;
+                }
+            }
+            return null;
+        }
+
+        public int size() {
+            return entries.size();
+        }
+    }
+
+    final String name;
+
+    final ConcurrentHashMap<K, CacheEntry<K, V>> entries = new ConcurrentHashMap<>();
+
+    final ConcurrentHashMap<K, LoadTask<V>> loading = new ConcurrentHashMap<>();
+
+    final ReferenceQueue<V> collected = new ReferenceQueue<>();
+
+    /** Guards the access order, evictions and demotions */
+    final ReentrantLock orderLock = new ReentrantLock();
+
+    /** The strongly referenced entries, guarded by orderLock */
+    AccessOrder<K, V> order = new LRUOrder<>();
+
+    /** Logical clock used to track the entries access order */
+    final AtomicLong clock = new AtomicLong();
+
+    final AtomicLong totalWeight = new AtomicLong();
+
+    volatile long maxEntries;
+
+    volatile long maxWeight;
+
+    volatile int hardReferences;
+
+    volatile EvictionPolicy policy = EvictionPolicy.LRU;
+
+    volatile Weigher<? super K, ? super V> weigher;
+
+    final LongAdder hits = new LongAdder();
+
+    final LongAdder misses = new LongAdder();
+
+    final LongAdder loadSuccesses = new LongAdder();
+
+    final LongAdder loadFailures = new LongAdder();
+
+    final LongAdder totalLoadTime = new LongAdder();
+
+    final LongAdder evictions = new LongAdder();
+
+    /**
+     * Builds an unbounded cache, holding all values strongly
+     *
+     * @param name The cache name, used in logs and statistics
+     */
+    public ConcurrentResourceCache(String name) {
+        this(name, 0);
+    }
+
+    /**
+     * Builds a cache bounded by number of entries
+     *
+     * @param name The cache name, used in logs and statistics
+     * @param maxEntries The max number of entries, zero or negative for an unbounded cache
+     */
+    public ConcurrentResourceCache(String name, long maxEntries) {
+        this.name = name;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Returns the cache name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the maximum number of entries (zero or negative means no limit)
+     */
+    public long getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Sets the maximum number of entries (zero or negative means no limit). Shrinking the bound
+     * immediately evicts the exceeding entries.
+     */
+    public void setMaxEntries(long maxEntries) {
+        this.maxEntries = maxEntries;
+        enforceBounds(null);
+    }
+
+    /**
+     * Returns the maximum total weight of the entries (zero or negative means no limit)
+     */
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    /**
+     * Sets the maximum total weight of the entries (zero or negative means no limit). The bound is
+     * only checked if a {@link Weigher} has been configured, otherwise each entry weights one.
+     */
+    public void setMaxWeight(long maxWeight) {
+        this.maxWeight = maxWeight;
+        enforceBounds(null);
+    }
+
+    /**
+     * Returns the number of values strongly held by an unbounded cache, the others being softly
+     * referenced (zero or negative means all values are strongly held)
+     */
+    public int getHardReferences() {
+        return hardReferences;
+    }
+
+    /**
+     * Sets the number of values strongly held by an unbounded cache, the least recently used
+     * values beyond it are only softly referenced (zero or negative means all values are strongly
+     * held). Ignored if the cache is bounded.
+     */
+    public void setHardReferences(int hardReferences) {
+        this.hardReferences = hardReferences;
+        enforceBounds(null);
+    }
+
+    public EvictionPolicy getEvictionPolicy() {
+        return policy;
+    }
+
+    public void setEvictionPolicy(EvictionPolicy policy) {
+        EvictionPolicy newPolicy = policy == null ? EvictionPolicy.LRU : policy;
+        orderLock.lock();
+        try {
+            if (newPolicy != this.policy) {
+                AccessOrder<K, V> newOrder = newPolicy == EvictionPolicy.LFU ? new LFUOrder<>()
+                        : new LRUOrder<>();
+                for (CacheEntry<K, V> entry : entries.values()) {
+                    if (entry.value != null) {
+                        newOrder.add(entry);
+                    }
+                }
+                this.order = newOrder;
+                this.policy = newPolicy;
+            }
+        } finally {
+            orderLock.unlock();
+        }
+    }
+
+    public Weigher<? super K, ? super V> getWeigher() {
+        return weigher;
+    }
+
+    /**
+     * Sets the weigher used to compute entry weights. Only affects entries added after the call.
+     */
+    public void setWeigher(Weigher<? super K, ? super V> weigher) {
+        this.weigher = weigher;
+    }
+
+    /**
+     * Returns the value associated to the key, loading it with the provided loader if missing.
+     * Concurrent calls for the same key will result in a single load, all callers receiving the
+     * same value (or the same exception). Null values returned by the loader are not cached, and
+     * neither are the values whose key got removed (or the cache cleared) while loading, as they
+     * might have been built from a configuration that changed in the meantime.
+     */
+    public V getOrLoad(K key, Loader<? super K, ? extends V> loader) throws Exception {
+        V value = lookup(key);
+        if (value != null) {
+            hits.increment();
+            return value;
+        }
+        misses.increment();
+        expungeCollected();
+
+        LoadTask<V> task = new LoadTask<>(() -> load(key, loader));
+        LoadTask<V> running = loading.putIfAbsent(key, task);
+        if (running != null && running.owner == Thread.currentThread()) {
+            // re-entrant load of the same key, waiting would deadlock
+            return loader.load(key);
+        } else if (running == null) {
+            try {
+                // another thread might have completed a load between our check and the
+                // registration of the task
+                value = lookup(key);
+                if (value != null) {
+                    return value;
+                }
+                task.run();
+            } finally {
+                loading.remove(key, task);
+            }
+            running = task;
+        }
+
+        try {
+            return running.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            } else {
+                throw e;
+            }
+        }
+    }
+
+    private V load(K key, Loader<? super K, ? extends V> loader) throws Exception {
+        long start = System.nanoTime();
+        V value;
+        try {
+            value = loader.load(key);
+        } catch (Exception | Error e) {
+            loadFailures.increment();
+            totalLoadTime.add(System.nanoTime() - start);
+            throw e;
+        }
+        loadSuccesses.increment();
+        totalLoadTime.add(System.nanoTime() - start);
+        if (value != null) {
+            // the task running this load stays registered until the load completes
+            put(key, value, loading.get(key));
+        }
+        return value;
+    }
+
+    /**
+     * Returns the value and records the access, or null if missing or reclaimed by the garbage
+     * collector
+     */
+    private V lookup(Object key) {
+        CacheEntry<K, V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        V value = entry.get();
+        if (value == null) {
+            return null;
+        }
+        entry.touch(clock.incrementAndGet());
+        // never block readers, if the order is busy the access is just not reflected in it
+        if (orderLock.tryLock()) {
+            try {
+                if (entry.value == null) {
+                    // softly referenced entry used again, back among the strong ones, unless
+                    // it has been removed in the meantime
+                    if (entries.get(key) == entry) {
+                        entry.value = value;
+                        order.add(entry);
+                        if (!isBounded()) {
+                            demote(entry.key);
+                        }
+                    }
+                } else {
+                    order.touch(entry);
+                }
+            } finally {
+                orderLock.unlock();
+            }
+        }
+        return value;
+    }
+
+    @Override
+    public V get(Object key) {
+        V value = lookup(key);
+        if (value == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return value;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        CacheEntry<K, V> entry = entries.get(key);
+        return entry != null && entry.get() != null;
+    }
+
+    /**
+     * Adds the value to the cache. The value previously associated to the key, if any, is returned
+     * but not disposed, as the caller might still be using it.
+     */
+    @Override
+    public V put(K key, V value) {
+        return put(key, value, null);
+    }
+
+    /**
+     * Adds the value to the cache, unless the key has been removed while the given task was
+     * loading it
+     */
+    private V put(K key, V value, LoadTask<V> task) {
+        if (value == null) {
+            throw new NullPointerException("Cannot cache null values");
+        }
+        expungeCollected();
+        Weigher<? super K, ? super V> w = weigher;
+        long weight = w == null ? 1 : Math.max(0, w.weigh(key, value));
+        CacheEntry<K, V> entry = new CacheEntry<>(key, value, weight, clock.incrementAndGet(),
+                collected);
+        CacheEntry<K, V> previous;
+        orderLock.lock();
+        try {
+            if (task != null && task.invalidated) {
+                return null;
+            }
+            previous = entries.put(key, entry);
+            if (previous != null) {
+                order.remove(previous);
+            }
+            order.add(entry);
+        } finally {
+            orderLock.unlock();
+        }
+        totalWeight.addAndGet(weight - (previous == null ? 0 : previous.weight));
+        enforceBounds(key);
+        return previous == null ? null : previous.get();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public V remove(Object key) {
+        CacheEntry<K, V> entry;
+        orderLock.lock();
+        try {
+            // a value being loaded for the key would be stale
+            LoadTask<V> task = loading.get(key);
+            if (task != null) {
+                task.invalidated = true;
+            }
+            entry = entries.remove(key);
+            if (entry == null) {
+                return null;
+            }
+            order.remove(entry);
+        } finally {
+            orderLock.unlock();
+        }
+        totalWeight.addAndGet(-entry.weight);
+        V value = entry.get();
+        if (value != null) {
+            safeDispose((K) key, value);
+        }
+        return value;
+    }
+
+    @Override
+    public void clear() {
+        orderLock.lock();
+        try {
+            for (LoadTask<V> task : loading.values()) {
+                task.invalidated = true;
+            }
+        } finally {
+            orderLock.unlock();
+        }
+        for (K key : new ArrayList<>(entries.keySet())) {
+            remove(key);
+        }
+    }
+
+    @Override
+    public int size() {
+        expungeCollected();
+        return entries.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return new AbstractSet<Entry<K, V>>() {
+
+            @Override
+            public Iterator<Entry<K, V>> iterator() {
+                Iterator<CacheEntry<K, V>> delegate = entries.values().iterator();
+                return new Iterator<Entry<K, V>>() {
+
+                    Entry<K, V> next;
+
+                    K lastKey;
+
+                    @Override
+                    public boolean hasNext() {
+                        // skip the values reclaimed by the garbage collector
+                        while (next == null && delegate.hasNext()) {
+                            CacheEntry<K, V> entry = delegate.next();
+                            V value = entry.get();
+                            if (value != null) {
+                                next = new SimpleImmutableEntry<>(entry.key, value);
+                            }
+                        }
+                        return next != null;
+                    }
+
+                    @Override
+                    public Entry<K, V> next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        Entry<K, V> result = next;
+                        next = null;
+                        lastKey = result.getKey();
+                        return result;
+                    }
+
+                    @Override
+                    public void remove() {
+                        if (lastKey == null) {
+                            throw new IllegalStateException();
+                        }
+                        ConcurrentResourceCache.this.remove(lastKey);
+                        lastKey = null;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return ConcurrentResourceCache.this.size();
+            }
+        };
+    }
+
+    /**
+     * Called when an entry is removed, evicted, or the cache is cleared. The default
+     * implementation does nothing, subclasses can override to release the resources held by the
+     * value.
+     */
+    protected void dispose(K key, V value) {
+        // nothing to do by default
+    }
+
+    private void safeDispose(K key, V value) {
+        try {
+            dispose(key, value);
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Error disposing entry " + key + " of cache " + name, e);
+        }
+    }
+
+    /**
+     * Drops the entries whose values have been reclaimed by the garbage collector
+     */
+    @SuppressWarnings("unchecked")
+    void expungeCollected() {
+        ValueReference<K, V> reference;
+        while ((reference = (ValueReference<K, V>) collected.poll()) != null) {
+            CacheEntry<K, V> entry = reference.entry;
+            if (entries.remove(entry.key, entry)) {
+                totalWeight.addAndGet(-entry.weight);
+                if (LOGGER.isLoggable(Level.FINE)) {
+                    LOGGER.fine("Entry " + entry.key + " of cache " + name
+                            + " reclaimed by the garbage collector");
+                }
+            }
+        }
+    }
+
+    boolean isBounded() {
+        return maxEntries > 0 || (maxWeight > 0 && weigher != null);
+    }
+
+    boolean isOverBounds() {
+        long entriesBound = maxEntries;
+        long weightBound = maxWeight;
+        return (entriesBound > 0 && entries.size() > entriesBound)
+                || (weightBound > 0 && weigher != null && totalWeight.get() > weightBound);
+    }
+
+    void enforceBounds(K justAdded) {
+        if (isBounded()) {
+            evictIfNeeded(justAdded);
+        } else {
+            demoteIfNeeded(justAdded);
+        }
+    }
+
+    /**
+     * Evicts entries until the cache is back within its bounds. The entry just added, if any, is
+     * not considered for eviction (with LFU it would otherwise be the first one to go, having
+     * never been used)
+     */
+    void evictIfNeeded(K justAdded) {
+        if (!isOverBounds()) {
+            return;
+        }
+        List<Map.Entry<K, V>> evicted = new ArrayList<>();
+        orderLock.lock();
+        try {
+            while (isOverBounds()) {
+                CacheEntry<K, V> victim = order.first(justAdded);
+                if (victim == null && justAdded != null) {
+                    // the new entry alone is beyond bounds
+                    victim = entries.get(justAdded);
+                }
+                if (victim == null) {
+                    break;
+                }
+                order.remove(victim);
+                if (entries.remove(victim.key, victim)) {
+                    totalWeight.addAndGet(-victim.weight);
+                    evictions.increment();
+                    V value = victim.get();
+                    if (value != null) {
+                        evicted.add(new SimpleImmutableEntry<>(victim.key, value));
+                    }
+                }
+            }
+        } finally {
+            orderLock.unlock();
+        }
+        // dispose out of the lock, disposal can be slow (e.g., closing connection pools)
+        for (Map.Entry<K, V> e : evicted) {
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine("Evicting " + e.getKey() + " from cache " + name);
+            }
+            safeDispose(e.getKey(), e.getValue());
+        }
+    }
+
+    /**
+     * Turns the strong references beyond the configured number of hard references into soft
+     * ones, least recently used first, for unbounded caches
+     */
+    void demoteIfNeeded(K justAdded) {
+        int limit = hardReferences;
+        if (limit <= 0 || isBounded()) {
+            return;
+        }
+        orderLock.lock();
+        try {
+            demote(justAdded);
+        } finally {
+            orderLock.unlock();
+        }
+    }
+
+    /**
+     * Demotes the least recently used strong references beyond the limit, must be called
+     * holding the order lock
+     */
+    private void demote(K exclude) {
+        int limit = hardReferences;
+        while (limit > 0 && order.size() > limit) {
+            CacheEntry<K, V> entry = order.first(exclude);
+            if (entry == null) {
+                break;
+            }
+            order.remove(entry);
+            entry.value = null;
+        }
+    }
+
+    /**
+     * Returns a snapshot of the cache statistics
+     */
+    public Statistics getStatistics() {
+        return new Statistics(this);
+    }
+
+    /**
+     * Resets the hit/miss/load/eviction counters
+     */
+    public void resetStatistics() {
+        hits.reset();
+        misses.reset();
+        loadSuccesses.reset();
+        loadFailures.reset();
+        totalLoadTime.reset();
+        evictions.reset();
+    }
+
+    /**
+     * A point in time snapshot of the cache usage statistics
+     */
+    public static class Statistics {
+        final String name;
+
+        final long size;
+
+        final long weight;
+
+        final long maxEntries;
+
+        final long maxWeight;
+
+        final EvictionPolicy policy;
+
+        final long hitCount;
+
+        final long missCount;
+
+        final long loadSuccessCount;
+
+        final long loadFailureCount;
+
+        final long totalLoadTime;
+
+        final long evictionCount;
+
+        Statistics(ConcurrentResourceCache<?, ?> cache) {
+            this.name = cache.name;
+            this.size = cache.entries.size();
+            this.weight = cache.totalWeight.get();
+            this.maxEntries = cache.maxEntries;
+            this.maxWeight = cache.maxWeight;
+            this.policy = cache.policy;
+            this.hitCount = cache.hits.sum();
+            this.missCount = cache.misses.sum();
+            this.loadSuccessCount = cache.loadSuccesses.sum();
+            this.loadFailureCount = cache.loadFailures.sum();
+            this.totalLoadTime = cache.totalLoadTime.sum();
+            this.evictionCount = cache.evictions.sum();
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getWeight() {
+            return weight;
+        }
+
+        public long getMaxEntries() {
+            return maxEntries;
+        }
+
+        public long getMaxWeight() {
+            return maxWeight;
+        }
+
+        public EvictionPolicy getEvictionPolicy() {
+            return policy;
+        }
+
+        public long getHitCount() {
+            return hitCount;
+        }
+
+        public long getMissCount() {
+            return missCount;
+        }
+
+        /**
+         * Ratio of hits over the total number of lookups, or 1 if no lookup was made
+         */
+        public double getHitRatio() {
+            long requests = hitCount + missCount;
+            return requests == 0 ? 1d : (double) hitCount / requests;
+        }
+
+        public long getLoadSuccessCount() {
+            return loadSuccessCount;
+        }
+
+        public long getLoadFailureCount() {
+            return loadFailureCount;
+        }
+
+        /**
+         * Total time spent loading values, in nanoseconds
+         */
+        public long getTotalLoadTime() {
+            return totalLoadTime;
+        }
+
+        /**
+         * Average time spent loading a value, in nanoseconds
+         */
+        public double getAverageLoadPenalty() {
+            long loads = loadSuccessCount + loadFailureCount;
+            return loads == 0 ? 0d : (double) totalLoadTime / loads;
+        }
+
+        public long getEvictionCount() {
+            return evictionCount;
+        }
+
+        @Override
+        public String toString() {
+            return "Statistics [name=" + name + ", size=" + size + ", hits=" + hitCount
+                    + ", misses=" + missCount + ", loads=" + loadSuccessCount + ", failures="
+                    + loadFailureCount + ", evictions=" + evictionCount + "]";
+        }
+    }
+}
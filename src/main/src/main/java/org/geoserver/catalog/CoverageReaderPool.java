@@ -0,0 +1,541 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.catalog;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geotools.util.logging.Logging;
+import org.opengis.coverage.grid.GridCoverageReader;
+
+/**
+ * A pool of interchangeable readers for the same coverage store, used by {@link ResourcePool} to
+ * avoid sharing a single reader among all the threads accessing a coverage.
+ * <p>
+ * Readers are created on demand, up to {@code maxReaders}, past that point threads wait up to
+ * {@code maxWait} milliseconds for one to be returned, and fail if none is. Returned readers are
+ * kept around for reuse, the ones that stayed idle for more than {@code idleTimeout} milliseconds
+ * are disposed, as long as at least {@code minReaders} are left in the pool.
+ * </p>
+ * <p>
+ * Code working in a request uses {@link #lease()}, which hands out the same reader to all the
+ * calls made on behalf of the request, until the last of the lease scopes opened for it is
+ * closed. The request thread opens its scope with {@link #openLeases(Object)}, threads working
+ * on its behalf join it with {@link #joinLeases(Leases)}, nested requests dispatched by the same
+ * thread share the scope of the outer one. A request thus never holds more than one reader per
+ * pool, and never waits for a reader it is holding itself.
+ * </p>
+ */
+public class CoverageReaderPool {
+
+    static final Logger LOGGER = Logging.getLogger(CoverageReaderPool.class);
+
+    /**
+     * The lease scope of the current thread
+     */
+    static final ThreadLocal<LeaseScope> LEASES = new ThreadLocal<>();
+
+    /**
+     * The owner of the scopes joined by threads working on behalf of a request
+     */
+    static final Object JOINED = new Object();
+
+    /**
+     * Builds a new reader for the pool
+     */
+    public interface ReaderFactory {
+        GridCoverageReader create() throws IOException;
+    }
+
+    /**
+     * The readers leased by a request, by pool, shared among all the threads working on it and
+     * given back once none of them uses them anymore
+     */
+    public static final class Leases {
+
+        final Map<CoverageReaderPool, GridCoverageReader> readers = new IdentityHashMap<>();
+
+        int references;
+
+        synchronized GridCoverageReader lease(CoverageReaderPool pool) throws IOException {
+            GridCoverageReader reader = readers.get(pool);
+            if (reader == null) {
+                reader = pool.borrow();
+                readers.put(pool, reader);
+            }
+            return reader;
+        }
+
+        synchronized void retain() {
+            references++;
+        }
+
+        void release() {
+            List<Map.Entry<CoverageReaderPool, GridCoverageReader>> released;
+            synchronized (this) {
+                if (--references > 0) {
+                    return;
+                }
+                released = new ArrayList<>(readers.entrySet());
+                readers.clear();
+            }
+            for (Map.Entry<CoverageReaderPool, GridCoverageReader> entry : released) {
+                try {
+                    entry.getKey().release(entry.getValue());
+                } catch (Exception e) {
+                    LOGGER.log(Level.WARNING,
+                            "Failed to release reader for " + entry.getKey().name, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * The leases used by a thread, along with the owners of the scopes opened on it
+     */
+    static final class LeaseScope {
+
+        final Leases leases;
+
+        final List<Object> owners = new ArrayList<>();
+
+        LeaseScope(Leases leases) {
+            this.leases = leases;
+            leases.retain();
+        }
+    }
+
+    static final class IdleReader {
+        final GridCoverageReader reader;
+
+        final long since;
+
+        IdleReader(GridCoverageReader reader, long since) {
+            this.reader = reader;
+            this.since = since;
+        }
+    }
+
+    final String name;
+
+    final ReaderFactory factory;
+
+    final int minReaders;
+
+    final int maxReaders;
+
+    final long idleTimeout;
+
+    final long maxWait;
+
+    final ReentrantLock lock = new ReentrantLock();
+
+    final Condition available = lock.newCondition();
+
+    /** The idle readers, most recently returned first */
+    final ArrayDeque<IdleReader> idle = new ArrayDeque<>();
+
+    /** The number of live readers, idle or in use */
+    int size;
+
+    boolean disposed;
+
+    final LongAdder borrows = new LongAdder();
+
+    final LongAdder waits = new LongAdder();
+
+    final LongAdder totalWaitTime = new LongAdder();
+
+    final LongAdder exhaustions = new LongAdder();
+
+    final LongAdder creations = new LongAdder();
+
+    final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param name The pool name, used in logs and statistics
+     * @param factory Builds the pooled readers
+     * @param minReaders The number of readers kept in the pool even if idle
+     * @param maxReaders The maximum number of readers
+     * @param idleTimeout The time, in milliseconds, after which an idle reader can be disposed
+     * @param maxWait The time, in milliseconds, a thread waits for a reader when all of them are
+     *        in use
+     */
+    public CoverageReaderPool(String name, ReaderFactory factory, int minReaders, int maxReaders,
+            long idleTimeout, long maxWait) {
+        if (maxReaders <= 0) {
+            throw new IllegalArgumentException("The pool must allow at least one reader");
+        }
+        this.name = name;
+        this.factory = factory;
+        this.minReaders = Math.max(0, Math.min(minReaders, maxReaders));
+        this.maxReaders = maxReaders;
+        this.idleTimeout = idleTimeout;
+        this.maxWait = maxWait;
+    }
+
+    /**
+     * Takes a reader out of the pool, creating a new one if none is idle and the pool is not full,
+     * or waiting for one to be released otherwise. The reader must be given back using
+     * {@link #release(GridCoverageReader)}.
+     *
+     * @throws IOException If the reader creation fails, or no reader got released in time
+     */
+    public GridCoverageReader borrow() throws IOException {
+        GridCoverageReader reader = null;
+        long waitStart = 0;
+        List<GridCoverageReader> expired;
+        lock.lock();
+        try {
+            expired = evictIdle(System.currentTimeMillis());
+            while (reader == null) {
+                if (disposed) {
+                    throw new IOException("The reader pool for " + name + " has been disposed");
+                }
+                if (!idle.isEmpty()) {
+                    reader = idle.pollFirst().reader;
+                } else if (size < maxReaders) {
+                    // reserve the slot, the reader is created outside of the lock
+                    size++;
+                    break;
+                } else {
+                    long now = System.nanoTime();
+                    if (waitStart == 0) {
+                        waitStart = now;
+                        waits.increment();
+                    }
+                    long remaining = TimeUnit.MILLISECONDS.toNanos(maxWait) - (now - waitStart);
+                    if (remaining <= 0) {
+                        exhaustions.increment();
+                        throw new IOException("Timed out after " + maxWait
+                                + "ms waiting for a reader for " + name + ", all " + maxReaders
+                                + " readers are in use");
+                    }
+                    available.awaitNanos(remaining);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a reader for " + name);
+        } finally {
+            lock.unlock();
+            if (waitStart != 0) {
+                totalWaitTime.add(System.nanoTime() - waitStart);
+            }
+        }
+        disposeReaders(expired);
+
+        if (reader == null) {
+            try {
+                reader = factory.create();
+                creations.increment();
+            } catch (IOException | RuntimeException e) {
+                lock.lock();
+                try {
+                    size--;
+                    available.signal();
+                } finally {
+                    lock.unlock();
+                }
+                throw e;
+            }
+        }
+        borrows.increment();
+        return reader;
+    }
+
+    /**
+     * Gives back a reader obtained from {@link #borrow()}
+     */
+    public void release(GridCoverageReader reader) {
+        List<GridCoverageReader> expired;
+        lock.lock();
+        try {
+            long now = System.currentTimeMillis();
+            if (disposed) {
+                size--;
+                expired = Collections.singletonList(reader);
+            } else {
+                idle.addFirst(new IdleReader(reader, now));
+                available.signal();
+                expired = evictIdle(now);
+            }
+        } finally {
+            lock.unlock();
+        }
+        disposeReaders(expired);
+    }
+
+    /**
+     * Returns the reader leased by the current request, borrowing one if the request does not
+     * have one yet, or {@code null} if the current thread has no lease scope open. The reader is
+     * given back when the last lease scope of the request is closed.
+     */
+    public GridCoverageReader lease() throws IOException {
+        LeaseScope scope = LEASES.get();
+        return scope == null ? null : scope.leases.lease(this);
+    }
+
+    /**
+     * Returns true if the current thread has a lease scope open
+     */
+    public static boolean isLeasing() {
+        return LEASES.get() != null;
+    }
+
+    /**
+     * Opens a lease scope for the given owner on the current thread, nested scopes share the
+     * leases of the outer one
+     */
+    public static void openLeases(Object owner) {
+        LeaseScope scope = LEASES.get();
+        if (scope == null) {
+            scope = new LeaseScope(new Leases());
+            LEASES.set(scope);
+        }
+        scope.owners.add(owner);
+    }
+
+    /**
+     * Closes the lease scope opened for the given owner, the leased readers are given back to
+     * their pools once no scope uses them anymore. Does nothing if the owner did not open a scope
+     * on the current thread.
+     */
+    public static void closeLeases(Object owner) {
+        LeaseScope scope = LEASES.get();
+        if (scope == null) {
+            return;
+        }
+        boolean removed = false;
+        for (Iterator<Object> it = scope.owners.iterator(); it.hasNext() && !removed;) {
+            if (it.next() == owner) {
+                it.remove();
+                removed = true;
+            }
+        }
+        if (removed && scope.owners.isEmpty()) {
+            LEASES.remove();
+            scope.leases.release();
+        }
+    }
+
+    /**
+     * Returns the leases of the current thread, to be shared with the threads working on its
+     * behalf, or {@code null} if the current thread has no lease scope open
+     */
+    public static Leases getLeases() {
+        LeaseScope scope = LEASES.get();
+        return scope == null ? null : scope.leases;
+    }
+
+    /**
+     * Makes the current thread use the leases of the request it's working for, until
+     * {@link #leaveLeases()} is called
+     */
+    public static void joinLeases(Leases leases) {
+        LeaseScope scope = LEASES.get();
+        if (scope == null) {
+            scope = new LeaseScope(leases);
+            LEASES.set(scope);
+        }
+        scope.owners.add(JOINED);
+    }
+
+    /**
+     * Stops using the leases joined by {@link #joinLeases(Leases)}
+     */
+    public static void leaveLeases() {
+        closeLeases(JOINED);
+    }
+
+    /**
+     * Disposes the readers that stayed idle past the timeout, leaving at least minReaders in the
+     * pool. Must be called while holding the lock, the returned readers are to be disposed once it
+     * has been released.
+     */
+    private List<GridCoverageReader> evictIdle(long now) {
+        List<GridCoverageReader> expired = null;
+        while (!idle.isEmpty() && size > minReaders
+                && now - idle.peekLast().since >= idleTimeout) {
+            if (expired == null) {
+                expired = new ArrayList<>();
+            }
+            expired.add(idle.pollLast().reader);
+            size--;
+            evictions.increment();
+        }
+        return expired;
+    }
+
+    private void disposeReaders(List<GridCoverageReader> readers) {
+        if (readers == null) {
+            return;
+        }
+        for (GridCoverageReader reader : readers) {
+            try {
+                reader.dispose();
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING, "Error occurred disposing a pooled reader for " + name,
+                        e);
+            }
+        }
+    }
+
+    /**
+     * Disposes the idle readers, the ones in use will be disposed as they get released
+     */
+    public void dispose() {
+        List<GridCoverageReader> readers = new ArrayList<>();
+        lock.lock();
+        try {
+            disposed = true;
+            for (IdleReader ir : idle) {
+                readers.add(ir.reader);
+            }
+            size -= idle.size();
+            idle.clear();
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        disposeReaders(readers);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns a snapshot of the pool usage statistics
+     */
+    public Statistics getStatistics() {
+        lock.lock();
+        try {
+            return new Statistics(this);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * A snapshot of the pool usage statistics
+     */
+    public static class Statistics {
+        final String name;
+
+        final int size;
+
+        final int idle;
+
+        final int minReaders;
+
+        final int maxReaders;
+
+        final long borrowCount;
+
+        final long waitCount;
+
+        final long totalWaitTime;
+
+        final long exhaustionCount;
+
+        final long creationCount;
+
+        final long evictionCount;
+
+        Statistics(CoverageReaderPool pool) {
+            this.name = pool.name;
+            this.size = pool.size;
+            this.idle = pool.idle.size();
+            this.minReaders = pool.minReaders;
+            this.maxReaders = pool.maxReaders;
+            this.borrowCount = pool.borrows.sum();
+            this.waitCount = pool.waits.sum();
+            this.totalWaitTime = TimeUnit.NANOSECONDS.toMillis(pool.totalWaitTime.sum());
+            this.exhaustionCount = pool.exhaustions.sum();
+            this.creationCount = pool.creations.sum();
+            this.evictionCount = pool.evictions.sum();
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * The number of live readers, idle or in use
+         */
+        public int getSize() {
+            return size;
+        }
+
+        public int getIdle() {
+            return idle;
+        }
+
+        public int getMinReaders() {
+            return minReaders;
+        }
+
+        public int getMaxReaders() {
+            return maxReaders;
+        }
+
+        public long getBorrowCount() {
+            return borrowCount;
+        }
+
+        /**
+         * The number of times a thread had to wait for a reader to be released
+         */
+        public long getWaitCount() {
+            return waitCount;
+        }
+
+        /**
+         * The total time spent waiting for readers, in milliseconds
+         */
+        public long getTotalWaitTime() {
+            return totalWaitTime;
+        }
+
+        /**
+         * The number of times a thread gave up waiting for a reader
+         */
+        public long getExhaustionCount() {
+            return exhaustionCount;
+        }
+
+        public long getCreationCount() {
+            return creationCount;
+        }
+
+        public long getEvictionCount() {
+            return evictionCount;
+        }
+
+        @Override
+        public String toString() {
+            return "Statistics [name=" + name + ", size=" + size + ", idle=" + idle
+                    + ", minReaders=" + minReaders + ", maxReaders=" + maxReaders
+                    + ", borrowCount=" + borrowCount + ", waitCount=" + waitCount
+                    + ", totalWaitTime=" + totalWaitTime + ", exhaustionCount=" + exhaustionCount
+                    + ", creationCount=" + creationCount + ", evictionCount=" + evictionCount
+                    + "]";
+        }
+    }
+}
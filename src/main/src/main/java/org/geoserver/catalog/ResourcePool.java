@@ -29,11 +29,13 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Map.Entry;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.logging.Level;
@@ -110,7 +112,6 @@ import org.geotools.referencing.CRS;
 import org.geotools.styling.Style;
 import org.geotools.styling.StyleImpl;
 import org.geotools.styling.StyledLayerDescriptor;
-import org.geotools.util.SoftValueHashMap;
 import org.geotools.util.URLs;
 import org.geotools.util.Utilities;
 import org.geotools.util.logging.Logging;
@@ -199,7 +200,23 @@ public class ResourcePool {
      * Default number of hard references
      */
     static int FEATURETYPE_CACHE_SIZE_DEFAULT = 100;
+
+    /**
+     * Prefix of the system properties/environment variables/servlet context parameters that can
+     * be used to configure the resource caches, e.g.,
+     * <code>org.geoserver.catalog.cache.dataStore.maxEntries=500</code>,
+     * <code>org.geoserver.catalog.cache.featureType.policy=LFU</code>
+     */
+    static final String CACHE_PROPERTY_PREFIX = "org.geoserver.catalog.cache.";
     
+    /**
+     * Name used to configure the coverage reader pools, e.g.,
+     * <code>org.geoserver.catalog.cache.coverageReaderPool.maxReaders=4</code>. See
+     * {@link #getCoverageReaderPool(CoverageHintReaderKey, CoverageStoreInfo, AbstractGridFormat, Hints)}
+     * for the available properties.
+     */
+    static final String COVERAGE_READER_POOL = "coverageReaderPool";
+
     private static final String IMAGE_PYRAMID = "ImagePyramid";
     private static final String IMAGE_MOSAIC = "ImageMosaic";
 
@@ -211,6 +228,7 @@ public class ResourcePool {
     Map<String, WebMapServer> wmsCache;
     Map<String, WebMapTileServer> wmtsCache;
     Map<CoverageHintReaderKey, GridCoverageReader> hintCoverageReaderCache;
+    Map<CoverageHintReaderKey, CoverageReaderPool> coverageReaderPools;
     Map<StyleInfo,StyledLayerDescriptor> sldCache;
     Map<StyleInfo,Style> styleCache;
     List<Listener> listeners;
@@ -240,6 +258,7 @@ public class ResourcePool {
         
         featureTypeAttributeCache = createFeatureTypeAttributeCache(FEATURETYPE_CACHE_SIZE_DEFAULT);
         hintCoverageReaderCache = createHintCoverageReaderCache();
+        coverageReaderPools = new ConcurrentHashMap<>();
         
         wmsCache = createWmsCache();
         wmtsCache = createWmtsCache();
@@ -365,6 +384,18 @@ public class ResourcePool {
         return new CoverageHintReaderCache();
     }
 
+    /**
+     * Returns the usage statistics of the coverage reader pools, see
+     * {@link #getCoverageReaderPool(CoverageHintReaderKey, CoverageStoreInfo, AbstractGridFormat, Hints)}
+     */
+    public List<CoverageReaderPool.Statistics> getCoverageReaderPoolStatistics() {
+        List<CoverageReaderPool.Statistics> result = new ArrayList<>();
+        for (CoverageReaderPool pool : coverageReaderPools.values()) {
+            result.add(pool.getStatistics());
+        }
+        return result;
+    }
+
     /**
      * Returns the cache for {@link StyledLayerDescriptor} objects for a particular style.
      * <p>
@@ -376,7 +407,7 @@ public class ResourcePool {
     }
 
     protected Map<StyleInfo, StyledLayerDescriptor> createSldCache() {
-        return new HashMap<StyleInfo, StyledLayerDescriptor>();
+        return new StyleResourceCache<StyledLayerDescriptor>("sld");
     }
 
     /**
@@ -390,7 +421,7 @@ public class ResourcePool {
     }
 
     protected Map<StyleInfo, Style> createStyleCache() {
-        return new HashMap<StyleInfo, Style>();
+        return new StyleResourceCache<Style>("style");
     }
 
     /**
@@ -417,6 +448,65 @@ public class ResourcePool {
     protected Map<String, WebMapTileServer> createWmtsCache() {
         return new WMTSCache();
     }
+
+    /**
+     * Returns the usage statistics of the resource caches, keyed by cache name. Only caches based
+     * on {@link ConcurrentResourceCache} are reported (subclasses might have replaced some of the
+     * caches with other map implementations).
+     */
+    public Map<String, ConcurrentResourceCache.Statistics> getCacheStatistics() {
+        Map<String, ConcurrentResourceCache.Statistics> result = new LinkedHashMap<>();
+        for (ConcurrentResourceCache<?, ?> cache : getConcurrentCaches()) {
+            result.put(cache.getName(), cache.getStatistics());
+        }
+        return result;
+    }
+
+    /**
+     * Resets the usage statistics of the resource caches, see {@link #getCacheStatistics()}
+     */
+    public void resetCacheStatistics() {
+        for (ConcurrentResourceCache<?, ?> cache : getConcurrentCaches()) {
+            cache.resetStatistics();
+        }
+    }
+
+    List<ConcurrentResourceCache<?, ?>> getConcurrentCaches() {
+        List<ConcurrentResourceCache<?, ?>> result = new ArrayList<>();
+        for (Map<?, ?> cache : Arrays.<Map<?, ?>> asList(dataStoreCache, featureTypeCache,
+                featureTypeAttributeCache, hintCoverageReaderCache, wmsCache, wmtsCache, sldCache,
+                styleCache)) {
+            if (cache instanceof ConcurrentResourceCache) {
+                result.add((ConcurrentResourceCache<?, ?>) cache);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Looks up a value in one of the resource caches, loading it on a miss. Caches based on
+     * {@link ConcurrentResourceCache} load each key at most once at a time without blocking the
+     * lookups of other keys, other map implementations fall back on locking the whole map.
+     */
+    static <K, V> V getOrLoad(Map<K, V> cache, K key, ConcurrentResourceCache.Loader<K, V> loader)
+            throws Exception {
+        if (cache instanceof ConcurrentResourceCache) {
+            return ((ConcurrentResourceCache<K, V>) cache).getOrLoad(key, loader);
+        }
+        V value = cache.get(key);
+        if (value == null) {
+            synchronized (cache) {
+                value = cache.get(key);
+                if (value == null) {
+                    value = loader.load(key);
+                    if (value != null) {
+                        cache.put(key, value);
+                    }
+                }
+            }
+        }
+        return value;
+    }
     /**
      * Sets the size of the feature type cache.
      * <p>
@@ -570,109 +660,13 @@ public class ResourcePool {
         DataAccess<? extends FeatureType, ? extends Feature> dataStore = null;
         try {
             String id = info.getId();
-            dataStore = dataStoreCache.get(id);
-            if ( dataStore == null ) {
-                synchronized (dataStoreCache) {
-                    dataStore = dataStoreCache.get( id );
-                    if ( dataStore == null ) {
-                        //create data store
-                        Map<String, Serializable> connectionParameters = expandedStore.getConnectionParameters();
-                        
-                        // call this method to execute the hack which recognizes 
-                        // urls which are relative to the data directory
-                        // TODO: find a better way to do this
-                        connectionParameters = ResourcePool.getParams(connectionParameters, catalog.getResourceLoader());
-                        
-                        // obtain the factory
-                        DataAccessFactory factory = null;
-                        try {
-                            factory = getDataStoreFactory(info);
-                        } catch(IOException e) {
-                            throw new IOException("Failed to find the datastore factory for " + info.getName() 
-                                    + ", did you forget to install the store extension jar?");
-                        }
-                        if (factory == null) {
-                            throw new IOException("Failed to find the datastore factory for "
-                                    + info.getName()
-                                    + ", did you forget to install the store extension jar?");
-                        }
-                        Param[] params = factory.getParametersInfo();
-                        
-                        //ensure that the namespace parameter is set for the datastore
-                        if (!connectionParameters.containsKey( "namespace") && params != null) {
-                            //if we grabbed the factory, check that the factory actually supports
-                            // a namespace parameter, if we could not get the factory, assume that
-                            // it does
-                            boolean supportsNamespace = true;
-                            supportsNamespace = false;
-                            
-                            for ( Param p : params ) {
-                                if ( "namespace".equalsIgnoreCase( p.key ) ) {
-                                    supportsNamespace = true;
-                                    break;
-                                }
-                            }
-                            
-                            if ( supportsNamespace ) {
-                                WorkspaceInfo ws = info.getWorkspace();
-                                NamespaceInfo ns = info.getCatalog().getNamespaceByPrefix( ws.getName() );
-                                if ( ns == null ) {
-                                    ns = info.getCatalog().getDefaultNamespace();
-                                }
-                                if ( ns != null ) {
-                                    connectionParameters.put( "namespace", ns.getURI() );
-                                }    
-                            }
-                        }
-                        
-                        // see if the store has a repository param, if so, pass the one wrapping
-                        // the store
-                        if(params != null) {
-                            for ( Param p : params ) {
-                                if(Repository.class.equals(p.getType())) {
-                                    connectionParameters.put(p.getName(), repository);
-                                }
-                            }
-                        }
-                        
-                        // see if the store has a entity resolver param, if so, pass it down
-                        EntityResolver resolver = getEntityResolver();
-                        if(resolver != null && params != null) {
-                            for ( Param p : params ) {
-                                if(EntityResolver.class.equals(p.getType())) {
-                                    if(!(resolver instanceof Serializable)) {
-                                        resolver = new SerializableEntityResolver(resolver);
-                                    }
-                                    connectionParameters.put(p.getName(), (Serializable) resolver);
-                                }
-                            }
-                        }
-                        
-                        dataStore = DataStoreUtils.getDataAccess(connectionParameters);
-                        if (dataStore == null) {
-                            /*
-                             * Preserve DataStore retyping behaviour by calling
-                             * DataAccessFinder.getDataStore after the call to
-                             * DataStoreUtils.getDataStore above.
-                             * 
-                             * TODO: DataAccessFinder can also find DataStores, and when retyping is
-                             * supported for DataAccess, we can use a single mechanism.
-                             */
-                            dataStore = DataAccessFinder.getDataStore(connectionParameters);
-                        }
-                        
-                        if ( dataStore == null ) {
-                            throw new NullPointerException("Could not acquire data access '" + info.getName() + "'");
-                        }
-                        
-                        // cache only if the id is not null, no need to cache the stores
-                        // returned from un-saved DataStoreInfo objects (it would be actually
-                        // harmful, NPE when trying to dispose of them)
-                        if(id != null) {
-                            dataStoreCache.put( id, dataStore );
-                        }
-                    }
-                } 
+            // cache only if the id is not null, no need to cache the stores
+            // returned from un-saved DataStoreInfo objects (it would be actually
+            // harmful, NPE when trying to dispose of them)
+            if (id != null) {
+                dataStore = getOrLoad(dataStoreCache, id, k -> createDataStore(info, expandedStore));
+            } else {
+                dataStore = createDataStore(info, expandedStore);
             }
             
             return dataStore;
@@ -693,6 +687,104 @@ public class ResourcePool {
         }
     }
         
+    /**
+     * Creates a new {@link DataAccess} for the given store, without looking into the cache
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    DataAccess<? extends FeatureType, ? extends Feature> createDataStore(DataStoreInfo info,
+            DataStoreInfo expandedStore) throws IOException {
+        Map<String, Serializable> connectionParameters = expandedStore.getConnectionParameters();
+
+        // call this method to execute the hack which recognizes 
+        // urls which are relative to the data directory
+        // TODO: find a better way to do this
+        connectionParameters = ResourcePool.getParams(connectionParameters, catalog.getResourceLoader());
+
+        // obtain the factory
+        DataAccessFactory factory = null;
+        try {
+            factory = getDataStoreFactory(info);
+        } catch(IOException e) {
+            throw new IOException("Failed to find the datastore factory for " + info.getName() 
+                    + ", did you forget to install the store extension jar?");
+        }
+        if (factory == null) {
+            throw new IOException("Failed to find the datastore factory for "
+                    + info.getName()
+                    + ", did you forget to install the store extension jar?");
+        }
+        Param[] params = factory.getParametersInfo();
+
+        //ensure that the namespace parameter is set for the datastore
+        if (!connectionParameters.containsKey( "namespace") && params != null) {
+            //if we grabbed the factory, check that the factory actually supports
+            // a namespace parameter, if we could not get the factory, assume that
+            // it does
+            boolean supportsNamespace = true;
+            supportsNamespace = false;
+
+            for ( Param p : params ) {
+                if ( "namespace".equalsIgnoreCase( p.key ) ) {
+                    supportsNamespace = true;
+                    break;
+                }
+            }
+
+            if ( supportsNamespace ) {
+                WorkspaceInfo ws = info.getWorkspace();
+                NamespaceInfo ns = info.getCatalog().getNamespaceByPrefix( ws.getName() );
+                if ( ns == null ) {
+                    ns = info.getCatalog().getDefaultNamespace();
+                }
+                if ( ns != null ) {
+                    connectionParameters.put( "namespace", ns.getURI() );
+                }    
+            }
+        }
+
+        // see if the store has a repository param, if so, pass the one wrapping
+        // the store
+        if(params != null) {
+            for ( Param p : params ) {
+                if(Repository.class.equals(p.getType())) {
+                    connectionParameters.put(p.getName(), repository);
+                }
+            }
+        }
+
+        // see if the store has a entity resolver param, if so, pass it down
+        EntityResolver resolver = getEntityResolver();
+        if(resolver != null && params != null) {
+            for ( Param p : params ) {
+                if(EntityResolver.class.equals(p.getType())) {
+                    if(!(resolver instanceof Serializable)) {
+                        resolver = new SerializableEntityResolver(resolver);
+                    }
+                    connectionParameters.put(p.getName(), (Serializable) resolver);
+                }
+            }
+        }
+
+        DataAccess<? extends FeatureType, ? extends Feature> dataStore = DataStoreUtils.getDataAccess(connectionParameters);
+        if (dataStore == null) {
+            /*
+             * Preserve DataStore retyping behaviour by calling
+             * DataAccessFinder.getDataStore after the call to
+             * DataStoreUtils.getDataStore above.
+             * 
+             * TODO: DataAccessFinder can also find DataStores, and when retyping is
+             * supported for DataAccess, we can use a single mechanism.
+             */
+            dataStore = DataAccessFinder.getDataStore(connectionParameters);
+        }
+
+        if ( dataStore == null ) {
+            throw new NullPointerException("Could not acquire data access '" + info.getName() + "'");
+        }
+
+        return dataStore;
+    }
+
     /**
      * Process connection parameters into a synchronized map.
      *
@@ -775,32 +867,36 @@ public class ResourcePool {
             return info.getAttributes();
         }
         
+        // cache attributes only if the id is not null -> the feature type is not new
+        if (info.getId() == null) {
+            return loadAttributesWithOverrides(info);
+        }
+
         //check the cache
-        List<AttributeTypeInfo> atts = featureTypeAttributeCache.get(info.getId());
-        if (atts == null) {
-            synchronized (featureTypeAttributeCache) {
-                atts = featureTypeAttributeCache.get(info.getId());
-                if (atts == null) {
-                    //load from feature type
-                    atts = loadAttributes(info);
-                    
-                    //check for a schema override
-                    try {
-                        handleSchemaOverride(atts,info);
-                    }
-                    catch( Exception e ) {
-                        LOGGER.log( Level.WARNING, 
-                            "Error occured applying schema override for "+info.getName(), e);
-                    }
-                    
-                    // cache attributes only if the id is not null -> the feature type is not new
-                    if(info.getId() != null) {
-                        featureTypeAttributeCache.put(info.getId(), atts);
-                    }
-                }
-            }
+        try {
+            return getOrLoad(featureTypeAttributeCache, info.getId(),
+                    k -> loadAttributesWithOverrides(info));
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
         }
-        
+    }
+
+    private List<AttributeTypeInfo> loadAttributesWithOverrides(FeatureTypeInfo info)
+            throws IOException {
+        //load from feature type
+        List<AttributeTypeInfo> atts = loadAttributes(info);
+
+        //check for a schema override
+        try {
+            handleSchemaOverride(atts,info);
+        }
+        catch( Exception e ) {
+            LOGGER.log( Level.WARNING, 
+                "Error occured applying schema override for "+info.getName(), e);
+        }
+
         return atts;
     }
     
@@ -954,27 +1050,23 @@ public class ResourcePool {
 
     FeatureType getCacheableFeatureType( FeatureTypeInfo info, boolean handleProjectionPolicy ) throws IOException {
         String key = getFeatureTypeInfoKey(info, handleProjectionPolicy);
-        FeatureType ft = featureTypeCache.get( key );
-        if ( ft == null ) {
-            synchronized ( featureTypeCache ) {
-                ft = featureTypeCache.get( key );
-                if ( ft == null ) {
-
-                    //grab the underlying feature type
-                    DataAccess<? extends FeatureType, ? extends Feature> dataAccess = getDataStore(info.getStore());
-                    FeatureTypeCallback initializer = getFeatureTypeInitializer(info, dataAccess);
-                    if (initializer != null) {
-                        initializer.initialize(info, dataAccess, null);
-                    }
-                    // ft = jstore.getSchema(vt.getName());
-                    ft = dataAccess.getSchema(info.getQualifiedNativeName());
-                    ft = buildFeatureType(info, handleProjectionPolicy, ft);
-
-                    featureTypeCache.put( key, ft );
+        try {
+            return getOrLoad(featureTypeCache, key, k -> {
+                //grab the underlying feature type
+                DataAccess<? extends FeatureType, ? extends Feature> dataAccess = getDataStore(info.getStore());
+                FeatureTypeCallback initializer = getFeatureTypeInitializer(info, dataAccess);
+                if (initializer != null) {
+                    initializer.initialize(info, dataAccess, null);
                 }
-            }
+                // ft = jstore.getSchema(vt.getName());
+                FeatureType ft = dataAccess.getSchema(info.getQualifiedNativeName());
+                return buildFeatureType(info, handleProjectionPolicy, ft);
+            });
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
         }
-        return ft;
     }
 
     private FeatureType getNonCacheableFeatureType( FeatureTypeInfo info, boolean handleProjectionPolicy ) throws IOException {
@@ -1485,34 +1577,25 @@ public class ResourcePool {
         if (coverageExecutor != null){
             hints.add(new RenderingHints(Hints.EXECUTOR_SERVICE, coverageExecutor));
         }
-        // look into the cache
-        Object key = new CoverageHintReaderKey(info.getId(), hints);
-        GridCoverageReader reader = hintCoverageReaderCache.get( key );
-        
-        // if not found in cache, create it
-        if (reader == null) {
-            synchronized ( hintCoverageReaderCache ) {
-                if (key != null) {
-                    reader = hintCoverageReaderCache.get(key);
-                }
-                if (reader == null) {
-                    /////////////////////////////////////////////////////////
-                    //
-                    // Getting coverage reader using the format and the real path.
-                    //
-                    // /////////////////////////////////////////////////////////
-                    final String urlString = expandedStore.getURL();
-                    Object readObject = getObjectToRead(urlString);
-
-                    // readers might change the provided hints, pass down a defensive copy
-                    reader = gridFormat.getReader(readObject, hints);
-                    if (reader == null) {
-                        throw new IOException("Failed to create reader from " + urlString + " and hints " + hints);
-                    }
-                    if (key != null) {
-                        hintCoverageReaderCache.put((CoverageHintReaderKey) key, reader);
-                    }
-                }
+        // look into the cache, if not found in cache, create it
+        CoverageHintReaderKey key = new CoverageHintReaderKey(info.getId(), hints);
+        final Hints readerHints = hints;
+        GridCoverageReader reader;
+        try {
+            reader = getOrLoad(hintCoverageReaderCache, key,
+                    k -> createGridCoverageReader(expandedStore, gridFormat, readerHints));
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+
+        // requests get a reader of their own, if pooling is enabled
+        if (CoverageReaderPool.isLeasing()) {
+            CoverageReaderPool pool = getCoverageReaderPool(key, expandedStore, gridFormat,
+                    readerHints);
+            if (pool != null) {
+                reader = pool.lease();
             }
         }
 
@@ -1553,6 +1636,62 @@ public class ResourcePool {
         }
     }
 
+    private GridCoverageReader createGridCoverageReader(CoverageStoreInfo expandedStore,
+            AbstractGridFormat gridFormat, Hints readerHints) throws IOException {
+        /////////////////////////////////////////////////////////
+        //
+        // Getting coverage reader using the format and the real path.
+        //
+        // /////////////////////////////////////////////////////////
+        final String urlString = expandedStore.getURL();
+        Object readObject = getObjectToRead(urlString);
+
+        // readers might change the provided hints, pass down a defensive copy
+        GridCoverageReader created = gridFormat.getReader(readObject, readerHints);
+        if (created == null) {
+            throw new IOException("Failed to create reader from " + urlString + " and hints " + readerHints);
+        }
+        return created;
+    }
+
+    /**
+     * Returns the pool of readers for the given store and hints, or null if reader pooling is
+     * disabled. Pooling is enabled by setting
+     * <code>org.geoserver.catalog.cache.coverageReaderPool.maxReaders</code> to a value greater
+     * than one, the pool behavior can be further tuned with the <code>minReaders</code>,
+     * <code>idleTimeout</code> (seconds, defaults to 300) and <code>maxWait</code> (seconds,
+     * defaults to 60) properties. The pools are disposed along with the cached reader for the same
+     * key.
+     * <p>
+     * The pooled readers are leased to the requests, shared by the threads working on their
+     * behalf, and given back as the request ends (see {@link CoverageReaderPool#lease()}),
+     * so that readers that are not thread safe, like GeoTIFF and ImageMosaic ones, are not shared
+     * among concurrent requests.
+     * </p>
+     */
+    CoverageReaderPool getCoverageReaderPool(CoverageHintReaderKey key,
+            CoverageStoreInfo expandedStore, AbstractGridFormat gridFormat, Hints readerHints) {
+        final int maxReaders = (int) getCacheProperty(COVERAGE_READER_POOL, "maxReaders", 1);
+        if (maxReaders <= 1) {
+            return null;
+        }
+        return coverageReaderPools.computeIfAbsent(key, k -> {
+            int minReaders = (int) getCacheProperty(COVERAGE_READER_POOL, "minReaders", 0);
+            long idleTimeout = getCacheProperty(COVERAGE_READER_POOL, "idleTimeout", 300);
+            long maxWait = getCacheProperty(COVERAGE_READER_POOL, "maxWait", 60);
+            return new CoverageReaderPool(expandedStore.getName(),
+                    () -> createGridCoverageReader(expandedStore, gridFormat, readerHints),
+                    minReaders, maxReaders, idleTimeout * 1000, maxWait * 1000);
+        });
+    }
+
+    void disposeCoverageReaderPool(CoverageHintReaderKey key) {
+        CoverageReaderPool pool = coverageReaderPools.remove(key);
+        if (pool != null) {
+            pool.dispose();
+        }
+    }
+
     /**
      * Attempted to convert the URL-ish string to a file object, otherwise just returns the string
      * itself
@@ -1599,6 +1738,12 @@ public class ResourcePool {
                 hintCoverageReaderCache.remove(key);
             }
         }
+        // in case the reader cache has been replaced by one not disposing the pools
+        for (CoverageHintReaderKey key : new ArrayList<>(coverageReaderPools.keySet())) {
+            if (key.id != null && key.id.equals(storeId)) {
+                disposeCoverageReaderPool(key);
+            }
+        }
         
     }
     
@@ -1950,29 +2095,26 @@ public class ResourcePool {
      * @throws IOException Any parsing errors.
      */
     public StyledLayerDescriptor getSld( final StyleInfo info) throws IOException {
-        StyledLayerDescriptor sld = sldCache.get( info );
-        if ( sld== null ) {
-            synchronized (sldCache) {
-                sld = sldCache.get( info );
-                if ( sld == null ) {
-                    sld = dataDir().parsedSld(info);
-
-                    sldCache.put( info, sld );
-
-                    final Resource styleResource = dataDir().style(info);
-                    styleResource.addListener( new ResourceListener() {
-                        @Override
-                        public void changed(ResourceNotification notify) {
-                            sldCache.remove(info);
-                            styleResource.removeListener( this );
-                        }
-                    });
+        try {
+            return getOrLoad(sldCache, info, k -> {
+                StyledLayerDescriptor sld = dataDir().parsedSld(info);
+
+                final Resource styleResource = dataDir().style(info);
+                styleResource.addListener( new ResourceListener() {
+                    @Override
+                    public void changed(ResourceNotification notify) {
+                        sldCache.remove(info);
+                        styleResource.removeListener( this );
+                    }
+                });
 
-                }
-            }
+                return sld;
+            });
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
         }
-
-        return sld;
     }
     /**
      * Returns the first {@link Style} in a style resource, caching the result. Any associated images should
@@ -1988,39 +2130,37 @@ public class ResourcePool {
      * @throws IOException Any parsing errors.
      */
     public Style getStyle( final StyleInfo info ) throws IOException {
-        Style style = styleCache.get( info );
-        if ( style == null ) {
-            synchronized (styleCache) {
-                style = styleCache.get( info );
-                if ( style == null ) {
-                    style = dataDir().parsedStyle(info);
-
-                    if (style == null) {
-                        throw new ServiceException("Could not extract a UserStyle definition from "
-                                + info.getName());
-                    }
-                    //Make sure we don't change the name of an object in sldCache
-                    if (style instanceof StyleImpl) {
-                        style = (Style)((StyleImpl)style).clone();
-                    }
-                    // remove this when wms works off style info
-                    style.setName( info.getName() );
-                    styleCache.put( info, style );
-                    
-                    final Resource styleResource = dataDir().style(info);
-                    styleResource.addListener( new ResourceListener() {
-                        @Override
-                        public void changed(ResourceNotification notify) {
-                            styleCache.remove(info);
-                            styleResource.removeListener( this );
-                        }
-                    });
-                    
+        try {
+            return getOrLoad(styleCache, info, k -> {
+                Style style = dataDir().parsedStyle(info);
+
+                if (style == null) {
+                    throw new ServiceException("Could not extract a UserStyle definition from "
+                            + info.getName());
                 }
-            }
+                //Make sure we don't change the name of an object in sldCache
+                if (style instanceof StyleImpl) {
+                    style = (Style)((StyleImpl)style).clone();
+                }
+                // remove this when wms works off style info
+                style.setName( info.getName() );
+
+                final Resource styleResource = dataDir().style(info);
+                styleResource.addListener( new ResourceListener() {
+                    @Override
+                    public void changed(ResourceNotification notify) {
+                        styleCache.remove(info);
+                        styleResource.removeListener( this );
+                    }
+                });
+
+                return style;
+            });
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
         }
-        
-        return style;
     }
 
     /**
@@ -2177,6 +2317,9 @@ public class ResourcePool {
         featureTypeCache.clear();
         featureTypeAttributeCache.clear();
         hintCoverageReaderCache.clear();
+        for (CoverageHintReaderKey key : new ArrayList<>(coverageReaderPools.keySet())) {
+            disposeCoverageReaderPool(key);
+        }
         wmsCache.clear();
         wmtsCache.clear();        
         styleCache.clear();
@@ -2185,58 +2328,69 @@ public class ResourcePool {
     
     /**
      * Base class for all the resource caches, ensures type safety and provides
-     * an easier way to handle with resource disposal 
+     * an easier way to handle with resource disposal.
+     * <p>
+     * By default the caches are not bounded, keep the most recently used values as hard
+     * references and soft references to the others. Bounds and eviction policy can be set using
+     * the <code>org.geoserver.catalog.cache.&lt;name&gt;.maxEntries</code>,
+     * <code>org.geoserver.catalog.cache.&lt;name&gt;.maxWeight</code> and
+     * <code>org.geoserver.catalog.cache.&lt;name&gt;.policy</code> (LRU or LFU) properties, the
+     * number of hard references with
+     * <code>org.geoserver.catalog.cache.&lt;name&gt;.hardReferences</code>.
+     * </p>
      * @author Andrea Aime
      *
      * @param <K>
      * @param <V>
      */
-    abstract class CatalogResourceCache<K, V> extends SoftValueHashMap<K, V> {
+    abstract class CatalogResourceCache<K, V> extends ConcurrentResourceCache<K, V> {
 
-        public CatalogResourceCache() {
-            this(100);
+        public CatalogResourceCache(String name) {
+            this(name, 100);
         }
 
-        public CatalogResourceCache(int hardReferences) {
-            super(hardReferences);
-            super.cleaner = new ValueCleaner() {
-
-                @Override
-                public void clean(Object key, Object object) {
-                    dispose((K) key, (V) object);
+        public CatalogResourceCache(String name, int hardReferences) {
+            super(name, getCacheProperty(name, "maxEntries", 0));
+            setMaxWeight(getCacheProperty(name, "maxWeight", 0));
+            setHardReferences((int) getCacheProperty(name, "hardReferences", hardReferences));
+            String policy = GeoServerExtensions.getProperty(CACHE_PROPERTY_PREFIX + name + ".policy");
+            if (policy != null) {
+                try {
+                    setEvictionPolicy(EvictionPolicy.valueOf(policy.trim().toUpperCase()));
+                } catch (IllegalArgumentException e) {
+                    LOGGER.warning("Invalid eviction policy " + policy + " for cache " + name
+                            + ", valid values are " + Arrays.toString(EvictionPolicy.values()));
                 }
-            };
+            }
         }
 
-        @Override
-        public V remove(Object key) {
-            V object = super.remove(key);
-            if (object != null) {
-                dispose((K) key, object);
-            }
-            return object;
+        protected abstract void dispose(K key, V object);
+    }
+
+    static long getCacheProperty(String cacheName, String property, long defaultValue) {
+        return GeoServerExtensions.getLongProperty(
+                CACHE_PROPERTY_PREFIX + cacheName + "." + property, defaultValue);
+    }
+
+    /**
+     * Cache for parsed styles, nothing to dispose, but gets bounds and statistics
+     */
+    class StyleResourceCache<V> extends CatalogResourceCache<StyleInfo, V> {
+
+        StyleResourceCache(String name) {
+            super(name);
         }
 
         @Override
-        public void clear() {
-            for (Entry entry : entrySet()) {
-                try {
-                    dispose((K) entry.getKey(), (V) entry.getValue());
-                }
-                catch(Exception e) {
-                    LOGGER.log(Level.WARNING, "Error dispoing entry: " + entry, e);
-                }
-            }
-            super.clear();
+        protected void dispose(StyleInfo key, V object) {
+            // nothing to do
         }
-
-        protected abstract void dispose(K key, V object);
     }
     
     class FeatureTypeCache extends CatalogResourceCache<String, FeatureType> {
         
-        public FeatureTypeCache(int maxSize) {
-            super(maxSize);
+        public FeatureTypeCache(int hardReferences) {
+            super("featureType", hardReferences);
         }
         
         protected void dispose(String key, FeatureType featureType) {
@@ -2261,6 +2415,11 @@ public class ResourcePool {
      */
     @SuppressWarnings("rawtypes")
     class DataStoreCache extends CatalogResourceCache<String, DataAccess> {
+
+        DataStoreCache() {
+            super("dataStore");
+        }
+
         /**
          * Ensure data access entry is removed from catalog, and
          * ensure DataAccess dispose is called to return system resources.
@@ -2294,7 +2453,11 @@ public class ResourcePool {
     }
     
     class CoverageReaderCache extends CatalogResourceCache<String, GridCoverageReader> {
-        
+
+        CoverageReaderCache() {
+            super("coverageReader");
+        }
+
         protected void dispose(String id, GridCoverageReader reader) {
         	CoverageStoreInfo info = catalog.getCoverageStore(id);
         	if(info != null) {
@@ -2314,8 +2477,13 @@ public class ResourcePool {
     }
     
     class CoverageHintReaderCache extends CatalogResourceCache<CoverageHintReaderKey, GridCoverageReader> {
-        
+
+        CoverageHintReaderCache() {
+            super("coverageHintReader");
+        }
+
         protected void dispose(CoverageHintReaderKey key, GridCoverageReader reader) {
+            disposeCoverageReaderPool(key);
         	CoverageStoreInfo info = catalog.getCoverageStore(key.id);
         	if(info != null) {
                 String name = info.getName();
@@ -2384,7 +2552,7 @@ public class ResourcePool {
     class FeatureTypeAttributeCache extends CatalogResourceCache<String, List<AttributeTypeInfo>> {
 
         FeatureTypeAttributeCache(int size) {
-            super(size);
+            super("featureTypeAttribute", size);
         }
 
         @Override
@@ -2395,6 +2563,10 @@ public class ResourcePool {
 
     class WMSCache extends CatalogResourceCache<String, WebMapServer> {
 
+        WMSCache() {
+            super("wms");
+        }
+
         @Override
         protected void dispose(String key, WebMapServer server) {
             HTTPClient client = server.getHTTPClient();
@@ -2416,6 +2588,10 @@ public class ResourcePool {
     
     class WMTSCache extends CatalogResourceCache<String, WebMapTileServer> {
 
+        WMTSCache() {
+            super("wmts");
+        }
+
         @Override
         protected void dispose(String key, WebMapTileServer server) {
             HTTPClient client = server.getHTTPClient();
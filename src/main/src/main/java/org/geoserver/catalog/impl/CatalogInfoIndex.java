@@ -0,0 +1,200 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.catalog.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Function;
+
+import org.geoserver.catalog.CatalogInfo;
+import org.geotools.util.Converters;
+
+import com.google.common.collect.Iterables;
+
+/**
+ * A secondary index over the {@link CatalogInfo} objects held by a {@link CatalogInfoLookup},
+ * mapping the values of a property (as named in catalog filters, e.g., "workspace.id") to the
+ * objects having it.
+ * <p>
+ * The index keeps track of the keys each object was indexed with, so that it can be refreshed
+ * after an object has been modified without having to know the old property values. Objects
+ * having a null value for the property are tracked separately, so that a sorted index can still
+ * list all the objects in the lookup.
+ * </p>
+ * <p>
+ * Lookups do not lock, modifications are serialized (they only happen on catalog changes).
+ * </p>
+ *
+ * @param <T>
+ */
+class CatalogInfoIndex<T extends CatalogInfo> {
+
+    final String property;
+
+    final Function<T, ?> extractor;
+
+    final Class<?> keyType;
+
+    final boolean sorted;
+
+    /** Index key to objects, the objects are keyed by id */
+    final ConcurrentMap<Object, Map<String, T>> buckets;
+
+    /** Objects having no key at all */
+    final Map<String, T> unkeyed = new ConcurrentSkipListMap<>();
+
+    /** Object id to keys, used to remove/refresh entries */
+    final ConcurrentHashMap<String, Collection<?>> reverse = new ConcurrentHashMap<>();
+
+    /**
+     * @param property The property name, as used in filters
+     * @param keyType The type of the keys, either {@link String} or {@link Boolean}
+     * @param extractor Extracts the key from the object. Can return a single value or a
+     *        {@link Collection} of values for multi-valued properties
+     * @param sorted If true, the keys will be kept sorted, allowing range lookups and sorted
+     *        scans
+     */
+    CatalogInfoIndex(String property, Class<?> keyType, Function<T, ?> extractor,
+            boolean sorted) {
+        this.property = property;
+        this.keyType = keyType;
+        this.extractor = extractor;
+        this.sorted = sorted;
+        this.buckets = sorted ? new ConcurrentSkipListMap<>() : new ConcurrentHashMap<>();
+    }
+
+    Collection<?> keys(T value) {
+        Object key;
+        try {
+            key = extractor.apply(value);
+        } catch (RuntimeException e) {
+            // some objects might be partially initialized (e.g. a layer without resource)
+            key = null;
+        }
+        if (key == null) {
+            return Collections.emptyList();
+        } else if (key instanceof Collection) {
+            // take a snapshot, the keys are needed later to clean up the index
+            return new ArrayList<>((Collection<?>) key);
+        } else {
+            return Collections.singletonList(key);
+        }
+    }
+
+    synchronized void add(T value) {
+        String id = value.getId();
+        if (id == null) {
+            return;
+        }
+        Collection<?> keys = keys(value);
+        reverse.put(id, keys);
+        if (keys.isEmpty()) {
+            unkeyed.put(id, value);
+        } else {
+            for (Object key : keys) {
+                if (key != null) {
+                    buckets.computeIfAbsent(key, k -> new ConcurrentSkipListMap<>()).put(id,
+                            value);
+                }
+            }
+        }
+    }
+
+    synchronized void remove(T value) {
+        String id = value.getId();
+        if (id == null) {
+            return;
+        }
+        Collection<?> keys = reverse.remove(id);
+        if (keys == null) {
+            return;
+        }
+        unkeyed.remove(id);
+        for (Object key : keys) {
+            if (key != null) {
+                Map<String, T> bucket = buckets.get(key);
+                if (bucket != null) {
+                    bucket.remove(id);
+                    if (bucket.isEmpty()) {
+                        buckets.remove(key);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Refreshes the entries of an object after it has been modified
+     */
+    synchronized void reindex(T value) {
+        remove(value);
+        add(value);
+    }
+
+    synchronized void clear() {
+        buckets.clear();
+        unkeyed.clear();
+        reverse.clear();
+    }
+
+    /**
+     * Converts a filter literal into an index key, returns null if that's not possible
+     */
+    Object toKey(Object literal) {
+        if (literal == null) {
+            return null;
+        }
+        if (keyType.isInstance(literal)) {
+            return literal;
+        }
+        // the filter will convert the literal to the property type before comparing, mimic it
+        if (Boolean.class.equals(keyType) && literal instanceof String) {
+            return Converters.convert(literal, Boolean.class);
+        }
+        return null;
+    }
+
+    /**
+     * Returns the objects indexed with the given key
+     */
+    Collection<T> get(Object key) {
+        Map<String, T> bucket = buckets.get(key);
+        if (bucket == null) {
+            return Collections.emptyList();
+        }
+        return bucket.values();
+    }
+
+    /**
+     * Returns the objects whose key starts with the given prefix, only available for sorted
+     * string indexes
+     */
+    Collection<Map<String, T>> prefix(String prefix) {
+        NavigableMap<Object, Map<String, T>> map = (NavigableMap<Object, Map<String, T>>) buckets;
+        return map.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values();
+    }
+
+    /**
+     * Returns all the objects in key order (objects without a key come first, matching how the
+     * catalog sorts null values), only available for sorted indexes
+     */
+    Iterable<T> sortedValues(boolean ascending) {
+        NavigableMap<Object, Map<String, T>> map = (NavigableMap<Object, Map<String, T>>) buckets;
+        Collection<Map<String, T>> keyed = ascending ? map.values()
+                : map.descendingMap().values();
+        Iterable<T> values = Iterables.concat(Iterables.transform(keyed, b -> b.values()));
+        if (ascending) {
+            return Iterables.concat(unkeyed.values(), values);
+        } else {
+            return Iterables.concat(values, unkeyed.values());
+        }
+    }
+}
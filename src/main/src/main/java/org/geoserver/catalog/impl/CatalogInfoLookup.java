@@ -9,11 +9,25 @@ import org.geoserver.catalog.CatalogInfo;
 import org.geoserver.ows.util.OwsUtils;
 import org.geotools.util.logging.Logging;
 import org.opengis.feature.type.Name;
+import org.opengis.filter.And;
+import org.opengis.filter.Filter;
+import org.opengis.filter.MultiValuedFilter.MatchAction;
+import org.opengis.filter.Or;
+import org.opengis.filter.PropertyIsEqualTo;
+import org.opengis.filter.PropertyIsLike;
+import org.opengis.filter.PropertyIsNull;
+import org.opengis.filter.expression.Expression;
+import org.opengis.filter.expression.Literal;
+import org.opengis.filter.expression.PropertyName;
+
+import com.google.common.collect.Iterables;
 
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -30,6 +44,11 @@ import java.util.logging.Logger;
  * The lookups by predicate have been tested and optimized for performance, in particular
  * the current for loops turned out to be significantly faster than building and returning streams
  * 
+ * Secondary indexes on other properties (see {@link #index(String, Class, Function)}) are used to
+ * narrow down the objects to be evaluated when listing with a {@link Filter}, the common
+ * filter shapes (property equality, and/or combinations of them, name prefix searches) can then
+ * be answered without scanning all the objects.
+ * 
  * @param <T>
  */
 class CatalogInfoLookup<T extends CatalogInfo> {
@@ -40,6 +59,11 @@ class CatalogInfoLookup<T extends CatalogInfo> {
     Function<T, Name> nameMapper;
     static final Predicate TRUE = x -> true;
     
+    /**
+     * Secondary indexes, keyed by indexed property name
+     */
+    Map<String, CatalogInfoIndex<T>> indexes = new ConcurrentHashMap<>();
+    
     public CatalogInfoLookup(Function<T, Name> nameMapper) {
         super();
         this.nameMapper = nameMapper;
@@ -67,6 +91,34 @@ class CatalogInfoLookup<T extends CatalogInfo> {
         return vcMap;
     }
 
+    /**
+     * Adds a secondary index on the given property
+     * 
+     * @param property The property, as named in the filters the index should help with
+     * @param keyType The type of the property value, {@link String} or {@link Boolean}
+     * @param extractor Extracts the property value, or a {@link Collection} of values for multi
+     *        valued properties
+     */
+    CatalogInfoLookup<T> index(String property, Class<?> keyType, Function<T, ?> extractor) {
+        return addIndex(new CatalogInfoIndex<>(property, keyType, extractor, false));
+    }
+
+    /**
+     * Adds a sorted secondary index on the given string property, which will also be used for
+     * prefix searches and sorted scans
+     */
+    CatalogInfoLookup<T> sortedIndex(String property, Function<T, String> extractor) {
+        return addIndex(new CatalogInfoIndex<>(property, String.class, extractor, true));
+    }
+
+    private CatalogInfoLookup<T> addIndex(CatalogInfoIndex<T> index) {
+        for (T value : values()) {
+            index.add(value);
+        }
+        indexes.put(index.property, index);
+        return this;
+    }
+
     public T add(T value) {
         if(Proxy.isProxyClass(value.getClass())) {
             ModificationProxy h = (ModificationProxy) Proxy.getInvocationHandler(value);
@@ -76,7 +128,11 @@ class CatalogInfoLookup<T extends CatalogInfo> {
         Name name = nameMapper.apply(value);
         nameMap.put(name, value);
         Map<String, T> idMap = getMapForValue(idMultiMap, value);
-        return idMap.put(value.getId(), value);
+        T previous = idMap.put(value.getId(), value);
+        for (CatalogInfoIndex<T> index : indexes.values()) {
+            index.reindex(value);
+        }
+        return previous;
     }
     
     public Collection<T> values() {
@@ -92,6 +148,9 @@ class CatalogInfoLookup<T extends CatalogInfo> {
         Name name = nameMapper.apply(value);
         Map<Name, T> nameMap = getMapForValue(nameMultiMap, value);
         nameMap.remove(name);
+        for (CatalogInfoIndex<T> index : indexes.values()) {
+            index.remove(value);
+        }
         Map<String, T> idMap = getMapForValue(idMultiMap, value);
         return idMap.remove(value.getId());
     }
@@ -112,10 +171,27 @@ class CatalogInfoLookup<T extends CatalogInfo> {
         }
     }
 
+
+    /**
+     * Refreshes the secondary indexes for a value that has just been modified. Unlike
+     * {@link #update(CatalogInfo)} this has to be called after the changes have been committed
+     * to the actual object.
+     */
+    public void reindex(T value) {
+        if(Proxy.isProxyClass(value.getClass())) {
+            value = ModificationProxy.unwrap(value);
+        }
+        for (CatalogInfoIndex<T> index : indexes.values()) {
+            index.reindex(value);
+        }
+    }
     
     public void clear() {
         idMultiMap.clear();
         nameMultiMap.clear();
+        for (CatalogInfoIndex<T> index : indexes.values()) {
+            index.clear();
+        }
     }
 
     /**
@@ -147,6 +223,201 @@ class CatalogInfoLookup<T extends CatalogInfo> {
         return result;
     }
     
+    /**
+     * Looks up objects by class and filter, using the secondary indexes to reduce the number of
+     * objects the filter gets evaluated against, when possible.
+     */
+    <U extends CatalogInfo> List<U> list(Class<U> clazz, Filter filter) {
+        return list(clazz, filter, toPredicate(filter));
+    }
+
+    /**
+     * Looks up objects by class and predicate, using the secondary indexes to find the
+     * candidates matching the given filter. The predicate must imply the filter, and it's the
+     * only one evaluated against the candidates (useful when the predicate is cheaper to evaluate,
+     * or has slightly different semantics, than the filter). Falls back on a full scan if the
+     * indexes cannot help with the filter
+     */
+    <U extends CatalogInfo> List<U> list(Class<U> clazz, Filter filter, Predicate<U> predicate) {
+        Collection<T> candidates = candidates(filter);
+        if (candidates == null) {
+            return list(clazz, predicate);
+        }
+
+        ArrayList<U> result = new ArrayList<U>();
+        for (T v : candidates) {
+            if (clazz.isInstance(v)) {
+                final U u = (U) v;
+                if (predicate == TRUE || predicate.test(u)) {
+                    result.add(u);
+                }
+            }
+        }
+        // keep the same order as a full scan would have
+        if (result.size() > 1) {
+            result.sort((u1, u2) -> ((Comparable) nameMapper.apply((T) u1))
+                    .compareTo(nameMapper.apply((T) u2)));
+        }
+        return result;
+    }
+
+    /**
+     * Returns a lazy, sorted scan of the objects matching class and filter, using a sorted
+     * secondary index on the given property. Returns null if there is no such index.
+     */
+    <U extends CatalogInfo> Iterable<U> sortedScan(Class<U> clazz, Filter filter,
+            String property, boolean ascending) {
+        CatalogInfoIndex<T> index = indexes.get(property);
+        if (index == null || !index.sorted) {
+            return null;
+        }
+        Predicate<U> predicate = toPredicate(filter);
+        Iterable<T> values = index.sortedValues(ascending);
+        return (Iterable) Iterables.filter(values,
+                v -> clazz.isInstance(v) && (predicate == TRUE || predicate.test((U) v)));
+    }
+
+    /**
+     * Returns the objects that might match the filter according to the secondary indexes, or null
+     * if the indexes cannot narrow down the search. The result is a superset of the actual
+     * matches, the filter still needs to be evaluated against each candidate.
+     */
+    Collection<T> candidates(Filter filter) {
+        if (filter == null || filter == Filter.INCLUDE) {
+            return null;
+        } else if (filter == Filter.EXCLUDE) {
+            return Collections.emptyList();
+        } else if (filter instanceof PropertyIsEqualTo) {
+            PropertyIsEqualTo equal = (PropertyIsEqualTo) filter;
+            if (equal.getMatchAction() != null && equal.getMatchAction() != MatchAction.ANY) {
+                return null;
+            }
+            Expression e1 = equal.getExpression1();
+            Expression e2 = equal.getExpression2();
+            if (e1 instanceof PropertyName && e2 instanceof Literal) {
+                return equalityCandidates((PropertyName) e1, (Literal) e2, equal.isMatchingCase());
+            } else if (e2 instanceof PropertyName && e1 instanceof Literal) {
+                return equalityCandidates((PropertyName) e2, (Literal) e1, equal.isMatchingCase());
+            }
+        } else if (filter instanceof PropertyIsLike) {
+            return prefixCandidates((PropertyIsLike) filter);
+        } else if (filter instanceof PropertyIsNull) {
+            Expression e = ((PropertyIsNull) filter).getExpression();
+            if (e instanceof PropertyName) {
+                CatalogInfoIndex<T> index = indexes.get(((PropertyName) e).getPropertyName());
+                if (index != null) {
+                    return index.unkeyed.values();
+                }
+            }
+        } else if (filter instanceof And) {
+            // any indexed child is good, pick the most selective
+            Collection<T> best = null;
+            for (Filter child : ((And) filter).getChildren()) {
+                Collection<T> c = candidates(child);
+                if (c != null && (best == null || c.size() < best.size())) {
+                    best = c;
+                }
+            }
+            return best;
+        } else if (filter instanceof Or) {
+            // all children need to be indexed
+            Map<String, T> union = new LinkedHashMap<>();
+            for (Filter child : ((Or) filter).getChildren()) {
+                Collection<T> c = candidates(child);
+                if (c == null) {
+                    return null;
+                }
+                for (T v : c) {
+                    union.put(v.getId(), v);
+                }
+            }
+            return union.values();
+        }
+
+        return null;
+    }
+
+    private Collection<T> equalityCandidates(PropertyName property, Literal literal,
+            boolean matchCase) {
+        String name = property.getPropertyName();
+        Object value = literal.getValue();
+        if ("id".equals(name) && value instanceof String) {
+            T match = (T) findById((String) value, CatalogInfo.class);
+            return match == null ? Collections.emptyList() : Collections.singletonList(match);
+        }
+        CatalogInfoIndex<T> index = indexes.get(name);
+        if (index == null || (!matchCase && String.class.equals(index.keyType))) {
+            return null;
+        }
+        Object key = index.toKey(value);
+        if (key == null) {
+            return null;
+        }
+        return index.get(key);
+    }
+
+    private Collection<T> prefixCandidates(PropertyIsLike like) {
+        if (!(like.getExpression() instanceof PropertyName) || !like.isMatchingCase()) {
+            return null;
+        }
+        CatalogInfoIndex<T> index = indexes
+                .get(((PropertyName) like.getExpression()).getPropertyName());
+        if (index == null || !index.sorted) {
+            return null;
+        }
+        String prefix = getLikePrefix(like.getLiteral(), like.getWildCard(),
+                like.getSingleChar(), like.getEscape());
+        if (prefix == null || prefix.isEmpty()) {
+            return null;
+        }
+        List<T> result = new ArrayList<>();
+        for (Map<String, T> bucket : index.prefix(prefix)) {
+            result.addAll(bucket.values());
+        }
+        return result;
+    }
+
+    /**
+     * Returns the literal prefix of a like pattern in the form "prefix*", or null if the pattern
+     * has a different shape
+     */
+    static String getLikePrefix(String pattern, String wildCard, String singleChar,
+            String escape) {
+        if (pattern == null || wildCard == null || !pattern.endsWith(wildCard)) {
+            return null;
+        }
+        StringBuilder prefix = new StringBuilder();
+        int end = pattern.length() - wildCard.length();
+        int i = 0;
+        while (i < end) {
+            if (escape != null && !escape.isEmpty() && pattern.startsWith(escape, i)) {
+                i += escape.length();
+                if (i >= end) {
+                    // the final wildcard is escaped, not a prefix search
+                    return null;
+                }
+                prefix.append(pattern.charAt(i));
+                i++;
+            } else if (pattern.startsWith(wildCard, i)
+                    || (singleChar != null && !singleChar.isEmpty()
+                            && pattern.startsWith(singleChar, i))) {
+                return null;
+            } else {
+                prefix.append(pattern.charAt(i));
+                i++;
+            }
+        }
+        return prefix.toString();
+    }
+
+    static <U> Predicate<U> toPredicate(Filter filter) {
+        if(filter != null && filter != Filter.INCLUDE) {
+            return  o -> filter.evaluate(o);
+        } else {
+            return TRUE;
+        }
+    }
+    
     /**
      * Looks up a CatalogInfo by class and identifier
      * @param id
@@ -30,6 +30,7 @@ import org.geoserver.catalog.LayerInfo;
 import org.geoserver.catalog.LockingCatalogFacade;
 import org.geoserver.catalog.MapInfo;
 import org.geoserver.catalog.NamespaceInfo;
+import org.geoserver.catalog.Predicates;
 import org.geoserver.catalog.PublishedInfo;
 import org.geoserver.catalog.ResourceInfo;
 import org.geoserver.catalog.StoreInfo;
@@ -86,6 +87,76 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
     static final Function<StyleInfo, Name> STYLE_NAME_MAPPER = s -> 
         new NameImpl(s.getWorkspace() != null ? s.getWorkspace().getId() : null, s.getName());
         
+    static String idOf(CatalogInfo info) {
+        return info != null ? info.getId() : null;
+    }
+
+    static List<String> styleIds(LayerInfo layer) {
+        List<String> ids = new ArrayList<>();
+        for (StyleInfo style : layer.getStyles()) {
+            if (style != null && style.getId() != null) {
+                ids.add(style.getId());
+            }
+        }
+        return ids;
+    }
+
+    /*
+     * The lookups, along with the secondary indexes for the properties that are commonly used
+     * in filters by the catalog and the UI. Each indexed property is named after the filter
+     * property it helps with.
+     */
+
+    static CatalogInfoLookup<StoreInfo> createStoreLookup() {
+        return new CatalogInfoLookup<>(STORE_NAME_MAPPER)
+                .index("workspace.id", String.class, s -> idOf(s.getWorkspace()))
+                .index("enabled", Boolean.class, StoreInfo::isEnabled)
+                .sortedIndex("name", StoreInfo::getName);
+    }
+
+    static CatalogInfoLookup<ResourceInfo> createResourceLookup() {
+        return new CatalogInfoLookup<>(RESOURCE_NAME_MAPPER)
+                .index("namespace.id", String.class, r -> idOf(r.getNamespace()))
+                .index("store.id", String.class, r -> idOf(r.getStore()))
+                .index("enabled", Boolean.class, ResourceInfo::isEnabled)
+                .index("advertised", Boolean.class, ResourceInfo::isAdvertised)
+                .sortedIndex("name", ResourceInfo::getName);
+    }
+
+    static LayerInfoLookup createLayerLookup() {
+        LayerInfoLookup lookup = new LayerInfoLookup();
+        lookup.index("resource.id", String.class, l -> idOf(l.getResource()))
+                .index("defaultStyle.id", String.class, l -> idOf(l.getDefaultStyle()))
+                .index("styles.id", String.class, DefaultCatalogFacade::styleIds)
+                .index("enabled", Boolean.class, LayerInfo::isEnabled)
+                .index("advertised", Boolean.class, LayerInfo::isAdvertised)
+                .sortedIndex("name", LayerInfo::getName);
+        return lookup;
+    }
+
+    static CatalogInfoLookup<LayerGroupInfo> createLayerGroupLookup() {
+        return new CatalogInfoLookup<>(LAYERGROUP_NAME_MAPPER)
+                .index("workspace.id", String.class, lg -> idOf(lg.getWorkspace()))
+                .sortedIndex("name", LayerGroupInfo::getName);
+    }
+
+    static CatalogInfoLookup<StyleInfo> createStyleLookup() {
+        return new CatalogInfoLookup<>(STYLE_NAME_MAPPER)
+                .index("workspace.id", String.class, s -> idOf(s.getWorkspace()))
+                .sortedIndex("name", StyleInfo::getName);
+    }
+
+    static CatalogInfoLookup<NamespaceInfo> createNamespaceLookup() {
+        return new CatalogInfoLookup<>(NAMESPACE_NAME_MAPPER)
+                .sortedIndex("prefix", NamespaceInfo::getPrefix)
+                .sortedIndex("name", NamespaceInfo::getName);
+    }
+
+    static CatalogInfoLookup<WorkspaceInfo> createWorkspaceLookup() {
+        return new CatalogInfoLookup<>(WORKSPACE_NAME_MAPPER)
+                .sortedIndex("name", WorkspaceInfo::getName);
+    }
+
     static final class LayerInfoLookup extends CatalogInfoLookup<LayerInfo> {
 
         public LayerInfoLookup() {
@@ -118,7 +189,7 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
     /**
      * Contains the stores keyed by implementation class
      */
-    protected CatalogInfoLookup<StoreInfo> stores = new CatalogInfoLookup<>(STORE_NAME_MAPPER);
+    protected CatalogInfoLookup<StoreInfo> stores = createStoreLookup();
     
     /**
      * The default store keyed by workspace id
@@ -128,7 +199,7 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
     /**
      * resources
      */
-    protected CatalogInfoLookup<ResourceInfo> resources = new CatalogInfoLookup<>(RESOURCE_NAME_MAPPER);
+    protected CatalogInfoLookup<ResourceInfo> resources = createResourceLookup();
 
     /**
      * The default namespace
@@ -138,7 +209,7 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
     /**
      * namespaces
      */
-    protected CatalogInfoLookup<NamespaceInfo> namespaces = new CatalogInfoLookup<>(NAMESPACE_NAME_MAPPER);
+    protected CatalogInfoLookup<NamespaceInfo> namespaces = createNamespaceLookup();
 
     /**
      * The default workspace
@@ -148,12 +219,12 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
     /**
      * workspaces
      */
-    protected CatalogInfoLookup<WorkspaceInfo> workspaces = new CatalogInfoLookup<>(WORKSPACE_NAME_MAPPER);
+    protected CatalogInfoLookup<WorkspaceInfo> workspaces = createWorkspaceLookup();
     
     /**
      * layers
      */
-    protected LayerInfoLookup layers = new LayerInfoLookup();
+    protected LayerInfoLookup layers = createLayerLookup();
 
     /**
      * maps
@@ -163,12 +234,12 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
     /**
      * layer groups
      */
-    protected CatalogInfoLookup<LayerGroupInfo> layerGroups = new CatalogInfoLookup<>(LAYERGROUP_NAME_MAPPER);
+    protected CatalogInfoLookup<LayerGroupInfo> layerGroups = createLayerGroupLookup();
     
     /**
      * styles
      */
-    protected CatalogInfoLookup<StyleInfo> styles = new CatalogInfoLookup<>(STYLE_NAME_MAPPER);
+    protected CatalogInfoLookup<StyleInfo> styles = createStyleLookup();
 
     /**
      * the catalog
@@ -214,7 +285,7 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
 
         beforeSaved(store, propertyNames, oldValues, newValues);
         stores.update(store);
-        commitProxy(store);
+        stores.reindex(commitProxy(store));
         afterSaved(store, propertyNames, oldValues, newValues);
     }
     
@@ -251,7 +322,8 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
             ws = workspace;
         }
 
-        List<T> matches = stores.list(clazz, s -> ws.equals(s.getWorkspace()));
+        List<T> matches = stores.list(clazz, Predicates.equal("workspace.id", ws.getId()),
+                s -> ws.equals(s.getWorkspace()));
         return ModificationProxy.createList(matches,clazz);
     }
     
@@ -319,7 +391,12 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
         beforeSaved(resource, propertyNames, oldValues, newValues);
         resources.update(resource);
         layers.update(resource);
-        commitProxy(resource);
+        resources.reindex(commitProxy(resource));
+        // layers delegate some of their indexed properties to the resource
+        for (LayerInfo layer : layers.list(LayerInfo.class,
+                Predicates.equal("resource.id", resource.getId()), CatalogInfoLookup.TRUE)) {
+            layers.reindex(layer);
+        }
         afterSaved(resource, propertyNames, oldValues, newValues);
     }
     
@@ -357,7 +434,8 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
             ns = namespace;
         }
 
-        List<T> matches = resources.list(clazz, r -> ns.equals(r.getNamespace()));
+        List<T> matches = resources.list(clazz, Predicates.equal("namespace.id", ns.getId()),
+                r -> ns.equals(r.getNamespace()));
         return ModificationProxy.createList( matches, clazz );
     }
     
@@ -389,7 +467,8 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
     
     public <T extends ResourceInfo> List<T> getResourcesByStore(
             StoreInfo store, Class<T> clazz) {
-        List<T> matches = resources.list(clazz, r -> store.equals(r.getStore()));
+        List<T> matches = resources.list(clazz, Predicates.equal("store.id", store.getId()),
+                r -> store.equals(r.getStore()));
         return  ModificationProxy.createList( matches, clazz );
     }
     
@@ -417,7 +496,7 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
 
         beforeSaved(layer, propertyNames, oldValues, newValues);
         layers.update(layer);
-        commitProxy(layer);
+        layers.reindex(commitProxy(layer));
         afterSaved(layer, propertyNames, oldValues, newValues);
     }
     
@@ -456,7 +535,10 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
     }
     
     public List<LayerInfo> getLayers(StyleInfo style) {
-        List<LayerInfo> matches = layers.list(LayerInfo.class, li -> style.equals(li.getDefaultStyle()) || li.getStyles().contains(style));
+        Filter styleFilter = Predicates.or(Predicates.equal("defaultStyle.id", style.getId()),
+                Predicates.equal("styles.id", style.getId()));
+        List<LayerInfo> matches = layers.list(LayerInfo.class, styleFilter,
+                li -> style.equals(li.getDefaultStyle()) || li.getStyles().contains(style));
         return ModificationProxy.createList(matches,LayerInfo.class);
     }
     
@@ -556,7 +638,7 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
 
         beforeSaved(layerGroup, propertyNames, oldValues, newValues);
         layerGroups.update(layerGroup);
-        commitProxy(layerGroup);
+        layerGroups.reindex(commitProxy(layerGroup));
         afterSaved(layerGroup, propertyNames, oldValues, newValues);
     }
     
@@ -578,14 +660,17 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
         } else {
             ws = workspace;
         }
+        Filter filter;
         Predicate<LayerGroupInfo> predicate;
         if(workspace == NO_WORKSPACE) {
+            filter = Predicates.isNull("workspace.id");
             predicate = lg -> lg.getWorkspace() == null;
         } else {
+            filter = Predicates.equal("workspace.id", ws.getId());
             predicate = lg -> ws.equals(lg.getWorkspace());
         }
 
-        List<LayerGroupInfo> matches = layerGroups.list(LayerGroupInfo.class, predicate);
+        List<LayerGroupInfo> matches = layerGroups.list(LayerGroupInfo.class, filter, predicate);
         return ModificationProxy.createList(matches,LayerGroupInfo.class);
 
     }
@@ -641,7 +726,7 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
 
         beforeSaved(namespace, propertyNames, oldValues, newValues);
         namespaces.update(namespace);
-        commitProxy(namespace);
+        namespaces.reindex(commitProxy(namespace));
         afterSaved(namespace, propertyNames, oldValues, newValues);
     }
 
@@ -728,7 +813,7 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
         
         beforeSaved(workspace, propertyNames, oldValues, newValues);
         workspaces.update(workspace);
-        commitProxy(workspace);     
+        workspaces.reindex(commitProxy(workspace));
         afterSaved(workspace, propertyNames, oldValues, newValues);
     }
 
@@ -794,7 +879,7 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
 
         beforeSaved(style, propertyNames, oldValues, newValues);
         styles.update(style);
-        commitProxy(style);
+        styles.reindex(commitProxy(style));
         afterSaved(style, propertyNames, oldValues, newValues);
     }
 
@@ -840,7 +925,8 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
         //TODO: support ANY_WORKSPACE?
         List<StyleInfo> matches;
         if (workspace == NO_WORKSPACE) {
-            matches = styles.list(StyleInfo.class, s -> s.getWorkspace() == null);
+            matches = styles.list(StyleInfo.class, Predicates.isNull("workspace.id"),
+                    s -> s.getWorkspace() == null);
         } else {
             WorkspaceInfo ws;
             if ( workspace == null ) {
@@ -849,7 +935,8 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
                 ws = workspace;
             }
             
-            matches = styles.list(StyleInfo.class, s -> ws.equals(s.getWorkspace()));
+            matches = styles.list(StyleInfo.class, Predicates.equal("workspace.id", ws.getId()),
+                    s -> ws.equals(s.getWorkspace()));
         }
 
         return ModificationProxy.createList(matches,StyleInfo.class);
@@ -873,7 +960,7 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
         
         //workspaces
         if ( workspaces == null ) {
-            workspaces = new CatalogInfoLookup<>(WORKSPACE_NAME_MAPPER);
+            workspaces = createWorkspaceLookup();
         }
         for ( WorkspaceInfo ws : workspaces.values() ) {
             resolve(ws);
@@ -881,7 +968,7 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
         
         //namespaces
         if ( namespaces == null ) {
-            namespaces = new CatalogInfoLookup<>(NAMESPACE_NAME_MAPPER);
+            namespaces = createNamespaceLookup();
         }
         for ( NamespaceInfo ns : namespaces.values() ) {
             resolve(ns);
@@ -889,7 +976,7 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
         
         //stores
         if ( stores == null ) {
-            stores = new CatalogInfoLookup<>(STORE_NAME_MAPPER);
+            stores = createStoreLookup();
         }
         for ( Object o : stores.values() ) {
             resolve((StoreInfoImpl)o);
@@ -897,7 +984,7 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
         
         //styles
         if ( styles == null ) {
-            styles = new CatalogInfoLookup<>(STYLE_NAME_MAPPER);
+            styles = createStyleLookup();
         }
         for ( StyleInfo s : styles.values() ) {
             resolve(s);
@@ -905,7 +992,7 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
         
         //resources
         if ( resources == null ) {
-            resources = new CatalogInfoLookup<>(RESOURCE_NAME_MAPPER);
+            resources = createResourceLookup();
         }
         for( Object o : resources.values() ) {
             resolve((ResourceInfo)o);
@@ -913,7 +1000,7 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
         
         // layers
         if ( layers == null ) {
-            layers = new LayerInfoLookup();
+            layers = createLayerLookup();
         }
         for ( LayerInfo l : layers.values() ) { 
             resolve(l);
@@ -921,7 +1008,7 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
         
         //layer groups
         if ( layerGroups == null ) {
-            layerGroups = new CatalogInfoLookup<>(LAYERGROUP_NAME_MAPPER);
+            layerGroups = createLayerGroupLookup();
         }
         for (LayerGroupInfo lg : layerGroups.values()) {
             resolve(lg);
@@ -1052,7 +1139,10 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
             }
         }
 
-        Iterable<T> iterable = iterable(of, filter, sortOrder);
+        Iterable<T> iterable = sortedScan(of, filter, sortOrder);
+        if (iterable == null) {
+            iterable = iterable(of, filter, sortOrder);
+        }
 
         if (offset != null && offset.intValue() > 0) {
             iterable = Iterables.skip(iterable, offset.intValue());
@@ -1067,6 +1157,55 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
         return new CloseableIteratorAdapter<T>(iterator);
     }
 
+    /**
+     * When paging through objects sorted on a property having a sorted index, and the filter
+     * cannot be used to narrow down the candidates, the index can be scanned lazily in order,
+     * avoiding to filter, sort and wrap all the objects just to return a page of them.
+     * Returns null if that is not possible.
+     */
+    <T extends CatalogInfo> Iterable<T> sortedScan(final Class<T> of, final Filter filter,
+            final SortBy[] sortByList) {
+        if (sortByList == null || sortByList.length != 1 || sortByList[0] == null
+                || sortByList[0].getPropertyName() == null) {
+            return null;
+        }
+        CatalogInfoLookup<?> lookup = getLookup(of);
+        if (lookup == null || lookup.candidates(filter) != null) {
+            return null;
+        }
+        SortBy sortBy = sortByList[0];
+        boolean ascending = !SortOrder.DESCENDING.equals(sortBy.getSortOrder());
+        Iterable<T> scan = lookup.sortedScan(of, filter,
+                sortBy.getPropertyName().getPropertyName(), ascending);
+        if (scan == null) {
+            return null;
+        }
+        return Iterables.transform(scan, i -> ModificationProxy.create(i, of));
+    }
+
+    /**
+     * Returns the single lookup containing objects of the given type, or null if the type
+     * spans multiple lookups, or is not held in a lookup at all
+     */
+    private CatalogInfoLookup<?> getLookup(Class<? extends CatalogInfo> of) {
+        if (NamespaceInfo.class.isAssignableFrom(of)) {
+            return namespaces;
+        } else if (WorkspaceInfo.class.isAssignableFrom(of)) {
+            return workspaces;
+        } else if (StoreInfo.class.isAssignableFrom(of)) {
+            return stores;
+        } else if (ResourceInfo.class.isAssignableFrom(of)) {
+            return resources;
+        } else if (LayerInfo.class.isAssignableFrom(of)) {
+            return layers;
+        } else if (LayerGroupInfo.class.isAssignableFrom(of)) {
+            return layerGroups;
+        } else if (StyleInfo.class.isAssignableFrom(of)) {
+            return styles;
+        }
+        return null;
+    }
+
     @SuppressWarnings("unchecked")
     public <T extends CatalogInfo> Iterable<T> iterable(final Class<T> of,
             final Filter filter, final SortBy[] sortByList) {
@@ -1074,23 +1213,23 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
         
         T t = null;
         if (NamespaceInfo.class.isAssignableFrom(of)) {
-            all = (List<T>) namespaces.list(of, toPredicate(filter));
+            all = (List<T>) namespaces.list(of, filter);
         } else if (WorkspaceInfo.class.isAssignableFrom(of)) {
-            all = (List<T>) workspaces.list(of, toPredicate(filter));
+            all = (List<T>) workspaces.list(of, filter);
         } else if (StoreInfo.class.isAssignableFrom(of)) {
-            all = (List<T>) stores.list(of, toPredicate(filter));
+            all = (List<T>) stores.list(of, filter);
         } else if (ResourceInfo.class.isAssignableFrom(of)) {
-            all = (List<T>) resources.list(of, toPredicate(filter));
+            all = (List<T>) resources.list(of, filter);
         } else if (LayerInfo.class.isAssignableFrom(of)) {
-            all = (List<T>) layers.list(of, toPredicate(filter));
+            all = (List<T>) layers.list(of, filter);
         } else if (LayerGroupInfo.class.isAssignableFrom(of)) {
-            all = (List<T>) layerGroups.list(of, toPredicate(filter));
+            all = (List<T>) layerGroups.list(of, filter);
         } else if (PublishedInfo.class.isAssignableFrom(of)) {
             all = new ArrayList<>();
-            all.addAll((List<T>) layers.list(LayerInfo.class, toPredicate(filter)));
-            all.addAll((List<T>) layerGroups.list(LayerGroupInfo.class, toPredicate(filter)));
+            all.addAll((List<T>) layers.list(LayerInfo.class, filter));
+            all.addAll((List<T>) layerGroups.list(LayerGroupInfo.class, filter));
         } else if (StyleInfo.class.isAssignableFrom(of)) {
-            all = (List<T>) styles.list(of, toPredicate(filter));
+            all = (List<T>) styles.list(of, filter);
         } else if (MapInfo.class.isAssignableFrom(of)) {
             all = (List<T>) new ArrayList<>(maps);
         } else {
@@ -1111,14 +1250,6 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
         return ModificationProxy.createList(all, of);
     }
 
-    private <T> Predicate<T> toPredicate(Filter filter) {
-        if(filter != null && filter != Filter.INCLUDE) {
-            return  o -> filter.evaluate(o);
-        } else {
-            return CatalogInfoLookup.TRUE;
-        }
-    }
-
     private Comparator<Object> comparator(final SortBy sortOrder) {
         return new Comparator<Object>() {
             @Override
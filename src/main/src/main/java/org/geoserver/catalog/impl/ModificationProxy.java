@@ -19,6 +19,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.UnaryOperator;
 
 import org.geoserver.catalog.Catalog;
@@ -45,6 +47,10 @@ import org.opengis.filter.FilterFactory;
  * Any collections handled through this interface are cloned and client code 
  * obtains a copy. The two collections will be synced on a call to {@link #commit()}.
  * </p>
+ * <p>
+ * Code that only reads the catalog can skip the proxies altogether by performing its lookups
+ * inside {@link #readOnly(ReadOnlyTask)}.
+ * </p>
  * 
  * @author Justin Deoliveira, The Open Planning Project
  * 
@@ -53,6 +59,61 @@ import org.opengis.filter.FilterFactory;
  */
 public class ModificationProxy implements WrappingProxy, Serializable {
 
+    /**
+     * A task performing catalog lookups whose results are not going to be modified
+     */
+    @FunctionalInterface
+    public interface ReadOnlyTask<T, E extends Exception> {
+        T run() throws E;
+    }
+
+    /**
+     * How a proxied method is handled, computed once and shared by all the proxies
+     */
+    enum Kind {
+        GETTER, COLLECTION_GETTER, MAP_GETTER, SETTER, OTHER
+    }
+
+    static final class MethodHandling {
+        final Kind kind;
+
+        final String property;
+
+        MethodHandling(Method method) {
+            String name = method.getName();
+            if ((name.startsWith("get") || name.startsWith("is"))
+                    && method.getParameterCount() == 0) {
+                property = name.substring(name.startsWith("get") ? 3 : 2);
+                Class<?> type = method.getReturnType();
+                if (Collection.class.isAssignableFrom(type)) {
+                    kind = Kind.COLLECTION_GETTER;
+                } else if (Map.class.isAssignableFrom(type)) {
+                    kind = Kind.MAP_GETTER;
+                } else {
+                    kind = Kind.GETTER;
+                }
+            } else if (name.startsWith("set") && method.getParameterCount() == 1) {
+                property = name.substring(3);
+                kind = Kind.SETTER;
+            } else {
+                property = null;
+                kind = Kind.OTHER;
+            }
+        }
+    }
+
+    static final Map<Method, MethodHandling> METHODS = new ConcurrentHashMap<>();
+
+    /**
+     * Getters and setters looked up by property name, per proxied class
+     */
+    static final Map<Class<?>, Map<String, Optional<Method>>> ACCESSORS = new ConcurrentHashMap<>();
+
+    /**
+     * Set while running a {@link ReadOnlyTask}
+     */
+    static final ThreadLocal<Boolean> READ_ONLY = new ThreadLocal<>();
+
     /** 
      * the proxy object 
      */
@@ -92,19 +153,22 @@ public class ModificationProxy implements WrappingProxy, Serializable {
     public Object invoke(Object proxy, Method method, Object[] args)
             throws Throwable {
         
-        String property = null;
-        if ( ( method.getName().startsWith( "get")  || method.getName().startsWith( "is" ) ) 
-                && method.getParameterCount() == 0 ) {
+        MethodHandling handling = METHODS.get(method);
+        if (handling == null) {
+            handling = new MethodHandling(method);
+            METHODS.put(method, handling);
+        }
+        String property = handling.property;
+        Kind kind = handling.kind;
+        if ( kind == Kind.GETTER || kind == Kind.COLLECTION_GETTER || kind == Kind.MAP_GETTER ) {
             //intercept getter to check the dirty property set
-            property = method.getName().substring( 
-                method.getName().startsWith( "get") ? 3 : 2 );
             if ( properties != null && properties().containsKey( property ) ) {
                 //return the previously set object
                 return properties().get( property );
             }
             else {
                 //if collection, create a wrapper
-                if ( Collection.class.isAssignableFrom( method.getReturnType() ) ) {
+                if ( kind == Kind.COLLECTION_GETTER ) {
                     Collection real = (Collection) method.invoke( proxyObject, null );
                     if(real == null) {
                         // in this case there is nothing we can do
@@ -117,7 +181,7 @@ public class ModificationProxy implements WrappingProxy, Serializable {
                     Collection clone = ModificationProxyCloner.cloneCollection(real, false);
                     oldCollectionValues().put(property, clone);
                     return wrap;
-                } else if(Map.class.isAssignableFrom( method.getReturnType() )) {
+                } else if( kind == Kind.MAP_GETTER ) {
                     Map real = (Map) method.invoke( proxyObject, null );
                     if(real == null) {
                         // in this case there is nothing we can do
@@ -137,9 +201,8 @@ public class ModificationProxy implements WrappingProxy, Serializable {
             }
             
         }
-        if ( method.getName().startsWith( "set") && args.length == 1) {
+        if ( kind == Kind.SETTER ) {
             //intercept setter and put new value in list
-            property = method.getName().substring( 3 );
             properties().put( property, args[0] );
             
             return null;
@@ -162,7 +225,9 @@ public class ModificationProxy implements WrappingProxy, Serializable {
                 //avoid double proxy
                 Object o = ModificationProxy.unwrap( result );
                 if ( o == result ) {
-                    result = ModificationProxy.create( result, (Class) method.getReturnType() );
+                    // the properties of a proxy are proxied too, even in read only mode
+                    result = ProxyUtils.createProxy(result, (Class) method.getReturnType(),
+                            new ModificationProxy(result));
                     
                     //cache the proxy, in case it is modified itself
                     properties().put( property, result );
@@ -417,6 +482,11 @@ public class ModificationProxy implements WrappingProxy, Serializable {
      * Helper method for looking up a getter method.
      */
     Method getter( String propertyName ) {
+        return accessors().computeIfAbsent(propertyName,
+                p -> Optional.ofNullable(lookupGetter(p))).orElse(null);
+    }
+
+    Method lookupGetter( String propertyName ) {
         Method g = null;
         try {
             g = proxyObject.getClass().getMethod( "get" + propertyName , null );
@@ -437,9 +507,14 @@ public class ModificationProxy implements WrappingProxy, Serializable {
     }
 
     /*
-     * Helper method for looking up a getter method.
+     * Helper method for looking up a setter method.
      */
     Method setter( String propertyName, Class type ) {
+        return accessors().computeIfAbsent(propertyName + "(" + type.getName() + ")",
+                p -> Optional.ofNullable(lookupSetter(propertyName, type))).orElse(null);
+    }
+
+    Method lookupSetter( String propertyName, Class type ) {
         Method s = null;
         try {
             s = proxyObject.getClass().getMethod( "set" + propertyName, type );
@@ -450,6 +525,10 @@ public class ModificationProxy implements WrappingProxy, Serializable {
         return s;
     }
 
+    Map<String, Optional<Method>> accessors() {
+        return ACCESSORS.computeIfAbsent(proxyObject.getClass(), c -> new ConcurrentHashMap<>());
+    }
+
     private Object readResolve() throws ObjectStreamException {
         // replace the main proxy object
         if(proxyObject instanceof CatalogInfo) {
@@ -568,6 +647,9 @@ public class ModificationProxy implements WrappingProxy, Serializable {
      * @throws RuntimeException If creating the proxy fails.
      */
     public static <T> T create( T proxyObject, Class<T> clazz ) {
+        if (READ_ONLY.get() != null) {
+            return proxyObject;
+        }
         return ProxyUtils.createProxy(proxyObject, clazz, new ModificationProxy( proxyObject ));
     }
     
@@ -576,8 +658,42 @@ public class ModificationProxy implements WrappingProxy, Serializable {
      *
      */
     public static <T> List<T> createList( List<T> proxyList, Class<T> clazz ) {
+        if (READ_ONLY.get() != null) {
+            return proxyList;
+        }
         return new list( proxyList, clazz );
     }
+
+    /**
+     * Runs catalog lookups whose results are only going to be read, such as the ones made while
+     * parsing or answering an OWS request. The catalog objects looked up during the task are not
+     * wrapped in modification proxies, sparing the proxy creation, the reflective method
+     * dispatch and the cloning of collection properties on each access.
+     * <p>
+     * The objects returned are the live catalog objects, they must not be modified nor saved
+     * back into the catalog, the task has to look them up again outside of this method in order
+     * to change them. Lazy iterators obtained during the task keep on proxying their contents if
+     * consumed after it's done.
+     * </p>
+     */
+    public static <T, E extends Exception> T readOnly(ReadOnlyTask<T, E> task) throws E {
+        Boolean previous = READ_ONLY.get();
+        READ_ONLY.set(Boolean.TRUE);
+        try {
+            return task.run();
+        } finally {
+            if (previous == null) {
+                READ_ONLY.remove();
+            }
+        }
+    }
+
+    /**
+     * Returns true if the current thread is running a {@link #readOnly(ReadOnlyTask)} task
+     */
+    public static boolean isReadOnly() {
+        return READ_ONLY.get() != null;
+    }
     
     /**
      * Wraps a proxy instance.
@@ -620,7 +736,9 @@ public class ModificationProxy implements WrappingProxy, Serializable {
             return innerWrap.apply(object);
         } else {
             T newProxyObject = innerWrap.apply((T) oldHandler.getProxyObject());
-            T newProxy = create(newProxyObject, clazz);
+            // proxy anyways, the modifications need a home even in read only mode
+            T newProxy = ProxyUtils.createProxy(newProxyObject, clazz,
+                    new ModificationProxy(newProxyObject));
             
             // Copy the old state onto the new proxy
             ModificationProxy newHandler = handler(newProxy);
@@ -0,0 +1,582 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.config;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.geoserver.catalog.CatalogException;
+import org.geoserver.catalog.CatalogInfo;
+import org.geoserver.catalog.ConcurrentResourceCache;
+import org.geoserver.catalog.LayerGroupInfo;
+import org.geoserver.catalog.LayerInfo;
+import org.geoserver.catalog.ResourceInfo;
+import org.geoserver.catalog.StoreInfo;
+import org.geoserver.catalog.StyleInfo;
+import org.geoserver.catalog.WorkspaceInfo;
+import org.geoserver.catalog.event.CatalogAddEvent;
+import org.geoserver.catalog.event.CatalogEvent;
+import org.geoserver.catalog.event.CatalogListener;
+import org.geoserver.catalog.event.CatalogModifyEvent;
+import org.geoserver.catalog.event.CatalogPostModifyEvent;
+import org.geoserver.catalog.event.CatalogRemoveEvent;
+import org.geoserver.ows.AbstractDispatcherCallback;
+import org.geoserver.ows.HttpErrorCodeException;
+import org.geoserver.ows.LocalPublished;
+import org.geoserver.ows.LocalWorkspace;
+import org.geoserver.ows.Request;
+import org.geoserver.ows.Response;
+import org.geoserver.platform.GeoServerExtensions;
+import org.geoserver.platform.Operation;
+import org.geoserver.platform.ServiceException;
+import org.geotools.util.logging.Logging;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+/**
+ * Caches the encoded GetCapabilities documents, so that repeated requests do not have to walk
+ * the catalog and encode the document from scratch.
+ * <p>
+ * The documents are keyed by service, version, request path (which includes the virtual service
+ * workspace/layer), the raw KVP parameters (including namespace, sections, format and the like),
+ * the proxy related headers and the current user and roles, as all of them can change the
+ * contents of the document. Only GET requests are cached, SOAP and POST ones are not.
+ * </p>
+ * <p>
+ * Catalog and configuration events remove the documents they affect: changes in a workspace only
+ * drop the documents of the global services and of that workspace virtual services, global
+ * changes drop everything. The update sequence at the time the document was encoded is part of
+ * its ETag, which is used to answer conditional GET requests with a 304. A gzipped copy of each
+ * document is kept as well, and returned to clients accepting gzip encoding.
+ * </p>
+ * <p>
+ * Capabilities documents can contain information that is not tracked by the events (e.g., time
+ * and elevation domains read from the data, or data security rules), so the cache is disabled
+ * by default. It can be enabled setting "CAPABILITIES_DOCUMENT_CACHE_ENABLED" to "true", and
+ * tuned with "CAPABILITIES_DOCUMENT_CACHE_TTL" (time to live in seconds, 0 for no expiration),
+ * "CAPABILITIES_DOCUMENT_CACHE_MAX_ENTRIES" and "CAPABILITIES_DOCUMENT_CACHE_MAX_SIZE"
+ * (bytes), either as system, environment or servlet context variables.
+ * </p>
+ */
+public class CapabilitiesDocumentCache extends AbstractDispatcherCallback
+        implements CatalogListener, ConfigurationListener {
+
+    static final Logger LOGGER = Logging.getLogger(CapabilitiesDocumentCache.class);
+
+    static final String GET_CAPABILITIES = "GetCapabilities";
+
+    /**
+     * Headers that can alter the URLs contained in the capabilities document
+     */
+    static final String[] KEY_HEADERS = { "Host", "Forwarded", "X-Forwarded-Proto",
+            "X-Forwarded-Host", "X-Forwarded-Path" };
+
+    /**
+     * A cached document, along with the information needed to send it back
+     */
+    static class CachedDocument {
+        final String workspace;
+
+        final String service;
+
+        final byte[] content;
+
+        final byte[] gzipped;
+
+        final String mimeType;
+
+        final String charset;
+
+        final String etag;
+
+        final long created = System.currentTimeMillis();
+
+        CachedDocument(String workspace, String service, byte[] content, String mimeType,
+                String charset, long updateSequence) throws IOException {
+            this.workspace = workspace;
+            this.service = service;
+            this.content = content;
+            this.mimeType = mimeType;
+            this.charset = charset;
+
+            ByteArrayOutputStream bos = new ByteArrayOutputStream(content.length / 4);
+            try (GZIPOutputStream gos = new GZIPOutputStream(bos)) {
+                gos.write(content);
+            }
+            this.gzipped = bos.toByteArray();
+
+            CRC32 crc = new CRC32();
+            crc.update(content);
+            this.etag = "\"" + updateSequence + "-" + Long.toHexString(crc.getValue()) + "\"";
+        }
+    }
+
+    final ConcurrentResourceCache<String, CachedDocument> documents;
+
+    /**
+     * Incremented on each invalidation, used to avoid caching documents encoded while the
+     * configuration was changing
+     */
+    final AtomicLong generation = new AtomicLong();
+
+    GeoServer gs;
+
+    volatile boolean enabled;
+
+    volatile long timeToLive;
+
+    volatile boolean globalChanged;
+
+    public CapabilitiesDocumentCache(GeoServer gs) {
+        this.gs = gs;
+        this.enabled = Boolean
+                .parseBoolean(GeoServerExtensions.getProperty("CAPABILITIES_DOCUMENT_CACHE_ENABLED"));
+        this.timeToLive = GeoServerExtensions.getLongProperty("CAPABILITIES_DOCUMENT_CACHE_TTL", 0)
+                * 1000;
+        this.documents = new ConcurrentResourceCache<>("capabilities",
+                GeoServerExtensions.getLongProperty("CAPABILITIES_DOCUMENT_CACHE_MAX_ENTRIES",
+                        100));
+        this.documents.setWeigher((k, v) -> v.content.length + v.gzipped.length);
+        this.documents.setMaxWeight(GeoServerExtensions
+                .getLongProperty("CAPABILITIES_DOCUMENT_CACHE_MAX_SIZE", 128 * 1024 * 1024));
+
+        gs.getCatalog().addListener(this);
+        gs.addListener(this);
+
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("Capabilities document cache is enabled: " + enabled);
+        }
+    }
+
+    /**
+     * Returns true if the cache is enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Enables/disables the cache. Disabling it also drops the cached documents
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        if (!enabled) {
+            clear();
+        }
+    }
+
+    /**
+     * Returns the time to live of the cached documents, in milliseconds, or 0 if they never
+     * expire
+     */
+    public long getTimeToLive() {
+        return timeToLive;
+    }
+
+    /**
+     * Sets the time to live of the cached documents, in milliseconds, 0 or negative to never
+     * expire them
+     */
+    public void setTimeToLive(long timeToLive) {
+        this.timeToLive = timeToLive;
+    }
+
+    /**
+     * Returns the usage statistics of the cache
+     */
+    public ConcurrentResourceCache.Statistics getStatistics() {
+        return documents.getStatistics();
+    }
+
+    /**
+     * Drops all the cached documents
+     */
+    public void clear() {
+        generation.incrementAndGet();
+        documents.clear();
+    }
+
+    /**
+     * Drops the documents of the global services and of the virtual services of the given
+     * workspace, or all of them if the workspace is null
+     */
+    void invalidate(String workspace) {
+        if (workspace == null) {
+            clear();
+            return;
+        }
+        generation.incrementAndGet();
+        for (Iterator<CachedDocument> it = documents.values().iterator(); it.hasNext();) {
+            CachedDocument document = it.next();
+            if (document.workspace == null || document.workspace.equals(workspace)) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Drops the documents of the given service, global and virtual ones
+     */
+    void invalidateService(String service) {
+        generation.incrementAndGet();
+        for (Iterator<CachedDocument> it = documents.values().iterator(); it.hasNext();) {
+            CachedDocument document = it.next();
+            if (document.service == null || document.service.equalsIgnoreCase(service)) {
+                it.remove();
+            }
+        }
+    }
+
+    @Override
+    public Response responseDispatched(Request request, Operation operation, Object result,
+            Response response) {
+        if (!enabled || !isCacheable(request)) {
+            return response;
+        }
+
+        String key = getKey(request);
+        CachedDocument document;
+        try {
+            if (timeToLive > 0) {
+                document = documents.get(key);
+                if (document != null
+                        && System.currentTimeMillis() - document.created > timeToLive) {
+                    documents.remove(key);
+                }
+            }
+            long startGeneration = generation.get();
+            document = documents.getOrLoad(key,
+                    k -> encode(request, operation, result, response));
+            if (generation.get() != startGeneration) {
+                // the configuration changed while encoding, the document might be stale
+                documents.remove(key);
+            }
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new ServiceException("Failed to encode the capabilities document", e);
+        }
+
+        // conditional GET support
+        String ifNoneMatch = request.getHttpRequest().getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null && matches(ifNoneMatch, document.etag)) {
+            request.getHttpResponse().setHeader(HttpHeaders.ETAG, document.etag);
+            throw new HttpErrorCodeException(HttpStatus.NOT_MODIFIED.value());
+        }
+
+        return new CachedDocumentResponse(response, document, acceptsGzip(request));
+    }
+
+    boolean isCacheable(Request request) {
+        return GET_CAPABILITIES.equalsIgnoreCase(request.getRequest()) && request.isGet()
+                && !request.isSOAP() && request.getHttpRequest() != null;
+    }
+
+    static boolean matches(String ifNoneMatch, String etag) {
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if ("*".equals(tag) || etag.equals(tag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static boolean acceptsGzip(Request request) {
+        String ae = request.getHttpRequest().getHeader("accept-encoding");
+        return ae != null && ae.indexOf("gzip") != -1;
+    }
+
+    /**
+     * Builds the cache key out of all the bits of the request that can affect the document
+     */
+    String getKey(Request request) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(request.getService()).append('|').append(request.getVersion()).append('|');
+        sb.append(request.getPath()).append('|');
+        WorkspaceInfo ws = LocalWorkspace.get();
+        sb.append(ws != null ? ws.getName() : "").append('|');
+        if (LocalPublished.get() != null) {
+            sb.append(LocalPublished.get().getName());
+        }
+        sb.append('|');
+
+        // the URLs in the document depend on how the server was reached
+        HttpServletRequest httpRequest = request.getHttpRequest();
+        sb.append(httpRequest.getScheme()).append("://").append(httpRequest.getServerName())
+                .append(':').append(httpRequest.getServerPort())
+                .append(httpRequest.getContextPath()).append('|');
+        for (String header : KEY_HEADERS) {
+            String value = httpRequest.getHeader(header);
+            if (value != null) {
+                sb.append(header).append('=').append(value).append('|');
+            }
+        }
+
+        // the contents depend on the security context
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth != null) {
+            sb.append(auth.getName()).append('|');
+            List<String> roles = new ArrayList<>();
+            if (auth.getAuthorities() != null) {
+                for (GrantedAuthority authority : auth.getAuthorities()) {
+                    roles.add(authority.getAuthority());
+                }
+            }
+            Collections.sort(roles);
+            sb.append(roles).append('|');
+        }
+
+        // and on all the parameters, sorted to make the key independent of their order
+        Map<String, Object> rawKvp = request.getRawKvp();
+        if (rawKvp != null) {
+            Map<String, String> sorted = new TreeMap<>();
+            for (Map.Entry<String, Object> entry : rawKvp.entrySet()) {
+                Object value = entry.getValue();
+                String sv = value instanceof Object[] ? Arrays.toString((Object[]) value)
+                        : String.valueOf(value);
+                sorted.put(entry.getKey().toUpperCase(), sv);
+            }
+            sb.append(sorted);
+        }
+
+        return sb.toString();
+    }
+
+    CachedDocument encode(Request request, Operation operation, Object result, Response response)
+            throws IOException {
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("Encoding capabilities document for " + request);
+        }
+        // grab the sequence first, changes happening while encoding will make it stale anyways
+        long updateSequence = gs.getGlobal().getUpdateSequence();
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        response.write(result, bos, operation);
+
+        WorkspaceInfo ws = LocalWorkspace.get();
+        return new CachedDocument(ws != null ? ws.getName() : null, request.getService(),
+                bos.toByteArray(), response.getMimeType(result, operation),
+                response.getCharset(operation), updateSequence);
+    }
+
+    /**
+     * Writes out a cached document, delegating everything but the contents to the original
+     * response
+     */
+    static class CachedDocumentResponse extends Response {
+
+        Response delegate;
+
+        CachedDocument document;
+
+        boolean gzip;
+
+        public CachedDocumentResponse(Response delegate, CachedDocument document, boolean gzip) {
+            super(delegate.getBinding());
+            this.delegate = delegate;
+            this.document = document;
+            this.gzip = gzip;
+        }
+
+        @Override
+        public boolean canHandle(Operation operation) {
+            return delegate.canHandle(operation);
+        }
+
+        @Override
+        public String getMimeType(Object value, Operation operation) throws ServiceException {
+            return document.mimeType;
+        }
+
+        @Override
+        public String getCharset(Operation operation) {
+            return document.charset;
+        }
+
+        @Override
+        public String[][] getHeaders(Object value, Operation operation) throws ServiceException {
+            String[][] headers = delegate.getHeaders(value, operation);
+            List<String[]> result = new ArrayList<>();
+            if (headers != null) {
+                result.addAll(Arrays.asList(headers));
+            }
+            result.add(new String[] { HttpHeaders.ETAG, document.etag });
+            result.add(new String[] { HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING });
+            if (gzip) {
+                result.add(new String[] { HttpHeaders.CONTENT_ENCODING, "gzip" });
+                result.add(new String[] { HttpHeaders.CONTENT_LENGTH,
+                        String.valueOf(document.gzipped.length) });
+            } else {
+                result.add(new String[] { HttpHeaders.CONTENT_LENGTH,
+                        String.valueOf(document.content.length) });
+            }
+            return result.toArray(new String[result.size()][]);
+        }
+
+        @Override
+        public void write(Object value, OutputStream output, Operation operation)
+                throws IOException, ServiceException {
+            output.write(gzip ? document.gzipped : document.content);
+        }
+
+        @Override
+        public String getPreferredDisposition(Object value, Operation operation) {
+            return delegate.getPreferredDisposition(value, operation);
+        }
+
+        @Override
+        public String getAttachmentFileName(Object value, Operation operation) {
+            return delegate.getAttachmentFileName(value, operation);
+        }
+    }
+
+    //
+    // Catalog events
+    //
+
+    /**
+     * Returns the name of the workspace containing the object subject of the event, or null if
+     * the object is global, or can affect more than one workspace
+     */
+    String getWorkspace(CatalogEvent event) {
+        CatalogInfo source = event.getSource();
+        try {
+            if (source instanceof StoreInfo) {
+                return workspaceName(((StoreInfo) source).getWorkspace());
+            } else if (source instanceof ResourceInfo) {
+                StoreInfo store = ((ResourceInfo) source).getStore();
+                return store != null ? workspaceName(store.getWorkspace()) : null;
+            } else if (source instanceof LayerInfo) {
+                ResourceInfo resource = ((LayerInfo) source).getResource();
+                return resource != null && resource.getStore() != null
+                        ? workspaceName(resource.getStore().getWorkspace()) : null;
+            } else if (source instanceof LayerGroupInfo) {
+                return workspaceName(((LayerGroupInfo) source).getWorkspace());
+            } else if (source instanceof StyleInfo) {
+                return workspaceName(((StyleInfo) source).getWorkspace());
+            }
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.FINE, "Could not determine the workspace of " + source, e);
+        }
+        // workspaces, namespaces, and anything else we cannot attribute to a workspace
+        return null;
+    }
+
+    static String workspaceName(WorkspaceInfo ws) {
+        return ws != null ? ws.getName() : null;
+    }
+
+    public void handleAddEvent(CatalogAddEvent event) throws CatalogException {
+        invalidate(getWorkspace(event));
+    }
+
+    public void handleRemoveEvent(CatalogRemoveEvent event) throws CatalogException {
+        invalidate(getWorkspace(event));
+    }
+
+    public void handleModifyEvent(CatalogModifyEvent event) throws CatalogException {
+        // the object might be moving to another workspace, clean up the old one
+        invalidate(getWorkspace(event));
+    }
+
+    public void handlePostModifyEvent(CatalogPostModifyEvent event) throws CatalogException {
+        invalidate(getWorkspace(event));
+    }
+
+    //
+    // Configuration events
+    //
+
+    public void reloaded() {
+        clear();
+    }
+
+    public void handleGlobalChange(GeoServerInfo global, List<String> propertyNames,
+            List<Object> oldValues, List<Object> newValues) {
+        // the update sequence gets bumped on every catalog change, the catalog events already
+        // took care of the affected documents, look for actual global configuration changes
+        for (String property : propertyNames) {
+            if (!"updateSequence".equalsIgnoreCase(property)) {
+                globalChanged = true;
+                break;
+            }
+        }
+    }
+
+    public void handlePostGlobalChange(GeoServerInfo global) {
+        if (globalChanged) {
+            globalChanged = false;
+            clear();
+        }
+    }
+
+    public void handleSettingsAdded(SettingsInfo settings) {
+        invalidate(workspaceName(settings.getWorkspace()));
+    }
+
+    public void handleSettingsModified(SettingsInfo settings, List<String> propertyNames,
+            List<Object> oldValues, List<Object> newValues) {
+        // we use the post event
+    }
+
+    public void handleSettingsPostModified(SettingsInfo settings) {
+        invalidate(workspaceName(settings.getWorkspace()));
+    }
+
+    public void handleSettingsRemoved(SettingsInfo settings) {
+        invalidate(workspaceName(settings.getWorkspace()));
+    }
+
+    public void handleLoggingChange(LoggingInfo logging, List<String> propertyNames,
+            List<Object> oldValues, List<Object> newValues) {
+        // logging does not show up in capabilities
+    }
+
+    public void handlePostLoggingChange(LoggingInfo logging) {
+        // logging does not show up in capabilities
+    }
+
+    public void handleServiceChange(ServiceInfo service, List<String> propertyNames,
+            List<Object> oldValues, List<Object> newValues) {
+        // we use the post event
+    }
+
+    public void handlePostServiceChange(ServiceInfo service) {
+        invalidateService(service);
+    }
+
+    public void handleServiceRemove(ServiceInfo service) {
+        invalidateService(service);
+    }
+
+    void invalidateService(ServiceInfo service) {
+        if (service.getWorkspace() != null || service.getName() == null) {
+            invalidate(workspaceName(service.getWorkspace()));
+        } else {
+            invalidateService(service.getName());
+        }
+    }
+}
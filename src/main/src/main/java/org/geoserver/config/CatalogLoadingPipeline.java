@@ -0,0 +1,425 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.config;
+
+import static org.geoserver.config.AsynchResourceIterator.ASYNCH_RESOURCE_THREADS;
+import static org.geoserver.config.GeoServerLoader.LOGGER;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.stream.Collectors;
+
+import org.geoserver.catalog.CoverageInfo;
+import org.geoserver.catalog.CoverageStoreInfo;
+import org.geoserver.catalog.DataStoreInfo;
+import org.geoserver.catalog.FeatureTypeInfo;
+import org.geoserver.catalog.LayerInfo;
+import org.geoserver.catalog.ResourceInfo;
+import org.geoserver.catalog.StoreInfo;
+import org.geoserver.catalog.WMSLayerInfo;
+import org.geoserver.catalog.WMSStoreInfo;
+import org.geoserver.catalog.WMTSLayerInfo;
+import org.geoserver.catalog.WMTSStoreInfo;
+import org.geoserver.catalog.impl.CatalogImpl;
+import org.geoserver.catalog.impl.ResolvingProxy;
+import org.geoserver.config.AsynchResourceIterator.ResourceMapper;
+import org.geoserver.config.CatalogLoadingStatistics.Phase;
+import org.geoserver.config.GeoServerLoader.LayerContents;
+import org.geoserver.config.GeoServerLoader.StoreContents;
+import org.geoserver.config.util.XStreamPersister;
+import org.geoserver.config.util.XStreamPersisterFactory;
+import org.geoserver.platform.resource.Resource;
+import org.geoserver.platform.resource.Resources;
+
+/**
+ * Loads the stores, resources and layers of a set of workspace directories in a single pipeline.
+ * <p>
+ * Listing, reading and parsing of the configuration files happens in parallel on a pool of
+ * loading threads (see {@link AsynchResourceIterator#ASYNCH_RESOURCE_THREADS}), each one using
+ * its own {@link XStreamPersister}. Stores, resources and layers are all in flight at the same
+ * time, the parsed objects are queued and added to the catalog in batches by the calling
+ * thread.
+ * </p>
+ * <p>
+ * A store is queued before the tasks loading its resources are submitted, so it's always added
+ * before its resources and layers. References the parser could not resolve, because the
+ * referenced object was still in the queue, are resolved right before the add.
+ * </p>
+ */
+final class CatalogLoadingPipeline {
+
+    /**
+     * The maximum number of parsed objects taken out of the queue at once
+     */
+    static final int BATCH_SIZE = 1000;
+
+    /**
+     * Indicates the end of the queue contents
+     */
+    static final Object TERMINATOR = new Object();
+
+    /**
+     * The store types, along with the resources they contain
+     */
+    enum StoreType {
+        DATA("datastore.xml", "data store", DataStoreInfo.class, FeatureTypeInfo.class,
+                GeoServerLoader.FEATURE_LAYER_MAPPER),
+        COVERAGE("coveragestore.xml", "coverage store", CoverageStoreInfo.class,
+                CoverageInfo.class, GeoServerLoader.COVERAGE_LAYER_MAPPER),
+        WMS("wmsstore.xml", "wms store", WMSStoreInfo.class, WMSLayerInfo.class,
+                GeoServerLoader.WMS_LAYER_MAPPER),
+        WMTS("wmtsstore.xml", "wmts store", WMTSStoreInfo.class, WMTSLayerInfo.class,
+                GeoServerLoader.WMTS_LAYER_MAPPER);
+
+        final String fileName;
+
+        final String label;
+
+        final Class<? extends StoreInfo> storeClass;
+
+        final Class<? extends ResourceInfo> resourceClass;
+
+        final ResourceMapper<LayerContents> layerMapper;
+
+        StoreType(String fileName, String label, Class<? extends StoreInfo> storeClass,
+                Class<? extends ResourceInfo> resourceClass,
+                ResourceMapper<LayerContents> layerMapper) {
+            this.fileName = fileName;
+            this.label = label;
+            this.storeClass = storeClass;
+            this.resourceClass = resourceClass;
+            this.layerMapper = layerMapper;
+        }
+
+        static StoreType lookup(String fileName) {
+            for (StoreType type : values()) {
+                if (type.fileName.equals(fileName)) {
+                    return type;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * A parsed store, waiting to be added
+     */
+    static final class LoadedStore {
+        Resource resource;
+
+        StoreType type;
+
+        StoreInfo store;
+
+        LoadedStore(Resource resource, StoreType type, StoreInfo store) {
+            this.resource = resource;
+            this.type = type;
+            this.store = store;
+        }
+    }
+
+    /**
+     * A parsed resource and its layer (if the layer could be parsed), waiting to be added
+     */
+    static final class LoadedLayer {
+        Resource directory;
+
+        ResourceInfo resource;
+
+        LayerInfo layer;
+
+        LoadedLayer(Resource directory, ResourceInfo resource, LayerInfo layer) {
+            this.directory = directory;
+            this.resource = resource;
+            this.layer = layer;
+        }
+    }
+
+    final LoadingCatalog catalog;
+
+    final CatalogLoadingStatistics statistics;
+
+    final boolean checkStores;
+
+    /**
+     * The persisters used by the loading threads, XStreamPersister is not meant to be shared
+     */
+    final ThreadLocal<XStreamPersister> persisters;
+
+    /**
+     * The queue connecting the loading threads with the thread adding to the catalog
+     */
+    final BlockingQueue<Object> queue = new LinkedBlockingQueue<>(10000);
+
+    /**
+     * Number of tasks submitted and not yet completed, the terminator is queued when it gets to
+     * zero
+     */
+    final AtomicInteger pending = new AtomicInteger();
+
+    /**
+     * Set once all tasks are completed, in case the terminator did not fit in the queue
+     */
+    volatile boolean finished;
+
+    /**
+     * Directories of the stores that could not be added, their contents are skipped. Only
+     * accessed by the adding thread.
+     */
+    final Set<String> failedStores = new HashSet<>();
+
+    ExecutorService executor;
+
+    CatalogLoadingPipeline(LoadingCatalog catalog, XStreamPersisterFactory xpf,
+            boolean checkStores) {
+        this.catalog = catalog;
+        this.statistics = catalog.getStatistics();
+        this.checkStores = checkStores;
+        this.persisters = ThreadLocal.withInitial(() -> {
+            XStreamPersister xp = xpf.createXMLPersister();
+            xp.setCatalog(catalog);
+            xp.setUnwrapNulls(false);
+            return xp;
+        });
+    }
+
+    /**
+     * Loads the contents of the given workspace directories, returning once everything has been
+     * added to the catalog
+     */
+    void load(List<Resource> workspaces) throws InterruptedException {
+        if (workspaces.isEmpty()) {
+            return;
+        }
+        executor = Executors.newFixedThreadPool(ASYNCH_RESOURCE_THREADS);
+        try {
+            // count this method as a task, so that the terminator cannot be queued before all
+            // the workspaces have been submitted
+            pending.incrementAndGet();
+            for (Resource workspace : workspaces) {
+                submit(() -> listStores(workspace));
+            }
+            completed();
+
+            addAll();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    void submit(Runnable task) {
+        pending.incrementAndGet();
+        executor.execute(() -> {
+            try {
+                task.run();
+            } catch (Throwable t) {
+                LOGGER.log(Level.WARNING, "Unexpected error while loading the catalog", t);
+            } finally {
+                completed();
+            }
+        });
+    }
+
+    void completed() {
+        if (pending.decrementAndGet() == 0) {
+            // never block here, the last task might be completed by the adding thread itself,
+            // before it starts draining the queue. If the queue is full the flag is enough
+            finished = true;
+            queue.offer(TERMINATOR);
+        }
+    }
+
+    void put(Object loaded) {
+        try {
+            queue.put(loaded);
+        } catch (InterruptedException e) {
+            // the pipeline is being shut down
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    List<Resource> listDirectories(Resource parent) {
+        long start = System.nanoTime();
+        try {
+            return parent.list().stream().filter(r -> Resources.DirectoryFilter.INSTANCE.accept(r))
+                    .collect(Collectors.toList());
+        } finally {
+            statistics.record(Phase.IO, start);
+        }
+    }
+
+    void listStores(Resource workspace) {
+        for (Resource directory : listDirectories(workspace)) {
+            submit(() -> loadStore(directory));
+        }
+    }
+
+    void loadStore(Resource directory) {
+        StoreContents contents;
+        try {
+            contents = statistics.io(GeoServerLoader.STORE_MAPPER).apply(directory);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to read store '" + directory.name() + "'", e);
+            return;
+        }
+        if (contents == null) {
+            return;
+        }
+        StoreType type = StoreType.lookup(contents.resource.name());
+        StoreInfo store;
+        try {
+            store = statistics.parse(persisters.get(), contents.contents, type.storeClass);
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING,
+                    "Failed to load " + type.label + " '" + directory.name() + "'", e);
+            return;
+        }
+        put(new LoadedStore(contents.resource, type, store));
+
+        // the resources are queued after the store, thus added after it
+        for (Resource child : listDirectories(directory)) {
+            submit(() -> loadLayer(child, type));
+        }
+    }
+
+    void loadLayer(Resource directory, StoreType type) {
+        LayerContents contents;
+        try {
+            contents = statistics.io(type.layerMapper).apply(directory);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to read resource '" + directory.name() + "'", e);
+            return;
+        }
+        if (contents == null) {
+            return;
+        }
+        XStreamPersister xp = persisters.get();
+        ResourceInfo resource;
+        try {
+            resource = statistics.parse(xp, contents.contents, type.resourceClass);
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Failed to load resource", e);
+            return;
+        }
+        LayerInfo layer = null;
+        try {
+            layer = statistics.parse(xp, contents.layerContents, LayerInfo.class);
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Failed to load layer " + directory.name(), e);
+        }
+        put(new LoadedLayer(directory, resource, layer));
+    }
+
+    /**
+     * Adds the parsed objects to the catalog as they come, until the terminator is found, or all
+     * tasks are completed and the queue is empty
+     */
+    void addAll() throws InterruptedException {
+        List<Object> batch = new ArrayList<>(BATCH_SIZE);
+        while (true) {
+            Object first = queue.poll(100, TimeUnit.MILLISECONDS);
+            if (first == null) {
+                // the tasks queue their objects before completing, nothing more will come
+                if (finished && queue.isEmpty()) {
+                    return;
+                }
+                continue;
+            }
+            batch.add(first);
+            queue.drainTo(batch, BATCH_SIZE - 1);
+            for (Object loaded : batch) {
+                if (loaded == TERMINATOR) {
+                    return;
+                } else if (loaded instanceof LoadedStore) {
+                    addStore((LoadedStore) loaded);
+                } else {
+                    addLayer((LoadedLayer) loaded);
+                }
+            }
+            batch.clear();
+        }
+    }
+
+    void addStore(LoadedStore loaded) {
+        StoreInfo store = loaded.store;
+        try {
+            catalog.timedAdd(() -> catalog.add(store));
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Failed to load " + loaded.type.label + " '"
+                    + loaded.resource.parent().name() + "'", e);
+            failedStores.add(loaded.resource.parent().path());
+            return;
+        }
+
+        if (LOGGER.isLoggable(Level.INFO)) {
+            LOGGER.info("Loaded " + loaded.type.label + " '" + store.getName() + "', "
+                    + (store.isEnabled() ? "enabled" : "disabled"));
+        }
+
+        if (checkStores && store instanceof DataStoreInfo && store.isEnabled()) {
+            GeoServerLoader.checkDataStore((DataStoreInfo) store);
+        }
+    }
+
+    void addLayer(LoadedLayer loaded) {
+        if (failedStores.contains(loaded.directory.parent().path())) {
+            return;
+        }
+
+        ResourceInfo resource = loaded.resource;
+        long start = System.nanoTime();
+        resource.setStore(resolve(resource.getStore()));
+        resource.setNamespace(resolve(resource.getNamespace()));
+        statistics.record(Phase.RESOLVE, start);
+        try {
+            catalog.timedAdd(() -> catalog.add(resource));
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Failed to load resource", e);
+            return;
+        }
+
+        if (LOGGER.isLoggable(Level.INFO)) {
+            String type = resource instanceof CoverageInfo ? "coverage"
+                    : resource instanceof FeatureTypeInfo ? "feature type" : "resource";
+            LOGGER.info("Loaded " + type + " '" + loaded.directory.name() + "', "
+                    + (resource.isEnabled() ? "enabled" : "disabled"));
+        }
+
+        LayerInfo layer = loaded.layer;
+        if (layer == null) {
+            return;
+        }
+        start = System.nanoTime();
+        layer.setResource(resolve(layer.getResource()));
+        statistics.record(Phase.RESOLVE, start);
+        try {
+            catalog.timedAdd(() -> catalog.add(layer));
+
+            LOGGER.info("Loaded layer '" + layer.getName() + "'");
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Failed to load layer " + loaded.directory.name(), e);
+        }
+    }
+
+    /**
+     * Resolves a reference left unresolved at parse time. References that cannot be resolved
+     * yet are left as they are, for the final catalog resolve to deal with them.
+     */
+    @SuppressWarnings("unchecked")
+    <T> T resolve(T reference) {
+        T resolved = ResolvingProxy.resolve(catalog, reference);
+        return resolved != null ? (T) CatalogImpl.unwrap(resolved) : reference;
+    }
+}
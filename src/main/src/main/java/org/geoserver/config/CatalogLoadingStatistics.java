@@ -0,0 +1,164 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.config;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.geoserver.catalog.CatalogInfo;
+import org.geoserver.catalog.LayerGroupInfo;
+import org.geoserver.catalog.LayerInfo;
+import org.geoserver.catalog.NamespaceInfo;
+import org.geoserver.catalog.ResourceInfo;
+import org.geoserver.catalog.StoreInfo;
+import org.geoserver.catalog.StyleInfo;
+import org.geoserver.catalog.WorkspaceInfo;
+import org.geoserver.config.AsynchResourceIterator.ResourceMapper;
+import org.geoserver.config.util.XStreamPersister;
+
+/**
+ * Collects counts and timings while the catalog is loaded from the data directory, so that a
+ * breakdown of where the startup time went can be logged once the load is complete.
+ * <p>
+ * I/O and XML parsing happen in parallel on the loading threads, their times are summed up
+ * across threads and can be larger than the overall elapsed time.
+ * </p>
+ */
+final class CatalogLoadingStatistics {
+
+    /**
+     * The activities the loading time is split into
+     */
+    enum Phase {
+        IO("I/O"), PARSE("XML parse"), RESOLVE("resolve"), VALIDATE("validate"), ADD("add");
+
+        final String label;
+
+        Phase(String label) {
+            this.label = label;
+        }
+    }
+
+    static final Map<Class<? extends CatalogInfo>, String> TYPES = new LinkedHashMap<>();
+
+    static {
+        TYPES.put(WorkspaceInfo.class, "workspaces");
+        TYPES.put(NamespaceInfo.class, "namespaces");
+        TYPES.put(StoreInfo.class, "stores");
+        TYPES.put(ResourceInfo.class, "resources");
+        TYPES.put(LayerInfo.class, "layers");
+        TYPES.put(LayerGroupInfo.class, "layer groups");
+        TYPES.put(StyleInfo.class, "styles");
+    }
+
+    final long start = System.nanoTime();
+
+    final Map<Phase, LongAdder> times = new EnumMap<>(Phase.class);
+
+    final Map<Class<? extends CatalogInfo>, LongAdder> counts = new LinkedHashMap<>();
+
+    CatalogLoadingStatistics() {
+        for (Phase phase : Phase.values()) {
+            times.put(phase, new LongAdder());
+        }
+        for (Class<? extends CatalogInfo> type : TYPES.keySet()) {
+            counts.put(type, new LongAdder());
+        }
+    }
+
+    /**
+     * Records the time elapsed since <code>startNanos</code> as spent in the given phase
+     */
+    void record(Phase phase, long startNanos) {
+        add(phase, System.nanoTime() - startNanos);
+    }
+
+    void add(Phase phase, long nanos) {
+        times.get(phase).add(nanos);
+    }
+
+    long getTime(Phase phase) {
+        return times.get(phase).sum();
+    }
+
+    /**
+     * Counts an object that made it into the catalog
+     */
+    void added(CatalogInfo info) {
+        for (Map.Entry<Class<? extends CatalogInfo>, LongAdder> entry : counts.entrySet()) {
+            if (entry.getKey().isInstance(info)) {
+                entry.getValue().increment();
+                return;
+            }
+        }
+    }
+
+    long getCount(Class<? extends CatalogInfo> type) {
+        LongAdder count = counts.get(type);
+        return count != null ? count.sum() : 0;
+    }
+
+    /**
+     * Wraps the mapper so that the time it takes is recorded as I/O
+     */
+    <T> ResourceMapper<T> io(ResourceMapper<T> mapper) {
+        return r -> {
+            long start = System.nanoTime();
+            try {
+                return mapper.apply(r);
+            } finally {
+                record(Phase.IO, start);
+            }
+        };
+    }
+
+    /**
+     * Depersists the contents, recording the time spent as XML parsing
+     */
+    <T> T parse(XStreamPersister xp, byte[] contents, Class<T> clazz) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return GeoServerLoader.depersist(xp, contents, clazz);
+        } finally {
+            record(Phase.PARSE, start);
+        }
+    }
+
+    /**
+     * Builds a human readable summary of the load
+     */
+    String report() {
+        StringBuilder sb = new StringBuilder("Catalog loaded in ");
+        sb.append(seconds(System.nanoTime() - start)).append(": ");
+        boolean first = true;
+        for (Map.Entry<Class<? extends CatalogInfo>, String> entry : TYPES.entrySet()) {
+            if (!first) {
+                sb.append(", ");
+            }
+            sb.append(getCount(entry.getKey())).append(" ").append(entry.getValue());
+            first = false;
+        }
+        sb.append(". Time breakdown (I/O and parsing summed up across ")
+                .append(AsynchResourceIterator.ASYNCH_RESOURCE_THREADS)
+                .append(" loading threads): ");
+        first = true;
+        for (Phase phase : Phase.values()) {
+            if (!first) {
+                sb.append(", ");
+            }
+            sb.append(phase.label).append(" ").append(seconds(getTime(phase)));
+            first = false;
+        }
+        return sb.toString();
+    }
+
+    static String seconds(long nanos) {
+        return String.format(Locale.ENGLISH, "%.2fs", nanos / 1e9);
+    }
+}
@@ -0,0 +1,595 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.config;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.CatalogFacade;
+import org.geoserver.catalog.CatalogInfo;
+import org.geoserver.catalog.DataStoreInfo;
+import org.geoserver.catalog.LayerGroupInfo;
+import org.geoserver.catalog.LayerInfo;
+import org.geoserver.catalog.NamespaceInfo;
+import org.geoserver.catalog.ResourceInfo;
+import org.geoserver.catalog.StoreInfo;
+import org.geoserver.catalog.StyleInfo;
+import org.geoserver.catalog.WorkspaceInfo;
+import org.geoserver.catalog.event.CatalogAddEvent;
+import org.geoserver.catalog.event.CatalogListener;
+import org.geoserver.catalog.event.CatalogModifyEvent;
+import org.geoserver.catalog.event.CatalogPostModifyEvent;
+import org.geoserver.catalog.event.CatalogRemoveEvent;
+import org.geoserver.catalog.impl.CatalogImpl;
+import org.geoserver.config.util.XStreamPersister;
+import org.geoserver.config.util.XStreamPersisterFactory;
+import org.geoserver.platform.GeoServerExtensions;
+import org.geoserver.platform.GeoServerResourceLoader;
+import org.geotools.util.logging.Logging;
+
+import com.thoughtworks.xstream.io.binary.BinaryStreamReader;
+import com.thoughtworks.xstream.io.binary.BinaryStreamWriter;
+
+/**
+ * A binary snapshot of the catalog and of the global, logging and workspace settings
+ * configuration, allowing the {@link GeoServerLoader} to skip parsing the many configuration
+ * files in the data directory when nothing changed since the snapshot was taken.
+ * <p>
+ * The snapshot is disabled by default, set the {@value #SNAPSHOT_PROPERTY} property to
+ * <code>true</code> to enable it. Once enabled, it is written in the root of the data directory
+ * shortly after startup and after each configuration change, as well as on shutdown if a write
+ * is still pending. Each object is encoded with the same {@link XStreamPersister} converters
+ * used for the XML files, but using the XStream binary format, and is added straight to the
+ * catalog facade when the snapshot is read back.
+ * </p>
+ * <p>
+ * The snapshot records a digest of the names, sizes and modification times of the
+ * configuration files it covers. On startup the digest is computed again, if it does not match,
+ * or the snapshot cannot be read for any reason, the loader falls back on the XML files. Changes
+ * made to the data directory while GeoServer is running must be followed by a reload, which
+ * discards the snapshot.
+ * </p>
+ */
+public class CatalogSnapshot extends ConfigurationListenerAdapter implements CatalogListener {
+
+    static final Logger LOGGER = Logging.getLogger(CatalogSnapshot.class);
+
+    /**
+     * Property enabling the snapshot
+     */
+    public static final String SNAPSHOT_PROPERTY = "org.geoserver.catalog.snapshot";
+
+    /**
+     * Name of the snapshot file, in the root of the data directory
+     */
+    static final String SNAPSHOT_FILE = "catalog.snapshot";
+
+    static final int MAGIC = 0x47534353;
+
+    static final int VERSION = 1;
+
+    /**
+     * Seconds between a configuration change and the snapshot write, changes usually come in
+     * bursts
+     */
+    static final long WRITE_DELAY = 10;
+
+    /**
+     * The configuration files covered by the snapshot, other than the contents of the
+     * {@link #DIRECTORIES}
+     */
+    static final List<String> FILES = Arrays.asList("global.xml", "logging.xml");
+
+    /**
+     * The directories whose contents are covered by the snapshot
+     */
+    static final List<String> DIRECTORIES = Arrays.asList("workspaces", "styles", "layergroups");
+
+    GeoServerResourceLoader resourceLoader;
+
+    XStreamPersisterFactory xpf;
+
+    Catalog catalog;
+
+    GeoServer geoServer;
+
+    /**
+     * The configuration read along with the catalog, waiting to be applied
+     */
+    GeoServerInfo global;
+
+    LoggingInfo logging;
+
+    List<SettingsInfo> settings;
+
+    /**
+     * Whether the catalog was loaded from the snapshot
+     */
+    boolean loaded;
+
+    ScheduledExecutorService executor;
+
+    ScheduledFuture<?> pendingWrite;
+
+    public static boolean isEnabled() {
+        return Boolean.parseBoolean(GeoServerExtensions.getProperty(SNAPSHOT_PROPERTY));
+    }
+
+    public CatalogSnapshot(GeoServerResourceLoader resourceLoader, XStreamPersisterFactory xpf) {
+        this.resourceLoader = resourceLoader;
+        this.xpf = xpf;
+    }
+
+    File getFile() {
+        File base = resourceLoader.getBaseDirectory();
+        return base != null ? new File(base, SNAPSHOT_FILE) : null;
+    }
+
+    /**
+     * Sets the catalog snapshots are taken from
+     */
+    public void setCatalog(Catalog catalog) {
+        this.catalog = catalog;
+    }
+
+    /**
+     * Sets the configuration snapshots are taken from
+     */
+    public void setGeoServer(GeoServer geoServer) {
+        this.geoServer = geoServer;
+    }
+
+    /**
+     * Computes a digest of the names, sizes and modification times of the files covered by the
+     * snapshot
+     */
+    byte[] digest() throws IOException {
+        Path base = resourceLoader.getBaseDirectory().toPath();
+        // sorted by path, the digest must not depend on the directory listing order
+        TreeMap<String, String> entries = new TreeMap<>();
+        for (String name : FILES) {
+            Path file = base.resolve(name);
+            if (Files.isRegularFile(file)) {
+                BasicFileAttributes attributes = Files.readAttributes(file,
+                        BasicFileAttributes.class);
+                entries.put(name, attributes.size() + ":" + attributes.lastModifiedTime().toMillis());
+            }
+        }
+        for (String name : DIRECTORIES) {
+            Path directory = base.resolve(name);
+            if (!Files.isDirectory(directory)) {
+                continue;
+            }
+            Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attributes)
+                        throws IOException {
+                    entries.put(base.relativize(file).toString(),
+                            attributes.size() + ":" + attributes.lastModifiedTime().toMillis());
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            // snapshots taken by a different version of GeoServer are not trusted
+            String version = GeoServer.class.getPackage().getImplementationVersion();
+            digest.update((VERSION + ":" + version).getBytes(StandardCharsets.UTF_8));
+            entries.forEach((path, stats) -> {
+                digest.update(path.getBytes(StandardCharsets.UTF_8));
+                digest.update(stats.getBytes(StandardCharsets.UTF_8));
+            });
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Reads the catalog from the snapshot, returning <code>null</code> if there is no snapshot or
+     * it is stale. The configuration found in the snapshot is kept aside, to be applied by
+     * {@link #readConfiguration(GeoServer)}.
+     *
+     * @param checkStores Whether the enabled data stores should be connected to, and disabled if
+     *        the connection fails
+     */
+    public CatalogImpl readCatalog(boolean checkStores) {
+        File file = getFile();
+        if (file == null || !file.exists()) {
+            return null;
+        }
+        long start = System.nanoTime();
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                LOGGER.info("Unrecognized catalog snapshot format, ignoring it");
+                return null;
+            }
+            byte[] expected = new byte[in.readInt()];
+            in.readFully(expected);
+            if (!Arrays.equals(expected, digest())) {
+                LOGGER.info("The catalog snapshot is stale, loading the data directory contents");
+                return null;
+            }
+
+            CatalogImpl restored = new CatalogImpl();
+            restored.setResourceLoader(resourceLoader);
+            XStreamPersister xp = xpf.createXMLPersister();
+            xp.setCatalog(restored);
+            xp.setUnwrapNulls(false);
+
+            // the objects were validated when first added, go straight to the facade
+            CatalogFacade facade = restored.getFacade();
+            read(in, xp, restored, WorkspaceInfo.class, ws -> facade.add(ws));
+            read(in, xp, restored, NamespaceInfo.class, ns -> facade.add(ns));
+            read(in, xp, restored, StyleInfo.class, s -> facade.add(s));
+            read(in, xp, restored, StoreInfo.class, s -> facade.add(s));
+            read(in, xp, restored, ResourceInfo.class, r -> facade.add(r));
+            read(in, xp, restored, LayerInfo.class, l -> facade.add(l));
+            read(in, xp, restored, LayerGroupInfo.class, lg -> facade.add(lg));
+
+            String defaultWorkspace = readId(in);
+            if (defaultWorkspace != null) {
+                restored.setDefaultWorkspace(restored.getWorkspace(defaultWorkspace));
+            }
+            String defaultNamespace = readId(in);
+            if (defaultNamespace != null) {
+                restored.setDefaultNamespace(restored.getNamespace(defaultNamespace));
+            }
+            int defaultStores = in.readInt();
+            for (int i = 0; i < defaultStores; i++) {
+                WorkspaceInfo ws = restored.getWorkspace(in.readUTF());
+                DataStoreInfo ds = restored.getDataStore(in.readUTF());
+                if (ws != null && ds != null) {
+                    restored.setDefaultDataStore(ws, ds);
+                }
+            }
+            xp.setUnwrapNulls(true);
+            restored.resolve();
+
+            if (checkStores) {
+                for (DataStoreInfo ds : restored.getDataStores()) {
+                    if (ds.isEnabled()) {
+                        GeoServerLoader.checkDataStore(ds);
+                        if (!ds.isEnabled()) {
+                            restored.save(ds);
+                        }
+                    }
+                }
+            }
+
+            GeoServerInfo global = in.readBoolean() ? read(in, xp, GeoServerInfo.class) : null;
+            LoggingInfo logging = in.readBoolean() ? read(in, xp, LoggingInfo.class) : null;
+            List<SettingsInfo> settings = new ArrayList<>();
+            read(in, xp, SettingsInfo.class, s -> settings.add(s));
+            this.global = global;
+            this.logging = logging;
+            this.settings = settings;
+            this.loaded = true;
+
+            if (LOGGER.isLoggable(Level.INFO)) {
+                LOGGER.info("Catalog restored from snapshot in "
+                        + CatalogLoadingStatistics.seconds(System.nanoTime() - start) + ": "
+                        + restored.getStores(StoreInfo.class).size() + " stores, "
+                        + restored.getLayers().size() + " layers");
+            }
+            return restored;
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING,
+                    "Failed to read the catalog snapshot, loading the data directory contents",
+                    e);
+            return null;
+        }
+    }
+
+    /**
+     * Returns true if the catalog was loaded from the snapshot, meaning the snapshot is up to date
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Applies the configuration read along with the catalog, returns false if there is none
+     */
+    public boolean readConfiguration(GeoServer geoServer) {
+        if (settings == null) {
+            return false;
+        }
+        if (global != null) {
+            geoServer.setGlobal(global);
+        }
+        if (logging != null) {
+            geoServer.setLogging(logging);
+        }
+        for (SettingsInfo s : settings) {
+            geoServer.add(s);
+        }
+        global = null;
+        logging = null;
+        settings = null;
+        return true;
+    }
+
+    <T extends CatalogInfo> void read(DataInputStream in, XStreamPersister xp,
+            CatalogImpl catalog, Class<T> clazz, Consumer<T> add) throws IOException {
+        read(in, xp, clazz, info -> {
+            catalog.resolve(info);
+            add.accept(info);
+        });
+    }
+
+    <T> void read(DataInputStream in, XStreamPersister xp, Class<T> clazz, Consumer<T> add)
+            throws IOException {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            add.accept(read(in, xp, clazz));
+        }
+    }
+
+    <T> T read(DataInputStream in, XStreamPersister xp, Class<T> clazz) throws IOException {
+        byte[] contents = new byte[in.readInt()];
+        in.readFully(contents);
+        BinaryStreamReader reader = new BinaryStreamReader(new ByteArrayInputStream(contents));
+        return clazz.cast(xp.getXStream().unmarshal(reader));
+    }
+
+    String readId(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    /**
+     * Writes a snapshot of the current catalog and configuration
+     */
+    public synchronized void write() throws IOException {
+        File file = getFile();
+        if (file == null || catalog == null || geoServer == null) {
+            return;
+        }
+        // stores disabled on startup due to connection errors are not disabled in the data
+        // directory, a snapshot would disable them for good
+        for (StoreInfo store : catalog.getStores(StoreInfo.class)) {
+            if (store.getError() != null) {
+                LOGGER.fine("Store " + store.getName() + " is in error, skipping the snapshot");
+                delete();
+                return;
+            }
+        }
+
+        // compute the digest before taking the snapshot, if the data directory is modified while
+        // the snapshot is being written, the snapshot will just be stale
+        byte[] digest = digest();
+        long start = System.nanoTime();
+        File temp = new File(file.getParentFile(), SNAPSHOT_FILE + ".tmp");
+        XStreamPersister xp = xpf.createXMLPersister();
+        xp.setCatalog(catalog);
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(digest.length);
+            out.write(digest);
+
+            write(out, xp, catalog.getWorkspaces());
+            write(out, xp, catalog.getNamespaces());
+            write(out, xp, catalog.getStyles());
+            write(out, xp, catalog.getStores(StoreInfo.class));
+            write(out, xp, catalog.getResources(ResourceInfo.class));
+            write(out, xp, catalog.getLayers());
+            write(out, xp, catalog.getLayerGroups());
+
+            writeId(out, catalog.getDefaultWorkspace());
+            writeId(out, catalog.getDefaultNamespace());
+            List<String[]> defaultStores = new ArrayList<>();
+            for (WorkspaceInfo ws : catalog.getWorkspaces()) {
+                DataStoreInfo ds = catalog.getDefaultDataStore(ws);
+                if (ds != null) {
+                    defaultStores.add(new String[] { ws.getId(), ds.getId() });
+                }
+            }
+            out.writeInt(defaultStores.size());
+            for (String[] ids : defaultStores) {
+                out.writeUTF(ids[0]);
+                out.writeUTF(ids[1]);
+            }
+
+            GeoServerInfo global = geoServer.getGlobal();
+            out.writeBoolean(global != null);
+            if (global != null) {
+                write(out, xp, global);
+            }
+            LoggingInfo logging = geoServer.getLogging();
+            out.writeBoolean(logging != null);
+            if (logging != null) {
+                write(out, xp, logging);
+            }
+            List<SettingsInfo> settings = new ArrayList<>();
+            for (WorkspaceInfo ws : catalog.getWorkspaces()) {
+                SettingsInfo s = geoServer.getSettings(ws);
+                if (s != null) {
+                    settings.add(s);
+                }
+            }
+            write(out, xp, settings);
+        }
+
+        if (!Arrays.equals(digest, digest())) {
+            // the configuration changed in the meantime, another write is scheduled already
+            Files.deleteIfExists(temp.toPath());
+            return;
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("Catalog snapshot written in "
+                    + CatalogLoadingStatistics.seconds(System.nanoTime() - start));
+        }
+    }
+
+    void write(DataOutputStream out, XStreamPersister xp, Collection<?> objects)
+            throws IOException {
+        out.writeInt(objects.size());
+        for (Object object : objects) {
+            write(out, xp, object);
+        }
+    }
+
+    void write(DataOutputStream out, XStreamPersister xp, Object object) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BinaryStreamWriter writer = new BinaryStreamWriter(bytes);
+        xp.getXStream().marshal(XStreamPersister.unwrapProxies(object), writer);
+        writer.flush();
+        out.writeInt(bytes.size());
+        bytes.writeTo(out);
+    }
+
+    void writeId(DataOutputStream out, CatalogInfo info) throws IOException {
+        out.writeBoolean(info != null);
+        if (info != null) {
+            out.writeUTF(info.getId());
+        }
+    }
+
+    /**
+     * Schedules a snapshot write, replacing the one pending, if any
+     */
+    public synchronized void scheduleWrite() {
+        if (pendingWrite != null) {
+            pendingWrite.cancel(false);
+        }
+        if (executor == null) {
+            executor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "CatalogSnapshotWriter");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        pendingWrite = executor.schedule(() -> {
+            try {
+                write();
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING, "Failed to write the catalog snapshot", e);
+            }
+        }, WRITE_DELAY, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Removes the snapshot, and cancels any pending write
+     */
+    public synchronized void invalidate() {
+        loaded = false;
+        if (pendingWrite != null) {
+            pendingWrite.cancel(false);
+            pendingWrite = null;
+        }
+        delete();
+    }
+
+    void delete() {
+        File file = getFile();
+        if (file != null && file.exists() && !file.delete()) {
+            LOGGER.warning("Could not delete the catalog snapshot " + file);
+        }
+    }
+
+    /**
+     * Writes the pending snapshot, if any, and stops the background writer
+     */
+    public synchronized void dispose() {
+        if (pendingWrite != null && pendingWrite.cancel(false)) {
+            try {
+                write();
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING, "Failed to write the catalog snapshot", e);
+            }
+        }
+        pendingWrite = null;
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    @Override
+    public void handleAddEvent(CatalogAddEvent event) {
+        scheduleWrite();
+    }
+
+    @Override
+    public void handleRemoveEvent(CatalogRemoveEvent event) {
+        scheduleWrite();
+    }
+
+    @Override
+    public void handleModifyEvent(CatalogModifyEvent event) {
+        // wait for the post modify event
+    }
+
+    @Override
+    public void handlePostModifyEvent(CatalogPostModifyEvent event) {
+        scheduleWrite();
+    }
+
+    @Override
+    public void reloaded() {
+        scheduleWrite();
+    }
+
+    @Override
+    public void handlePostGlobalChange(GeoServerInfo global) {
+        scheduleWrite();
+    }
+
+    @Override
+    public void handlePostLoggingChange(LoggingInfo logging) {
+        scheduleWrite();
+    }
+
+    @Override
+    public void handleSettingsAdded(SettingsInfo settings) {
+        scheduleWrite();
+    }
+
+    @Override
+    public void handleSettingsPostModified(SettingsInfo settings) {
+        scheduleWrite();
+    }
+
+    @Override
+    public void handleSettingsRemoved(SettingsInfo settings) {
+        scheduleWrite();
+    }
+}
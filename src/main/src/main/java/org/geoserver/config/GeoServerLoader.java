@@ -12,26 +12,16 @@ import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
 import org.geoserver.catalog.Catalog;
-import org.geoserver.catalog.CoverageInfo;
-import org.geoserver.catalog.CoverageStoreInfo;
 import org.geoserver.catalog.DataStoreInfo;
-import org.geoserver.catalog.FeatureTypeInfo;
 import org.geoserver.catalog.LayerGroupInfo;
-import org.geoserver.catalog.LayerInfo;
 import org.geoserver.catalog.NamespaceInfo;
-import org.geoserver.catalog.ResourceInfo;
 import org.geoserver.catalog.ResourcePool;
 import org.geoserver.catalog.StyleInfo;
-import org.geoserver.catalog.WMSLayerInfo;
-import org.geoserver.catalog.WMSStoreInfo;
-import org.geoserver.catalog.WMTSLayerInfo;
-import org.geoserver.catalog.WMTSStoreInfo;
 import org.geoserver.catalog.WorkspaceInfo;
 import org.geoserver.catalog.Wrapper;
 import org.geoserver.catalog.event.CatalogListener;
@@ -40,6 +30,7 @@ import org.geoserver.catalog.util.LegacyCatalogImporter;
 import org.geoserver.catalog.util.LegacyCatalogReader;
 import org.geoserver.catalog.util.LegacyFeatureTypeInfoReader;
 import org.geoserver.config.AsynchResourceIterator.ResourceMapper;
+import org.geoserver.config.CatalogLoadingStatistics.Phase;
 import org.geoserver.config.util.LegacyConfigurationImporter;
 import org.geoserver.config.util.XStreamPersister;
 import org.geoserver.config.util.XStreamPersisterFactory;
@@ -169,58 +160,37 @@ public abstract class GeoServerLoader {
     static final ResourceLayerMapper WMS_LAYER_MAPPER = new ResourceLayerMapper("wmslayer.xml", "wms layer");
     /** WMTS Layer IO resource mapper */
     static final ResourceLayerMapper WMTS_LAYER_MAPPER = new ResourceLayerMapper("wmtslayer.xml", "wmts layer");
-    /**
-     * Generic layer catalog loader for all types of IO resources
-     *
-     * @author Andrea Aime - GeoSolutions
-     */
-    static final class LayerLoader<T extends ResourceInfo> implements Consumer<LayerContents> {
-
-        Class<T> clazz;
-        XStreamPersister xp;
-        Catalog catalog;
-        
-        public LayerLoader(Class<T> clazz, XStreamPersister xp, Catalog catalog) {
-            this.clazz = clazz;
-            this.xp = xp;
-            this.catalog = catalog;
-        }
-
-        @Override
-        public void accept(LayerContents lc) {
-            T ft = null;
-            try {
-                ft = depersist(xp, lc.contents,clazz);
-                catalog.add(ft);
-            } catch( Exception e ) {
-                LOGGER.log( Level.WARNING, "Failed to load resource", e);
-                return;
-            }
-            
-            if(LOGGER.isLoggable(Level.INFO)) {
-                String type = ft instanceof CoverageInfo ? "coverage" : 
-                    ft instanceof FeatureTypeInfo ? "feature type" : "resource";
-                LOGGER.info( "Loaded " + type + " '" + lc.resource.name() +
-                        "', " + (ft.isEnabled() ? "enabled" : "disabled"));
-            }
-            
-            try {
-                LayerInfo l = depersist(xp, lc.layerContents, LayerInfo.class );
-                catalog.add( l );
-                
-                LOGGER.info( "Loaded layer '" + l.getName() + "'" );
-            } catch( Exception e ) {
-                LOGGER.log( Level.WARNING, "Failed to load layer " + lc.resource.name(), e);
-            }
-            
-        }
-    }
+    /** Store IO resource mapper, the store type is identified by the file name */
+    static final ResourceMapper<StoreContents> STORE_MAPPER = sd -> {
+        Resource f = sd.get("datastore.xml");
+        if(Resources.exists(f)) {
+            return new StoreContents(f, f.getContents());
+        }
+        f = sd.get("coveragestore.xml");
+        if(Resources.exists(f)) {
+            return new StoreContents(f, f.getContents());
+        }
+        f = sd.get("wmsstore.xml");
+        if(Resources.exists(f)) {
+            return new StoreContents(f, f.getContents());
+        }
+        f = sd.get("wmtsstore.xml");
+        if(Resources.exists(f)) {
+            return new StoreContents(f, f.getContents());
+        }
+        if(!isConfigDirectory(sd)) {
+            LOGGER.warning( "Ignoring store directory '" + sd.name() +  "'");
+        }
+        // nothing found
+        return null;
+    };
     
     static final ExtensionFilter XML_FILTER = new Resources.ExtensionFilter("XML");
     
     protected GeoServerResourceLoader resourceLoader;
     GeoServer geoserver;
     XStreamPersisterFactory xpf = new XStreamPersisterFactory();
+    CatalogSnapshot snapshot;
     
     //JD: this is a hack for the moment, it is used only to maintain tests since the test setup relies
     // on the old data directory structure, once the tests have been ported to the new structure
@@ -258,6 +228,10 @@ public abstract class GeoServerLoader {
             
             //load
             try {
+                if (snapshot == null && CatalogSnapshot.isEnabled()
+                        && resourceLoader.getBaseDirectory() != null) {
+                    snapshot = new CatalogSnapshot(resourceLoader, xpf);
+                }
                 Catalog catalog = (Catalog) bean;
                 XStreamPersister xp = xpf.createXMLPersister();
                 xp.setCatalog( catalog );
@@ -280,6 +254,16 @@ public abstract class GeoServerLoader {
                 
                 //load initializers
                 loadInitializers(geoserver);
+                
+                if (snapshot != null) {
+                    snapshot.setGeoServer(geoserver);
+                    if (!geoserver.getListeners().contains(snapshot)) {
+                        geoserver.addListener(snapshot);
+                    }
+                    if (!snapshot.isLoaded()) {
+                        snapshot.scheduleWrite();
+                    }
+                }
             } 
             catch (Exception e) {
                 throw new RuntimeException( e );
@@ -361,6 +345,10 @@ public abstract class GeoServerLoader {
     }
     
     public void reload() throws Exception {
+        // the data directory was changed behind our back, the snapshot is no good anymore
+        if (snapshot != null) {
+            snapshot.invalidate();
+        }
         destroy();
         
         //reload catalog, make sure we reload the underlying catalog, not any wrappers
@@ -376,6 +364,10 @@ public abstract class GeoServerLoader {
         loadGeoServer( geoserver, xp);
         
         reloadInitializers(geoserver);
+        
+        if (snapshot != null) {
+            snapshot.scheduleWrite();
+        }
     }
 
     protected void readCatalog(Catalog catalog, XStreamPersister xp) throws Exception {
@@ -389,8 +381,14 @@ public abstract class GeoServerLoader {
         // an old data directory
         Resource f = resourceLoader.get( "catalog.xml" );
         if ( !Resources.exists(f) ) {
-            //assume 2.x style data directory
-            CatalogImpl catalog2 = (CatalogImpl) readCatalog( xp );
+            //assume 2.x style data directory, use the snapshot if up to date
+            CatalogImpl catalog2 = null;
+            if (snapshot != null) {
+                catalog2 = snapshot.readCatalog(checkStoresOnStartup(xp));
+            }
+            if (catalog2 == null) {
+                catalog2 = (CatalogImpl) readCatalog( xp );
+            }
             // make to remove the old resource pool catalog listener
             ((CatalogImpl)catalog).sync( catalog2 );
         } else {
@@ -404,6 +402,13 @@ public abstract class GeoServerLoader {
         for (CatalogListener listener : listeners) {
             catalog.addListener(listener);
         }
+        
+        if (snapshot != null) {
+            snapshot.setCatalog(catalog);
+            if (!listeners.contains(snapshot)) {
+                catalog.addListener(snapshot);
+            }
+        }
     }
     
     boolean checkStoresOnStartup(XStreamPersister xp) {
@@ -425,7 +430,8 @@ public abstract class GeoServerLoader {
      * Reads the catalog from disk.
      */
     Catalog readCatalog( XStreamPersister xp ) throws Exception {
-        CatalogImpl catalog = new CatalogImpl();
+        CatalogLoadingStatistics statistics = new CatalogLoadingStatistics();
+        LoadingCatalog catalog = new LoadingCatalog(statistics);
         catalog.setResourceLoader(resourceLoader);
         xp.setCatalog( catalog );
         xp.setUnwrapNulls(false);
@@ -461,14 +467,15 @@ public abstract class GeoServerLoader {
                     .collect(Collectors.toList());
             
             try (AsynchResourceIterator<WorkspaceContents> it = new AsynchResourceIterator<>(
-                    workspaces, Resources.DirectoryFilter.INSTANCE, new WorkspaceMapper())) {
+                    workspaces, Resources.DirectoryFilter.INSTANCE,
+                    statistics.io(new WorkspaceMapper()))) {
                 while (it.hasNext()) {
                     WorkspaceContents wc = it.next();
                     WorkspaceInfo ws;
                     final Resource workspaceResource = wc.resource;
                     try {
-                        ws = depersist(xp, wc.contents, WorkspaceInfo.class);
-                        catalog.add(ws);
+                        ws = statistics.parse(xp, wc.contents, WorkspaceInfo.class);
+                        catalog.timedAdd(() -> catalog.add(ws));
                         if (LOGGER.isLoggable(Level.INFO)) {
                             LOGGER.info("Loaded workspace '" + ws.getName() + "'");
                         }
@@ -481,8 +488,10 @@ public abstract class GeoServerLoader {
                     // load the namespace
                     NamespaceInfo ns = null;
                     try {
-                        ns = depersist(xp, wc.nsContents, NamespaceInfo.class);
-                        catalog.add(ns);
+                        NamespaceInfo namespace = statistics.parse(xp, wc.nsContents,
+                                NamespaceInfo.class);
+                        catalog.timedAdd(() -> catalog.add(namespace));
+                        ns = namespace;
                     } catch (Exception e) {
                         LOGGER.log(Level.WARNING,
                                 "Failed to load namespace for '" + workspaceResource.name() + "'", e);
@@ -519,56 +528,11 @@ public abstract class GeoServerLoader {
                 }
             }
 
-            // maps each store into a StoreContents
-            ResourceMapper<StoreContents> storeMapper = sd -> {
-                Resource f = sd.get("datastore.xml");
-                if(Resources.exists(f)) {
-                    return new StoreContents(f, f.getContents());
-                }
-                f = sd.get("coveragestore.xml");
-                if(Resources.exists(f)) {
-                    return new StoreContents(f, f.getContents());
-                }
-                f = sd.get("wmsstore.xml");
-                if(Resources.exists(f)) {
-                    return new StoreContents(f, f.getContents());
-                }
-                f = sd.get("wmtsstore.xml");
-                if(Resources.exists(f)) {
-                    return new StoreContents(f, f.getContents());
-                }
-                if(!isConfigDirectory(sd)) {
-                    LOGGER.warning( "Ignoring store directory '" + sd.name() +  "'");
-                }
-                // nothing found
-                return null;
-                
-            };
-            
-            for (Resource wsd : workspaceList) {
-                // load the stores for this workspace
-                try (AsynchResourceIterator<StoreContents> it = new AsynchResourceIterator<>(wsd,
-                        Resources.DirectoryFilter.INSTANCE, storeMapper)) {
-                    while (it.hasNext()) {
-                        StoreContents storeContents = it.next();
-                        final String resourceName = storeContents.resource.name();
-                        if ("datastore.xml".equals(resourceName)) {
-                            loadDataStore(storeContents, catalog, xp, checkStores);
-                        } else if ("coveragestore.xml".equals(resourceName)) {
-                            loadCoverageStore(storeContents, catalog, xp);
-                        } else if ("wmsstore.xml".equals(resourceName)) {
-                            loadWmsStore(storeContents, catalog, xp);
-                        } else if ("wmtsstore.xml".equals(resourceName)) {
-                            loadWmtsStore(storeContents, catalog, xp);
-                        }else if (!isConfigDirectory(storeContents.resource)) {
-                            LOGGER.warning("Ignoring store directory '"
-                                    + storeContents.resource.name() + "'");
-                            continue;
-                        }
-                    }
-                }
+            // stores, resources and layers of all workspaces are read and parsed in parallel
+            new CatalogLoadingPipeline(catalog, xpf, checkStores).load(workspaceList);
 
-                // load the layer groups for this workspace
+            // load the layer groups once all the layers are in
+            for (Resource wsd : workspaceList) {
                 Resource layergroups = wsd.get("layergroups");
                 if (layergroups != null) {
                     loadLayerGroups(layergroups, catalog, xp);
@@ -585,130 +549,33 @@ public abstract class GeoServerLoader {
            loadLayerGroups(layergroups, catalog, xp);
         }
         xp.setUnwrapNulls(true);
+        long start = System.nanoTime();
         catalog.resolve();
+        statistics.record(Phase.RESOLVE, start);
         // re-enable extended validation
         if(!checkStores) {
             catalog.setExtendedValidation(true);
         }
-        return catalog;
-    }
-    
-    private void loadWmsStore(StoreContents storeContents, CatalogImpl catalog,
-            XStreamPersister xp) {
-        final Resource storeResource = storeContents.resource;
-        WMSStoreInfo wms = null;
-        try {
-            wms = depersist( xp, storeContents.contents, WMSStoreInfo.class );
-            catalog.add( wms );
         
-            LOGGER.info( "Loaded wmsstore '" + wms.getName() +
-                    "', " + (wms.isEnabled() ? "enabled" : "disabled"));
-        } catch( Exception e ) {
-            LOGGER.log( Level.WARNING, "Failed to load wms store '" + storeResource.name() +"'", e);
-            return;
-        }
-        
-        // load wms layers
-        LayerLoader<WMSLayerInfo> coverageLoader = new LayerLoader<>(WMSLayerInfo.class, xp, catalog);
-        try(AsynchResourceIterator<LayerContents> it = new AsynchResourceIterator<>(storeResource.parent(), Resources.DirectoryFilter.INSTANCE, WMS_LAYER_MAPPER)) {
-            while(it.hasNext()) {
-                LayerContents lc = it.next();
-                coverageLoader.accept(lc);
-            }
-        }
-    }
-    private void loadWmtsStore(StoreContents storeContents, CatalogImpl catalog,
-            XStreamPersister xp) {
-        final Resource storeResource = storeContents.resource;
-        WMTSStoreInfo wmts = null;
-        try {
-            wmts = depersist( xp, storeContents.contents, WMTSStoreInfo.class );
-            catalog.add( wmts );
-        
-            LOGGER.info( "Loaded wmtsstore '" + wmts.getName() +"'");
-        } catch( Exception e ) {
-            LOGGER.log( Level.WARNING, "Failed to load wmts store '" + storeResource.name() +"'", e);
-            return;
-        }
-        
-        // load wmts layers
-        LayerLoader<WMTSLayerInfo> coverageLoader = new LayerLoader<>(WMTSLayerInfo.class, xp, catalog);
-        try(AsynchResourceIterator<LayerContents> it = new AsynchResourceIterator<>(storeResource.parent(), Resources.DirectoryFilter.INSTANCE, WMTS_LAYER_MAPPER)) {
-            while(it.hasNext()) {
-                LayerContents lc = it.next();
-                coverageLoader.accept(lc);
-            }
+        if (LOGGER.isLoggable(Level.INFO)) {
+            LOGGER.info(statistics.report());
         }
+        return catalog;
     }
-
-    private void loadCoverageStore(StoreContents storeContents, CatalogImpl catalog,
-            XStreamPersister xp) {
-        CoverageStoreInfo cs = null;
-        final Resource storeResource = storeContents.resource;
+    
+    /**
+     * Connects to the data store to determine if it should be disabled
+     */
+    static void checkDataStore(DataStoreInfo ds) {
         try {
-            cs = depersist( xp, storeContents.contents, CoverageStoreInfo.class );
-            catalog.add( cs );
-
-            if(LOGGER.isLoggable(Level.INFO)) {
-                LOGGER.info( "Loaded coverage store '" + cs.getName() +
-                        "', " + (cs.isEnabled() ? "enabled" : "disabled"));
-            }
-        } catch( Exception e ) {
-            LOGGER.log( Level.WARNING, "Failed to load coverage store '" + storeResource.name() +"'", e);
-            return;
-        }
-        
-        // load coverages
-        LayerLoader<CoverageInfo> coverageLoader = new LayerLoader<>(CoverageInfo.class, xp,
-                catalog);
-        try (AsynchResourceIterator<LayerContents> it = new AsynchResourceIterator<>(
-                storeResource.parent(), Resources.DirectoryFilter.INSTANCE,
-                COVERAGE_LAYER_MAPPER)) {
-            while (it.hasNext()) {
-                LayerContents lc = it.next();
-                coverageLoader.accept(lc);
-            }
-        }
-    }
-
-    private void loadDataStore(StoreContents storeContents, CatalogImpl catalog, XStreamPersister xp, boolean checkStores) {
-        final Resource storeResource = storeContents.resource;
-        DataStoreInfo ds;
-        try {    
-            ds = depersist( xp, storeContents.contents, DataStoreInfo.class );
-            catalog.add( ds );
-            
-            if(LOGGER.isLoggable(Level.INFO)) {
-                LOGGER.info( "Loaded data store '" + ds.getName() 
-                    + "', " + (ds.isEnabled() ? "enabled" : "disabled"));
-            }
+            ds.getDataStore(null);
+        } catch( Throwable t ) {
+            LOGGER.warning( "Error connecting to '" + ds.getName() + "'. Disabling." );
+            LOGGER.log( Level.INFO, "", t );
             
-            if (checkStores && ds.isEnabled()) {
-                //connect to the datastore to determine if we should disable it
-                try {
-                    ds.getDataStore(null);
-                } catch( Throwable t ) {
-                    LOGGER.warning( "Error connecting to '" + ds.getName() + "'. Disabling." );
-                    LOGGER.log( Level.INFO, "", t );
-                    
-                    ds.setError(t);
-                    ds.setEnabled(false);
-                }
-            }
-        } catch( Exception e ) {
-            LOGGER.log( Level.WARNING, "Failed to load data store '" + storeResource.parent().name() + "'", e);
-            return;
-        }
-        
-        // load feature types
-        LayerLoader<FeatureTypeInfo> featureLoader = new LayerLoader<>(FeatureTypeInfo.class, xp, catalog);
-        try(AsynchResourceIterator<LayerContents> it = new AsynchResourceIterator<>(storeResource.parent(), Resources.DirectoryFilter.INSTANCE, FEATURE_LAYER_MAPPER)) {
-            while(it.hasNext()) {
-                LayerContents lc = it.next();
-                featureLoader.accept(lc);
-            }
+            ds.setError(t);
+            ds.setEnabled(false);
         }
-        
     }
 
     /**
@@ -718,7 +585,7 @@ public abstract class GeoServerLoader {
      * @param f
      *
      */
-    private boolean isConfigDirectory(Resource dir) {
+    static boolean isConfigDirectory(Resource dir) {
         String name = dir.name();
         boolean result = "styles".equals(name) || "layergroups".equals(name);
         return result;
@@ -799,40 +666,42 @@ public abstract class GeoServerLoader {
         Resource f = resourceLoader.get( "services.xml" );
         if (!Resources.exists(f)) {
             //assume 2.x style
-            f = resourceLoader.get( "global.xml");
-            if ( Resources.exists(f) ) {
-                try {
-                    GeoServerInfo global = depersist(xp, f, GeoServerInfo.class);
-                    geoServer.setGlobal( global );
-                } catch (Exception e) {
-                    LOGGER.log(Level.WARNING, "Failed to load global configuration file '" + f.name() + "'" , e );
+            Resource workspaces = resourceLoader.get("workspaces");
+            if (snapshot == null || !snapshot.readConfiguration(geoServer)) {
+                f = resourceLoader.get( "global.xml");
+                if ( Resources.exists(f) ) {
+                    try {
+                        GeoServerInfo global = depersist(xp, f, GeoServerInfo.class);
+                        geoServer.setGlobal( global );
+                    } catch (Exception e) {
+                        LOGGER.log(Level.WARNING, "Failed to load global configuration file '" + f.name() + "'" , e );
+                    }
                 }
-            }
             
-            //load logging
-            f = resourceLoader.get( "logging.xml" );
-            if ( Resources.exists(f) ) {
-                try {
-                    LoggingInfo logging = depersist(xp, f, LoggingInfo.class );
-                    geoServer.setLogging( logging );
-                } catch (Exception e) {
-                    LOGGER.log(Level.WARNING, "Failed to load logging configuration file '" + f.name() + "'" , e );
+                //load logging
+                f = resourceLoader.get( "logging.xml" );
+                if ( Resources.exists(f) ) {
+                    try {
+                        LoggingInfo logging = depersist(xp, f, LoggingInfo.class );
+                        geoServer.setLogging( logging );
+                    } catch (Exception e) {
+                        LOGGER.log(Level.WARNING, "Failed to load logging configuration file '" + f.name() + "'" , e );
+                    }
                 }
-            }
 
-            // load workspace specific settings
-            Resource workspaces = resourceLoader.get("workspaces");
-            if (Resources.exists(workspaces)) {
-                for (Resource dir : workspaces.list()) {
-                    if (dir.getType() != Type.DIRECTORY) continue;
+                // load workspace specific settings
+                if (Resources.exists(workspaces)) {
+                    for (Resource dir : workspaces.list()) {
+                        if (dir.getType() != Type.DIRECTORY) continue;
     
-                    f = dir.get("settings.xml");
-                    if (Resources.exists(f)) {
-                        try {
-                            SettingsInfo settings = depersist(xp, f, SettingsInfo.class );
-                            geoServer.add(settings);
-                        } catch (Exception e) {
-                            LOGGER.log(Level.WARNING, "Failed to load configuration file '" + f.name() + "' for workspace " + dir.name() , e );
+                        f = dir.get("settings.xml");
+                        if (Resources.exists(f)) {
+                            try {
+                                SettingsInfo settings = depersist(xp, f, SettingsInfo.class );
+                                geoServer.add(settings);
+                            } catch (Exception e) {
+                                LOGGER.log(Level.WARNING, "Failed to load configuration file '" + f.name() + "' for workspace " + dir.name() , e );
+                            }
                         }
                     }
                 }
@@ -868,13 +737,15 @@ public abstract class GeoServerLoader {
         }
     }
 
-    void loadStyles(Resource styles, Catalog catalog, XStreamPersister xp) throws IOException {
+    void loadStyles(Resource styles, LoadingCatalog catalog, XStreamPersister xp) throws IOException {
+        CatalogLoadingStatistics statistics = catalog.getStatistics();
         Filter<Resource> styleFilter = r -> XML_FILTER.accept(r) && !Resources.exists(styles.get(r.name() + ".xml"));
-        try (AsynchResourceIterator<byte[]> it = new AsynchResourceIterator<>(styles, styleFilter, r -> r.getContents())) {
+        try (AsynchResourceIterator<byte[]> it = new AsynchResourceIterator<>(styles, styleFilter,
+                statistics.io(r -> r.getContents()))) {
             while (it.hasNext()) {
                 try {
-                    StyleInfo s = depersist(xp, it.next(), StyleInfo.class);
-                    catalog.add(s);
+                    StyleInfo s = statistics.parse(xp, it.next(), StyleInfo.class);
+                    catalog.timedAdd(() -> catalog.add(s));
 
                     if(LOGGER.isLoggable(Level.INFO)) {
                         LOGGER.info("Loaded style '" + s.getName() + "'");
@@ -887,18 +758,19 @@ public abstract class GeoServerLoader {
     }
     
    
-    void loadLayerGroups(Resource layerGroups, Catalog catalog, XStreamPersister xp) {
+    void loadLayerGroups(Resource layerGroups, LoadingCatalog catalog, XStreamPersister xp) {
+        CatalogLoadingStatistics statistics = catalog.getStatistics();
         try (AsynchResourceIterator<byte[]> it = new AsynchResourceIterator<>(layerGroups,
-                XML_FILTER, r -> r.getContents())) {
+                XML_FILTER, statistics.io(r -> r.getContents()))) {
             while (it.hasNext()) {
                 try {
-                    LayerGroupInfo lg = depersist(xp, it.next(), LayerGroupInfo.class);
+                    LayerGroupInfo lg = statistics.parse(xp, it.next(), LayerGroupInfo.class);
                     if (lg.getLayers() == null || lg.getLayers().size() == 0) {
                         LOGGER.warning(
                                 "Skipping empty layer group '" + lg.getName() + "', it is invalid");
                         continue;
                     }
-                    catalog.add(lg);
+                    catalog.timedAdd(() -> catalog.add(lg));
 
                     LOGGER.info("Loaded layer group '" + lg.getName() + "'");
                 } catch (Exception e) {
@@ -963,6 +835,10 @@ public abstract class GeoServerLoader {
     }
     
     public void destroy() throws Exception {
+        // write down the last configuration changes, if not done yet
+        if (snapshot != null) {
+            snapshot.dispose();
+        }
         //dispose
         geoserver.dispose();
     }
@@ -0,0 +1,137 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.config;
+
+import org.geoserver.catalog.CatalogInfo;
+import org.geoserver.catalog.LayerGroupInfo;
+import org.geoserver.catalog.LayerInfo;
+import org.geoserver.catalog.NamespaceInfo;
+import org.geoserver.catalog.ResourceInfo;
+import org.geoserver.catalog.StoreInfo;
+import org.geoserver.catalog.StyleInfo;
+import org.geoserver.catalog.ValidationResult;
+import org.geoserver.catalog.WorkspaceInfo;
+import org.geoserver.catalog.impl.CatalogImpl;
+import org.geoserver.config.CatalogLoadingStatistics.Phase;
+
+/**
+ * The catalog the {@link GeoServerLoader} reads the data directory into, before synching its
+ * contents into the actual catalog.
+ * <p>
+ * Nobody is listening to this catalog while it's being populated, so add events are not fired,
+ * and the time spent validating and adding objects is tracked in the loading statistics.
+ * Objects are meant to be added from a single thread.
+ * </p>
+ */
+class LoadingCatalog extends CatalogImpl {
+
+    final CatalogLoadingStatistics statistics;
+
+    /** Validation time accumulated so far, used to tell it apart from the add time */
+    long validationTime;
+
+    LoadingCatalog(CatalogLoadingStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    CatalogLoadingStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Runs a catalog add, recording the validation and add times
+     */
+    void timedAdd(Runnable add) {
+        long validating = validationTime;
+        long start = System.nanoTime();
+        try {
+            add.run();
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            statistics.add(Phase.ADD, elapsed - (validationTime - validating));
+        }
+    }
+
+    @Override
+    protected void added(CatalogInfo object) {
+        statistics.added(object);
+    }
+
+    void validationCompleted(long start) {
+        long elapsed = System.nanoTime() - start;
+        validationTime += elapsed;
+        statistics.add(Phase.VALIDATE, elapsed);
+    }
+
+    @Override
+    public ValidationResult validate(WorkspaceInfo workspace, boolean isNew) {
+        long start = System.nanoTime();
+        try {
+            return super.validate(workspace, isNew);
+        } finally {
+            validationCompleted(start);
+        }
+    }
+
+    @Override
+    public ValidationResult validate(NamespaceInfo namespace, boolean isNew) {
+        long start = System.nanoTime();
+        try {
+            return super.validate(namespace, isNew);
+        } finally {
+            validationCompleted(start);
+        }
+    }
+
+    @Override
+    public ValidationResult validate(StoreInfo store, boolean isNew) {
+        long start = System.nanoTime();
+        try {
+            return super.validate(store, isNew);
+        } finally {
+            validationCompleted(start);
+        }
+    }
+
+    @Override
+    public ValidationResult validate(ResourceInfo resource, boolean isNew) {
+        long start = System.nanoTime();
+        try {
+            return super.validate(resource, isNew);
+        } finally {
+            validationCompleted(start);
+        }
+    }
+
+    @Override
+    public ValidationResult validate(LayerInfo layer, boolean isNew) {
+        long start = System.nanoTime();
+        try {
+            return super.validate(layer, isNew);
+        } finally {
+            validationCompleted(start);
+        }
+    }
+
+    @Override
+    public ValidationResult validate(LayerGroupInfo layerGroup, boolean isNew) {
+        long start = System.nanoTime();
+        try {
+            return super.validate(layerGroup, isNew);
+        } finally {
+            validationCompleted(start);
+        }
+    }
+
+    @Override
+    public ValidationResult validate(StyleInfo style, boolean isNew) {
+        long start = System.nanoTime();
+        try {
+            return super.validate(style, isNew);
+        } finally {
+            validationCompleted(start);
+        }
+    }
+}
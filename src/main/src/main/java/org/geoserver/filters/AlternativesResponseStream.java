@@ -68,7 +68,8 @@ public class AlternativesResponseStream extends ServletOutputStream {
 //            logger.warning("Mime type was not set before first write!");
 //        }
 
-        if (type != null && isCompressible(type)){
+        // the output might have been compressed already (e.g., cached gzipped contents)
+        if (type != null && isCompressible(type) && !myResponse.containsHeader("Content-Encoding")){
             logger.log(Level.FINE, "Compressing output for mimetype: {0}", type);
             myResponse.addHeader("Content-Encoding", "gzip");
             myStream = new GZIPResponseStream(myResponse);
@@ -0,0 +1,27 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.ows;
+
+import org.geoserver.catalog.CoverageReaderPool;
+
+/**
+ * Opens a coverage reader lease scope for each request, and closes it at the end of the request.
+ * Nested requests share the leases of the outer one, which are given back only when the outer
+ * request ends.
+ */
+public class CoverageReaderLeaseCallback extends AbstractDispatcherCallback {
+
+    @Override
+    public Request init(Request request) {
+        CoverageReaderPool.openLeases(request);
+        return request;
+    }
+
+    @Override
+    public void finished(Request request) {
+        CoverageReaderPool.closeLeases(request);
+    }
+
+}
@@ -0,0 +1,42 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.threadlocals;
+
+import java.util.Map;
+
+import org.geoserver.catalog.CoverageReaderPool;
+import org.geoserver.catalog.CoverageReaderPool.Leases;
+
+/**
+ * Makes the threads working on behalf of a request use the coverage readers leased by the
+ * request, so that a request never holds more than one reader per pool, and never waits for
+ * readers its own threads are holding
+ */
+public class CoverageReaderLeaseThreadLocalTransfer implements ThreadLocalTransfer {
+
+    public static final String KEY = CoverageReaderPool.class.getName() + "#leases";
+
+    @Override
+    public void collect(Map<String, Object> storage) {
+        Leases leases = CoverageReaderPool.getLeases();
+        if (leases != null) {
+            storage.put(KEY, leases);
+        }
+    }
+
+    @Override
+    public void apply(Map<String, Object> storage) {
+        Leases leases = (Leases) storage.get(KEY);
+        if (leases != null) {
+            CoverageReaderPool.joinLeases(leases);
+        }
+    }
+
+    @Override
+    public void cleanup() {
+        CoverageReaderPool.leaveLeases();
+    }
+
+}
@@ -0,0 +1,240 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.catalog;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.geoserver.catalog.ConcurrentResourceCache.EvictionPolicy;
+import org.geoserver.catalog.ConcurrentResourceCache.Statistics;
+import org.junit.Test;
+
+public class ConcurrentResourceCacheTest {
+
+    static class DisposeTrackingCache extends ConcurrentResourceCache<String, String> {
+
+        List<String> disposed = new ArrayList<>();
+
+        public DisposeTrackingCache(long maxEntries) {
+            super("test", maxEntries);
+        }
+
+        @Override
+        protected synchronized void dispose(String key, String value) {
+            disposed.add(key);
+        }
+    }
+
+    @Test
+    public void testSingleFlightLoading() throws Exception {
+        ConcurrentResourceCache<String, Object> cache = new ConcurrentResourceCache<>("test");
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Object>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> cache.getOrLoad("key", k -> {
+                    loads.incrementAndGet();
+                    loading.countDown();
+                    release.await();
+                    return new Object();
+                })));
+            }
+            assertTrue(loading.await(10, TimeUnit.SECONDS));
+            // a different key is not blocked by the slow load
+            assertEquals("other", cache.getOrLoad("other", k -> "other"));
+            release.countDown();
+
+            Object first = results.get(0).get(10, TimeUnit.SECONDS);
+            for (Future<Object> result : results) {
+                assertSame(first, result.get(10, TimeUnit.SECONDS));
+            }
+            assertEquals(1, loads.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testLoadFailureNotCached() throws Exception {
+        ConcurrentResourceCache<String, String> cache = new ConcurrentResourceCache<>("test");
+        try {
+            cache.getOrLoad("key", k -> {
+                throw new IOException("failed");
+            });
+            fail("Should have thrown an exception");
+        } catch (IOException e) {
+            assertEquals("failed", e.getMessage());
+        }
+        assertFalse(cache.containsKey("key"));
+        assertEquals("value", cache.getOrLoad("key", k -> "value"));
+
+        Statistics stats = cache.getStatistics();
+        assertEquals(1, stats.getLoadFailureCount());
+        assertEquals(1, stats.getLoadSuccessCount());
+    }
+
+    @Test
+    public void testNullNotCached() throws Exception {
+        ConcurrentResourceCache<String, String> cache = new ConcurrentResourceCache<>("test");
+        assertNull(cache.getOrLoad("key", k -> null));
+        assertTrue(cache.isEmpty());
+    }
+
+    @Test
+    public void testRemoveWhileLoading() throws Exception {
+        ConcurrentResourceCache<String, String> cache = new ConcurrentResourceCache<>("test");
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            for (boolean clear : new boolean[] { false, true }) {
+                CountDownLatch loading = new CountDownLatch(1);
+                CountDownLatch release = new CountDownLatch(1);
+                Future<String> result = executor.submit(() -> cache.getOrLoad("key", k -> {
+                    loading.countDown();
+                    release.await();
+                    return "stale";
+                }));
+                assertTrue(loading.await(10, TimeUnit.SECONDS));
+                if (clear) {
+                    cache.clear();
+                } else {
+                    cache.remove("key");
+                }
+                release.countDown();
+
+                // the waiting callers get the value, but it does not stay in the cache
+                assertEquals("stale", result.get(10, TimeUnit.SECONDS));
+                assertFalse(cache.containsKey("key"));
+                assertEquals("fresh", cache.getOrLoad("key", k -> "fresh"));
+                cache.remove("key");
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testLRUEviction() throws Exception {
+        DisposeTrackingCache cache = new DisposeTrackingCache(2);
+        cache.put("a", "a");
+        cache.put("b", "b");
+        // touch a, b becomes the least recently used
+        cache.get("a");
+        cache.put("c", "c");
+
+        assertEquals(2, cache.size());
+        assertTrue(cache.containsKey("a"));
+        assertTrue(cache.containsKey("c"));
+        assertEquals(1, cache.disposed.size());
+        assertEquals("b", cache.disposed.get(0));
+        assertEquals(1, cache.getStatistics().getEvictionCount());
+    }
+
+    @Test
+    public void testLFUEviction() throws Exception {
+        DisposeTrackingCache cache = new DisposeTrackingCache(2);
+        cache.setEvictionPolicy(EvictionPolicy.LFU);
+        cache.put("a", "a");
+        cache.put("b", "b");
+        cache.get("a");
+        cache.get("a");
+        cache.get("b");
+        // b is the most recently used, but a is used more frequently
+        cache.put("c", "c");
+        // c is now the least frequently used, it's the one going away
+        cache.put("d", "d");
+
+        assertEquals(2, cache.size());
+        assertTrue(cache.containsKey("a"));
+        assertTrue(cache.containsKey("d"));
+        assertEquals(2, cache.disposed.size());
+        assertEquals("b", cache.disposed.get(0));
+        assertEquals("c", cache.disposed.get(1));
+    }
+
+    @Test
+    public void testSoftTail() throws Exception {
+        DisposeTrackingCache cache = new DisposeTrackingCache(0);
+        cache.setHardReferences(2);
+        cache.put("a", "a");
+        cache.put("b", "b");
+        cache.put("c", "c");
+        // nothing evicted, a is just softly referenced now
+        assertEquals(3, cache.size());
+        assertTrue(cache.disposed.isEmpty());
+        assertEquals(2, cache.order.size());
+        assertNull(cache.entries.get("a").value);
+
+        // using it again makes it strong, b being now the least recently used
+        assertEquals("a", cache.get("a"));
+        assertEquals("a", cache.entries.get("a").value);
+        assertNull(cache.entries.get("b").value);
+        assertEquals(3, cache.size());
+        assertEquals(0, cache.getStatistics().getEvictionCount());
+    }
+
+    @Test
+    public void testWeightBound() throws Exception {
+        DisposeTrackingCache cache = new DisposeTrackingCache(0);
+        cache.setWeigher((k, v) -> v.length());
+        cache.setMaxWeight(10);
+        cache.put("a", "12345");
+        cache.put("b", "12345");
+        assertEquals(2, cache.size());
+        cache.put("c", "1");
+        assertEquals(2, cache.size());
+        assertFalse(cache.containsKey("a"));
+        assertEquals(6, cache.getStatistics().getWeight());
+    }
+
+    @Test
+    public void testRemoveAndClearDispose() throws Exception {
+        DisposeTrackingCache cache = new DisposeTrackingCache(0);
+        cache.put("a", "a");
+        cache.put("b", "b");
+        cache.put("c", "c");
+        assertEquals("a", cache.remove("a"));
+        assertEquals(1, cache.disposed.size());
+        cache.clear();
+        assertTrue(cache.isEmpty());
+        assertEquals(3, cache.disposed.size());
+    }
+
+    @Test
+    public void testStatistics() throws Exception {
+        ConcurrentResourceCache<String, String> cache = new ConcurrentResourceCache<>("test");
+        cache.getOrLoad("a", k -> "a");
+        cache.getOrLoad("a", k -> "a");
+        cache.get("a");
+        cache.get("b");
+
+        Statistics stats = cache.getStatistics();
+        assertEquals("test", stats.getName());
+        assertEquals(2, stats.getHitCount());
+        assertEquals(2, stats.getMissCount());
+        assertEquals(0.5, stats.getHitRatio(), 0d);
+        assertEquals(1, stats.getLoadSuccessCount());
+
+        cache.resetStatistics();
+        assertEquals(0, cache.getStatistics().getHitCount());
+        assertEquals(1, cache.getStatistics().getSize());
+    }
+}
@@ -0,0 +1,273 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.catalog;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.easymock.EasyMock;
+import org.geoserver.catalog.CoverageReaderPool.Leases;
+import org.geoserver.catalog.CoverageReaderPool.Statistics;
+import org.geotools.coverage.grid.io.GridCoverage2DReader;
+import org.junit.After;
+import org.junit.Test;
+import org.opengis.coverage.grid.GridCoverageReader;
+
+public class CoverageReaderPoolTest {
+
+    List<GridCoverageReader> created = new ArrayList<>();
+
+    List<GridCoverageReader> disposed = new ArrayList<>();
+
+    @After
+    public void releaseLeases() {
+        CoverageReaderPool.LEASES.remove();
+    }
+
+    GridCoverageReader createReader() throws IOException {
+        GridCoverage2DReader reader = EasyMock.createMock(GridCoverage2DReader.class);
+        reader.dispose();
+        EasyMock.expectLastCall().andAnswer(() -> {
+            synchronized (disposed) {
+                disposed.add(reader);
+            }
+            return null;
+        }).anyTimes();
+        EasyMock.replay(reader);
+        synchronized (created) {
+            created.add(reader);
+        }
+        return reader;
+    }
+
+    @Test
+    public void testBorrowAndRelease() throws Exception {
+        CoverageReaderPool pool = new CoverageReaderPool("test", this::createReader, 0, 2, 60000,
+                1000);
+        GridCoverageReader r1 = pool.borrow();
+        GridCoverageReader r2 = pool.borrow();
+        assertNotSame(r1, r2);
+        assertEquals(2, created.size());
+
+        // released readers are reused
+        pool.release(r2);
+        assertSame(r2, pool.borrow());
+        assertEquals(2, created.size());
+
+        Statistics stats = pool.getStatistics();
+        assertEquals(2, stats.getSize());
+        assertEquals(0, stats.getIdle());
+        assertEquals(3, stats.getBorrowCount());
+        assertEquals(2, stats.getCreationCount());
+        assertEquals(0, stats.getWaitCount());
+    }
+
+    @Test
+    public void testWaitForRelease() throws Exception {
+        CoverageReaderPool pool = new CoverageReaderPool("test", this::createReader, 0, 1, 60000,
+                10000);
+        GridCoverageReader reader = pool.borrow();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<GridCoverageReader> future = executor.submit(() -> pool.borrow());
+            // give it time to start waiting
+            Thread.sleep(100);
+            pool.release(reader);
+            assertSame(reader, future.get(10, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+        Statistics stats = pool.getStatistics();
+        assertEquals(1, stats.getCreationCount());
+        assertEquals(1, stats.getWaitCount());
+        assertEquals(0, stats.getExhaustionCount());
+    }
+
+    @Test
+    public void testExhaustion() throws Exception {
+        CoverageReaderPool pool = new CoverageReaderPool("test", this::createReader, 0, 1, 60000,
+                50);
+        pool.borrow();
+        try {
+            pool.borrow();
+            fail("Should have timed out waiting for a reader");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("all 1 readers are in use"));
+        }
+        Statistics stats = pool.getStatistics();
+        assertEquals(1, stats.getWaitCount());
+        assertEquals(1, stats.getExhaustionCount());
+        assertTrue(stats.getTotalWaitTime() >= 50);
+    }
+
+    @Test
+    public void testCreationFailureFreesSlot() throws Exception {
+        CoverageReaderPool pool = new CoverageReaderPool("test", () -> {
+            throw new IOException("Cannot open the file");
+        }, 0, 1, 60000, 50);
+        for (int i = 0; i < 2; i++) {
+            try {
+                pool.borrow();
+                fail("Should have failed to create the reader");
+            } catch (IOException e) {
+                assertEquals("Cannot open the file", e.getMessage());
+            }
+        }
+        assertEquals(0, pool.getStatistics().getSize());
+    }
+
+    @Test
+    public void testIdleEviction() throws Exception {
+        // readers are evicted as soon as they are released, but the minimum is kept
+        CoverageReaderPool pool = new CoverageReaderPool("test", this::createReader, 1, 3, 0,
+                1000);
+        GridCoverageReader r1 = pool.borrow();
+        GridCoverageReader r2 = pool.borrow();
+        GridCoverageReader r3 = pool.borrow();
+        pool.release(r1);
+        pool.release(r2);
+        pool.release(r3);
+
+        assertEquals(2, disposed.size());
+        assertTrue(disposed.contains(r1));
+        assertTrue(disposed.contains(r2));
+        Statistics stats = pool.getStatistics();
+        assertEquals(1, stats.getSize());
+        assertEquals(1, stats.getIdle());
+        assertEquals(2, stats.getEvictionCount());
+        assertSame(r3, pool.borrow());
+    }
+
+    @Test
+    public void testDispose() throws Exception {
+        CoverageReaderPool pool = new CoverageReaderPool("test", this::createReader, 0, 2, 60000,
+                1000);
+        GridCoverageReader r1 = pool.borrow();
+        GridCoverageReader r2 = pool.borrow();
+        pool.release(r1);
+        pool.dispose();
+        // idle readers are disposed right away
+        assertEquals(1, disposed.size());
+        assertSame(r1, disposed.get(0));
+        // the others as they are released
+        pool.release(r2);
+        assertEquals(2, disposed.size());
+        assertEquals(0, pool.getStatistics().getSize());
+        try {
+            pool.borrow();
+            fail("The pool has been disposed");
+        } catch (IOException e) {
+            // fine
+        }
+    }
+
+    @Test
+    public void testLeases() throws Exception {
+        CoverageReaderPool pool1 = new CoverageReaderPool("test1", this::createReader, 0, 2,
+                60000, 1000);
+        CoverageReaderPool pool2 = new CoverageReaderPool("test2", this::createReader, 0, 2,
+                60000, 1000);
+        // no scope, no lease
+        assertNull(pool1.lease());
+
+        // the same request gets the same reader over and over
+        Object request = new Object();
+        CoverageReaderPool.openLeases(request);
+        GridCoverageReader reader = pool1.lease();
+        assertSame(reader, pool1.lease());
+        assertNotSame(reader, pool2.lease());
+        assertEquals(2, created.size());
+
+        // other requests get their own
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            GridCoverageReader other = executor.submit(() -> {
+                Object otherRequest = new Object();
+                CoverageReaderPool.openLeases(otherRequest);
+                try {
+                    return pool1.lease();
+                } finally {
+                    CoverageReaderPool.closeLeases(otherRequest);
+                }
+            }).get();
+            assertNotSame(reader, other);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        CoverageReaderPool.closeLeases(request);
+        assertFalse(CoverageReaderPool.isLeasing());
+        assertEquals(2, pool1.getStatistics().getIdle());
+        assertEquals(1, pool2.getStatistics().getIdle());
+    }
+
+    @Test
+    public void testNestedLeases() throws Exception {
+        CoverageReaderPool pool = new CoverageReaderPool("test", this::createReader, 0, 2, 60000,
+                1000);
+        Object outer = new Object();
+        CoverageReaderPool.openLeases(outer);
+        GridCoverageReader reader = pool.lease();
+
+        // a nested request shares the leases, and does not give them back when done
+        Object nested = new Object();
+        CoverageReaderPool.openLeases(nested);
+        assertSame(reader, pool.lease());
+        CoverageReaderPool.closeLeases(nested);
+        assertSame(reader, pool.lease());
+        assertEquals(0, pool.getStatistics().getIdle());
+
+        // closing a scope that was never opened does nothing either
+        CoverageReaderPool.closeLeases(new Object());
+        assertSame(reader, pool.lease());
+
+        CoverageReaderPool.closeLeases(outer);
+        assertEquals(1, pool.getStatistics().getIdle());
+    }
+
+    @Test
+    public void testJoinedLeases() throws Exception {
+        // a single reader, threads working for the request must not wait for it
+        CoverageReaderPool pool = new CoverageReaderPool("test", this::createReader, 0, 1, 60000,
+                100);
+        Object request = new Object();
+        CoverageReaderPool.openLeases(request);
+        GridCoverageReader reader = pool.lease();
+        Leases leases = CoverageReaderPool.getLeases();
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            GridCoverageReader joined = executor.submit(() -> {
+                CoverageReaderPool.joinLeases(leases);
+                try {
+                    return pool.lease();
+                } finally {
+                    CoverageReaderPool.leaveLeases();
+                }
+            }).get();
+            assertSame(reader, joined);
+            assertFalse(executor.submit(CoverageReaderPool::isLeasing).get());
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(0, pool.getStatistics().getIdle());
+
+        CoverageReaderPool.closeLeases(request);
+        assertEquals(1, pool.getStatistics().getIdle());
+    }
+}
@@ -2986,6 +2986,88 @@ public class CatalogImplTest {
         testOrderBy(LayerInfo.class, filter, 0, 10, sortOrder, expected);
     }
 
+    /**
+     * Checks the filters on indexed properties keep on returning the right results as the
+     * objects get modified
+     */
+    @Test
+    public void testListIndexedProperties() {
+        addDataStore();
+        addNamespace();
+        final FilterFactory factory = CommonFactoryFinder.getFilterFactory();
+
+        FeatureTypeInfo ft1, ft2, ft3;
+        catalog.add(ft1 = newFeatureType("ft1", ds));
+        catalog.add(ft2 = newFeatureType("ft2", ds));
+        catalog.add(ft3 = newFeatureType("ft3", ds));
+        ft1 = catalog.getFeatureType(ft1.getId());
+        ft2 = catalog.getFeatureType(ft2.getId());
+        ft3 = catalog.getFeatureType(ft3.getId());
+
+        StyleInfo s1, s2, s3;
+        catalog.add(s1 = newStyle("s1", "s1Filename"));
+        catalog.add(s2 = newStyle("s2", "s2Filename"));
+        catalog.add(s3 = newStyle("s3", "s3Filename"));
+
+        LayerInfo l1, l2, l3;
+        catalog.add(l1 = newLayer(ft1, s1));
+        catalog.add(l2 = newLayer(ft2, s2, s3));
+        catalog.add(l3 = newLayer(ft3, s3));
+        l1 = catalog.getLayer(l1.getId());
+        l2 = catalog.getLayer(l2.getId());
+        l3 = catalog.getLayer(l3.getId());
+
+        Set<? extends CatalogInfo> expected;
+        Set<? extends CatalogInfo> actual;
+
+        expected = Sets.newHashSet(ft1, ft2, ft3);
+        actual = Sets.newHashSet(catalog.list(ResourceInfo.class, equal("store.id", ds.getId())));
+        assertEquals(expected, actual);
+        assertEquals(expected, Sets.newHashSet(catalog.getResourcesByStore(ds, ResourceInfo.class)));
+
+        // the layer enabled flag is delegated to the resource
+        ft2.setEnabled(false);
+        catalog.save(ft2);
+        expected = Sets.newHashSet(l2);
+        actual = Sets.newHashSet(catalog.list(LayerInfo.class, equal("enabled", false)));
+        assertEquals(expected, actual);
+        ft2 = catalog.getFeatureType(ft2.getId());
+        ft2.setEnabled(true);
+        catalog.save(ft2);
+        actual = Sets.newHashSet(catalog.list(LayerInfo.class, equal("enabled", false)));
+        assertTrue(actual.isEmpty());
+
+        // style usage follows the layer modifications
+        expected = Sets.newHashSet(l2, l3);
+        assertEquals(expected, Sets.newHashSet(catalog.getLayers(s3)));
+        l1.getStyles().add(s3);
+        catalog.save(l1);
+        expected = Sets.newHashSet(l1, l2, l3);
+        assertEquals(expected, Sets.newHashSet(catalog.getLayers(s3)));
+        actual = Sets.newHashSet(catalog.list(LayerInfo.class,
+                or(equal("defaultStyle.id", s1.getId()), equal("styles.id", s3.getId()))));
+        assertEquals(expected, actual);
+
+        // prefix searches
+        Filter filter = factory.like(factory.property("name"), "ft*", "*", "?", "\\", true);
+        expected = Sets.newHashSet(ft1, ft2, ft3);
+        actual = Sets.newHashSet(catalog.list(FeatureTypeInfo.class, filter));
+        assertEquals(expected, actual);
+        filter = factory.like(factory.property("name"), "FT*", "*", "?", "\\", false);
+        actual = Sets.newHashSet(catalog.list(FeatureTypeInfo.class, filter));
+        assertEquals(expected, actual);
+
+        // paging over a sorted index, also after a rename
+        testOrderBy(FeatureTypeInfo.class, acceptAll(), 1, 1, asc("name"),
+                Lists.newArrayList(ft2));
+        ft1.setName("ft4");
+        catalog.save(ft1);
+        testOrderBy(FeatureTypeInfo.class, acceptAll(), 0, 2, desc("name"),
+                Lists.newArrayList(catalog.getFeatureType(ft1.getId()), ft3));
+        testOrderBy(FeatureTypeInfo.class, acceptAll(), 1, 10, asc("name"),
+                Lists.newArrayList(ft3, catalog.getFeatureType(ft1.getId())));
+    }
+
     private <T extends CatalogInfo> void testOrderBy(Class<T> clazz, Filter filter, Integer offset,
             Integer limit, SortBy sortOrder, List<T> expected) {
 
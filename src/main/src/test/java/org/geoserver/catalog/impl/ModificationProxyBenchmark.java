@@ -0,0 +1,152 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.catalog.impl;
+
+import java.util.concurrent.TimeUnit;
+
+import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.CatalogFactory;
+import org.geoserver.catalog.DataStoreInfo;
+import org.geoserver.catalog.FeatureTypeInfo;
+import org.geoserver.catalog.LayerInfo;
+import org.geoserver.catalog.NamespaceInfo;
+import org.geoserver.catalog.StyleInfo;
+import org.geoserver.catalog.WorkspaceInfo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares catalog lookups going through the modification proxies with the same lookups
+ * performed in {@link ModificationProxy#readOnly(ModificationProxy.ReadOnlyTask)} mode.
+ * <p>
+ * Not a unit test, run it with
+ * <code>mvn test-compile exec:java -Dexec.mainClass=org.geoserver.catalog.impl.ModificationProxyBenchmark -Dexec.classpathScope=test</code>
+ * or from the IDE.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ModificationProxyBenchmark {
+
+    @Param({ "100", "10000" })
+    int layers;
+
+    Catalog catalog;
+
+    String[] names;
+
+    int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        catalog = new CatalogImpl();
+        CatalogFactory factory = catalog.getFactory();
+
+        WorkspaceInfo ws = factory.createWorkspace();
+        ws.setName("bench");
+        catalog.add(ws);
+        NamespaceInfo ns = factory.createNamespace();
+        ns.setPrefix("bench");
+        ns.setURI("http://www.geoserver.org/bench");
+        catalog.add(ns);
+        DataStoreInfo ds = factory.createDataStore();
+        ds.setName("store");
+        ds.setWorkspace(ws);
+        ds.setEnabled(true);
+        catalog.add(ds);
+        StyleInfo style = factory.createStyle();
+        style.setName("point");
+        style.setFilename("point.sld");
+        catalog.add(style);
+
+        names = new String[layers];
+        for (int i = 0; i < layers; i++) {
+            FeatureTypeInfo ft = factory.createFeatureType();
+            ft.setName("layer" + i);
+            ft.setNativeName("layer" + i);
+            ft.setStore(ds);
+            ft.setNamespace(ns);
+            ft.setEnabled(true);
+            catalog.add(ft);
+            LayerInfo layer = factory.createLayer();
+            layer.setResource(catalog.getFeatureTypeByName(ft.getName()));
+            layer.setDefaultStyle(catalog.getStyleByName("point"));
+            layer.setEnabled(true);
+            catalog.add(layer);
+            names[i] = "bench:layer" + i;
+        }
+    }
+
+    String nextName() {
+        if (++next == names.length) {
+            next = 0;
+        }
+        return names[next];
+    }
+
+    /**
+     * A typical request path access, the layer and a few of its properties
+     */
+    static void consume(LayerInfo layer, Blackhole bh) {
+        bh.consume(layer.getName());
+        bh.consume(layer.getResource().getStore().getWorkspace().getName());
+        bh.consume(layer.getDefaultStyle().getName());
+        bh.consume(layer.getStyles().size());
+        bh.consume(layer.getResource().getMetadata().size());
+    }
+
+    @Benchmark
+    public void getLayerByNameProxied(Blackhole bh) {
+        consume(catalog.getLayerByName(nextName()), bh);
+    }
+
+    @Benchmark
+    public void getLayerByNameReadOnly(Blackhole bh) {
+        ModificationProxy.readOnly(() -> {
+            consume(catalog.getLayerByName(nextName()), bh);
+            return null;
+        });
+    }
+
+    @Benchmark
+    public void listLayersProxied(Blackhole bh) {
+        for (LayerInfo layer : catalog.getLayers()) {
+            consume(layer, bh);
+        }
+    }
+
+    @Benchmark
+    public void listLayersReadOnly(Blackhole bh) {
+        ModificationProxy.readOnly(() -> {
+            for (LayerInfo layer : catalog.getLayers()) {
+                consume(layer, bh);
+            }
+            return null;
+        });
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ModificationProxyBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
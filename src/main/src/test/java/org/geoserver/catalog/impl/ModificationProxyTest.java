@@ -152,6 +152,63 @@ public class ModificationProxyTest {
         assertThat(newBean.getListValue(), contains("Cunning","Plan"));
     }
     
+    @Test
+    public void testReadOnly() throws Exception {
+        TestBean bean = new TestBeanImpl("Mr. Bean", "Uhh", "Bean");
+        List<TestBean> beans = Arrays.asList(bean);
+
+        TestBean result = ModificationProxy.readOnly(() -> {
+            assertTrue(ModificationProxy.isReadOnly());
+            return ModificationProxy.create(bean, TestBean.class);
+        });
+        assertThat(result, sameInstance(bean));
+        List<TestBean> list = ModificationProxy
+                .readOnly(() -> ModificationProxy.createList(beans, TestBean.class));
+        assertThat(list, sameInstance(beans));
+
+        // back to normal once done
+        assertFalse(ModificationProxy.isReadOnly());
+        assertThat(ModificationProxy.create(bean, TestBean.class), modProxy(sameInstance(bean)));
+    }
+
+    @Test
+    public void testReadOnlyNested() throws Exception {
+        ModificationProxy.readOnly(() -> {
+            ModificationProxy.readOnly(() -> null);
+            // the outer task is still read only
+            assertTrue(ModificationProxy.isReadOnly());
+            return null;
+        });
+        assertFalse(ModificationProxy.isReadOnly());
+    }
+
+    @Test
+    public void testReadOnlyRewrapKeepsChanges() throws Exception {
+        TestBean bean = new TestBeanImpl("Mr. Bean", "Uhh", "Bean");
+        TestBean proxy = ModificationProxy.create(bean, TestBean.class);
+        proxy.setValue("Edmond Blackadder");
+
+        TestBean result = ModificationProxy
+                .readOnly(() -> ModificationProxy.rewrap(proxy, b -> b, TestBean.class));
+        assertThat(result, modProxy(sameInstance(bean)));
+        assertThat(result.getValue(), equalTo("Edmond Blackadder"));
+    }
+
+    @Test
+    public void testDirtyAfterCachedLookups() throws Exception {
+        TestBean bean = new TestBeanImpl("Mr. Bean", "Uhh", "Bean");
+        // run twice, the second time around the methods and accessors are cached
+        for (int i = 0; i < 2; i++) {
+            TestBean proxy = ModificationProxy.create(bean, TestBean.class);
+            proxy.setValue("Mr. Bean");
+            assertFalse(ModificationProxy.handler(proxy).isDirty());
+            proxy.setValue("Edmond Blackadder");
+            assertTrue(ModificationProxy.handler(proxy).isDirty());
+            assertEquals(Arrays.asList("Mr. Bean"),
+                    ModificationProxy.handler(proxy).getOldValues());
+        }
+    }
+
     /**
      * Matches a modification proxy wrapping an object matching the given matcher
      * @param objectMatcher
@@ -0,0 +1,137 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.config;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.net.URL;
+
+import org.apache.commons.io.FileUtils;
+import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.DataStoreInfo;
+import org.geoserver.catalog.LayerGroupInfo;
+import org.geoserver.catalog.LayerInfo;
+import org.geoserver.catalog.impl.CatalogImpl;
+import org.geoserver.config.impl.GeoServerImpl;
+import org.geoserver.config.util.XStreamPersister;
+import org.geoserver.config.util.XStreamPersisterFactory;
+import org.geoserver.platform.GeoServerExtensionsHelper;
+import org.geoserver.platform.GeoServerResourceLoader;
+import org.geotools.util.URLs;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CatalogSnapshotTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    File dataDirectory;
+
+    Catalog catalog;
+
+    GeoServerImpl geoServer;
+
+    CatalogSnapshot snapshot;
+
+    @Before
+    public void setUp() throws Exception {
+        URL url = CatalogSnapshotTest.class.getResource("/data_dir/nested_layer_groups");
+        dataDirectory = folder.newFolder("data");
+        FileUtils.copyDirectory(URLs.urlToFile(url), dataDirectory);
+
+        GeoServerResourceLoader resourceLoader = new GeoServerResourceLoader(dataDirectory);
+        GeoServerExtensionsHelper.singleton("resourceLoader", resourceLoader,
+                GeoServerResourceLoader.class);
+
+        XStreamPersisterFactory xpf = new XStreamPersisterFactory();
+        XStreamPersister xp = xpf.createXMLPersister();
+        catalog = new CatalogImpl();
+        catalog.setResourceLoader(resourceLoader);
+        new DefaultGeoServerLoader(resourceLoader).readCatalog(catalog, xp);
+
+        geoServer = new GeoServerImpl();
+        geoServer.setCatalog(catalog);
+
+        snapshot = new CatalogSnapshot(resourceLoader, xpf);
+        snapshot.setCatalog(catalog);
+        snapshot.setGeoServer(geoServer);
+    }
+
+    @After
+    public void tearDown() {
+        snapshot.dispose();
+        GeoServerExtensionsHelper.clear();
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        snapshot.write();
+        assertTrue(new File(dataDirectory, CatalogSnapshot.SNAPSHOT_FILE).exists());
+
+        CatalogImpl restored = snapshot.readCatalog(false);
+        assertNotNull(restored);
+        assertTrue(snapshot.isLoaded());
+        assertEquals(catalog.getWorkspaces().size(), restored.getWorkspaces().size());
+        assertEquals(catalog.getDataStores().size(), restored.getDataStores().size());
+        assertEquals(catalog.getFeatureTypes().size(), restored.getFeatureTypes().size());
+        assertEquals(catalog.getLayers().size(), restored.getLayers().size());
+        assertEquals(catalog.getStyles().size(), restored.getStyles().size());
+        assertEquals(catalog.getLayerGroups().size(), restored.getLayerGroups().size());
+        assertEquals(catalog.getDefaultWorkspace().getId(),
+                restored.getDefaultWorkspace().getId());
+
+        // references are resolved against the restored catalog
+        LayerInfo layer = restored.getLayerByName("topp:layer1");
+        assertNotNull(layer.getResource().getStore().getWorkspace());
+        LayerGroupInfo nested = restored.getLayerGroupByName("topp", "nestedgroup");
+        assertEquals(2, nested.getLayers().size());
+        assertTrue(nested.getLayers().get(0) instanceof LayerGroupInfo);
+        assertTrue(nested.getLayers().get(1) instanceof LayerInfo);
+
+        // the configuration comes along
+        GeoServerImpl gs = new GeoServerImpl();
+        gs.setCatalog(restored);
+        assertTrue(snapshot.readConfiguration(gs));
+        assertFalse(snapshot.readConfiguration(gs));
+    }
+
+    @Test
+    public void testStale() throws Exception {
+        snapshot.write();
+
+        // touch one of the configuration files
+        File layerGroups = new File(dataDirectory, "workspaces/topp/layergroups");
+        File touched = layerGroups.listFiles()[0];
+        touched.setLastModified(touched.lastModified() - 10000);
+
+        assertNull(snapshot.readCatalog(false));
+        assertFalse(snapshot.isLoaded());
+    }
+
+    @Test
+    public void testInvalidate() throws Exception {
+        snapshot.write();
+        snapshot.invalidate();
+        assertFalse(new File(dataDirectory, CatalogSnapshot.SNAPSHOT_FILE).exists());
+        assertNull(snapshot.readCatalog(false));
+    }
+
+    @Test
+    public void testStoreInError() throws Exception {
+        snapshot.write();
+        DataStoreInfo store = catalog.getDataStores().get(0);
+        store.setError(new Exception("Connection refused"));
+        catalog.save(store);
+
+        // a store disabled on startup must not end up disabled in the snapshot
+        snapshot.write();
+        assertFalse(new File(dataDirectory, CatalogSnapshot.SNAPSHOT_FILE).exists());
+    }
+}
@@ -14,8 +14,12 @@ import java.net.URL;
 import org.geoserver.catalog.Catalog;
 import org.geoserver.catalog.LayerGroupInfo;
 import org.geoserver.catalog.LayerInfo;
+import org.geoserver.catalog.ResourceInfo;
+import org.geoserver.catalog.StoreInfo;
 import org.geoserver.catalog.StyleInfo;
+import org.geoserver.catalog.WorkspaceInfo;
 import org.geoserver.catalog.impl.CatalogImpl;
+import org.geoserver.config.CatalogLoadingStatistics.Phase;
 import org.geoserver.config.impl.GeoServerImpl;
 import org.geoserver.config.impl.ServiceInfoImpl;
 import org.geoserver.config.util.XStreamPersister;
@@ -130,6 +134,30 @@ public class DefaultGeoServerLoaderTest {
         assertTrue(nestedLayerGroup.getLayers().get(1) instanceof LayerInfo);
     }
 
+    @Test
+    public void testLoadingStatistics() throws Exception {
+        xp.setCatalog(catalog);
+        LoadingCatalog loaded = (LoadingCatalog) loader.readCatalog(xp);
+
+        // stores, resources and layers come out of the pipeline, check they are all there
+        assertEquals(1, loaded.getDataStores().size());
+        assertEquals(2, loaded.getFeatureTypes().size());
+        assertEquals(2, loaded.getLayers().size());
+        assertNotNull(loaded.getLayerByName("topp:layer1").getResource().getStore());
+
+        CatalogLoadingStatistics statistics = loaded.getStatistics();
+        assertEquals(1, statistics.getCount(WorkspaceInfo.class));
+        assertEquals(1, statistics.getCount(StoreInfo.class));
+        assertEquals(2, statistics.getCount(ResourceInfo.class));
+        assertEquals(2, statistics.getCount(LayerInfo.class));
+        assertEquals(2, statistics.getCount(LayerGroupInfo.class));
+        assertTrue(statistics.getTime(Phase.PARSE) > 0);
+        assertTrue(statistics.getTime(Phase.ADD) > 0);
+        String report = statistics.report();
+        assertTrue(report, report.contains("2 layers"));
+        assertTrue(report, report.contains("XML parse"));
+    }
+
     @Test
     public void testLoadWithoutResaving() throws Exception {
         GeoServerImpl gs = new GeoServerImpl();
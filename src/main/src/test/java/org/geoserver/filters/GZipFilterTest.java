@@ -18,6 +18,7 @@ import javax.servlet.ServletException;
 import javax.servlet.ServletOutputStream;
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletResponse;
 
 import org.junit.Test;
 import org.springframework.mock.web.DelegatingServletOutputStream;
@@ -168,4 +169,39 @@ public class GZipFilterTest {
         filter.doFilter(request, response, chain);
         assertFalse(response.containsHeader("Content-Length"));
     }
+
+    @Test
+    public void testAlreadyEncodedNotCompressed() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET",
+                "http://www.geoserver.org");
+        request.addHeader("accept-encoding", "gzip");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        response.setContentType("text/plain");
+
+        // run the filter
+        GZIPFilter filter = new GZIPFilter();
+        MockServletContext context = new MockServletContext();
+        MockFilterConfig config = new MockFilterConfig(context);
+        config.addInitParameter("compressed-types", "text/plain");
+        filter.init(config);
+
+        MockFilterChain chain = new MockFilterChain() {
+            @Override
+            public void doFilter(ServletRequest request, ServletResponse response)
+                    throws IOException, ServletException {
+                // contents have been compressed by the caller already
+                ((HttpServletResponse) response).addHeader("Content-Encoding", "gzip");
+                response.setContentLength(1);
+                AlternativesResponseStream alternatives = (AlternativesResponseStream) response
+                        .getOutputStream();
+
+                ServletOutputStream stream = alternatives.getStream();
+                assertFalse(stream instanceof GZIPResponseStream);
+                stream.write(1);
+            }
+        };
+        filter.doFilter(request, response, chain);
+        assertEquals("1", response.getHeader("Content-Length"));
+        assertEquals(1, response.getContentAsByteArray().length);
+    }
 }
@@ -0,0 +1,194 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.ows;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.geoserver.platform.GeoServerExtensions;
+import org.geoserver.platform.Service;
+
+/**
+ * Immutable snapshot of the extensions the {@link Dispatcher} works with: services, request
+ * readers and responses, indexed by the keys used to look them up while dispatching a request.
+ * <p>
+ * The index replaces the per request scan of all the extensions with hash lookups, the
+ * {@link Dispatcher} then applies the same filtering and sorting rules as before to the few
+ * candidates found. Lookups by class (kvp readers by request type, responses by result type) are
+ * computed on first use and remembered, the class set being bounded.
+ * </p>
+ * <p>
+ * The current index is built on first use, and dropped by {@link #reset()} when the application
+ * context gets refreshed, so that the next request picks up the extensions added or removed by
+ * plugins.
+ * </p>
+ */
+public final class DispatchIndex {
+
+    static volatile DispatchIndex current;
+
+    /**
+     * Incremented by each {@link #reset()}, guarded by {@link #LOCK}, so that an index built from
+     * the extensions found before a reset is not stored as the current one after it
+     */
+    static long generation;
+
+    static final Object LOCK = new Object();
+
+    /** Marks the request types for which no kvp reader is available */
+    static final KvpRequestReader NO_KVP_READER = new KvpRequestReader(Object.class);
+
+    /**
+     * Returns the current index, building it if necessary
+     */
+    public static DispatchIndex get() {
+        return get(() -> new DispatchIndex(Dispatcher.loadServices(),
+                Dispatcher.loadKvpRequestReaders(), Dispatcher.loadXmlReaders(),
+                GeoServerExtensions.extensions(Response.class)));
+    }
+
+    static DispatchIndex get(Supplier<DispatchIndex> builder) {
+        DispatchIndex index = current;
+        if (index == null) {
+            long buildGeneration;
+            synchronized (LOCK) {
+                buildGeneration = generation;
+            }
+            // build out of the lock, extension lookups can be slow
+            index = builder.get();
+            synchronized (LOCK) {
+                if (current != null) {
+                    index = current;
+                } else if (buildGeneration == generation) {
+                    current = index;
+                }
+                // otherwise the index is stale, use it for this request only
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Drops the current index, the next lookup will build a new one
+     */
+    public static void reset() {
+        synchronized (LOCK) {
+            generation++;
+            current = null;
+        }
+    }
+
+    final Map<String, List<Service>> servicesById;
+
+    final Collection<KvpRequestReader> kvpReaders;
+
+    final Map<Class<?>, KvpRequestReader> kvpReadersByType = new ConcurrentHashMap<>();
+
+    final Map<String, List<XmlRequestReader>> xmlReadersByElement;
+
+    final Map<String, List<XmlRequestReader>> xmlReadersByLocalPart;
+
+    final List<Response> responses;
+
+    final Map<Class<?>, List<Response>> responsesByBinding = new ConcurrentHashMap<>();
+
+    DispatchIndex(Collection<Service> services, Collection<KvpRequestReader> kvpReaders,
+            Collection<XmlRequestReader> xmlReaders, List<Response> responses) {
+        this.servicesById = group(services, s -> lower(s.getId()));
+        this.kvpReaders = Collections.unmodifiableList(new ArrayList<>(kvpReaders));
+        this.xmlReadersByElement = group(xmlReaders, r -> elementKey(
+                r.getElement().getNamespaceURI(), r.getElement().getLocalPart()));
+        this.xmlReadersByLocalPart = group(xmlReaders, r -> r.getElement().getLocalPart());
+        this.responses = Collections.unmodifiableList(new ArrayList<>(responses));
+    }
+
+    private static <T> Map<String, List<T>> group(Collection<T> items,
+            Function<T, String> keyFunction) {
+        Map<String, List<T>> result = new HashMap<>();
+        for (T item : items) {
+            String key = keyFunction.apply(item);
+            if (key != null) {
+                result.computeIfAbsent(key, k -> new ArrayList<>()).add(item);
+            }
+        }
+        for (Map.Entry<String, List<T>> entry : result.entrySet()) {
+            entry.setValue(Collections.unmodifiableList(entry.getValue()));
+        }
+        return result;
+    }
+
+    private static String lower(String value) {
+        return value == null ? null : value.toLowerCase(Locale.ENGLISH);
+    }
+
+    private static String elementKey(String namespace, String localPart) {
+        if (namespace == null || localPart == null) {
+            return null;
+        }
+        return lower(namespace) + "#" + lower(localPart);
+    }
+
+    /**
+     * Returns the services with the given id, case insensitive, in extension order
+     */
+    public List<Service> getServices(String id) {
+        List<Service> result = id == null ? null : servicesById.get(lower(id));
+        return result == null ? Collections.emptyList() : result;
+    }
+
+    /**
+     * Returns the xml readers for the given element, namespace and local part are compared case
+     * insensitive, in extension order
+     */
+    public List<XmlRequestReader> getXmlReaders(String namespace, String element) {
+        String key = elementKey(namespace, element);
+        List<XmlRequestReader> result = key == null ? null : xmlReadersByElement.get(key);
+        return result == null ? Collections.emptyList() : result;
+    }
+
+    /**
+     * Returns the xml readers for the given element local part, whatever their namespace, in
+     * extension order
+     */
+    public List<XmlRequestReader> getXmlReaders(String element) {
+        List<XmlRequestReader> result = element == null ? null
+                : xmlReadersByLocalPart.get(element);
+        return result == null ? Collections.emptyList() : result;
+    }
+
+    /**
+     * Returns the kvp reader building the given request type, or null if there is none
+     */
+    public KvpRequestReader getKvpRequestReader(Class<?> type) {
+        KvpRequestReader reader = kvpReadersByType.computeIfAbsent(type, t -> {
+            KvpRequestReader found = Dispatcher.findKvpRequestReader(t, kvpReaders);
+            return found == null ? NO_KVP_READER : found;
+        });
+        return reader == NO_KVP_READER ? null : reader;
+    }
+
+    /**
+     * Returns the responses whose binding can encode the given result type, in extension order
+     */
+    public List<Response> getResponses(Class<?> resultType) {
+        return responsesByBinding.computeIfAbsent(resultType, t -> {
+            List<Response> result = new ArrayList<>();
+            for (Response response : responses) {
+                if (response.getBinding().isAssignableFrom(t)) {
+                    result.add(response);
+                }
+            }
+            return Collections.unmodifiableList(result);
+        });
+    }
+}
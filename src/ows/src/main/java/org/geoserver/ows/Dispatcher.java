@@ -32,7 +32,6 @@ import java.util.logging.Logger;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import javax.xml.namespace.QName;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
@@ -58,6 +57,8 @@ import org.geotools.xml.EMFUtils;
 import org.geotools.xml.transform.TransformerBase;
 import org.springframework.beans.factory.NoSuchBeanDefinitionException;
 import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
 import org.springframework.http.HttpHeaders;
 import org.springframework.web.servlet.ModelAndView;
 import org.springframework.web.servlet.mvc.AbstractController;
@@ -114,7 +115,8 @@ import org.xmlpull.v1.XmlPullParserFactory;
  *
  * @author Justin Deoliveira, The Open Planning Project, jdeolive@openplans.org
  */
-public class Dispatcher extends AbstractController {
+public class Dispatcher extends AbstractController
+        implements ApplicationListener<ContextRefreshedEvent> {
     /**
      * Logging instance
      */
@@ -184,8 +186,17 @@ public class Dispatcher extends AbstractController {
         return citeCompliant;
     }
 
+    @Override
+    public void onApplicationEvent(ContextRefreshedEvent event) {
+        // plugins might have added or removed services, readers and responses
+        DispatchIndex.reset();
+    }
+
     @Override
     protected void initApplicationContext(ApplicationContext context) {
+        // the extensions might have changed along with the context
+        DispatchIndex.reset();
+
         //load life cycle callbacks
         callbacks = GeoServerExtensions.extensions( DispatcherCallback.class, context);
         
@@ -888,17 +899,14 @@ public class Dispatcher extends AbstractController {
         throws Throwable {
         //step 6: write response
         if (result != null) {
-            //look up respones
-            List responses = GeoServerExtensions.extensions(Response.class);
+            //look up the responses whose binding matches the result
+            List responses = new ArrayList(DispatchIndex.get().getResponses(result.getClass()));
 
-            //first filter by binding, and canHandle
+            //filter by canHandle
          O: for (Iterator itr = responses.iterator(); itr.hasNext();) {
                 Response response = (Response) itr.next();
 
-                Class binding = response.getBinding();
-
-                if (!binding.isAssignableFrom(result.getClass())
-                        || !response.canHandle(opDescriptor)) {
+                if (!response.canHandle(opDescriptor)) {
                     itr.remove();
 
                     continue;
@@ -976,8 +984,13 @@ public class Dispatcher extends AbstractController {
             Response response = (Response) responses.get(0);
             response = fireResponseDispatchedCallback(req,opDescriptor,result,response);
 
-            //load the output strategy to be used
-            ServiceStrategy outputStrategy = findOutputStrategy(req.getHttpResponse());
+            //load the output strategy to be used, streamable responses go straight to the client
+            ServiceStrategy outputStrategy;
+            if (!req.isSOAP() && response.isStreamable(result, opDescriptor)) {
+                outputStrategy = new StreamingOutputStrategy();
+            } else {
+                outputStrategy = findOutputStrategy(req.getHttpResponse());
+            }
 
             if (outputStrategy == null) {
                 outputStrategy = new DefaultOutputStrategy();
@@ -1029,7 +1042,7 @@ public class Dispatcher extends AbstractController {
                 } catch(IOException e) {
                     throw new ClientStreamAbortedException(e);
                 }
-                abortResponse = true;
+                abortResponse = false;
             } finally {
                 if(abortResponse) {
                     outputStrategy.abort();
@@ -1118,7 +1131,7 @@ public class Dispatcher extends AbstractController {
         return response;
     }
     
-    Collection loadServices() {
+    static Collection loadServices() {
         Collection services = GeoServerExtensions.extensions(Service.class);
 
         if (!(new HashSet(services).size() == services.size())) {
@@ -1131,7 +1144,6 @@ public class Dispatcher extends AbstractController {
 
     Service findService(String id, String ver, String namespace) throws ServiceException {
         Version version = (ver != null) ? new Version(ver) : null;
-        Collection services = loadServices();
         
         // the id is actually the pathinfo, in case workspace specific services
         // are active we want to skip the workspace part in the path and go directly to the
@@ -1139,6 +1151,7 @@ public class Dispatcher extends AbstractController {
         if(id.contains("/")) {
             id = id.substring(id.indexOf("/") + 1);
         }
+        Collection services = DispatchIndex.get().getServices(id);
 
         //first just match on service,request
         List matches = new ArrayList();
@@ -1236,8 +1249,13 @@ public class Dispatcher extends AbstractController {
     }
 
     public static KvpRequestReader findKvpRequestReader(Class type) {
-        Collection kvpReaders = loadKvpRequestReaders();
+        return DispatchIndex.get().getKvpRequestReader(type);
+    }
 
+    /**
+     * Finds the most specific reader for the given request type among the provided ones
+     */
+    static KvpRequestReader findKvpRequestReader(Class type, Collection kvpReaders) {
         List matches = new ArrayList();
 
         for (Iterator itr = kvpReaders.iterator(); itr.hasNext();) {
@@ -1307,21 +1325,10 @@ public class Dispatcher extends AbstractController {
      * @return An {@link XmlRequestReader} capable of reading the request body
      */
     public static XmlRequestReader findXmlReader(String namespace, String element, String serviceId, String ver) {
-        Collection xmlReaders = loadXmlReaders();
+        DispatchIndex index = DispatchIndex.get();
 
         //first just match on namespace, element
-        List matches = new ArrayList();
-
-        for (Iterator itr = xmlReaders.iterator(); itr.hasNext();) {
-            XmlRequestReader xmlReader = (XmlRequestReader) itr.next();
-            QName xmlElement = xmlReader.getElement();
-
-            if (xmlElement.getLocalPart().equalsIgnoreCase(element)) {
-                if (xmlElement.getNamespaceURI().equalsIgnoreCase(namespace)) {
-                    matches.add(xmlReader);
-                }
-            }
-        }
+        List matches = new ArrayList(index.getXmlReaders(namespace, element));
 
         if (matches.isEmpty()) {
             //do a more lax serach, search only on the element name if the 
@@ -1331,12 +1338,7 @@ public class Dispatcher extends AbstractController {
                     + " xml reader by element name only";
                 logger.info( msg );
                 
-                for ( Iterator itr = xmlReaders.iterator(); itr.hasNext(); ) {
-                    XmlRequestReader xmlReader = (XmlRequestReader) itr.next();
-                    if ( xmlReader.getElement().getLocalPart().equals( element ) ) {
-                        matches.add( xmlReader );
-                    }
-                }
+                matches.addAll(index.getXmlReaders(element));
                 
                 if ( !matches.isEmpty() ) {
                     //we found some matches, make sure they are all in the 
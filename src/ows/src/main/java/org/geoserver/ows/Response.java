@@ -215,6 +215,22 @@ public abstract class Response {
         return name;
     }
     
+    /**
+     * Returns true if the response can be written straight to the client, without any buffering.
+     * The {@link Dispatcher} will then use a {@link StreamingOutputStrategy} in place of the
+     * configured output strategy, errors occurring before the first flush can still be reported
+     * as service exceptions, later ones will result in a truncated response.
+     * <p>
+     * The default implementation returns <code>false</code>, subclasses producing large binary
+     * outputs (e.g., images) should override.
+     * </p>
+     * @param value The value that will be serialized
+     * @param operation The operation which resulted in <code>value</code>
+     */
+    public boolean isStreamable(Object value, Operation operation) {
+        return false;
+    }
+
     /**
      * Returns the charset for this response, the Dispatcher will set it in the ServletResponse.
      * The default implementation returns <code>null</code>, in this case no encoding should be set.
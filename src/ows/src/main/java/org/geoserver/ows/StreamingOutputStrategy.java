@@ -0,0 +1,95 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.ows;
+
+import java.io.IOException;
+import java.util.logging.Logger;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.geotools.util.logging.Logging;
+
+/**
+ * An output strategy writing straight to the servlet output stream, without any extra copy of the
+ * response in memory or on disk. Not knowing the content length the servlet container will use
+ * chunked transfer encoding for the response.
+ * <p>
+ * The first {@link #getBufferSize()} bytes are kept in the container response buffer, so that
+ * an error occurring before the response gets committed (that is, before the buffer fills up or
+ * the output is flushed) can still be reported as a service exception: {@link #abort()} resets the
+ * uncommitted buffer.
+ * </p>
+ * <p>
+ * Used by the {@link Dispatcher} for the responses that declare they can be
+ * {@link Response#isStreamable(Object, Operation) streamed}, regardless of the configured
+ * strategy.
+ * </p>
+ */
+public class StreamingOutputStrategy implements ServiceStrategy {
+
+    static final Logger LOGGER = Logging.getLogger(StreamingOutputStrategy.class);
+
+    /**
+     * Default size of the response buffer, 64KB
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    int bufferSize = DEFAULT_BUFFER_SIZE;
+
+    HttpServletResponse response;
+
+    public String getId() {
+        return "STREAMING";
+    }
+
+    /**
+     * The size of the container buffer, errors occurring before this amount of bytes is written
+     * out can still be reported as service exceptions
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    public DispatcherOutputStream getDestination(HttpServletResponse response)
+            throws IOException {
+        this.response = response;
+        if (!response.isCommitted() && response.getBufferSize() < bufferSize) {
+            response.setBufferSize(bufferSize);
+        }
+        return new DispatcherOutputStream(response.getOutputStream());
+    }
+
+    public void flush(HttpServletResponse response) throws IOException {
+        response.getOutputStream().flush();
+        this.response = null;
+    }
+
+    /**
+     * Clears the response buffer if nothing has been sent to the client yet
+     */
+    public void abort() {
+        if (response != null) {
+            if (!response.isCommitted()) {
+                response.resetBuffer();
+                LOGGER.fine("Streamed output was successfully aborted.");
+            } else {
+                LOGGER.warning("Streamed output could not be aborted as the response has "
+                        + "already been committed. An error has occurred and could not be "
+                        + "sent to the user.");
+            }
+            response = null;
+        }
+    }
+
+    public Object clone() throws CloneNotSupportedException {
+        StreamingOutputStrategy clone = new StreamingOutputStrategy();
+        clone.bufferSize = bufferSize;
+        return clone;
+    }
+}
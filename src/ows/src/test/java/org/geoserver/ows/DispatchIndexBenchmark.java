@@ -0,0 +1,171 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.ows;
+
+import java.io.OutputStream;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.geoserver.platform.GeoServerExtensions;
+import org.geoserver.platform.Operation;
+import org.geoserver.platform.Service;
+import org.geotools.util.Version;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.context.support.StaticApplicationContext;
+
+/**
+ * Compares the lookups the {@link Dispatcher} performs for each request, service, kvp reader and
+ * response, when scanning all the extensions found in the application context (as it used to do)
+ * and when using the {@link DispatchIndex}.
+ * <p>
+ * Not a unit test, run it with
+ * <code>mvn test-compile exec:java -Dexec.mainClass=org.geoserver.ows.DispatchIndexBenchmark -Dexec.classpathScope=test</code>
+ * or from the IDE.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispatchIndexBenchmark {
+
+    /**
+     * The simulated request types are arrays of this class
+     */
+    public static class RequestBean {
+    }
+
+    /**
+     * The simulated result types are arrays of this class
+     */
+    public static class Result {
+    }
+
+    static class BenchmarkResponse extends Response {
+
+        BenchmarkResponse(Class<?> binding, String outputFormat) {
+            super(binding, outputFormat);
+        }
+
+        @Override
+        public String getMimeType(Object value, Operation operation) {
+            return "text/plain";
+        }
+
+        @Override
+        public void write(Object value, OutputStream output, Operation operation) {
+        }
+    }
+
+    /**
+     * Number of extensions of each kind, a full GeoServer has a few hundreds responses
+     */
+    @Param({ "50", "200" })
+    int extensions;
+
+    StaticApplicationContext context;
+
+    List<Class<?>> requestTypes = new ArrayList<>();
+
+    List<Class<?>> resultTypes = new ArrayList<>();
+
+    int counter;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new StaticApplicationContext();
+        for (int i = 0; i < extensions; i++) {
+            // arrays of growing dimension are distinct, unrelated classes, so the bindings do not
+            // overlap
+            int[] dimensions = new int[i + 1];
+            Class<?> requestType = Array.newInstance(RequestBean.class, dimensions).getClass();
+            Class<?> resultType = Array.newInstance(Result.class, dimensions).getClass();
+            requestTypes.add(requestType);
+            resultTypes.add(resultType);
+            context.getBeanFactory().registerSingleton("service" + i, new Service("service" + i,
+                    new Object(), new Version("1.0.0"), Collections.singletonList("Op")));
+            context.getBeanFactory().registerSingleton("kvpReader" + i,
+                    new KvpRequestReader(requestType));
+            context.getBeanFactory().registerSingleton("response" + i,
+                    new BenchmarkResponse(resultType, "format" + i));
+        }
+        context.refresh();
+        new GeoServerExtensions().setApplicationContext(context);
+        DispatchIndex.reset();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        DispatchIndex.reset();
+        context.close();
+    }
+
+    int next() {
+        counter = (counter + 1) % extensions;
+        return counter;
+    }
+
+    @Benchmark
+    public Object scan() {
+        int i = next();
+        // service lookup
+        Object service = null;
+        for (Service s : GeoServerExtensions.extensions(Service.class)) {
+            if (s.getId().equalsIgnoreCase("service" + i)) {
+                service = s;
+            }
+        }
+        // kvp reader lookup
+        Collection<KvpRequestReader> kvpReaders = GeoServerExtensions
+                .extensions(KvpRequestReader.class);
+        Object reader = Dispatcher.findKvpRequestReader(requestTypes.get(i), kvpReaders);
+        // response lookup
+        List<Response> responses = GeoServerExtensions.extensions(Response.class);
+        Class<?> resultType = resultTypes.get(i);
+        for (Iterator<Response> it = responses.iterator(); it.hasNext();) {
+            if (!it.next().getBinding().isAssignableFrom(resultType)) {
+                it.remove();
+            }
+        }
+        return new Object[] { service, reader, responses };
+    }
+
+    @Benchmark
+    public Object index() {
+        int i = next();
+        DispatchIndex index = DispatchIndex.get();
+        Object service = index.getServices("service" + i);
+        Object reader = index.getKvpRequestReader(requestTypes.get(i));
+        Object responses = index.getResponses(resultTypes.get(i));
+        return new Object[] { service, reader, responses };
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(DispatchIndexBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
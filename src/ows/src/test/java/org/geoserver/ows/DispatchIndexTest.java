@@ -0,0 +1,157 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.ows;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.OutputStream;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.namespace.QName;
+
+import org.geoserver.platform.Operation;
+import org.geoserver.platform.Service;
+import org.geotools.util.Version;
+import org.junit.Test;
+
+public class DispatchIndexTest {
+
+    static class TestXmlReader extends XmlRequestReader {
+
+        TestXmlReader(String namespace, String element, String version) {
+            super(new QName(namespace, element), new Version(version), "hello");
+        }
+
+        @Override
+        public Object read(Object request, Reader reader, Map kvp) throws Exception {
+            return null;
+        }
+    }
+
+    static class TestResponse extends Response {
+
+        TestResponse(Class<?> binding) {
+            super(binding);
+        }
+
+        @Override
+        public String getMimeType(Object value, Operation operation) {
+            return "text/plain";
+        }
+
+        @Override
+        public void write(Object value, OutputStream output, Operation operation) {
+        }
+    }
+
+    Service service(String id, String version) {
+        return new Service(id, new Object(), new Version(version),
+                Collections.singletonList("Hello"));
+    }
+
+    @Test
+    public void testServices() {
+        Service hello1 = service("hello", "1.0.0");
+        Service hello2 = service("Hello", "2.0.0");
+        Service other = service("other", "1.0.0");
+        DispatchIndex index = new DispatchIndex(Arrays.asList(hello1, other, hello2),
+                Collections.emptyList(), Collections.emptyList(), Collections.emptyList());
+
+        assertEquals(Arrays.asList(hello1, hello2), index.getServices("HELLO"));
+        assertEquals(Arrays.asList(other), index.getServices("other"));
+        assertTrue(index.getServices("missing").isEmpty());
+        assertTrue(index.getServices(null).isEmpty());
+    }
+
+    @Test
+    public void testXmlReaders() {
+        XmlRequestReader r1 = new TestXmlReader("http://hello.org", "Hello", "1.0.0");
+        XmlRequestReader r2 = new TestXmlReader("http://hello.org", "Hello", "2.0.0");
+        XmlRequestReader r3 = new TestXmlReader("http://other.org", "Hello", "1.0.0");
+        DispatchIndex index = new DispatchIndex(Collections.emptyList(), Collections.emptyList(),
+                Arrays.asList(r1, r2, r3), Collections.emptyList());
+
+        // namespace and element are case insensitive
+        assertEquals(Arrays.asList(r1, r2), index.getXmlReaders("HTTP://hello.org", "hello"));
+        assertEquals(Arrays.asList(r3), index.getXmlReaders("http://other.org", "Hello"));
+        assertTrue(index.getXmlReaders("http://hello.org", "Goodbye").isEmpty());
+        assertTrue(index.getXmlReaders(null, "Hello").isEmpty());
+
+        // the lax search by local part is case sensitive, as it has always been
+        assertEquals(Arrays.asList(r1, r2, r3), index.getXmlReaders("Hello"));
+        assertTrue(index.getXmlReaders("hello").isEmpty());
+    }
+
+    @Test
+    public void testKvpReaders() {
+        KvpRequestReader numberReader = new KvpRequestReader(Number.class);
+        KvpRequestReader integerReader = new KvpRequestReader(Integer.class);
+        DispatchIndex index = new DispatchIndex(Collections.emptyList(),
+                Arrays.asList(numberReader, integerReader), Collections.emptyList(),
+                Collections.emptyList());
+
+        // the most specific reader wins
+        assertSame(integerReader, index.getKvpRequestReader(Integer.class));
+        assertSame(numberReader, index.getKvpRequestReader(Long.class));
+        assertNull(index.getKvpRequestReader(String.class));
+        // cached lookups give the same answers
+        assertSame(integerReader, index.getKvpRequestReader(Integer.class));
+        assertNull(index.getKvpRequestReader(String.class));
+    }
+
+    @Test
+    public void testResponses() {
+        Response numberResponse = new TestResponse(Number.class);
+        Response integerResponse = new TestResponse(Integer.class);
+        Response stringResponse = new TestResponse(String.class);
+        DispatchIndex index = new DispatchIndex(Collections.emptyList(), Collections.emptyList(),
+                Collections.emptyList(),
+                Arrays.asList(numberResponse, integerResponse, stringResponse));
+
+        List<Response> responses = index.getResponses(Integer.class);
+        assertEquals(Arrays.asList(numberResponse, integerResponse), responses);
+        assertSame(responses, index.getResponses(Integer.class));
+        assertEquals(Arrays.asList(numberResponse), index.getResponses(Double.class));
+        assertTrue(index.getResponses(Boolean.class).isEmpty());
+    }
+
+    @Test
+    public void testReset() {
+        DispatchIndex.current = new DispatchIndex(Collections.emptyList(),
+                Collections.emptyList(), Collections.emptyList(), Collections.emptyList());
+        DispatchIndex.reset();
+        assertNull(DispatchIndex.current);
+    }
+
+    @Test
+    public void testResetDuringBuild() {
+        DispatchIndex.reset();
+        // an index built from the extensions found before the reset is used, but not kept
+        DispatchIndex stale = DispatchIndex.get(() -> {
+            DispatchIndex.reset();
+            return emptyIndex();
+        });
+        assertNotNull(stale);
+        assertNull(DispatchIndex.current);
+
+        DispatchIndex fresh = DispatchIndex.get(this::emptyIndex);
+        assertSame(fresh, DispatchIndex.current);
+        assertSame(fresh, DispatchIndex.get(this::emptyIndex));
+        DispatchIndex.reset();
+    }
+
+    DispatchIndex emptyIndex() {
+        return new DispatchIndex(Collections.emptyList(), Collections.emptyList(),
+                Collections.emptyList(), Collections.emptyList());
+    }
+}
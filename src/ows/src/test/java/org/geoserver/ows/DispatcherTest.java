@@ -983,4 +983,23 @@ public class DispatcherTest extends TestCase {
             assertEquals("ows:ExceptionReport", dom.getDocumentElement().getNodeName());
         }
     }
+
+    public void testStreamingErrorThrowingResponse() throws Exception {
+        URL url = getClass().getResource("applicationContext-streamingErrorResponse.xml");
+
+        try(FileSystemXmlApplicationContext context = new FileSystemXmlApplicationContext(url.toString())) {
+            Dispatcher dispatcher = (Dispatcher) context.getBean("dispatcher");
+            MockHttpServletRequest request = setupRequest();
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            dispatcher.handleRequest(request, response);
+            // the configured buffering strategy has been bypassed, but the error occurred
+            // before the first flush, so the partial output is gone
+            assertTrue(response.getBufferSize() >= StreamingOutputStrategy.DEFAULT_BUFFER_SIZE);
+            final String outputContent = response.getContentAsString();
+            assertThat(outputContent, not(containsString("Hello world!")));
+            // only the exception
+            Document dom = XMLUnit.buildTestDocument(outputContent);
+            assertEquals("ows:ExceptionReport", dom.getDocumentElement().getNodeName());
+        }
+    }
 }
@@ -13,10 +13,21 @@ import org.geoserver.platform.ServiceException;
 
 
 public class ErrorThrowingResponse extends Response {
+    boolean streamable;
+
     public ErrorThrowingResponse() {
         super(Message.class);
     }
 
+    public void setStreamable(boolean streamable) {
+        this.streamable = streamable;
+    }
+
+    @Override
+    public boolean isStreamable(Object value, Operation operation) {
+        return streamable;
+    }
+
     public String getMimeType(Object value, Operation operation) {
         return "text/plain";
     }
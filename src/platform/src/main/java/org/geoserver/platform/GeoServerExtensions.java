@@ -476,6 +476,48 @@ public class GeoServerExtensions implements ApplicationContextAware, Application
 
         return result;
     }
+
+    /**
+     * Looks up a numeric property with {@link #getProperty(String)}, returning the default value
+     * if the property is not set, or logging a warning and returning the default value if the
+     * property cannot be parsed
+     * 
+     * @param propertyName The property name to be searched
+     * @param defaultValue The value returned when the property is missing or invalid
+     * @return The property value, or the default value
+     */
+    public static long getLongProperty(String propertyName, long defaultValue) {
+        String value = getProperty(propertyName);
+        if (value != null) {
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                LOGGER.warning("Invalid value for " + propertyName + ": " + value
+                        + ", using the default, " + defaultValue);
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Integer version of {@link #getLongProperty(String, long)}
+     * 
+     * @param propertyName The property name to be searched
+     * @param defaultValue The value returned when the property is missing or invalid
+     * @return The property value, or the default value
+     */
+    public static int getIntegerProperty(String propertyName, int defaultValue) {
+        String value = getProperty(propertyName);
+        if (value != null) {
+            try {
+                return Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                LOGGER.warning("Invalid value for " + propertyName + ": " + value
+                        + ", using the default, " + defaultValue);
+            }
+        }
+        return defaultValue;
+    }
     
     /**
      * Search the context for indicated file.
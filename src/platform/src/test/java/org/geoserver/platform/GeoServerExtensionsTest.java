@@ -283,4 +283,21 @@ public class GeoServerExtensionsTest {
         assertEquals("WWW", GeoServerExtensions.getProperty("WEB_PROPERTY", servletContext));
     }
 
+    @Test
+    public void testNumericProperty() {
+        try {
+            System.setProperty("NUMERIC_PROPERTY", " 123 ");
+            assertEquals(123, GeoServerExtensions.getIntegerProperty("NUMERIC_PROPERTY", 5));
+            assertEquals(123l, GeoServerExtensions.getLongProperty("NUMERIC_PROPERTY", 5));
+            // invalid values fall back on the default
+            System.setProperty("NUMERIC_PROPERTY", "abc");
+            assertEquals(5, GeoServerExtensions.getIntegerProperty("NUMERIC_PROPERTY", 5));
+            assertEquals(5l, GeoServerExtensions.getLongProperty("NUMERIC_PROPERTY", 5));
+        } finally {
+            System.clearProperty("NUMERIC_PROPERTY");
+        }
+        assertEquals(5, GeoServerExtensions.getIntegerProperty("NUMERIC_PROPERTY", 5));
+        assertEquals(5l, GeoServerExtensions.getLongProperty("NUMERIC_PROPERTY", 5));
+    }
+
 }
@@ -0,0 +1,70 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.rest;
+
+import java.util.Map;
+
+import org.geoserver.catalog.ConcurrentResourceCache;
+import org.geoserver.catalog.ResourcePool;
+import org.geoserver.config.GeoServer;
+import org.geoserver.rest.catalog.NamedMap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Reports the usage statistics of the {@link ResourcePool} caches (hits, misses, loads, evictions)
+ */
+@RestController
+@RequestMapping(path = RestBaseController.ROOT_PATH + "/resourcepool/caches", produces = {
+        MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_XML_VALUE })
+public class ResourcePoolCacheController extends AbstractGeoServerController {
+
+    static final String XML_ROOT_ELEM = "caches";
+
+    @Autowired
+    public ResourcePoolCacheController(@Qualifier("geoServer") GeoServer geoServer) {
+        super(geoServer);
+    }
+
+    @GetMapping
+    public NamedMap<String, Object> cachesGet() {
+        ResourcePool pool = geoServer.getCatalog().getResourcePool();
+        NamedMap<String, Object> caches = new NamedMap<>(XML_ROOT_ELEM);
+        for (Map.Entry<String, ConcurrentResourceCache.Statistics> entry : pool
+                .getCacheStatistics().entrySet()) {
+            ConcurrentResourceCache.Statistics stats = entry.getValue();
+            NamedMap<String, Object> cache = new NamedMap<>(entry.getKey());
+            cache.put("size", stats.getSize());
+            cache.put("weight", stats.getWeight());
+            cache.put("maxEntries", stats.getMaxEntries());
+            cache.put("maxWeight", stats.getMaxWeight());
+            cache.put("evictionPolicy", stats.getEvictionPolicy().name());
+            cache.put("hitCount", stats.getHitCount());
+            cache.put("missCount", stats.getMissCount());
+            cache.put("hitRatio", stats.getHitRatio());
+            cache.put("loadSuccessCount", stats.getLoadSuccessCount());
+            cache.put("loadFailureCount", stats.getLoadFailureCount());
+            // nanoseconds are not very readable, report milliseconds instead
+            cache.put("totalLoadTimeMillis", stats.getTotalLoadTime() / 1000000d);
+            cache.put("averageLoadTimeMillis", stats.getAverageLoadPenalty() / 1000000d);
+            cache.put("evictionCount", stats.getEvictionCount());
+            caches.put(entry.getKey(), cache);
+        }
+        return caches;
+    }
+
+    /**
+     * Resets the cache counters, without touching the cache contents
+     */
+    @DeleteMapping
+    public void cachesDelete() {
+        geoServer.getCatalog().getResourcePool().resetCacheStatistics();
+    }
+}
@@ -0,0 +1,60 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import org.geoserver.catalog.FeatureTypeInfo;
+import org.geoserver.data.test.MockData;
+import org.geoserver.test.GeoServerSystemTestSupport;
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+import net.sf.json.JSON;
+import net.sf.json.JSONObject;
+
+public class ResourcePoolCacheControllerTest extends GeoServerSystemTestSupport {
+
+    @Test
+    public void testGetAsXML() throws Exception {
+        // make sure there is at least one cached feature type
+        FeatureTypeInfo ft = getCatalog().getFeatureTypeByName(getLayerId(MockData.BUILDINGS));
+        ft.getFeatureType();
+        ft.getFeatureType();
+
+        Document dom = getAsDOM(RestBaseController.ROOT_PATH + "/resourcepool/caches.xml");
+        assertEquals("caches", dom.getDocumentElement().getNodeName());
+        assertNotNull(getFirstElementByTagName(dom, "dataStore"));
+        assertNotNull(getFirstElementByTagName(dom, "featureType"));
+        assertNotNull(getFirstElementByTagName(dom, "hitCount"));
+    }
+
+    @Test
+    public void testGetAsJSON() throws Exception {
+        FeatureTypeInfo ft = getCatalog().getFeatureTypeByName(getLayerId(MockData.BUILDINGS));
+        ft.getFeatureType();
+        ft.getFeatureType();
+
+        JSON json = getAsJSON(RestBaseController.ROOT_PATH + "/resourcepool/caches.json");
+        assertTrue(json instanceof JSONObject);
+        JSONObject featureType = ((JSONObject) json).getJSONObject("featureType");
+        assertTrue(featureType.getLong("size") > 0);
+        assertTrue(featureType.getLong("hitCount") > 0);
+    }
+
+    @Test
+    public void testResetStatistics() throws Exception {
+        FeatureTypeInfo ft = getCatalog().getFeatureTypeByName(getLayerId(MockData.BUILDINGS));
+        ft.getFeatureType();
+        ft.getFeatureType();
+
+        assertEquals(200, deleteAsServletResponse(RestBaseController.ROOT_PATH
+                + "/resourcepool/caches").getStatus());
+        assertEquals(0, getCatalog().getResourcePool().getCacheStatistics().get("featureType")
+                .getHitCount());
+    }
+}
@@ -22,6 +22,8 @@ import org.apache.wicket.markup.html.form.DropDownChoice;
 import org.apache.wicket.markup.html.form.Form;
 import org.apache.wicket.markup.html.form.ChoiceRenderer;
 import org.apache.wicket.markup.html.form.TextField;
+import org.apache.wicket.markup.html.list.ListItem;
+import org.apache.wicket.markup.html.list.ListView;
 import org.apache.wicket.markup.html.panel.Panel;
 import org.apache.wicket.model.IModel;
 import org.apache.wicket.model.PropertyModel;
@@ -29,6 +31,7 @@ import org.apache.wicket.validation.IValidatable;
 import org.apache.wicket.validation.IValidator;
 import org.apache.wicket.validation.ValidationError;
 import org.geoserver.gwc.ConfigurableBlobStore;
+import org.geoserver.gwc.LayerCacheStatistics;
 import org.geoserver.gwc.config.GWCConfig;
 import org.geoserver.platform.GeoServerExtensions;
 import org.geoserver.web.util.MapModel;
@@ -73,11 +76,15 @@ public class InMemoryBlobStorePanel extends Panel {
     /** HashMap containing the values for all the statistics values */
     private HashMap<String, String> values;
 
+    /** The statistics for each layer */
+    private ArrayList<LayerCacheStatistics> layerStatistics;
+
     public InMemoryBlobStorePanel(String id, final IModel<GWCConfig> gwcConfigModel) {
 
         super(id, gwcConfigModel);
         // Initialize the map
         values = new HashMap<String, String>();
+        layerStatistics = new ArrayList<LayerCacheStatistics>();
 
         // get the CacheConfigurations Model
         IModel<Map<String, CacheConfiguration>> cacheConfigurations = new PropertyModel<Map<String, CacheConfiguration>>(
@@ -208,6 +215,23 @@ public class InMemoryBlobStorePanel extends Panel {
         statsContainer.add(currentMemoryLabel);
         statsContainer.add(cacheSizeLabel);
 
+        // Statistics for each layer
+        final ListView<LayerCacheStatistics> layerStatsView = new ListView<LayerCacheStatistics>(
+                "layerStats", layerStatistics) {
+
+            @Override
+            protected void populateItem(ListItem<LayerCacheStatistics> item) {
+                LayerCacheStatistics stats = item.getModelObject();
+                double hitRate = stats.getHitRate();
+                item.add(new Label("layerName", stats.getLayerName()));
+                item.add(new Label("layerHitCount", String.valueOf(stats.getHitCount())));
+                item.add(new Label("layerMissCount", String.valueOf(stats.getMissCount())));
+                item.add(new Label("layerHitRate", hitRate >= 0 ? hitRate + " %"
+                        : "Unavailable"));
+            }
+        };
+        statsContainer.add(layerStatsView);
+
         AjaxButton statistics = new AjaxButton("statistics") {
 
             @Override
@@ -241,6 +265,9 @@ public class InMemoryBlobStorePanel extends Panel {
                         values.put(KEY_SIZE, currentMem >= 0 && actualSize >= 0 ? actualSize
                                 + " / " + totalSize + " Mb" : "Unavailable");
 
+                        layerStatistics.clear();
+                        layerStatistics.addAll(store.getLayerCacheStatistics());
+
                     }
                 } catch (Throwable t) {
                     error(t);
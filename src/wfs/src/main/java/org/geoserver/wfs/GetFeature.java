@@ -21,8 +21,10 @@ import org.geoserver.ows.Dispatcher;
 import org.geoserver.ows.Request;
 import org.geoserver.ows.URLMangler.URLType;
 import org.geoserver.ows.util.KvpMap;
+import org.geoserver.ows.util.ResponseUtils;
 import org.geoserver.platform.GeoServerExtensions;
 import org.geoserver.platform.ServiceException;
+import org.geoserver.threadlocals.ThreadLocalsTransfer;
 import org.geoserver.wfs.request.FeatureCollectionResponse;
 import org.geoserver.wfs.request.GetFeatureRequest;
 import org.geoserver.wfs.request.Lock;
@@ -112,6 +114,9 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -197,6 +202,9 @@ public class GetFeature {
     /** stored query provider */
     StoredQueryProvider storedQueryProvider;
 
+    /** runs the queries in parallel, looked up on first use if not set */
+    GetFeatureExecutor queryExecutor;
+
     /**
      * Creates the WFS 1.0/1.1 GetFeature operation.
      */
@@ -242,6 +250,24 @@ public class GetFeature {
         this.storedQueryProvider = storedQueryProvider;
     }
 
+    /**
+     * Sets the executor running the queries of a request in parallel
+     */
+    public void setQueryExecutor(GetFeatureExecutor queryExecutor) {
+        this.queryExecutor = queryExecutor;
+    }
+
+    /**
+     * Returns the executor running queries in parallel, or null if they have to be run
+     * sequentially
+     */
+    ExecutorService getQueryExecutor() {
+        if (queryExecutor == null) {
+            queryExecutor = GeoServerExtensions.bean(GetFeatureExecutor.class);
+        }
+        return queryExecutor != null ? queryExecutor.getExecutor() : null;
+    }
+
     public FeatureCollectionResponse run(GetFeatureRequest request)
         throws WFSException {
         List<Query> queries = request.getQueries();
@@ -369,6 +395,20 @@ public class GetFeature {
             totalOffset = 0;
         }
         int offset = totalOffset;
+
+        // keyset paging, only for single query requests, see KeysetPaging
+        String continuationToken = null;
+        boolean keysetPaging = false;
+        if (KeysetPaging.isEnabled() && queries.size() == 1 && !request.isResultTypeHits()
+                && !request.getVersion().startsWith("1")) {
+            Request dispatched = Dispatcher.REQUEST.get();
+            if (dispatched != null) {
+                continuationToken = KeysetPaging.getToken(dispatched.getRawKvp());
+            }
+            keysetPaging = continuationToken != null
+                    || (totalOffset > -1 && bi != null);
+        }
+        String nextToken = null;
         
         // feature collection size, we may need to calculate it
         // optimization: WFS 1.0 does not require count unless we have multiple query elements
@@ -376,6 +416,19 @@ public class GetFeature {
         boolean calculateSize = !(("1.0".equals(request.getVersion()) || "1.0.0".equals(request.getVersion())) && 
             (queries.size() == 1 || maxFeatures == Integer.MAX_VALUE));
 
+        // prepare the queries in parallel, the results are then collected in request order.
+        // Sizes are counted ahead only as the loop gets to the queries, and not at all if the
+        // callbacks can alter the queries
+        List<Future<PreparedQuery>> prefetched = null;
+        List<Future<Integer>> prefetchedSizes = new ArrayList<>();
+        ExecutorService executor = queries.size() > 1 ? getQueryExecutor() : null;
+        boolean computeSizes = false;
+        if (executor != null) {
+            computeSizes = calculateSize
+                    && GeoServerExtensions.extensions(GetFeatureCallback.class).isEmpty();
+            prefetched = prefetch(executor, request, queries);
+        }
+
         List results = new ArrayList();
         final List<CountExecutor> totalCountExecutors = new ArrayList<CountExecutor>();
         try {
@@ -383,188 +436,69 @@ public class GetFeature {
 
                 Query query = queries.get(i);
                 try {
-                //alias sanity check
-                if (!query.getAliases().isEmpty()) {
-                    if (query.getAliases().size() != query.getTypeNames().size()) {
-                        throw new WFSException(request, String.format("Query specifies %d type names and %d " +
-                            "aliases, must be equal", query.getTypeNames().size(), query.getAliases().size()));
-                    }
-                }
+                PreparedQuery prepared = prefetched != null ? getResult(prefetched.get(i))
+                        : prepareQuery(request, query);
+                query = prepared.query;
+                FeatureTypeInfo meta = prepared.meta;
+                List<FeatureTypeInfo> metas = prepared.metas;
+                Filter filter = prepared.filter;
+                List<Join> joins = prepared.joins;
+                QName primaryTypeName = prepared.primaryTypeName;
+                String primaryAlias = prepared.primaryAlias;
+                List<List<PropertyName>> propNames = prepared.propNames;
+                List<List<PropertyName>> allPropNames = prepared.allPropNames;
+                List<SortBy> sortBy = prepared.sortBy;
+                FeatureSource<? extends FeatureType, ? extends Feature> source = prepared.source;
 
-                List<FeatureTypeInfo> metas = new ArrayList();
-                for (QName typeName : query.getTypeNames()) {
-                    metas.add(featureTypeInfo(typeName, request));
+                // handle local maximum
+                int queryMaxFeatures = maxFeatures - count;
+                int metaMaxFeatures = maxFeatures(metas);
+                if (metaMaxFeatures > 0 && metaMaxFeatures < queryMaxFeatures) {
+                    queryMaxFeatures = metaMaxFeatures;
                 }
-
-                    // first is the primary feature type
-                    FeatureTypeInfo meta = metas.get(0);
-
-                    // parse the requested property names and distribute among requested types
-                    List<List<String>> reqPropertyNames = parsePropertyNames(query, metas);
-
-                    NamespaceSupport ns = getNamespaceSupport();
-                
-              //set up joins (if specified)
-                List<Join> joins = null;
-                String primaryAlias = null;
-                QName primaryTypeName = query.getTypeNames().get(0);
-                    FeatureTypeInfo primaryMeta = metas.get(0);
-                
-                //make sure filters are sane
-                //
-                // Validation of filters on non-simple feature types is not yet supported.
-                // FIXME: Support validation of filters on non-simple feature types:
-                // need to consider xpath properties and how to configure namespace prefixes in
-                // GeoTools app-schema FeaturePropertyAccessorFactory.
-                Filter filter = query.getFilter();
-                
-                if (filter == null && metas.size() > 1) {
-                    throw new WFSException(request, "Join query must specify a filter");
+                KeysetPaging keyset = null;
+                KeysetPaging.Token token = null;
+                if (keysetPaging && joins == null) {
+                    keyset = KeysetPaging.create(meta, sortBy);
+                    if (keyset != null && continuationToken != null) {
+                        token = keyset.decode(continuationToken, request);
+                        offset = totalOffset = token.getOffset();
+                    }
+                }
+                if (continuationToken != null && keyset == null) {
+                    throw KeysetPaging.invalidToken(request, null);
                 }
 
-                if (filter != null) {
-                    if (meta.getFeatureType() instanceof SimpleFeatureType) {                
-                        if (metas.size() > 1) {
-                            // sanitize aliases, they must not conflict with feature type names
-                            // nor with their attributes
-                            query = AliasedQuery.fixAliases(metas, query);
-                            // the filter might have been rewritten
-                            filter = query.getFilter();
-
-                            // the join extracting visitor cannot handle negated filters,
-                            // the simplifier handles most common case removing the negation,
-                            // e.g., not(a < 10) -> a >= 10
-                            filter = SimplifyingFilterVisitor.simplify(filter);
-
-                            // join, need to separate the joining filter from other filters
-                            JoinExtractingVisitor extractor = 
-                                    new JoinExtractingVisitor(metas, query.getAliases());
-                            extractor.setQueriedTypes(query.getTypeNames());
-                            filter.accept(extractor, null);
-
-                            primaryAlias = extractor.getPrimaryAlias();
-                            primaryMeta = extractor.getPrimaryFeatureType();
-                            metas = extractor.getFeatureTypes();
-                            primaryTypeName = new QName(primaryMeta.getNamespace().getURI(),
-                                    primaryMeta.getName());
-                            joins = extractor.getJoins();
-                            if (joins.size() != metas.size()-1) {
-                                throw new WFSException(request, String.format("Query specified %d types but %d " +
-                                        "join filters were found", metas.size(), extractor.getJoins().size()));
-                            }
-
-                            // validate the filter for each join, as well as the join filter
-                            for (int j = 1; j < metas.size(); j++) {
-                                Join join = joins.get(j-1);
-                                    if (!isValidJoinFilter(join.getJoinFilter())) {
-                                        throw new WFSException(request,
-                                                "Unable to perform join with specified join filter: "
-                                                        + filter);
-                                    }
-
-                                if (join.getFilter() != null) {
-                                    validateFilter(join.getFilter(), query, metas.get(j), request);
-                                }
-                            }
+                Map<String, String> viewParam = viewParams != null ? viewParams.get(i) : null;
 
-                            filter = extractor.getPrimaryFilter();
-                            if (filter != null) {
-                                    validateFilter(filter, query, primaryMeta, request);
-                            }
+                // count this query and the next one in parallel. Sizes counted ahead assume no
+                // offset, they would be counted twice otherwise
+                if (computeSizes && offset <= 0 && continuationToken == null) {
+                    prefetchSize(executor, request, prepared, viewParam, maxFeatures,
+                            prefetchedSizes);
+                    if (i + 1 < queries.size()) {
+                        PreparedQuery next = null;
+                        try {
+                            next = getResult(prefetched.get(i + 1));
+                        } catch (Exception e) {
+                            // reported when the loop gets to the query
                         }
-                        else {
-                            validateFilter(filter, query, meta, request);
+                        if (next != null) {
+                            prefetchSize(executor, request, next,
+                                    viewParams != null ? viewParams.get(i + 1) : null,
+                                    maxFeatures, prefetchedSizes);
                         }
-                    } else {
-                        BBOXNamespaceSettingVisitor filterVisitor = new BBOXNamespaceSettingVisitor(ns);
-                        filter.accept(filterVisitor, null);
                     }
                 }
-                
-                List<List<PropertyName>> propNames = new ArrayList();
-                List<List<PropertyName>> allPropNames = new ArrayList();
-                
-                for (int j = 0; j < metas.size(); j++) {
-                    List<String> propertyNames = reqPropertyNames.get(j);
-                    List<PropertyName> metaPropNames = null;
-                    List<PropertyName> metaAllPropNames = null;
-                    if (!propertyNames.isEmpty()){
-                        
-                         metaPropNames = new ArrayList<PropertyName>();
-                        
-                        for (Iterator iter = propertyNames.iterator(); iter.hasNext();) {
-                            PropertyName propName = createPropertyName((String) iter.next(), ns);
-        
-                            if ( propName.evaluate(meta.getFeatureType()) == null) {
-                                String mesg = "Requested property: " + propName + " is " + "not available "
-                                    + "for " + meta.getPrefixedName() + ".  ";
-                                
-                                if (meta.getFeatureType() instanceof SimpleFeatureType) {
-                                    List<AttributeTypeInfo> atts = meta.attributes();
-                                    List attNames = new ArrayList( atts.size() );
-                                    for ( AttributeTypeInfo att : atts ) {
-                                        attNames.add( att.getName() );
-                                    }
-                                    mesg += "The possible propertyName values are: " + attNames;
-                                }
-        
-                                throw new WFSException(request, mesg, "InvalidParameterValue");
-                            }
-                            
-                            metaPropNames.add(propName);
-                        }
-                        
-                        // if we need to force feature bounds computation, we have to load 
-                        // all of the geometries, but we'll have to remove them in the 
-                        // returned feature type
-                        if(wfs.isFeatureBounding()) {
-                            metaAllPropNames = addGeometryProperties(meta, metaPropNames);
-                        } else {
-                            metaAllPropNames = metaPropNames;
-                        }     
-                        
-                        //we must also include any properties that are mandatory ( even if not requested ),
-                        // ie. those with minOccurs > 0
-                        //only do this for simple features, complex mandatory features are handled by app-schema
-                        if (meta.getFeatureType() instanceof SimpleFeatureType) {
-                            metaAllPropNames = 
-                                DataUtilities.addMandatoryProperties((SimpleFeatureType) meta.getFeatureType(), metaAllPropNames);
-                            metaPropNames = 
-                                DataUtilities.addMandatoryProperties((SimpleFeatureType) meta.getFeatureType(), metaPropNames);
-                        }
-                        //for complex features, mandatory properties need to be handled by datastore.
-                    }
-                    allPropNames.add(metaAllPropNames);
-                    propNames.add(metaPropNames);
-                }
-
-
-                // validate sortby if present
-                List<SortBy> sortBy = query.getSortBy();
-                if (sortBy != null && !sortBy.isEmpty()
-                        && meta.getFeatureType() instanceof SimpleFeatureType) {
-                    validateSortBy(sortBy, meta, request);
-                }
-
-                // load primary feature source
-                Hints hints = null;
-                if (joins != null) {
-                    hints = new Hints(ResourcePool.JOINS, joins);
-                }
-                FeatureSource<? extends FeatureType, ? extends Feature> source = 
-                    primaryMeta.getFeatureSource(null, hints);
 
-                // handle local maximum
-                int queryMaxFeatures = maxFeatures - count;
-                int metaMaxFeatures = maxFeatures(metas);
-                if (metaMaxFeatures > 0 && metaMaxFeatures < queryMaxFeatures) {
-                    queryMaxFeatures = metaMaxFeatures;
-                }
-                Map<String, String> viewParam = viewParams != null ? viewParams.get(i) : null;
                 org.geotools.data.Query gtQuery = toDataQuery(query, filter, offset,
                         queryMaxFeatures, source, request, allPropNames.get(0), viewParam,
                             joins, primaryTypeName, primaryAlias);
 
+                if (keyset != null) {
+                    keyset.apply(gtQuery, token);
+                }
+
                 if (LOGGER.isLoggable(Level.FINE)) {
                     LOGGER.fine("Query is " + query + "\n To gt2: " + gtQuery);
                 }
@@ -582,6 +516,10 @@ public class GetFeature {
                     gtQuery = context.getQuery();
                 }
 
+                if (keyset != null) {
+                    nextToken = keyset.next(source, gtQuery, queryMaxFeatures, offset);
+                }
+
 
                 FeatureCollection<? extends FeatureType, ? extends Feature> features = getFeatures(request, source, gtQuery);
 
@@ -603,7 +541,10 @@ public class GetFeature {
 
                 int size = 0;
                 if (calculateSize) {
-                    size = features.size();
+                    size = prepared.getSize(offset, queryMaxFeatures);
+                    if (size < 0) {
+                        size = features.size();
+                    }
                 }
                 
                 //update the count
@@ -636,12 +577,15 @@ public class GetFeature {
                     else {
                         //no features might have been because of the offset that was specified, check 
                         // the size of the same query but with no offset
-                        org.geotools.data.Query q2 = toDataQuery(query, filter, 0,
-                                queryMaxFeatures, source, request, allPropNames.get(0),
-                                viewParam, joins, primaryTypeName, primaryAlias);
-                        
-                        //int size2 = getFeatures(request, source, q2).size();
-                        int size2 = source.getCount(q2);
+                        int size2 = prepared.getSize(0, queryMaxFeatures);
+                        if (size2 < 0) {
+                            org.geotools.data.Query q2 = toDataQuery(query, filter, 0,
+                                    queryMaxFeatures, source, request, allPropNames.get(0),
+                                    viewParam, joins, primaryTypeName, primaryAlias);
+
+                            //size2 = getFeatures(request, source, q2).size();
+                            size2 = source.getCount(q2);
+                        }
                         if (size2 > 0) {
                             //adjust the offset for the next query
                             offset = Math.max(0, offset - size2);
@@ -706,18 +650,7 @@ public class GetFeature {
                     
                     @Override
                     public Object loadObject() throws Exception {
-                        long totalCount = 0;
-                        for (CountExecutor q : totalCountExecutors) {
-                            int result = q.getCount();
-                            // if the count is unknown for one, we don't know the total, period
-                            if(result == -1) {
-                                totalCount = -1;
-                                break;
-                            } else {
-                                totalCount += result;
-                            }
-                        }
-                        return BigInteger.valueOf(totalCount);
+                        return BigInteger.valueOf(getTotalCount(totalCountExecutors));
                     }
                 });
                 totalCount = (BigInteger) enhancer.create(new Class[] {String.class}, new Object[] {"0"});
@@ -726,9 +659,391 @@ public class GetFeature {
             throw new WFSException(request, "Error occurred getting features", e, request.getHandle());
         } catch (SchemaException e) {
             throw new WFSException(request, "Error occurred getting features", e, request.getHandle());
+        } finally {
+            // stop preparing and counting the queries whose results are not needed anymore
+            if (prefetched != null) {
+                for (Future<PreparedQuery> future : prefetched) {
+                    future.cancel(true);
+                }
+            }
+            for (Future<Integer> future : prefetchedSizes) {
+                future.cancel(true);
+            }
         }
         
-        return buildResults(request, totalOffset, maxFeatures, count, totalCount, results, lockId, getFeatureById);
+        FeatureCollectionResponse result = buildResults(request, totalOffset, maxFeatures, count,
+                totalCount, results, lockId, getFeatureById);
+        // the keyset paging token only applies to the page following this one
+        if (nextToken != null && result.getNext() != null) {
+            result.setNext(ResponseUtils.appendQueryString(result.getNext(),
+                    KeysetPaging.TOKEN + "=" + ResponseUtils.urlEncode(nextToken)));
+        }
+        return result;
+    }
+
+    /**
+     * Validates a query, and resolves the feature types, filter, joins, property names and feature
+     * source needed to run it
+     */
+    PreparedQuery prepareQuery(GetFeatureRequest request, Query query) throws IOException {
+        //alias sanity check
+        if (!query.getAliases().isEmpty()) {
+            if (query.getAliases().size() != query.getTypeNames().size()) {
+                throw new WFSException(request, String.format("Query specifies %d type names and %d " +
+                    "aliases, must be equal", query.getTypeNames().size(), query.getAliases().size()));
+            }
+        }
+
+        List<FeatureTypeInfo> metas = new ArrayList();
+        for (QName typeName : query.getTypeNames()) {
+            metas.add(featureTypeInfo(typeName, request));
+        }
+
+        // first is the primary feature type
+        FeatureTypeInfo meta = metas.get(0);
+
+        // parse the requested property names and distribute among requested types
+        List<List<String>> reqPropertyNames = parsePropertyNames(query, metas);
+
+        NamespaceSupport ns = getNamespaceSupport();
+
+        //set up joins (if specified)
+        List<Join> joins = null;
+        String primaryAlias = null;
+        QName primaryTypeName = query.getTypeNames().get(0);
+        FeatureTypeInfo primaryMeta = metas.get(0);
+
+        //make sure filters are sane
+        //
+        // Validation of filters on non-simple feature types is not yet supported.
+        // FIXME: Support validation of filters on non-simple feature types:
+        // need to consider xpath properties and how to configure namespace prefixes in
+        // GeoTools app-schema FeaturePropertyAccessorFactory.
+        Filter filter = query.getFilter();
+
+        if (filter == null && metas.size() > 1) {
+            throw new WFSException(request, "Join query must specify a filter");
+        }
+
+        if (filter != null) {
+            if (meta.getFeatureType() instanceof SimpleFeatureType) {
+                if (metas.size() > 1) {
+                    // sanitize aliases, they must not conflict with feature type names
+                    // nor with their attributes
+                    query = AliasedQuery.fixAliases(metas, query);
+                    // the filter might have been rewritten
+                    filter = query.getFilter();
+
+                    // the join extracting visitor cannot handle negated filters,
+                    // the simplifier handles most common case removing the negation,
+                    // e.g., not(a < 10) -> a >= 10
+                    filter = SimplifyingFilterVisitor.simplify(filter);
+
+                    // join, need to separate the joining filter from other filters
+                    JoinExtractingVisitor extractor =
+                            new JoinExtractingVisitor(metas, query.getAliases());
+                    extractor.setQueriedTypes(query.getTypeNames());
+                    filter.accept(extractor, null);
+
+                    primaryAlias = extractor.getPrimaryAlias();
+                    primaryMeta = extractor.getPrimaryFeatureType();
+                    metas = extractor.getFeatureTypes();
+                    primaryTypeName = new QName(primaryMeta.getNamespace().getURI(),
+                            primaryMeta.getName());
+                    joins = extractor.getJoins();
+                    if (joins.size() != metas.size()-1) {
+                        throw new WFSException(request, String.format("Query specified %d types but %d " +
+                                "join filters were found", metas.size(), extractor.getJoins().size()));
+                    }
+
+                    // validate the filter for each join, as well as the join filter
+                    for (int j = 1; j < metas.size(); j++) {
+                        Join join = joins.get(j-1);
+                        if (!isValidJoinFilter(join.getJoinFilter())) {
+                            throw new WFSException(request,
+                                    "Unable to perform join with specified join filter: "
+                                            + filter);
+                        }
+
+                        if (join.getFilter() != null) {
+                            validateFilter(join.getFilter(), query, metas.get(j), request);
+                        }
+                    }
+
+                    filter = extractor.getPrimaryFilter();
+                    if (filter != null) {
+                        validateFilter(filter, query, primaryMeta, request);
+                    }
+                }
+                else {
+                    validateFilter(filter, query, meta, request);
+                }
+            } else {
+                BBOXNamespaceSettingVisitor filterVisitor = new BBOXNamespaceSettingVisitor(ns);
+                filter.accept(filterVisitor, null);
+            }
+        }
+
+        List<List<PropertyName>> propNames = new ArrayList();
+        List<List<PropertyName>> allPropNames = new ArrayList();
+
+        for (int j = 0; j < metas.size(); j++) {
+            List<String> propertyNames = reqPropertyNames.get(j);
+            List<PropertyName> metaPropNames = null;
+            List<PropertyName> metaAllPropNames = null;
+            if (!propertyNames.isEmpty()){
+
+                metaPropNames = new ArrayList<PropertyName>();
+
+                for (Iterator iter = propertyNames.iterator(); iter.hasNext();) {
+                    PropertyName propName = createPropertyName((String) iter.next(), ns);
+
+                    if ( propName.evaluate(meta.getFeatureType()) == null) {
+                        String mesg = "Requested property: " + propName + " is " + "not available "
+                            + "for " + meta.getPrefixedName() + ".  ";
+
+                        if (meta.getFeatureType() instanceof SimpleFeatureType) {
+                            List<AttributeTypeInfo> atts = meta.attributes();
+                            List attNames = new ArrayList( atts.size() );
+                            for ( AttributeTypeInfo att : atts ) {
+                                attNames.add( att.getName() );
+                            }
+                            mesg += "The possible propertyName values are: " + attNames;
+                        }
+
+                        throw new WFSException(request, mesg, "InvalidParameterValue");
+                    }
+
+                    metaPropNames.add(propName);
+                }
+
+                // if we need to force feature bounds computation, we have to load
+                // all of the geometries, but we'll have to remove them in the
+                // returned feature type
+                if(wfs.isFeatureBounding()) {
+                    metaAllPropNames = addGeometryProperties(meta, metaPropNames);
+                } else {
+                    metaAllPropNames = metaPropNames;
+                }
+
+                //we must also include any properties that are mandatory ( even if not requested ),
+                // ie. those with minOccurs > 0
+                //only do this for simple features, complex mandatory features are handled by app-schema
+                if (meta.getFeatureType() instanceof SimpleFeatureType) {
+                    metaAllPropNames =
+                        DataUtilities.addMandatoryProperties((SimpleFeatureType) meta.getFeatureType(), metaAllPropNames);
+                    metaPropNames =
+                        DataUtilities.addMandatoryProperties((SimpleFeatureType) meta.getFeatureType(), metaPropNames);
+                }
+                //for complex features, mandatory properties need to be handled by datastore.
+            }
+            allPropNames.add(metaAllPropNames);
+            propNames.add(metaPropNames);
+        }
+
+
+        // validate sortby if present
+        List<SortBy> sortBy = query.getSortBy();
+        if (sortBy != null && !sortBy.isEmpty()
+                && meta.getFeatureType() instanceof SimpleFeatureType) {
+            validateSortBy(sortBy, meta, request);
+        }
+
+        // load primary feature source
+        Hints hints = null;
+        if (joins != null) {
+            hints = new Hints(ResourcePool.JOINS, joins);
+        }
+        FeatureSource<? extends FeatureType, ? extends Feature> source =
+            primaryMeta.getFeatureSource(null, hints);
+
+        return new PreparedQuery(query, meta, metas, filter, joins, primaryTypeName, primaryAlias,
+                propNames, allPropNames, sortBy, source);
+    }
+
+    /**
+     * Prepares the queries on the executor
+     */
+    List<Future<PreparedQuery>> prefetch(ExecutorService executor,
+            final GetFeatureRequest request, List<Query> queries) {
+        List<Future<PreparedQuery>> futures = new ArrayList<>(queries.size());
+        for (final Query query : queries) {
+            final ThreadLocalsTransfer threadLocalsTransfer = new ThreadLocalsTransfer();
+            futures.add(executor.submit(() -> {
+                try {
+                    threadLocalsTransfer.apply();
+                    return prepareQuery(request, query);
+                } finally {
+                    threadLocalsTransfer.cleanup();
+                }
+            }));
+        }
+        return futures;
+    }
+
+    /**
+     * Starts counting the features of the prepared query on the executor, unless already done,
+     * assuming no offset and up to maxFeatures results, as the number of features returned by the
+     * queries before it might not be known yet
+     */
+    void prefetchSize(ExecutorService executor, final GetFeatureRequest request,
+            final PreparedQuery prepared, final Map<String, String> viewParam, int maxFeatures,
+            List<Future<Integer>> sizes) {
+        if (prepared.size != null) {
+            return;
+        }
+        int limit = maxFeatures;
+        int metaMaxFeatures = maxFeatures(prepared.metas);
+        if (metaMaxFeatures > 0 && metaMaxFeatures < limit) {
+            limit = metaMaxFeatures;
+        }
+        final int sizeLimit = limit;
+        final ThreadLocalsTransfer threadLocalsTransfer = new ThreadLocalsTransfer();
+        prepared.size = executor.submit(() -> {
+            try {
+                threadLocalsTransfer.apply();
+                org.geotools.data.Query sizeQuery = toDataQuery(prepared.query, prepared.filter,
+                        -1, sizeLimit, prepared.source, request, prepared.allPropNames.get(0),
+                        viewParam, prepared.joins, prepared.primaryTypeName,
+                        prepared.primaryAlias);
+                return getFeatures(request, prepared.source, sizeQuery).size();
+            } finally {
+                threadLocalsTransfer.cleanup();
+            }
+        });
+        prepared.sizeLimit = sizeLimit;
+        sizes.add(prepared.size);
+    }
+
+    /**
+     * Sums up the counts, running them in parallel if possible, returns -1 if any of them is
+     * unknown
+     */
+    long getTotalCount(List<CountExecutor> counts) throws IOException {
+        ExecutorService executor = counts.size() > 1 ? getQueryExecutor() : null;
+        List<Future<Integer>> futures = new ArrayList<>(counts.size());
+        if (executor != null) {
+            for (final CountExecutor count : counts) {
+                final ThreadLocalsTransfer threadLocalsTransfer = new ThreadLocalsTransfer();
+                futures.add(executor.submit(() -> {
+                    try {
+                        threadLocalsTransfer.apply();
+                        return count.getCount();
+                    } finally {
+                        threadLocalsTransfer.cleanup();
+                    }
+                }));
+            }
+        }
+
+        try {
+            long totalCount = 0;
+            for (int i = 0; i < counts.size(); i++) {
+                int result = futures.isEmpty() ? counts.get(i).getCount()
+                        : getResult(futures.get(i));
+                // if the count is unknown for one, we don't know the total, period
+                if (result == -1) {
+                    return -1;
+                }
+                totalCount += result;
+            }
+            return totalCount;
+        } finally {
+            for (Future<Integer> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Returns the result of a task run on the query executor, reporting its failure as if it
+     * happened in this thread
+     */
+    static <T> T getResult(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new WFSException("Interrupted while getting features", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new WFSException("Error occurred getting features", cause);
+        }
+    }
+
+    /**
+     * A query ready to be run, along with its size if computed ahead
+     */
+    static class PreparedQuery {
+        final Query query;
+
+        final FeatureTypeInfo meta;
+
+        final List<FeatureTypeInfo> metas;
+
+        final Filter filter;
+
+        final List<Join> joins;
+
+        final QName primaryTypeName;
+
+        final String primaryAlias;
+
+        final List<List<PropertyName>> propNames;
+
+        final List<List<PropertyName>> allPropNames;
+
+        final List<SortBy> sortBy;
+
+        final FeatureSource<? extends FeatureType, ? extends Feature> source;
+
+        /** The number of features matched, up to sizeLimit, or null if not counted ahead */
+        Future<Integer> size;
+
+        int sizeLimit;
+
+        PreparedQuery(Query query, FeatureTypeInfo meta, List<FeatureTypeInfo> metas,
+                Filter filter, List<Join> joins, QName primaryTypeName, String primaryAlias,
+                List<List<PropertyName>> propNames, List<List<PropertyName>> allPropNames,
+                List<SortBy> sortBy, FeatureSource<? extends FeatureType, ? extends Feature> source) {
+            this.query = query;
+            this.meta = meta;
+            this.metas = metas;
+            this.filter = filter;
+            this.joins = joins;
+            this.primaryTypeName = primaryTypeName;
+            this.primaryAlias = primaryAlias;
+            this.propNames = propNames;
+            this.allPropNames = allPropNames;
+            this.sortBy = sortBy;
+            this.source = source;
+        }
+
+        /**
+         * Returns the number of features the query returns with the given offset and limit, or
+         * -1 if it cannot be derived from the size computed ahead
+         */
+        int getSize(int offset, int limit) throws IOException {
+            if (size == null || limit > sizeLimit) {
+                return -1;
+            }
+            int size = getResult(this.size);
+            if (offset <= 0) {
+                return Math.min(size, limit);
+            }
+            // with an offset the total must be known, that is, below the limit
+            if (size < sizeLimit) {
+                return Math.max(0, Math.min(size - offset, limit));
+            }
+            return -1;
+        }
     }
 
     private Filter toFeatureIdFilter(List<FeatureId> lockedFeatures) {
@@ -854,6 +1169,8 @@ public class GetFeature {
                 //generate kvp map from request object
                 kvp = buildKvpFromRequest(request);
             }
+            // a token only applies to the page following the current one
+            kvp.remove(KeysetPaging.TOKEN.toUpperCase());
             
             // WFS 2.0 specific, must have a next and should point to the first result
             if (request.isResultTypeHits() && (request.getVersion() == null || request.getVersion().startsWith("2"))) {
@@ -0,0 +1,94 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wfs;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.geoserver.platform.GeoServerExtensions;
+import org.springframework.beans.factory.DisposableBean;
+
+/**
+ * Holds the thread pool {@link GetFeature} uses to prepare the queries of a request, and compute
+ * their sizes and total counts, in parallel.
+ * <p>
+ * The pool size is read from the {@value #QUERY_THREADS_KEY} property, by default as many threads
+ * as the available processors, one or less to run the queries sequentially.
+ * </p>
+ */
+public class GetFeatureExecutor implements DisposableBean {
+
+    /**
+     * Property setting the number of threads used to run the queries of a GetFeature in parallel
+     */
+    public static final String QUERY_THREADS_KEY = "org.geoserver.wfs.getFeature.queryThreads";
+
+    private int threads;
+
+    private ExecutorService executor;
+
+    private boolean disposed;
+
+    public GetFeatureExecutor() {
+        this(GeoServerExtensions.getIntegerProperty(QUERY_THREADS_KEY,
+                Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * @param threads The number of threads used to run the queries, one or less to run them
+     *        sequentially
+     */
+    public GetFeatureExecutor(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * Returns the executor running queries in parallel, or {@code null} if queries have to be
+     * run sequentially
+     */
+    public synchronized ExecutorService getExecutor() {
+        if (threads <= 1 || disposed) {
+            return null;
+        }
+        if (executor == null) {
+            final AtomicInteger counter = new AtomicInteger();
+            executor = Executors.newFixedThreadPool(threads, r -> {
+                Thread thread = new Thread(r, "GetFeature-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return executor;
+    }
+
+    /**
+     * The number of threads used to run queries in parallel
+     */
+    public synchronized int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Sets the number of threads used to run queries in parallel, one or less to run them
+     * sequentially. The current pool, if any, is shut down once its tasks are completed.
+     */
+    public synchronized void setThreads(int threads) {
+        if (threads != this.threads && executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+        this.threads = threads;
+    }
+
+    @Override
+    public synchronized void destroy() throws Exception {
+        disposed = true;
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+}
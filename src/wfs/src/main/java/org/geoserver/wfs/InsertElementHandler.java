@@ -6,14 +6,17 @@
 package org.geoserver.wfs;
 
 import com.vividsolutions.jts.geom.Geometry;
+import org.geoserver.catalog.Catalog;
 import org.geoserver.catalog.FeatureTypeInfo;
 import org.geoserver.config.GeoServer;
 import org.geoserver.feature.ReprojectingFeatureCollection;
+import org.geoserver.platform.GeoServerExtensions;
 import org.geoserver.platform.ServiceException;
 import org.geoserver.wfs.request.Insert;
 import org.geoserver.wfs.request.TransactionElement;
 import org.geoserver.wfs.request.TransactionRequest;
 import org.geoserver.wfs.request.TransactionResponse;
+import org.geoserver.wfs.xml.StreamedInsert;
 import org.geotools.data.DataUtilities;
 import org.geotools.data.FeatureStore;
 import org.geotools.data.collection.ListFeatureCollection;
@@ -33,35 +36,72 @@ import org.opengis.feature.type.GeometryDescriptor;
 import org.opengis.filter.FilterFactory;
 import org.opengis.filter.identity.FeatureId;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.springframework.beans.factory.DisposableBean;
 
 import javax.xml.namespace.QName;
 import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 
 /**
  * Handler for the insert element
+ * <p>
+ * The features of each type are written at once, or in batches of {@value #INSERT_BATCH_SIZE_KEY}
+ * features if the property is set. When batching, the next batch is checked and reprojected on a
+ * pool of {@value #PREPARATION_THREADS_KEY} threads (by default, as many as the available
+ * processors) while the current one is being written. Transaction listeners are notified once per
+ * batch, and fids are reported in the same order as the features.
+ * </p>
  *
  * @author Andrea Aime - TOPP
  *
  */
-public class InsertElementHandler extends AbstractTransactionElementHandler {
+public class InsertElementHandler extends AbstractTransactionElementHandler
+        implements DisposableBean {
     /**
      * logger
      */
     static Logger LOGGER = org.geotools.util.logging.Logging.getLogger("org.geoserver.wfs");
+
+    /**
+     * Property setting the number of features inserted by each store call
+     */
+    public static final String INSERT_BATCH_SIZE_KEY = "org.geoserver.wfs.transaction.insertBatchSize";
+
+    /**
+     * Property setting the number of threads preparing the insert batches ahead
+     */
+    public static final String PREPARATION_THREADS_KEY = "org.geoserver.wfs.transaction.preparationThreads";
+
     private FilterFactory filterFactory;
 
+    private int insertBatchSize;
+
+    private int preparationThreads;
+
+    private ExecutorService executor;
+
+    private boolean disposed;
+
     public InsertElementHandler(GeoServer gs, FilterFactory filterFactory) {
         super(gs);
         this.filterFactory = filterFactory;
+        this.insertBatchSize = GeoServerExtensions.getIntegerProperty(INSERT_BATCH_SIZE_KEY, 0);
+        this.preparationThreads = GeoServerExtensions.getIntegerProperty(PREPARATION_THREADS_KEY,
+                Runtime.getRuntime().availableProcessors());
     }
 
     public void checkValidity(TransactionElement element, Map<QName, FeatureTypeInfo> featureTypeInfos)
@@ -78,14 +118,43 @@ public class InsertElementHandler extends AbstractTransactionElementHandler {
         Insert insert = (Insert) element;
         LOGGER.finer("Transaction Insert:" + insert);
 
+        StreamedInsert streamed = StreamedInsert.get(insert);
+        if (streamed == null) {
+            insertFeatures(insert, insert.getFeatures(), request, featureStores, response,
+                    listener);
+            return;
+        }
+
+        // the features were spooled by the streaming parser, insert them one batch at a time
+        try (StreamedInsert.Batches batches = streamed.batches()) {
+            List batch;
+            while ((batch = batches.next()) != null) {
+                checkParsedFeatures(request, batch);
+                insertFeatures(insert, batch, request, featureStores, response, listener);
+            }
+        } catch (WFSException e) {
+            throw e;
+        } catch (Exception e) {
+            String msg = "Error performing insert: " + e.getMessage();
+            throw new WFSTransactionException(msg, e, insert.getHandle());
+        } finally {
+            streamed.dispose();
+        }
+    }
+
+    /**
+     * Inserts the features, reporting the fids in the same order as the features
+     */
+    @SuppressWarnings("unchecked")
+    void insertFeatures(Insert insert, List featureList, TransactionRequest request,
+            Map featureStores, TransactionResponse response, TransactionListener listener)
+            throws WFSTransactionException {
         long inserted = response.getTotalInserted().longValue();
 
         try {
             // group features by their schema
             HashMap /* <SimpleFeatureType,FeatureCollection> */ schema2features = new HashMap();
 
-            
-            List featureList = insert.getFeatures();
             for (Iterator f = featureList.iterator(); f.hasNext();) {
                 SimpleFeature feature = (SimpleFeature) f.next();
                 SimpleFeatureType schema = feature.getFeatureType();
@@ -136,21 +205,6 @@ public class InsertElementHandler extends AbstractTransactionElementHandler {
                 }
 
                 if (collection != null) {
-                    // if we really need to, make sure we are inserting coordinates that do
-                    // match the CRS area of validity
-                    if(getInfo().isCiteCompliant()) {
-                        checkFeatureCoordinatesRange(collection);
-                    }
-                    
-                    // reprojection
-                    final GeometryDescriptor defaultGeometry = store.getSchema().getGeometryDescriptor();
-                    if(defaultGeometry != null) {
-                        CoordinateReferenceSystem target = defaultGeometry.getCoordinateReferenceSystem();
-                        if (target != null /* && !CRS.equalsIgnoreMetadata(collection.getSchema().getCoordinateReferenceSystem(), target) */) {
-                            collection = new ReprojectingFeatureCollection(collection, target);
-                        }
-                    }
-                    
                     // Need to use the namespace here for the
                     // lookup, due to our weird
                     // prefixed internal typenames. see
@@ -182,19 +236,57 @@ public class InsertElementHandler extends AbstractTransactionElementHandler {
                         schema2fids.put(schema.getTypeName(), fids);
                     }
 
-                    //fire pre insert event
-                    TransactionEvent event = new TransactionEvent(TransactionEventType.PRE_INSERT,
-                            request, elementName, collection);
-                    event.setSource(Insert.WFS11.unadapt(insert));
-                    
-                    listener.dataStoreChange( event );
-                    fids.addAll(store.addFeatures(collection));
-                    
-                    //fire post insert event
-                    SimpleFeatureCollection features = store.getFeatures(filterFactory.id(new HashSet<FeatureId>(fids)));
-                    event = new TransactionEvent(TransactionEventType.POST_INSERT, request, 
-                        elementName, features, Insert.WFS11.unadapt(insert));
-                    listener.dataStoreChange( event );
+                    // reprojection target
+                    CoordinateReferenceSystem target = null;
+                    final GeometryDescriptor defaultGeometry = store.getSchema().getGeometryDescriptor();
+                    if(defaultGeometry != null) {
+                        target = defaultGeometry.getCoordinateReferenceSystem();
+                    }
+
+                    // write the features in batches, preparing the next batch while the
+                    // current one is being written
+                    // (the service configuration is workspace specific, look it up in this thread)
+                    final boolean cite = getInfo().isCiteCompliant();
+                    List<SimpleFeatureCollection> batches = split(collection);
+                    ExecutorService executor = batches.size() > 1 ? getExecutor() : null;
+                    Future<SimpleFeatureCollection> next = null;
+                    try {
+                        for (int i = 0; i < batches.size(); i++) {
+                            SimpleFeatureCollection batch;
+                            if (next != null) {
+                                batch = getPrepared(next);
+                            } else {
+                                // prepared the same way as the batches prepared ahead, so that
+                                // the listeners see the same kind of collection for all batches
+                                batch = prepare(batches.get(i), target, cite, executor != null);
+                            }
+                            next = null;
+                            if (executor != null && i + 1 < batches.size()) {
+                                final SimpleFeatureCollection following = batches.get(i + 1);
+                                final CoordinateReferenceSystem crs = target;
+                                next = executor.submit(() -> prepare(following, crs, cite, true));
+                            }
+
+                            //fire pre insert event
+                            TransactionEvent event = new TransactionEvent(TransactionEventType.PRE_INSERT,
+                                    request, elementName, batch);
+                            event.setSource(Insert.WFS11.unadapt(insert));
+
+                            listener.dataStoreChange( event );
+                            List<FeatureId> batchFids = store.addFeatures(batch);
+                            fids.addAll(batchFids);
+
+                            //fire post insert event
+                            SimpleFeatureCollection features = store.getFeatures(filterFactory.id(new HashSet<FeatureId>(batchFids)));
+                            event = new TransactionEvent(TransactionEventType.POST_INSERT, request, 
+                                elementName, features, Insert.WFS11.unadapt(insert));
+                            listener.dataStoreChange( event );
+                        }
+                    } finally {
+                        if (next != null) {
+                            next.cancel(true);
+                        }
+                    }
                 }
             }
 
@@ -223,6 +315,126 @@ public class InsertElementHandler extends AbstractTransactionElementHandler {
     }
 
     
+    /**
+     * Splits the collection in batches of {@link #getInsertBatchSize()} features, if a batch size
+     * is set
+     */
+    List<SimpleFeatureCollection> split(SimpleFeatureCollection collection) {
+        if (insertBatchSize <= 0 || collection.size() <= insertBatchSize) {
+            return Collections.singletonList(collection);
+        }
+        List<SimpleFeatureCollection> batches = new ArrayList<>();
+        ListFeatureCollection batch = null;
+        SimpleFeatureIterator fi = collection.features();
+        try {
+            while (fi.hasNext()) {
+                if (batch == null || batch.size() == insertBatchSize) {
+                    batch = new ListFeatureCollection(collection.getSchema());
+                    batches.add(batch);
+                }
+                batch.add(fi.next());
+            }
+        } finally {
+            fi.close();
+        }
+        return batches;
+    }
+
+    /**
+     * Checks the coordinates range in cite mode, and reprojects the features to the target crs.
+     * Reprojection is lazy unless materialize is true, in which case the reprojected features are
+     * computed right away, in the calling thread.
+     */
+    SimpleFeatureCollection prepare(SimpleFeatureCollection collection,
+            CoordinateReferenceSystem target, boolean cite, boolean materialize)
+            throws Exception {
+        // if we really need to, make sure we are inserting coordinates that do
+        // match the CRS area of validity
+        if(cite) {
+            checkFeatureCoordinatesRange(collection);
+        }
+
+        // reprojection
+        if (target != null /* && !CRS.equalsIgnoreMetadata(collection.getSchema().getCoordinateReferenceSystem(), target) */) {
+            collection = new ReprojectingFeatureCollection(collection, target);
+            if (materialize) {
+                collection = new ListFeatureCollection(collection.getSchema(),
+                        DataUtilities.list(collection));
+            }
+        }
+        return collection;
+    }
+
+    private SimpleFeatureCollection getPrepared(Future<SimpleFeatureCollection> future)
+            throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            // report the failure as if it happened in this thread
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    /**
+     * Returns the executor preparing batches of features ahead, or {@code null} if batches have to
+     * be prepared as they get written
+     */
+    synchronized ExecutorService getExecutor() {
+        if (preparationThreads <= 0 || disposed) {
+            return null;
+        }
+        if (executor == null) {
+            final AtomicInteger counter = new AtomicInteger();
+            executor = Executors.newFixedThreadPool(preparationThreads, r -> {
+                Thread thread = new Thread(r, "WFSInsert-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return executor;
+    }
+
+    @Override
+    public synchronized void destroy() throws Exception {
+        disposed = true;
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    /**
+     * The number of features written by each {@link SimpleFeatureStore#addFeatures} call, zero
+     * or less to write all the features of a type at once
+     */
+    public int getInsertBatchSize() {
+        return insertBatchSize;
+    }
+
+    public void setInsertBatchSize(int insertBatchSize) {
+        this.insertBatchSize = insertBatchSize;
+    }
+
+    /**
+     * The number of threads preparing batches ahead, zero or less to prepare them as they get
+     * written
+     */
+    public int getPreparationThreads() {
+        return preparationThreads;
+    }
+
+    /**
+     * Sets the number of threads preparing batches ahead, takes effect if set before the first
+     * batched insert
+     */
+    public void setPreparationThreads(int preparationThreads) {
+        this.preparationThreads = preparationThreads;
+    }
+
     /**
      * Checks that all features coordinates are within the expected coordinate range
      * @param collection
@@ -257,25 +469,28 @@ public class InsertElementHandler extends AbstractTransactionElementHandler {
 
     public QName[] getTypeNames(TransactionRequest request, TransactionElement element) throws WFSTransactionException {
         Insert insert = (Insert) element;
+
+        // spooled features are parsed batch by batch, but the regular parser would not have
+        // recognized features of unknown types, fail the same way
+        StreamedInsert streamed = StreamedInsert.get(insert);
+        if (streamed != null) {
+            Catalog catalog = geoServer.getCatalog();
+            for (QName name : streamed.getTypeNames()) {
+                if (catalog.getFeatureTypeByName(name.getNamespaceURI(),
+                        name.getLocalPart()) == null) {
+                    throw unparsedFeatures(request);
+                }
+            }
+            return streamed.getTypeNames().toArray(new QName[streamed.getTypeNames().size()]);
+        }
         
         List typeNames = new ArrayList();
 
         List features = insert.getFeatures();
         if (!features.isEmpty()) {
+            checkParsedFeatures(request, features);
             for (Iterator f = features.iterator(); f.hasNext();) {
-                Object next = f.next();
-                // if parsing fails the parser just returns a Map, do throw an error in this case
-                if (!(next instanceof SimpleFeature)) {
-                    String version = request.getVersion();
-                    String code;
-                    if (version == null || new Version(version).compareTo(WFSInfo.Version.V_20.getVersion()) >= 0) {
-                        code = WFSException.INVALID_VALUE;
-                    } else {
-                        code = ServiceException.INVALID_PARAMETER_VALUE;
-                    }
-                    throw new WFSException(request, "Could not parse input features", code);
-                }
-                SimpleFeature feature = (SimpleFeature) next;
+                SimpleFeature feature = (SimpleFeature) f.next();
 
                 String name = feature.getFeatureType().getTypeName();
                 String namespaceURI = feature.getFeatureType().getName().getNamespaceURI();
@@ -288,4 +503,26 @@ public class InsertElementHandler extends AbstractTransactionElementHandler {
 
         return (QName[]) typeNames.toArray(new QName[typeNames.size()]);
     }
+
+    /**
+     * Checks the features have been parsed, if parsing fails the parser just returns a Map
+     */
+    void checkParsedFeatures(TransactionRequest request, List features) {
+        for (Object feature : features) {
+            if (!(feature instanceof SimpleFeature)) {
+                throw unparsedFeatures(request);
+            }
+        }
+    }
+
+    WFSException unparsedFeatures(TransactionRequest request) {
+        String version = request.getVersion();
+        String code;
+        if (version == null || new Version(version).compareTo(WFSInfo.Version.V_20.getVersion()) >= 0) {
+            code = WFSException.INVALID_VALUE;
+        } else {
+            code = ServiceException.INVALID_PARAMETER_VALUE;
+        }
+        return new WFSException(request, "Could not parse input features", code);
+    }
 }
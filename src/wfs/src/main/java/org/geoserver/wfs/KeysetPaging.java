@@ -0,0 +1,469 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wfs;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geoserver.catalog.FeatureTypeInfo;
+import org.geoserver.platform.GeoServerExtensions;
+import org.geoserver.platform.ServiceException;
+import org.geoserver.wfs.request.RequestObject;
+import org.geotools.data.DataAccess;
+import org.geotools.data.FeatureSource;
+import org.geotools.data.Query;
+import org.geotools.factory.CommonFactoryFinder;
+import org.geotools.feature.FeatureIterator;
+import org.geotools.jdbc.JDBCDataStore;
+import org.geotools.jdbc.PrimaryKey;
+import org.geotools.jdbc.PrimaryKeyColumn;
+import org.geotools.util.Converters;
+import org.geotools.util.logging.Logging;
+import org.opengis.feature.Feature;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.AttributeDescriptor;
+import org.opengis.feature.type.FeatureType;
+import org.opengis.filter.Filter;
+import org.opengis.filter.FilterFactory2;
+import org.opengis.filter.expression.Literal;
+import org.opengis.filter.expression.PropertyName;
+import org.opengis.filter.sort.SortBy;
+import org.opengis.filter.sort.SortOrder;
+
+/**
+ * Keyset (seek) paging support for GetFeature.
+ * <p>
+ * With offset paging the store has to read and discard all the features before the requested
+ * start index, so deep pages get slower and slower. In keyset mode the features are sorted on the
+ * requested sort properties followed by a unique key, and the next page links carry an opaque
+ * continuation token holding the key values of the last feature returned. The token is turned
+ * back into a filter selecting the features following it, so that with an index on the keys each
+ * page costs about the same whatever its depth.
+ * </p>
+ * <p>
+ * The mode is disabled by default, it's enabled by setting the {@link #KEYSET_PAGING_KEY}
+ * property to true. The unique key is read from the {@link #KEY_ATTRIBUTES} metadata entry of the
+ * feature type, a comma separated list of attribute names, or else from the primary key of JDBC
+ * stores, when exposed as attributes. Feature types without a unique key keep using offset
+ * paging, and so do results with null values in the sort attributes, as the filter cannot seek
+ * past them and their position in the sort is up to the store. Previous page links keep using
+ * the start index, as seeking backwards would require reversing the sort.
+ * </p>
+ */
+public class KeysetPaging {
+
+    static final Logger LOGGER = Logging.getLogger(KeysetPaging.class);
+
+    static final FilterFactory2 FF = CommonFactoryFinder.getFilterFactory2();
+
+    /**
+     * Enables keyset paging
+     */
+    public static final String KEYSET_PAGING_KEY = "org.geoserver.wfs.keysetPaging";
+
+    /**
+     * Feature type metadata entry listing the attributes making up a unique key
+     */
+    public static final String KEY_ATTRIBUTES = "keysetPagingKey";
+
+    /**
+     * The request parameter carrying the continuation token
+     */
+    public static final String TOKEN = "continuationToken";
+
+    static final String SEPARATOR = ",";
+
+    static final String ASCENDING = "A";
+
+    static final String DESCENDING = "D";
+
+    /**
+     * Returns true if keyset paging is enabled
+     */
+    public static boolean isEnabled() {
+        return Boolean.parseBoolean(GeoServerExtensions.getProperty(KEYSET_PAGING_KEY));
+    }
+
+    /**
+     * Returns the continuation token among the raw request parameters, or null if missing
+     */
+    public static String getToken(Map<String, ?> rawKvp) {
+        if (rawKvp != null) {
+            for (Map.Entry<String, ?> entry : rawKvp.entrySet()) {
+                if (TOKEN.equalsIgnoreCase(entry.getKey())) {
+                    Object value = entry.getValue();
+                    if (value instanceof String[]) {
+                        String[] values = (String[]) value;
+                        value = values.length > 0 ? values[0] : null;
+                    }
+                    return value == null || value.toString().isEmpty() ? null : value.toString();
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Builds the keyset for the given feature type and sort, returns null if the feature type
+     * has no unique key or the sort cannot be used
+     */
+    public static KeysetPaging create(FeatureTypeInfo meta, List<SortBy> sortBy)
+            throws IOException {
+        FeatureType featureType = meta.getFeatureType();
+        if (!(featureType instanceof SimpleFeatureType)) {
+            return null;
+        }
+        SimpleFeatureType schema = (SimpleFeatureType) featureType;
+        List<String> uniqueKey = getUniqueKey(meta, schema);
+        if (uniqueKey == null || uniqueKey.isEmpty()) {
+            return null;
+        }
+
+        List<SortBy> keys = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        if (sortBy != null) {
+            for (SortBy sort : sortBy) {
+                PropertyName property = sort.getPropertyName();
+                // natural order cannot be turned into a filter
+                if (property == null) {
+                    return null;
+                }
+                String name = stripPrefix(property.getPropertyName());
+                if (schema.getDescriptor(name) == null) {
+                    return null;
+                }
+                if (!names.contains(name)) {
+                    names.add(name);
+                    keys.add(FF.sort(name, sort.getSortOrder()));
+                }
+            }
+        }
+        for (String name : uniqueKey) {
+            if (!names.contains(name)) {
+                names.add(name);
+                keys.add(FF.sort(name, SortOrder.ASCENDING));
+            }
+        }
+        return new KeysetPaging(meta.prefixedName(), schema, keys);
+    }
+
+    static List<String> getUniqueKey(FeatureTypeInfo meta, SimpleFeatureType schema)
+            throws IOException {
+        String configured = meta.getMetadata().get(KEY_ATTRIBUTES, String.class);
+        if (configured != null && !configured.trim().isEmpty()) {
+            List<String> names = new ArrayList<>();
+            for (String name : configured.split(SEPARATOR)) {
+                name = name.trim();
+                if (schema.getDescriptor(name) == null) {
+                    LOGGER.warning("Keyset paging key attribute " + name + " not found in "
+                            + meta.prefixedName() + ", falling back on offset paging");
+                    return null;
+                }
+                names.add(name);
+            }
+            return names;
+        }
+
+        // the primary key, if it's exposed
+        DataAccess<?, ?> store = meta.getStore().getDataStore(null);
+        if (store instanceof JDBCDataStore) {
+            JDBCDataStore jdbc = (JDBCDataStore) store;
+            PrimaryKey key = jdbc.getPrimaryKey(jdbc.getSchema(meta.getNativeName()));
+            List<String> names = new ArrayList<>();
+            for (PrimaryKeyColumn column : key.getColumns()) {
+                if (schema.getDescriptor(column.getName()) == null) {
+                    return null;
+                }
+                names.add(column.getName());
+            }
+            return names;
+        }
+        return null;
+    }
+
+    static String stripPrefix(String name) {
+        int idx = name.indexOf(':');
+        return idx >= 0 ? name.substring(idx + 1) : name;
+    }
+
+    final String typeName;
+
+    final SimpleFeatureType schema;
+
+    final List<SortBy> keys;
+
+    /** The query filter before seeking past the token, set by {@link #apply(Query, Token)} */
+    Filter filter = Filter.INCLUDE;
+
+    KeysetPaging(String typeName, SimpleFeatureType schema, List<SortBy> keys) {
+        this.typeName = typeName;
+        this.schema = schema;
+        this.keys = keys;
+    }
+
+    /**
+     * The sort to be used in keyset mode, the requested one followed by the unique key
+     */
+    public SortBy[] getSortBy() {
+        return keys.toArray(new SortBy[keys.size()]);
+    }
+
+    /**
+     * Sets up the query to return the features following the token ones, if any
+     */
+    public void apply(Query query, Token token) {
+        query.setSortBy(getSortBy());
+        filter = query.getFilter() != null ? query.getFilter() : Filter.INCLUDE;
+        if (token != null) {
+            query.setStartIndex(null);
+            query.setFilter(FF.and(query.getFilter(), seek(token)));
+        }
+    }
+
+    /**
+     * Builds a filter selecting the features following the token ones in the sort order, that
+     * is, (k1 > v1) or (k1 = v1 and k2 > v2) or ...
+     */
+    Filter seek(Token token) {
+        List<Filter> alternatives = new ArrayList<>();
+        for (int i = 0; i < keys.size(); i++) {
+            List<Filter> conditions = new ArrayList<>();
+            for (int j = 0; j < i; j++) {
+                conditions.add(FF.equals(property(j), token.values.get(j)));
+            }
+            PropertyName property = property(i);
+            Literal value = token.values.get(i);
+            if (keys.get(i).getSortOrder() == SortOrder.DESCENDING) {
+                conditions.add(FF.less(property, value));
+            } else {
+                conditions.add(FF.greater(property, value));
+            }
+            alternatives.add(conditions.size() == 1 ? conditions.get(0) : FF.and(conditions));
+        }
+        return alternatives.size() == 1 ? alternatives.get(0) : FF.or(alternatives);
+    }
+
+    PropertyName property(int i) {
+        return keys.get(i).getPropertyName();
+    }
+
+    /**
+     * Reads the keys of the page returned by the query, and returns the token for the following
+     * page, or null if the page is not full or the features have null keys
+     *
+     * @param query The query, already set up by {@link #apply(Query, Token)}
+     * @param pageSize The number of features requested
+     * @param offset The position of the first feature of the page in the whole result
+     */
+    public String next(FeatureSource<? extends FeatureType, ? extends Feature> source,
+            Query query, int pageSize, int offset) throws IOException {
+        Query keysQuery = new Query(query);
+        String[] names = new String[keys.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = property(i).getPropertyName();
+        }
+        keysQuery.setPropertyNames(names);
+
+        Feature last = null;
+        int count = 0;
+        try (FeatureIterator<? extends Feature> it = source.getFeatures(keysQuery).features()) {
+            while (it.hasNext()) {
+                last = it.next();
+                count++;
+            }
+        }
+        if (count < pageSize || !(last instanceof SimpleFeature)) {
+            return null;
+        }
+        if (hasNullKeys(source, keysQuery)) {
+            LOGGER.fine("Null key values found, not using keyset paging");
+            return null;
+        }
+
+        List<String> fields = new ArrayList<>();
+        fields.add(typeName);
+        fields.add(String.valueOf(Math.max(offset, 0) + count));
+        for (int i = 0; i < keys.size(); i++) {
+            Object value = ((SimpleFeature) last).getAttribute(names[i]);
+            if (value == null) {
+                // nulls cannot be compared, the next page will use the offset
+                LOGGER.fine("Null key value in " + names[i] + ", not using keyset paging");
+                return null;
+            }
+            fields.add(names[i]);
+            fields.add(keys.get(i).getSortOrder() == SortOrder.DESCENDING ? DESCENDING
+                    : ASCENDING);
+            fields.add(encodeValue(value));
+        }
+        return encode(fields);
+    }
+
+    /**
+     * Returns true if any of the features matched by the query, without the seek filter, has a
+     * null value in one of the nillable keys
+     */
+    boolean hasNullKeys(FeatureSource<? extends FeatureType, ? extends Feature> source,
+            Query keysQuery) throws IOException {
+        List<Filter> nulls = new ArrayList<>();
+        for (int i = 0; i < keys.size(); i++) {
+            AttributeDescriptor descriptor = schema.getDescriptor(property(i).getPropertyName());
+            if (descriptor == null || descriptor.isNillable()) {
+                nulls.add(FF.isNull(property(i)));
+            }
+        }
+        if (nulls.isEmpty()) {
+            return false;
+        }
+
+        Query nullsQuery = new Query(keysQuery);
+        nullsQuery.setFilter(FF.and(filter, nulls.size() == 1 ? nulls.get(0) : FF.or(nulls)));
+        nullsQuery.setSortBy(null);
+        nullsQuery.setStartIndex(null);
+        nullsQuery.setMaxFeatures(1);
+        try (FeatureIterator<? extends Feature> it = source.getFeatures(nullsQuery).features()) {
+            return it.hasNext();
+        }
+    }
+
+    /**
+     * Decodes a token, checking it matches the current type and sort
+     */
+    public Token decode(String token, RequestObject request) {
+        List<String> fields;
+        try {
+            fields = decode(token);
+        } catch (IllegalArgumentException | UnsupportedEncodingException e) {
+            throw invalidToken(request, e);
+        }
+        if (fields.size() != 2 + keys.size() * 3 || !typeName.equals(fields.get(0))) {
+            throw invalidToken(request, null);
+        }
+        try {
+            int offset = Integer.parseInt(fields.get(1));
+            List<Literal> values = new ArrayList<>();
+            for (int i = 0; i < keys.size(); i++) {
+                String name = fields.get(2 + i * 3);
+                String order = fields.get(3 + i * 3);
+                String expected = keys.get(i).getSortOrder() == SortOrder.DESCENDING
+                        ? DESCENDING : ASCENDING;
+                if (!property(i).getPropertyName().equals(name) || !expected.equals(order)) {
+                    throw invalidToken(request, null);
+                }
+                AttributeDescriptor descriptor = schema.getDescriptor(name);
+                Object value = decodeValue(fields.get(4 + i * 3), descriptor.getType().getBinding());
+                if (value == null) {
+                    throw invalidToken(request, null);
+                }
+                values.add(FF.literal(value));
+            }
+            return new Token(offset, values);
+        } catch (NumberFormatException e) {
+            throw invalidToken(request, e);
+        }
+    }
+
+    static WFSException invalidToken(RequestObject request, Exception cause) {
+        WFSException exception = cause == null
+                ? new WFSException(request, "Invalid continuation token, "
+                        + "it does not match the requested type and sort",
+                        ServiceException.INVALID_PARAMETER_VALUE)
+                : new WFSException(request, "Invalid continuation token", cause,
+                        ServiceException.INVALID_PARAMETER_VALUE);
+        exception.setLocator(TOKEN);
+        return exception;
+    }
+
+    static String encodeValue(Object value) {
+        if (value instanceof Date) {
+            // keep the full precision, the string forms are locale and time zone dependent
+            String millis = String.valueOf(((Date) value).getTime());
+            if (value instanceof Timestamp) {
+                return millis + "." + ((Timestamp) value).getNanos();
+            }
+            return millis;
+        }
+        String converted = Converters.convert(value, String.class);
+        return converted != null ? converted : value.toString();
+    }
+
+    static Object decodeValue(String value, Class<?> binding) {
+        if (Date.class.isAssignableFrom(binding)) {
+            String[] parts = value.split("\\.");
+            long millis = Long.parseLong(parts[0]);
+            try {
+                Date date = (Date) binding.getConstructor(long.class).newInstance(millis);
+                if (date instanceof Timestamp && parts.length > 1) {
+                    ((Timestamp) date).setNanos(Integer.parseInt(parts[1]));
+                }
+                return date;
+            } catch (ReflectiveOperationException e) {
+                LOGGER.log(Level.FINE, "Could not build a " + binding.getName(), e);
+                return null;
+            }
+        }
+        return Converters.convert(value, binding);
+    }
+
+    static String encode(List<String> fields) {
+        StringBuilder sb = new StringBuilder();
+        try {
+            for (String field : fields) {
+                if (sb.length() > 0) {
+                    sb.append(SEPARATOR);
+                }
+                // the separator gets escaped along with the other special chars
+                sb.append(URLEncoder.encode(field, "UTF-8"));
+            }
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    static List<String> decode(String token) throws UnsupportedEncodingException {
+        String decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        List<String> fields = new ArrayList<>();
+        for (String field : Arrays.asList(decoded.split(SEPARATOR, -1))) {
+            fields.add(URLDecoder.decode(field, "UTF-8"));
+        }
+        return fields;
+    }
+
+    /**
+     * A decoded continuation token
+     */
+    public static class Token {
+
+        final int offset;
+
+        final List<Literal> values;
+
+        Token(int offset, List<Literal> values) {
+            this.offset = offset;
+            this.values = values;
+        }
+
+        /**
+         * The position of the first feature of the page in the whole result
+         */
+        public int getOffset() {
+            return offset;
+        }
+    }
+}
@@ -30,6 +30,7 @@ import org.geoserver.platform.ServiceException;
 import org.geoserver.wfs.request.TransactionElement;
 import org.geoserver.wfs.request.TransactionRequest;
 import org.geoserver.wfs.request.TransactionResponse;
+import org.geoserver.wfs.request.Update;
 import org.geotools.data.DefaultTransaction;
 import org.geotools.data.FeatureLockException;
 import org.geotools.data.FeatureSource;
@@ -314,11 +315,28 @@ public class Transaction {
         Exception exception = null;
 
         try {
-            for (Iterator it = elementHandlers.entrySet().iterator(); it.hasNext();) {
-                Map.Entry entry = (Map.Entry) it.next();
+            List<Map.Entry> entries = new ArrayList<>(elementHandlers.entrySet());
+            for (int i = 0; i < entries.size(); i++) {
+                Map.Entry entry = entries.get(i);
                 TransactionElement element = (TransactionElement) entry.getKey();
                 TransactionElementHandler handler = (TransactionElementHandler) entry.getValue();
 
+                // run consecutive compatible updates as a single one
+                if (handler instanceof UpdateElementHandler
+                        && ((UpdateElementHandler) handler).isGroupUpdates()
+                        && element instanceof Update) {
+                    List<Update> group = new ArrayList<>();
+                    group.add((Update) element);
+                    while (i + 1 < entries.size() && entries.get(i + 1).getValue() == handler
+                            && UpdateElementHandler.canGroup(group,
+                                    (TransactionElement) entries.get(i + 1).getKey())) {
+                        group.add((Update) entries.get(++i).getKey());
+                    }
+                    if (group.size() > 1) {
+                        element = UpdateElementHandler.group(group);
+                    }
+                }
+
                 handler.execute(element, request, stores, result, multiplexer);
             }
         } catch (WFSTransactionException e) {
@@ -16,6 +16,13 @@ import org.geoserver.wfs.request.TransactionResponse;
 public interface TransactionCallback extends ExtensionPriority {
     /**
      * Check/alter the transaction request elements
+     * <p>
+     * When the request is parsed in streaming mode (see
+     * {@link org.geoserver.wfs.xml.StreamingTransactionParser}) the Insert elements carry no
+     * features at this stage, they are parsed and inserted in batches later on, callbacks needing
+     * to inspect or alter the inserted features should use a {@link TransactionListener} instead,
+     * or require streaming to be disabled.
+     * </p>
      */
     TransactionRequest beforeTransaction(TransactionRequest request)
         throws WFSException;
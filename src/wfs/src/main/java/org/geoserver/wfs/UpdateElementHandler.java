@@ -8,6 +8,9 @@ package org.geoserver.wfs;
 import com.vividsolutions.jts.geom.Geometry;
 import org.geoserver.catalog.FeatureTypeInfo;
 import org.geoserver.config.GeoServer;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.geoserver.platform.GeoServerExtensions;
 import org.geoserver.platform.ServiceException;
 import org.geoserver.wfs.request.Property;
 import org.geoserver.wfs.request.TransactionElement;
@@ -41,6 +44,7 @@ import org.opengis.filter.FilterFactory2;
 import org.opengis.filter.Id;
 import org.opengis.filter.expression.PropertyName;
 import org.opengis.filter.identity.FeatureId;
+import org.opengis.filter.identity.Identifier;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
 import org.opengis.referencing.operation.MathTransform;
 
@@ -48,18 +52,26 @@ import javax.xml.namespace.QName;
 import java.io.IOException;
 import java.math.BigInteger;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Objects;
 import java.util.Set;
 import java.util.logging.Logger;
 
 
 /**
  * Processes standard update elements
+ * <p>
+ * When {@value #GROUP_UPDATES_KEY} is set to true, consecutive updates setting the same values on
+ * features of the same type selected by id are grouped by {@link Transaction} and executed as a
+ * single update, saving a round trip to the store for each of them.
+ * </p>
  *
  * @author Andrea Aime - TOPP
  *
@@ -82,8 +94,106 @@ public class UpdateElementHandler extends AbstractTransactionElementHandler {
      */
     static Logger LOGGER = org.geotools.util.logging.Logging.getLogger("org.geoserver.wfs");
     
+    /**
+     * Property enabling the grouping of consecutive compatible updates
+     */
+    public static final String GROUP_UPDATES_KEY = "org.geoserver.wfs.transaction.groupUpdates";
+
+    private boolean groupUpdates;
+
     public UpdateElementHandler(GeoServer gs) {
         super(gs);
+        this.groupUpdates = Boolean.parseBoolean(GeoServerExtensions.getProperty(GROUP_UPDATES_KEY));
+    }
+
+    public boolean isGroupUpdates() {
+        return groupUpdates;
+    }
+
+    public void setGroupUpdates(boolean groupUpdates) {
+        this.groupUpdates = groupUpdates;
+    }
+
+    /**
+     * Returns true if the element can be added to the group of updates, see
+     * {@link #canGroup(Update, TransactionElement)}, without selecting any of the features already
+     * selected by the group
+     */
+    static boolean canGroup(List<Update> group, TransactionElement element) {
+        if (!canGroup(group.get(0), element)) {
+            return false;
+        }
+        for (int i = 1; i < group.size(); i++) {
+            if (overlaps(group.get(i), (Update) element)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns true if the element can be executed along with the update in a single update: it
+     * sets the same values on the same type, and both select different features by id. Features
+     * selected by both would be updated and counted once in a single update.
+     */
+    static boolean canGroup(Update update, TransactionElement element) {
+        if (!(element instanceof Update) || element.getClass() != update.getClass()
+                || (!(update instanceof Update.WFS11) && !(update instanceof Update.WFS20))) {
+            return false;
+        }
+        Update other = (Update) element;
+        if (!(update.getFilter() instanceof Id) || !(other.getFilter() instanceof Id)
+                || !Objects.equals(update.getTypeName(), other.getTypeName())
+                || !Objects.equals(update.getHandle(), other.getHandle())) {
+            return false;
+        }
+        List<Property> properties = update.getUpdateProperties();
+        List<Property> otherProperties = other.getUpdateProperties();
+        if (properties.size() != otherProperties.size()) {
+            return false;
+        }
+        for (int i = 0; i < properties.size(); i++) {
+            Property p1 = properties.get(i);
+            Property p2 = otherProperties.get(i);
+            if (!Objects.equals(p1.getName(), p2.getName())
+                    || !sameValue(p1.getValue(), p2.getValue())) {
+                return false;
+            }
+        }
+        return !overlaps(update, other);
+    }
+
+    private static boolean overlaps(Update u1, Update u2) {
+        return !Collections.disjoint(((Id) u1.getFilter()).getIDs(),
+                ((Id) u2.getFilter()).getIDs());
+    }
+
+    private static boolean sameValue(Object v1, Object v2) {
+        if (v1 instanceof Geometry && v2 instanceof Geometry) {
+            // the crs is carried in the user data
+            return ((Geometry) v1).equalsExact((Geometry) v2)
+                    && Objects.equals(((Geometry) v1).getUserData(),
+                            ((Geometry) v2).getUserData());
+        }
+        return Objects.equals(v1, v2);
+    }
+
+    /**
+     * Builds a single update out of updates that {@link #canGroup(Update, TransactionElement)},
+     * selecting all of their features. The original updates are left untouched.
+     */
+    static Update group(List<Update> updates) {
+        Update first = updates.get(0);
+        Set<Identifier> ids = new LinkedHashSet<>();
+        for (Update update : updates) {
+            ids.addAll(((Id) update.getFilter()).getIdentifiers());
+        }
+        EObject copy = EcoreUtil.copy(first.getAdaptee());
+        Update grouped = first instanceof Update.WFS20 ? new Update.WFS20(copy)
+                : new Update.WFS11(copy);
+        FilterFactory ff = CommonFactoryFinder.getFilterFactory(null);
+        grouped.setFilter(ff.id(ids));
+        return grouped;
     }
 
     public void checkValidity(TransactionElement element, Map<QName, FeatureTypeInfo> typeInfos)
@@ -25,11 +25,13 @@ import org.geoserver.wfs.request.Query;
 import org.geoserver.wfs.request.Replace;
 import org.geoserver.wfs.request.TransactionElement;
 import org.geoserver.wfs.request.TransactionRequest;
+import org.geoserver.wfs.xml.StreamedInsert;
 import org.opengis.feature.Feature;
 import org.opengis.feature.type.Name;
 
 import javax.xml.namespace.QName;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -158,6 +160,11 @@ public class WFSWorkspaceQualifier extends WorkspaceQualifyingCallback {
                     // so we just check them and throw an exception if a name does not match
                     List features = in.getFeatures();
                     ensureFeatureNamespaceUriMatches(features, ns, t);
+                    // in streaming mode the features are parsed later, check their names
+                    StreamedInsert streamed = StreamedInsert.get(in);
+                    if (streamed != null) {
+                        ensureTypeNamespaceUriMatches(streamed.getTypeNames(), ns, t);
+                    }
                 }
                 else if(el instanceof Replace){
                     Replace rep = (Replace) el;
@@ -193,6 +200,19 @@ public class WFSWorkspaceQualifier extends WorkspaceQualifyingCallback {
 	    }
     }
     
+    /**
+     * Ensures the namespaceURI of the given feature type names matches the given namespace
+     */
+    private void ensureTypeNamespaceUriMatches(Collection<QName> names, NamespaceInfo ns,
+            TransactionRequest t) {
+        for (QName name : names) {
+            String uri = name.getNamespaceURI();
+            if (uri != null && !uri.isEmpty() && !ns.getURI().equals(uri)) {
+                throw new WFSException(t, "No such feature type " + name);
+            }
+        }
+    }
+
     void qualifyTypeNames(List names, WorkspaceInfo ws, NamespaceInfo ns) {
         if (names != null) {
             for (int i = 0; i < names.size(); i++) {
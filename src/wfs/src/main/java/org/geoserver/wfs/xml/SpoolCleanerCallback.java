@@ -0,0 +1,43 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wfs.xml;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.geoserver.ows.AbstractDispatcherCallback;
+import org.geoserver.ows.Request;
+
+/**
+ * Deletes the insert spools created by {@link StreamingTransactionParser} when the request ends
+ */
+public class SpoolCleanerCallback extends AbstractDispatcherCallback {
+
+    static final ThreadLocal<List<StreamedInsert>> spools = new ThreadLocal<List<StreamedInsert>>();
+
+    /**
+     * Schedules a spool for removal at the end of the request
+     * @param spool
+     */
+    public static void addSpool(StreamedInsert spool) {
+        List<StreamedInsert> list = spools.get();
+        if (list == null) {
+            list = new ArrayList<StreamedInsert>();
+            spools.set(list);
+        }
+        list.add(spool);
+    }
+
+    @Override
+    public void finished(Request request) {
+        List<StreamedInsert> list = spools.get();
+        if (list != null) {
+            spools.remove();
+            for (StreamedInsert spool : list) {
+                spool.dispose();
+            }
+        }
+    }
+}
@@ -0,0 +1,242 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wfs.xml;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.eclipse.emf.common.notify.Adapter;
+import org.eclipse.emf.common.notify.impl.AdapterImpl;
+import org.eclipse.emf.ecore.EObject;
+import org.geoserver.wfs.request.Insert;
+import org.geoserver.wfs.request.TransactionElement;
+import org.geoserver.wfs.request.TransactionRequest;
+import org.geoserver.wfs.xml.StreamingTransactionParser.RequestParser;
+import org.geoserver.wfs.xml.StreamingTransactionParser.StartTag;
+
+/**
+ * The features of an Insert element spooled to disk by {@link StreamingTransactionParser}, to be
+ * read back in batches. Attached to the parsed Insert element, see {@link #get(Insert)}.
+ */
+public class StreamedInsert extends AdapterImpl {
+
+    final StartTag transaction;
+
+    final StartTag insert;
+
+    /** The namespaces in scope for the features, declared again on each spooled feature */
+    final Map<String, String> namespaces;
+
+    final RequestParser parser;
+
+    final int batchSize;
+
+    final File file;
+
+    OutputStream spoolStream;
+
+    XMLStreamWriter spool;
+
+    final Set<QName> typeNames = new LinkedHashSet<>();
+
+    int featureCount;
+
+    StreamedInsert(StartTag transaction, StartTag insert, Map<String, String> namespaces,
+            RequestParser parser, int batchSize) throws IOException, XMLStreamException {
+        this.transaction = transaction;
+        this.insert = insert;
+        this.namespaces = namespaces;
+        this.parser = parser;
+        this.batchSize = batchSize;
+        this.file = File.createTempFile("wfs-insert", ".xml");
+        try {
+            this.spoolStream = new BufferedOutputStream(new FileOutputStream(file));
+            this.spool = XMLOutputFactory.newInstance().createXMLStreamWriter(spoolStream,
+                    "UTF-8");
+            spool.writeStartDocument("UTF-8", "1.0");
+            spool.writeStartElement("features");
+        } catch (IOException | XMLStreamException | RuntimeException e) {
+            dispose();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the spooled features attached to the insert, or null if the insert was parsed as a
+     * whole
+     */
+    public static StreamedInsert get(Insert insert) {
+        EObject adaptee = insert.getAdaptee();
+        if (adaptee != null) {
+            for (Adapter adapter : adaptee.eAdapters()) {
+                if (adapter instanceof StreamedInsert) {
+                    return (StreamedInsert) adapter;
+                }
+            }
+        }
+        return null;
+    }
+
+    void attach(Insert element) {
+        element.getAdaptee().eAdapters().add(this);
+    }
+
+    /**
+     * Spools the feature the reader is positioned on
+     */
+    void spool(XMLStreamReader in) throws XMLStreamException {
+        typeNames.add(in.getName());
+        StreamingTransactionParser.copyElement(in, spool, namespaces);
+        featureCount++;
+    }
+
+    void closeSpool() throws XMLStreamException, IOException {
+        if (spool != null) {
+            spool.writeEndElement();
+            spool.writeEndDocument();
+            spool.close();
+            spool = null;
+            spoolStream.close();
+            spoolStream = null;
+        }
+    }
+
+    /**
+     * The names of the spooled features, in order of first appearance
+     */
+    public Set<QName> getTypeNames() {
+        return Collections.unmodifiableSet(typeNames);
+    }
+
+    public int getFeatureCount() {
+        return featureCount;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Opens the spool for reading
+     */
+    public Batches batches() throws IOException {
+        return new Batches();
+    }
+
+    /**
+     * Deletes the spool file
+     */
+    public void dispose() {
+        try {
+            if (spoolStream != null) {
+                spoolStream.close();
+                spoolStream = null;
+            }
+        } catch (IOException e) {
+            StreamingTransactionParser.LOGGER.log(Level.FINE, "Failed to close the spool", e);
+        }
+        spool = null;
+        if (file.exists() && !file.delete()) {
+            StreamingTransactionParser.LOGGER.warning("Could not delete the insert spool "
+                    + file.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Reads the spooled features back, one batch at a time
+     */
+    public class Batches implements Closeable {
+
+        final InputStream input;
+
+        final XMLStreamReader in;
+
+        Batches() throws IOException {
+            this.input = new BufferedInputStream(new FileInputStream(file));
+            try {
+                this.in = StreamingTransactionParser.createInputFactory()
+                        .createXMLStreamReader(input, "UTF-8");
+                // move to the root element
+                in.nextTag();
+            } catch (XMLStreamException e) {
+                input.close();
+                throw new IOException("Failed to open the insert spool", e);
+            }
+        }
+
+        /**
+         * Parses the next batch of features, returns null when all features have been read
+         */
+        public List next() throws Exception {
+            StringWriter document = new StringWriter();
+            XMLStreamWriter out = XMLOutputFactory.newInstance().createXMLStreamWriter(document);
+            int count = 0;
+            while (count < batchSize && nextFeature()) {
+                if (count == 0) {
+                    transaction.write(out, null);
+                    insert.write(out, null);
+                }
+                StreamingTransactionParser.copyElement(in, out, null);
+                count++;
+            }
+            if (count == 0) {
+                return null;
+            }
+            out.writeEndDocument();
+            out.close();
+
+            Object parsed = parser.parse(new StringReader(document.toString()));
+            TransactionRequest request = TransactionRequest.adapt(parsed);
+            if (request != null) {
+                for (TransactionElement element : request.getElements()) {
+                    if (element instanceof Insert) {
+                        return ((Insert) element).getFeatures();
+                    }
+                }
+            }
+            return Collections.emptyList();
+        }
+
+        private boolean nextFeature() throws XMLStreamException {
+            while (in.hasNext()) {
+                int event = in.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    return true;
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    return false;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            StreamingTransactionParser.closeQuietly(in);
+            input.close();
+        }
+    }
+}
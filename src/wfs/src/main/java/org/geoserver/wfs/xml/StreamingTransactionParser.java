@@ -0,0 +1,345 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wfs.xml;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.geoserver.platform.GeoServerExtensions;
+import org.geoserver.wfs.WFSException;
+import org.geoserver.wfs.WFSInfo;
+import org.geoserver.wfs.request.Insert;
+import org.geoserver.wfs.request.TransactionElement;
+import org.geoserver.wfs.request.TransactionRequest;
+import org.geotools.util.logging.Logging;
+
+/**
+ * Parses WFS Transaction requests without holding all the inserted features in memory.
+ * <p>
+ * The request body is scanned with StAX: the members of each Insert element are spooled to a
+ * temporary file, while the rest of the document, with empty Insert elements, is handed to the
+ * regular request parser. The spooled features are attached to the parsed Insert elements as a
+ * {@link StreamedInsert}, which {@link org.geoserver.wfs.InsertElementHandler} reads back and
+ * parses in batches, so that memory usage depends on the batch size rather than on the request
+ * size. Each batch is inserted and reported to the transaction listeners on its own, while the
+ * fids are still reported in the order the features appear in the request.
+ * </p>
+ * <p>
+ * The mode is disabled by default, it's enabled by setting the {@link #STREAMING_KEY} property to
+ * true, with {@link #BATCH_SIZE_KEY} controlling the number of features per batch. Strict requests
+ * are always parsed as a whole, as schema validation needs the full document.
+ * </p>
+ * <p>
+ * In streaming mode the Insert elements are empty until the transaction executes them, so
+ * {@link org.geoserver.wfs.TransactionCallback}s inspecting the inserted features in
+ * {@code beforeTransaction}, like the NSG profile time versioning, do not see them: do not enable
+ * streaming along with such callbacks. The workspace specific endpoints check the names of the
+ * spooled features, see {@link StreamedInsert#getTypeNames()}.
+ * </p>
+ */
+public class StreamingTransactionParser {
+
+    static final Logger LOGGER = Logging.getLogger(StreamingTransactionParser.class);
+
+    /**
+     * Enables the streaming parsing of Transaction requests
+     */
+    public static final String STREAMING_KEY = "org.geoserver.wfs.transaction.streaming";
+
+    /**
+     * The number of inserted features parsed and inserted at once in streaming mode
+     */
+    public static final String BATCH_SIZE_KEY = "org.geoserver.wfs.transaction.streamingBatchSize";
+
+    static final int DEFAULT_BATCH_SIZE = 1000;
+
+    /**
+     * Parses a request document into a request object
+     */
+    public interface RequestParser {
+        Object parse(Reader reader) throws Exception;
+    }
+
+    /**
+     * Returns true if the Transaction request with the given kvp should be parsed in streaming
+     * mode
+     */
+    public static boolean isEnabled(WFSInfo wfs, Map kvp) {
+        if (!Boolean.parseBoolean(GeoServerExtensions.getProperty(STREAMING_KEY))) {
+            return false;
+        }
+        // validation needs the whole document
+        Object strict = kvp == null ? null : kvp.get("strict");
+        return !Boolean.TRUE.equals(strict) && !wfs.isCiteCompliant();
+    }
+
+    /**
+     * Returns the configured batch size, or the default one if missing or invalid
+     */
+    public static int getBatchSize() {
+        int batchSize = GeoServerExtensions.getIntegerProperty(BATCH_SIZE_KEY, DEFAULT_BATCH_SIZE);
+        if (batchSize <= 0) {
+            LOGGER.warning("Invalid value " + batchSize + " for " + BATCH_SIZE_KEY
+                    + ", using the default " + DEFAULT_BATCH_SIZE);
+            return DEFAULT_BATCH_SIZE;
+        }
+        return batchSize;
+    }
+
+    final QName insertElement;
+
+    final int batchSize;
+
+    final RequestParser parser;
+
+    /**
+     * @param insertElement The name of the Insert element, whose members are to be spooled
+     * @param batchSize The number of features parsed at once when reading back the spool
+     * @param parser The regular parser, used for the request and the feature batches
+     */
+    public StreamingTransactionParser(QName insertElement, int batchSize, RequestParser parser) {
+        this.insertElement = insertElement;
+        this.batchSize = batchSize;
+        this.parser = parser;
+    }
+
+    /**
+     * Parses the request, spooling the inserted features
+     */
+    public Object parse(Reader reader) throws Exception {
+        List<StreamedInsert> inserts = new ArrayList<>();
+        String skeleton = split(reader, inserts);
+        Object parsed = parser.parse(new StringReader(skeleton));
+        TransactionRequest request = TransactionRequest.adapt(parsed);
+        if (request == null) {
+            // not a transaction after all, nothing to attach to
+            return parsed;
+        }
+
+        // the regular parser preserves the order of the Insert elements
+        Iterator<StreamedInsert> spooled = inserts.iterator();
+        for (TransactionElement element : request.getElements()) {
+            if (element instanceof Insert) {
+                if (!spooled.hasNext()) {
+                    throw new WFSException(request, "Insert elements mismatch while parsing");
+                }
+                spooled.next().attach((Insert) element);
+            }
+        }
+        return parsed;
+    }
+
+    /**
+     * Copies the request into a string, spooling the Insert members aside
+     */
+    String split(Reader input, List<StreamedInsert> inserts)
+            throws XMLStreamException, IOException {
+        XMLStreamReader in = createInputFactory().createXMLStreamReader(input);
+        StringWriter out = new StringWriter();
+        XMLStreamWriter skeleton = XMLOutputFactory.newInstance().createXMLStreamWriter(out);
+        Deque<Map<String, String>> namespaces = new ArrayDeque<>();
+        StartTag root = null;
+        StreamedInsert insert = null;
+        try {
+            while (in.hasNext()) {
+                int event = in.next();
+                switch (event) {
+                case XMLStreamConstants.START_ELEMENT:
+                    if (insert != null) {
+                        // a feature, goes to the spool
+                        insert.spool(in);
+                        break;
+                    }
+                    StartTag tag = new StartTag(in);
+                    tag.write(skeleton, null);
+                    namespaces.push(tag.namespaces);
+                    if (root == null) {
+                        root = tag;
+                    } else if (namespaces.size() == 2 && insertElement.equals(in.getName())) {
+                        insert = new StreamedInsert(root, tag, inScope(namespaces), parser,
+                                batchSize);
+                        SpoolCleanerCallback.addSpool(insert);
+                        inserts.add(insert);
+                    }
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    if (insert != null) {
+                        insert.closeSpool();
+                        insert = null;
+                    }
+                    skeleton.writeEndElement();
+                    namespaces.pop();
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.SPACE:
+                case XMLStreamConstants.CDATA:
+                    if (insert == null) {
+                        skeleton.writeCharacters(in.getText());
+                    }
+                    break;
+                default:
+                    // comments and processing instructions are not needed
+                }
+            }
+            skeleton.writeEndDocument();
+            skeleton.close();
+        } finally {
+            if (insert != null) {
+                insert.dispose();
+            }
+            in.close();
+        }
+        return out.toString();
+    }
+
+    static Map<String, String> inScope(Deque<Map<String, String>> namespaces) {
+        Map<String, String> result = new LinkedHashMap<>();
+        // the deque is iterated from the innermost element outwards
+        for (Map<String, String> declared : namespaces) {
+            for (Map.Entry<String, String> entry : declared.entrySet()) {
+                result.putIfAbsent(entry.getKey(), entry.getValue());
+            }
+        }
+        return result;
+    }
+
+    static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        // no DTDs and external entities, WFS requests do not need them
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+        return factory;
+    }
+
+    /**
+     * Copies the element the reader is positioned on, and its contents, leaving the reader on the
+     * element end
+     *
+     * @param inherited Namespaces to be declared on the copied element, if not already declared
+     *        by the element itself, may be null
+     */
+    static void copyElement(XMLStreamReader in, XMLStreamWriter out, Map<String, String> inherited)
+            throws XMLStreamException {
+        int depth = 0;
+        while (true) {
+            switch (in.getEventType()) {
+            case XMLStreamConstants.START_ELEMENT:
+                new StartTag(in).write(out, depth == 0 ? inherited : null);
+                depth++;
+                break;
+            case XMLStreamConstants.END_ELEMENT:
+                out.writeEndElement();
+                depth--;
+                break;
+            case XMLStreamConstants.CHARACTERS:
+            case XMLStreamConstants.SPACE:
+            case XMLStreamConstants.CDATA:
+                out.writeCharacters(in.getText());
+                break;
+            default:
+                // comments and processing instructions are not needed
+            }
+            if (depth == 0) {
+                return;
+            }
+            in.next();
+        }
+    }
+
+    /**
+     * The name, namespace declarations and attributes of an element
+     */
+    static class StartTag {
+        final String prefix;
+
+        final String namespaceURI;
+
+        final String localName;
+
+        /** Declared namespaces by prefix, the empty prefix being the default namespace */
+        final Map<String, String> namespaces = new LinkedHashMap<>();
+
+        final List<QName> attributeNames = new ArrayList<>();
+
+        final List<String> attributeValues = new ArrayList<>();
+
+        StartTag(XMLStreamReader in) {
+            this.prefix = in.getPrefix();
+            this.namespaceURI = in.getNamespaceURI();
+            this.localName = in.getLocalName();
+            for (int i = 0; i < in.getNamespaceCount(); i++) {
+                String p = in.getNamespacePrefix(i);
+                namespaces.put(p == null ? "" : p, in.getNamespaceURI(i));
+            }
+            for (int i = 0; i < in.getAttributeCount(); i++) {
+                attributeNames.add(in.getAttributeName(i));
+                attributeValues.add(in.getAttributeValue(i));
+            }
+        }
+
+        void write(XMLStreamWriter out, Map<String, String> inherited) throws XMLStreamException {
+            if (namespaceURI == null || namespaceURI.isEmpty()) {
+                out.writeStartElement(localName);
+            } else {
+                out.writeStartElement(prefix == null ? "" : prefix, localName, namespaceURI);
+            }
+            writeNamespaces(out, namespaces);
+            if (inherited != null) {
+                Map<String, String> missing = new LinkedHashMap<>(inherited);
+                missing.keySet().removeAll(namespaces.keySet());
+                writeNamespaces(out, missing);
+            }
+            for (int i = 0; i < attributeNames.size(); i++) {
+                QName name = attributeNames.get(i);
+                String value = attributeValues.get(i);
+                if (name.getNamespaceURI() == null || name.getNamespaceURI().isEmpty()) {
+                    out.writeAttribute(name.getLocalPart(), value);
+                } else {
+                    out.writeAttribute(name.getPrefix(), name.getNamespaceURI(),
+                            name.getLocalPart(), value);
+                }
+            }
+        }
+
+        private void writeNamespaces(XMLStreamWriter out, Map<String, String> namespaces)
+                throws XMLStreamException {
+            for (Map.Entry<String, String> entry : namespaces.entrySet()) {
+                if (entry.getKey().isEmpty()) {
+                    out.writeDefaultNamespace(entry.getValue());
+                } else {
+                    out.writeNamespace(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+    }
+
+    static void closeQuietly(XMLStreamReader reader) {
+        try {
+            reader.close();
+        } catch (XMLStreamException e) {
+            LOGGER.log(Level.FINE, "Failed to close the spool reader", e);
+        }
+    }
+}
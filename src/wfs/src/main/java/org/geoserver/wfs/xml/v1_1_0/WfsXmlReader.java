@@ -13,6 +13,7 @@ import javax.xml.namespace.QName;
 import org.geoserver.config.GeoServer;
 import org.geoserver.ows.XmlRequestReader;
 import org.geoserver.wfs.WFSInfo;
+import org.geoserver.wfs.xml.StreamingTransactionParser;
 import org.geoserver.wfs.xml.WFSURIHandler;
 import org.geoserver.wfs.xml.WFSXmlUtils;
 import org.geoserver.util.EntityResolverProvider;
@@ -59,6 +60,16 @@ public class WfsXmlReader extends XmlRequestReader {
     }
     
     public Object read(Object request, Reader reader, Map kvp) throws Exception {
+        if ("Transaction".equals(getElement().getLocalPart())
+                && StreamingTransactionParser.isEnabled(wfs, kvp)) {
+            QName insert = new QName(getElement().getNamespaceURI(), "Insert");
+            return new StreamingTransactionParser(insert,
+                    StreamingTransactionParser.getBatchSize(), r -> parse(r, kvp)).parse(reader);
+        }
+        return parse(reader, kvp);
+    }
+
+    Object parse(Reader reader, Map kvp) throws Exception {
         //TODO: make this configurable?
         configuration.getProperties().add(Parser.Properties.PARSE_UNKNOWN_ELEMENTS);
 
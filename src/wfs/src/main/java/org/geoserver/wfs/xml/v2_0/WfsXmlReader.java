@@ -9,6 +9,7 @@ import java.io.Reader;
 import java.util.Map;
 
 import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamException;
 
 import org.geoserver.config.GeoServer;
 import org.geoserver.ows.XmlRequestReader;
@@ -16,6 +17,7 @@ import org.geoserver.platform.ServiceException;
 import org.geoserver.wfs.WFSException;
 import org.geoserver.wfs.WFSInfo;
 import org.geoserver.wfs.xml.FeatureTypeSchemaBuilder;
+import org.geoserver.wfs.xml.StreamingTransactionParser;
 import org.geoserver.wfs.xml.WFSURIHandler;
 import org.geoserver.wfs.xml.WFSXmlUtils;
 import org.geoserver.util.EntityResolverProvider;
@@ -44,7 +46,23 @@ public class WfsXmlReader extends XmlRequestReader {
     public Object read(Object request, Reader reader, Map kvp) throws Exception {
         WFSConfiguration config = new WFSConfiguration();
         WFSXmlUtils.initWfsConfiguration(config, gs, new FeatureTypeSchemaBuilder.GML32(gs));
-        
+
+        if ("Transaction".equals(getElement().getLocalPart())
+                && StreamingTransactionParser.isEnabled(wfs(), kvp)) {
+            // the configuration is shared among the feature batches, it's costly to set up
+            QName insert = new QName(WFS.NAMESPACE, "Insert");
+            try {
+                return new StreamingTransactionParser(insert,
+                        StreamingTransactionParser.getBatchSize(), r -> parse(r, kvp, config))
+                                .parse(reader);
+            } catch (XMLStreamException e) {
+                throw new WFSException("Request parsing failed", e, "OperationParsingFailed");
+            }
+        }
+        return parse(reader, kvp, config);
+    }
+
+    Object parse(Reader reader, Map kvp, WFSConfiguration config) throws Exception {
         Parser parser = new Parser(config);
         parser.setEntityResolver(entityResolverProvider.getEntityResolver());
         
@@ -8,16 +8,20 @@ package org.geoserver.wfs;
 import static org.custommonkey.xmlunit.XMLAssert.assertXpathEvaluatesTo;
 import static org.custommonkey.xmlunit.XMLAssert.assertXpathExists;
 import static org.custommonkey.xmlunit.XMLAssert.assertXpathNotExists;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
 import java.util.Iterator;
 import java.util.List;
 import java.util.TreeSet;
+import java.util.zip.GZIPInputStream;
 
+import org.apache.commons.io.IOUtils;
 import org.custommonkey.xmlunit.XMLAssert;
 import org.custommonkey.xmlunit.XMLUnit;
 import org.custommonkey.xmlunit.XpathEngine;
@@ -25,6 +29,7 @@ import org.geoserver.catalog.DataStoreInfo;
 import org.geoserver.catalog.FeatureTypeInfo;
 import org.geoserver.catalog.LayerInfo;
 import org.geoserver.config.CapabilitiesCacheHeadersCallback;
+import org.geoserver.config.CapabilitiesDocumentCache;
 import org.geoserver.config.GeoServer;
 import org.geoserver.config.GeoServerInfo;
 import org.geoserver.config.ResourceErrorHandling;
@@ -291,6 +296,58 @@ public class GetCapabilitiesTest extends WFSTestSupport {
         }
     }
        
+    @Test
+    public void testDocumentCache() throws Exception {
+        CapabilitiesDocumentCache cache = GeoServerExtensions.bean(CapabilitiesDocumentCache.class);
+        boolean backup = cache.isEnabled();
+        String layerId = getLayerId(CiteTestData.MLINES);
+        LayerInfo layer = getCatalog().getLayerByName(layerId);
+        try {
+            cache.setEnabled(true);
+            String path = "wfs?service=WFS&version=1.0.0&request=getCapabilities";
+
+            // first request, encodes and caches the document
+            MockHttpServletResponse response = dispatch(createGetRequestWithHeaders(path));
+            assertEquals(HttpStatus.OK.value(), response.getStatus());
+            String etag = response.getHeader(HttpHeaders.ETAG);
+            assertNotNull(etag);
+            byte[] contents = response.getContentAsByteArray();
+
+            // second one is served from the cache
+            long hits = cache.getStatistics().getHitCount();
+            response = dispatch(createGetRequestWithHeaders(path));
+            assertEquals(HttpStatus.OK.value(), response.getStatus());
+            assertArrayEquals(contents, response.getContentAsByteArray());
+            assertEquals(etag, response.getHeader(HttpHeaders.ETAG));
+            assertEquals(hits + 1, cache.getStatistics().getHitCount());
+
+            // conditional get
+            response = dispatch(createGetRequestWithHeaders(path, HttpHeaders.IF_NONE_MATCH, etag));
+            assertEquals(HttpStatus.NOT_MODIFIED.value(), response.getStatus());
+
+            // gzipped variant
+            response = dispatch(createGetRequestWithHeaders(path, HttpHeaders.ACCEPT_ENCODING, "gzip"));
+            assertEquals("gzip", response.getHeader(HttpHeaders.CONTENT_ENCODING));
+            try (GZIPInputStream is = new GZIPInputStream(
+                    new ByteArrayInputStream(response.getContentAsByteArray()))) {
+                assertArrayEquals(contents, IOUtils.toByteArray(is));
+            }
+
+            // catalog changes invalidate the document
+            layer.setAdvertised(false);
+            getCatalog().save(layer);
+            response = dispatch(createGetRequestWithHeaders(path, HttpHeaders.IF_NONE_MATCH, etag));
+            assertEquals(HttpStatus.OK.value(), response.getStatus());
+            assertNotEquals(etag, response.getHeader(HttpHeaders.ETAG));
+            Document dom = dom(new ByteArrayInputStream(response.getContentAsByteArray()));
+            assertXpathNotExists("//wfs:FeatureType[wfs:Name = '" + layerId + "']", dom);
+        } finally {
+            layer.setAdvertised(true);
+            getCatalog().save(layer);
+            cache.setEnabled(backup);
+        }
+    }
+
     MockHttpServletRequest createGetRequestWithHeaders(String path, String... headers) {
         MockHttpServletRequest request = createRequest( path ); 
         request.setMethod( "GET" );
@@ -0,0 +1,173 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wfs;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+
+import org.geoserver.data.test.CiteTestData;
+import org.geoserver.wfs.xml.StreamingTransactionParser;
+import org.geotools.filter.v2_0.FES;
+import org.geotools.wfs.v2_0.WFS;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+public class StreamingTransactionTest extends WFSTestSupport {
+
+    static final String GET_POINTS = "<wfs:GetFeature service=\"WFS\" version=\"1.1.0\" "
+            + "xmlns:cgf=\"http://www.opengis.net/cite/geometry\" "
+            + "xmlns:wfs=\"http://www.opengis.net/wfs\">"
+            + "<wfs:Query typeName=\"cgf:Points\"/>"
+            + "</wfs:GetFeature>";
+
+    @Before
+    public void enableStreaming() throws Exception {
+        revertLayer(CiteTestData.POINTS);
+        revertLayer(CiteTestData.LINES);
+        System.setProperty(StreamingTransactionParser.STREAMING_KEY, "true");
+        System.setProperty(StreamingTransactionParser.BATCH_SIZE_KEY, "2");
+    }
+
+    @After
+    public void disableStreaming() {
+        System.clearProperty(StreamingTransactionParser.STREAMING_KEY);
+        System.clearProperty(StreamingTransactionParser.BATCH_SIZE_KEY);
+    }
+
+    String point(String id, String pos) {
+        return "<cgf:Points>"
+                + "<cgf:pointProperty><gml:Point><gml:pos>" + pos + "</gml:pos></gml:Point>"
+                + "</cgf:pointProperty>"
+                + "<cgf:id>" + id + "</cgf:id>"
+                + "</cgf:Points>";
+    }
+
+    @Test
+    public void testInsertInBatches() throws Exception {
+        int n = postAsDOM("wfs", GET_POINTS).getElementsByTagName("cgf:Points").getLength();
+
+        // five points spread over three batches, then a line, then a delete
+        String xml = "<wfs:Transaction service=\"WFS\" version=\"1.1.0\" "
+                + "xmlns:cgf=\"http://www.opengis.net/cite/geometry\" "
+                + "xmlns:ogc=\"http://www.opengis.net/ogc\" "
+                + "xmlns:wfs=\"http://www.opengis.net/wfs\" "
+                + "xmlns:gml=\"http://www.opengis.net/gml\">"
+                + "<wfs:Insert handle=\"points\">"
+                + point("s1", "1 1") + point("s2", "2 2") + point("s3", "3 3")
+                + point("s4", "4 4") + point("s5", "5 5")
+                + "</wfs:Insert>"
+                + "<wfs:Insert handle=\"lines\">"
+                + "<cgf:Lines>"
+                + "<cgf:lineStringProperty><gml:LineString>"
+                + "<gml:posList>0 0 1 1</gml:posList>"
+                + "</gml:LineString></cgf:lineStringProperty>"
+                + "<cgf:id>l1</cgf:id>"
+                + "</cgf:Lines>"
+                + "</wfs:Insert>"
+                + "<wfs:Delete typeName=\"cgf:Points\">"
+                + "<ogc:Filter><ogc:PropertyIsEqualTo>"
+                + "<ogc:PropertyName>cgf:id</ogc:PropertyName><ogc:Literal>s5</ogc:Literal>"
+                + "</ogc:PropertyIsEqualTo></ogc:Filter>"
+                + "</wfs:Delete>"
+                + "</wfs:Transaction>";
+
+        Document dom = postAsDOM("wfs", xml);
+        assertEquals("6", getFirstElementByTagName(dom, "wfs:totalInserted").getFirstChild()
+                .getNodeValue());
+        assertEquals("1", getFirstElementByTagName(dom, "wfs:totalDeleted").getFirstChild()
+                .getNodeValue());
+
+        // one fid per feature, in the same order as the features
+        NodeList features = dom.getElementsByTagName("wfs:Feature");
+        assertEquals(6, features.getLength());
+        for (int i = 0; i < 5; i++) {
+            Element feature = (Element) features.item(i);
+            assertEquals("points", feature.getAttribute("handle"));
+            String fid = getFirstElementByTagName(feature, "ogc:FeatureId").getAttribute("fid");
+            Document inserted = getAsDOM("wfs?request=GetFeature&version=1.1.0&service=wfs"
+                    + "&typeName=cgf:Points&featureId=" + fid);
+            NodeList ids = inserted.getElementsByTagName("cgf:id");
+            if (i < 4) {
+                assertEquals("s" + (i + 1), ids.item(0).getFirstChild().getNodeValue());
+            } else {
+                // deleted in the same transaction
+                assertEquals(0, ids.getLength());
+            }
+        }
+        assertEquals("lines", ((Element) features.item(5)).getAttribute("handle"));
+
+        dom = postAsDOM("wfs", GET_POINTS);
+        assertEquals(n + 4, dom.getElementsByTagName("cgf:Points").getLength());
+    }
+
+    @Test
+    public void testInsert20() throws Exception {
+        int n = postAsDOM("wfs", GET_POINTS).getElementsByTagName("cgf:Points").getLength();
+
+        String xml = "<wfs:Transaction service='WFS' version='2.0.0' "
+                + "xmlns:cgf=\"http://www.opengis.net/cite/geometry\" "
+                + "xmlns:fes='" + FES.NAMESPACE + "' "
+                + "xmlns:wfs='" + WFS.NAMESPACE + "' "
+                + "xmlns:gml='" + org.geotools.gml3.v3_2.GML.NAMESPACE + "'>"
+                + "<wfs:Insert>"
+                + point("t1", "10 10") + point("t2", "20 20") + point("t3", "30 30")
+                + "</wfs:Insert>"
+                + "</wfs:Transaction>";
+
+        Document dom = postAsDOM("wfs", xml);
+        assertEquals("3", getFirstElementByTagName(dom, "wfs:totalInserted").getFirstChild()
+                .getNodeValue());
+        assertEquals(3, dom.getElementsByTagName("fes:ResourceId").getLength());
+
+        dom = postAsDOM("wfs", GET_POINTS);
+        assertEquals(n + 3, dom.getElementsByTagName("cgf:Points").getLength());
+    }
+
+    @Test
+    public void testInsertUnknownFeatureType() throws Exception {
+        String xml = "<wfs:Transaction service='WFS' version='2.0.0' "
+                + "xmlns:cgf=\"http://www.opengis.net/cite/geometry\" "
+                + "xmlns:wfs='" + WFS.NAMESPACE + "' "
+                + "xmlns:gml='" + org.geotools.gml3.v3_2.GML.NAMESPACE + "'>"
+                + "<wfs:Insert>"
+                + "<cgf:FooBar><cgf:id>t0002</cgf:id></cgf:FooBar>"
+                + "</wfs:Insert>"
+                + "</wfs:Transaction>";
+
+        // same failure as when parsing the whole request
+        MockHttpServletResponse response = postAsServletResponse("wfs", xml);
+        assertEquals(400, response.getStatus());
+        Document dom = dom(new ByteArrayInputStream(response.getContentAsByteArray()));
+        checkOws11Exception(dom, "2.0.0", "InvalidValue", "Transaction");
+    }
+
+    @Test
+    public void testInsertWorkspaceQualified() throws Exception {
+        int n = postAsDOM("wfs", GET_POINTS).getElementsByTagName("cgf:Points").getLength();
+
+        String xml = "<wfs:Transaction service=\"WFS\" version=\"1.1.0\" "
+                + "xmlns:cgf=\"http://www.opengis.net/cite/geometry\" "
+                + "xmlns:wfs=\"http://www.opengis.net/wfs\" "
+                + "xmlns:gml=\"http://www.opengis.net/gml\">"
+                + "<wfs:Insert>" + point("w1", "1 1") + "</wfs:Insert>"
+                + "</wfs:Transaction>";
+
+        // the features are not parsed yet when the workspace qualifier checks them
+        Document dom = postAsDOM("sf/wfs", xml);
+        assertEquals("ows:ExceptionReport", dom.getDocumentElement().getNodeName());
+        assertEquals(n, postAsDOM("wfs", GET_POINTS).getElementsByTagName("cgf:Points")
+                .getLength());
+
+        dom = postAsDOM("cgf/wfs", xml);
+        assertEquals("1", getFirstElementByTagName(dom, "wfs:totalInserted").getFirstChild()
+                .getNodeValue());
+    }
+}
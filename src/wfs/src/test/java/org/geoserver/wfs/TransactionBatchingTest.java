@@ -0,0 +1,208 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wfs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.xml.namespace.QName;
+
+import net.opengis.wfs.PropertyType;
+import net.opengis.wfs.UpdateElementType;
+import net.opengis.wfs.WfsFactory;
+
+import org.geoserver.data.test.CiteTestData;
+import org.geoserver.wfs.request.Update;
+import org.geotools.factory.CommonFactoryFinder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opengis.filter.FilterFactory;
+import org.opengis.filter.Id;
+import org.opengis.filter.identity.Identifier;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+public class TransactionBatchingTest extends WFSTestSupport {
+
+    static final FilterFactory FF = CommonFactoryFinder.getFilterFactory(null);
+
+    @Before
+    public void enableBatching() throws Exception {
+        revertLayer(CiteTestData.POINTS);
+        InsertElementHandler inserts = applicationContext.getBean(InsertElementHandler.class);
+        inserts.setInsertBatchSize(2);
+        applicationContext.getBean(UpdateElementHandler.class).setGroupUpdates(true);
+    }
+
+    @After
+    public void disableBatching() {
+        applicationContext.getBean(InsertElementHandler.class).setInsertBatchSize(0);
+        applicationContext.getBean(UpdateElementHandler.class).setGroupUpdates(false);
+    }
+
+    String point(String id, int altitude) {
+        return "<cgf:Points>"
+                + "<cgf:pointProperty><gml:Point><gml:pos>" + altitude + " " + altitude
+                + "</gml:pos></gml:Point></cgf:pointProperty>"
+                + "<cgf:id>" + id + "</cgf:id>"
+                + "<cgf:altitude>" + altitude + "</cgf:altitude>"
+                + "</cgf:Points>";
+    }
+
+    List<String> insertPoints(String... ids) throws Exception {
+        StringBuilder xml = new StringBuilder("<wfs:Transaction service=\"WFS\" version=\"1.1.0\" "
+                + "xmlns:cgf=\"http://www.opengis.net/cite/geometry\" "
+                + "xmlns:wfs=\"http://www.opengis.net/wfs\" "
+                + "xmlns:gml=\"http://www.opengis.net/gml\">"
+                + "<wfs:Insert>");
+        for (int i = 0; i < ids.length; i++) {
+            xml.append(point(ids[i], i));
+        }
+        xml.append("</wfs:Insert></wfs:Transaction>");
+
+        Document dom = postAsDOM("wfs", xml.toString());
+        assertEquals(String.valueOf(ids.length), getFirstElementByTagName(dom,
+                "wfs:totalInserted").getFirstChild().getNodeValue());
+        List<String> fids = new ArrayList<>();
+        NodeList featureIds = dom.getElementsByTagName("ogc:FeatureId");
+        for (int i = 0; i < featureIds.getLength(); i++) {
+            fids.add(((Element) featureIds.item(i)).getAttribute("fid"));
+        }
+        return fids;
+    }
+
+    Element getPoint(String fid) throws Exception {
+        Document dom = getAsDOM("wfs?request=GetFeature&version=1.1.0&service=wfs"
+                + "&typeName=cgf:Points&featureId=" + fid);
+        return getFirstElementByTagName(dom, "cgf:Points");
+    }
+
+    @Test
+    public void testInsertInBatches() throws Exception {
+        List<String> fids = insertPoints("b1", "b2", "b3", "b4", "b5");
+
+        // fids come back in the same order as the features, across batches
+        assertEquals(5, fids.size());
+        for (int i = 0; i < fids.size(); i++) {
+            Element point = getPoint(fids.get(i));
+            assertEquals("b" + (i + 1), getFirstElementByTagName(point, "cgf:id")
+                    .getFirstChild().getNodeValue());
+        }
+    }
+
+    @Test
+    public void testGroupedUpdates() throws Exception {
+        List<String> fids = insertPoints("u1", "u2", "u3");
+
+        String xml = "<wfs:Transaction service=\"WFS\" version=\"1.1.0\" "
+                + "xmlns:cgf=\"http://www.opengis.net/cite/geometry\" "
+                + "xmlns:ogc=\"http://www.opengis.net/ogc\" "
+                + "xmlns:wfs=\"http://www.opengis.net/wfs\">"
+                + update(fids.get(0), 100) + update(fids.get(1), 100)
+                + update(fids.get(2), 200) + update(fids.get(0), 300)
+                + "</wfs:Transaction>";
+        Document dom = postAsDOM("wfs", xml);
+        assertEquals("4", getFirstElementByTagName(dom, "wfs:totalUpdated").getFirstChild()
+                .getNodeValue());
+
+        // updates are still applied in order
+        assertEquals("300", getAltitude(fids.get(0)));
+        assertEquals("100", getAltitude(fids.get(1)));
+        assertEquals("200", getAltitude(fids.get(2)));
+    }
+
+    @Test
+    public void testOverlappingUpdatesNotGrouped() throws Exception {
+        List<String> fids = insertPoints("o1", "o2");
+
+        // the same feature updated twice counts twice, as it would without grouping
+        String xml = "<wfs:Transaction service=\"WFS\" version=\"1.1.0\" "
+                + "xmlns:cgf=\"http://www.opengis.net/cite/geometry\" "
+                + "xmlns:ogc=\"http://www.opengis.net/ogc\" "
+                + "xmlns:wfs=\"http://www.opengis.net/wfs\">"
+                + update(fids.get(0), 100) + update(fids.get(1), 100)
+                + update(fids.get(0), 100)
+                + "</wfs:Transaction>";
+        Document dom = postAsDOM("wfs", xml);
+        assertEquals("3", getFirstElementByTagName(dom, "wfs:totalUpdated").getFirstChild()
+                .getNodeValue());
+        assertEquals("100", getAltitude(fids.get(0)));
+        assertEquals("100", getAltitude(fids.get(1)));
+    }
+
+    String update(String fid, int altitude) {
+        return "<wfs:Update typeName=\"cgf:Points\">"
+                + "<wfs:Property><wfs:Name>cgf:altitude</wfs:Name>"
+                + "<wfs:Value>" + altitude + "</wfs:Value></wfs:Property>"
+                + "<ogc:Filter><ogc:FeatureId fid=\"" + fid + "\"/></ogc:Filter>"
+                + "</wfs:Update>";
+    }
+
+    String getAltitude(String fid) throws Exception {
+        return getFirstElementByTagName(getPoint(fid), "cgf:altitude").getFirstChild()
+                .getNodeValue();
+    }
+
+    Update update(String handle, Object value, String... fids) {
+        UpdateElementType update = WfsFactory.eINSTANCE.createUpdateElementType();
+        update.setHandle(handle);
+        update.setTypeName(CiteTestData.POINTS);
+        PropertyType property = WfsFactory.eINSTANCE.createPropertyType();
+        property.setName(new QName(CiteTestData.CGF_URI, "altitude"));
+        property.setValue(value);
+        update.getProperty().add(property);
+        Set<Identifier> ids = new HashSet<>();
+        for (String fid : fids) {
+            ids.add(FF.featureId(fid));
+        }
+        update.setFilter(FF.id(ids));
+        return new Update.WFS11(update);
+    }
+
+    @Test
+    public void testCanGroup() throws Exception {
+        Update update = update(null, "10", "Points.1");
+        assertTrue(UpdateElementHandler.canGroup(update, update(null, "10", "Points.2")));
+        // different values, handles or filter shapes cannot be grouped
+        assertFalse(UpdateElementHandler.canGroup(update, update(null, "20", "Points.2")));
+        assertFalse(UpdateElementHandler.canGroup(update, update("h", "10", "Points.2")));
+        Update byAttribute = update(null, "10");
+        byAttribute.setFilter(FF.equals(FF.property("id"), FF.literal("t0000")));
+        assertFalse(UpdateElementHandler.canGroup(update, byAttribute));
+        // features selected by more than one update would be updated and counted once
+        assertFalse(UpdateElementHandler.canGroup(update,
+                update(null, "10", "Points.1", "Points.2")));
+        List<Update> group = Arrays.asList(update, update(null, "10", "Points.2"));
+        assertFalse(UpdateElementHandler.canGroup(group, update(null, "10", "Points.2")));
+        assertTrue(UpdateElementHandler.canGroup(group, update(null, "10", "Points.3")));
+    }
+
+    @Test
+    public void testGroup() throws Exception {
+        Update first = update(null, "10", "Points.1");
+        Update grouped = UpdateElementHandler.group(Arrays.asList(first,
+                update(null, "10", "Points.2", "Points.3")));
+
+        assertNotSame(first.getAdaptee(), grouped.getAdaptee());
+        Set<String> ids = new HashSet<>();
+        for (Object id : ((Id) grouped.getFilter()).getIDs()) {
+            ids.add(id.toString());
+        }
+        assertEquals(new HashSet<>(Arrays.asList("Points.1", "Points.2", "Points.3")), ids);
+        assertEquals(1, grouped.getUpdateProperties().size());
+        // the original update is left untouched
+        assertEquals(1, ((Id) first.getFilter()).getIDs().size());
+    }
+}
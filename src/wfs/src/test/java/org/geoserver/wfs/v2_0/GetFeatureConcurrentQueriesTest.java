@@ -0,0 +1,109 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wfs.v2_0;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.custommonkey.xmlunit.XMLAssert;
+import org.geoserver.wfs.GetFeatureExecutor;
+import org.junit.After;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+public class GetFeatureConcurrentQueriesTest extends WFS20TestSupport {
+
+    static final String TYPE_NAMES = "cdf:Fifteen,cdf:Seven,cdf:Other,cdf:Fifteen";
+
+    @After
+    public void resetThreads() {
+        getExecutor().setThreads(Runtime.getRuntime().availableProcessors());
+    }
+
+    GetFeatureExecutor getExecutor() {
+        return applicationContext.getBean(GetFeatureExecutor.class);
+    }
+
+    List<String> getIds(Document doc) {
+        List<String> ids = new ArrayList<>();
+        NodeList members = doc.getElementsByTagName("wfs:member");
+        for (int i = 0; i < members.getLength(); i++) {
+            Element member = (Element) members.item(i);
+            for (int j = 0; j < member.getChildNodes().getLength(); j++) {
+                if (member.getChildNodes().item(j) instanceof Element) {
+                    ids.add(((Element) member.getChildNodes().item(j)).getAttribute("gml:id"));
+                }
+            }
+        }
+        return ids;
+    }
+
+    Document getFeature(String params) throws Exception {
+        return getAsDOM("wfs?request=GetFeature&version=2.0.0&service=wfs&typenames="
+                + TYPE_NAMES + params);
+    }
+
+    void assertSameAsSequential(String params) throws Exception {
+        getExecutor().setThreads(4);
+        Document parallel = getFeature(params);
+        getExecutor().setThreads(1);
+        Document sequential = getFeature(params);
+
+        assertEquals(getIds(sequential), getIds(parallel));
+        Element expected = sequential.getDocumentElement();
+        Element actual = parallel.getDocumentElement();
+        assertEquals(expected.getAttribute("numberMatched"), actual.getAttribute("numberMatched"));
+        assertEquals(expected.getAttribute("numberReturned"),
+                actual.getAttribute("numberReturned"));
+        assertEquals(expected.getAttribute("next"), actual.getAttribute("next"));
+        assertEquals(expected.getAttribute("previous"), actual.getAttribute("previous"));
+    }
+
+    @Test
+    public void testQueriesInOrder() throws Exception {
+        getExecutor().setThreads(4);
+        Document doc = getFeature("");
+        XMLAssert.assertXpathEvaluatesTo("30", "count(//cdf:Fifteen)", doc);
+        XMLAssert.assertXpathEvaluatesTo("7", "count(//cdf:Seven)", doc);
+        List<String> ids = getIds(doc);
+        // results are returned in query order
+        assertTrue(ids.get(0).startsWith("Fifteen."));
+        assertTrue(ids.get(15).startsWith("Seven."));
+        assertTrue(ids.get(21).startsWith("Seven."));
+        assertTrue(ids.get(ids.size() - 15).startsWith("Fifteen."));
+        assertEquals(ids.subList(0, 15), ids.subList(ids.size() - 15, ids.size()));
+
+        assertSameAsSequential("");
+    }
+
+    @Test
+    public void testCount() throws Exception {
+        assertSameAsSequential("&count=10");
+        assertSameAsSequential("&count=20");
+        assertSameAsSequential("&count=40");
+    }
+
+    @Test
+    public void testStartIndex() throws Exception {
+        assertSameAsSequential("&startIndex=10");
+        assertSameAsSequential("&startIndex=16");
+        assertSameAsSequential("&startIndex=10&count=6");
+        assertSameAsSequential("&startIndex=21&count=5");
+        assertSameAsSequential("&startIndex=100");
+    }
+
+    @Test
+    public void testInvalidQuery() throws Exception {
+        getExecutor().setThreads(4);
+        Document doc = getAsDOM("wfs?request=GetFeature&version=2.0.0&service=wfs"
+                + "&typenames=cdf:Fifteen,cdf:NotThere");
+        checkOws11Exception(doc, "2.0.0", "InvalidParameterValue", "typeName");
+    }
+}
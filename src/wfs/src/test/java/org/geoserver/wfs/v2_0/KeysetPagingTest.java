@@ -0,0 +1,155 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wfs.v2_0;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.FeatureTypeInfo;
+import org.geoserver.data.test.SystemTestData;
+import org.geoserver.wfs.KeysetPaging;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+public class KeysetPagingTest extends WFS20TestSupport {
+
+    static final String GET_FEATURE = "wfs?service=WFS&version=2.0.0&request=GetFeature"
+            + "&typeNames=sf:PrimitiveGeoFeature&count=2";
+
+    @Before
+    public void enableKeysetPaging() {
+        System.setProperty(KeysetPaging.KEYSET_PAGING_KEY, "true");
+        setKey("intProperty");
+    }
+
+    @After
+    public void disableKeysetPaging() {
+        System.clearProperty(KeysetPaging.KEYSET_PAGING_KEY);
+        setKey(null);
+    }
+
+    void setKey(String key) {
+        Catalog catalog = getCatalog();
+        FeatureTypeInfo ft = catalog.getFeatureTypeByName(
+                getLayerId(SystemTestData.PRIMITIVEGEOFEATURE));
+        if (key == null) {
+            ft.getMetadata().remove(KeysetPaging.KEY_ATTRIBUTES);
+        } else {
+            ft.getMetadata().put(KeysetPaging.KEY_ATTRIBUTES, key);
+        }
+        catalog.save(ft);
+    }
+
+    List<String> getIds(Document doc) {
+        List<String> ids = new ArrayList<>();
+        NodeList features = doc.getElementsByTagName("sf:PrimitiveGeoFeature");
+        for (int i = 0; i < features.getLength(); i++) {
+            ids.add(((Element) features.item(i)).getAttribute("gml:id"));
+        }
+        return ids;
+    }
+
+    String getNext(Document doc) throws Exception {
+        Element root = doc.getDocumentElement();
+        if (!root.hasAttribute("next")) {
+            return null;
+        }
+        String next = root.getAttribute("next");
+        // relative to the test servlet
+        return URLDecoder.decode(next.substring(next.indexOf("wfs?")), "UTF-8");
+    }
+
+    @Test
+    public void testPageThroughKeys() throws Exception {
+        Document doc = getAsDOM(GET_FEATURE + "&startIndex=0");
+        assertEquals(Arrays.asList("PrimitiveGeoFeature.f015", "PrimitiveGeoFeature.f002"),
+                getIds(doc));
+        String next = getNext(doc);
+        assertNotNull(next);
+        assertTrue(next.toLowerCase().contains(KeysetPaging.TOKEN.toLowerCase() + "="));
+
+        doc = getAsDOM(next);
+        assertEquals(Arrays.asList("PrimitiveGeoFeature.f001", "PrimitiveGeoFeature.f003"),
+                getIds(doc));
+        // the offset is still tracked, for the previous page link
+        assertTrue(doc.getDocumentElement().getAttribute("previous").toLowerCase()
+                .contains("startindex=0"));
+        next = getNext(doc);
+        assertNotNull(next);
+
+        doc = getAsDOM(next);
+        assertEquals(Arrays.asList("PrimitiveGeoFeature.f008"), getIds(doc));
+        assertFalse(doc.getDocumentElement().hasAttribute("next"));
+        assertEquals("5", doc.getDocumentElement().getAttribute("numberMatched"));
+    }
+
+    @Test
+    public void testPageThroughDescendingKeys() throws Exception {
+        Document doc = getAsDOM(GET_FEATURE + "&startIndex=0&sortBy=intProperty DESC");
+        assertEquals(Arrays.asList("PrimitiveGeoFeature.f008", "PrimitiveGeoFeature.f003"),
+                getIds(doc));
+
+        doc = getAsDOM(getNext(doc));
+        assertEquals(Arrays.asList("PrimitiveGeoFeature.f001", "PrimitiveGeoFeature.f002"),
+                getIds(doc));
+
+        doc = getAsDOM(getNext(doc));
+        assertEquals(Arrays.asList("PrimitiveGeoFeature.f015"), getIds(doc));
+        assertFalse(doc.getDocumentElement().hasAttribute("next"));
+    }
+
+    @Test
+    public void testNullSortValuesFallBackOnOffset() throws Exception {
+        // f015 has no dateProperty, a seek filter would skip it whatever its position
+        Document doc = getAsDOM(GET_FEATURE + "&startIndex=0&sortBy=dateProperty");
+        List<String> ids = new ArrayList<>(getIds(doc));
+        String next = getNext(doc);
+        while (next != null) {
+            assertFalse(next.toLowerCase().contains(KeysetPaging.TOKEN.toLowerCase()));
+            doc = getAsDOM(next);
+            ids.addAll(getIds(doc));
+            next = getNext(doc);
+        }
+        assertEquals(5, ids.size());
+        assertEquals(5, new HashSet<>(ids).size());
+        assertTrue(ids.contains("PrimitiveGeoFeature.f015"));
+    }
+
+    @Test
+    public void testTokenSortMismatch() throws Exception {
+        String next = getNext(getAsDOM(GET_FEATURE + "&startIndex=0"));
+        // same token, different sort
+        Document doc = getAsDOM(next + "&sortBy=decimalProperty");
+        checkOws11Exception(doc, "2.0.0", "InvalidParameterValue", KeysetPaging.TOKEN);
+    }
+
+    @Test
+    public void testInvalidToken() throws Exception {
+        Document doc = getAsDOM(GET_FEATURE + "&" + KeysetPaging.TOKEN + "=foo!bar");
+        checkOws11Exception(doc, "2.0.0", "InvalidParameterValue", KeysetPaging.TOKEN);
+    }
+
+    @Test
+    public void testNoKeyFallsBackOnOffset() throws Exception {
+        setKey(null);
+        Document doc = getAsDOM(GET_FEATURE + "&startIndex=0");
+        String next = getNext(doc);
+        assertNotNull(next);
+        assertFalse(next.toLowerCase().contains(KeysetPaging.TOKEN.toLowerCase()));
+    }
+}
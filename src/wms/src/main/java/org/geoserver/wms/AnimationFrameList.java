@@ -0,0 +1,265 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.RenderedImage;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.media.jai.PlanarImage;
+import javax.media.jai.RenderedImageList;
+
+import org.geoserver.platform.ServiceException;
+import org.geoserver.threadlocals.ThreadLocalsTransfer;
+import org.geotools.coverage.grid.GridCoverage2D;
+import org.geotools.filter.function.EnvFunction;
+import org.geotools.resources.image.ImageUtilities;
+import org.geotools.util.logging.Logging;
+
+/**
+ * The frames of an animation, rendered in parallel and handed over in order.
+ * <p>
+ * At most {@code window} frames are rendered ahead of the last one retrieved, and the frames
+ * preceding the last one retrieved are released, so that an encoder walking the list in order
+ * keeps in memory only a window of frames instead of the whole animation. The first frame is
+ * kept, as it provides the image properties of the list as a whole, the other ones cannot be
+ * retrieved again once released, {@link #get(int)} will return {@code null} for them.
+ * </p>
+ * <p>
+ * The frames are rendered with the request thread locals and environment variables of the thread
+ * building the list, the images and coverages they schedule for cleanup are handed over to the
+ * {@link RasterCleaner} of the thread retrieving them.
+ * </p>
+ */
+class AnimationFrameList extends RenderedImageList {
+
+    static final Logger LOGGER = Logging.getLogger(AnimationFrameList.class);
+
+    /**
+     * Renders a single frame of the animation
+     */
+    interface FrameRenderer {
+
+        RenderedImage render(int frame) throws Exception;
+    }
+
+    private final ExecutorService executor;
+
+    private final int window;
+
+    private final MaxAnimationTimeHelper maxAnimationTimeHelper;
+
+    private final FrameRenderer renderer;
+
+    private final ThreadLocalsTransfer threadLocalsTransfer = new ThreadLocalsTransfer();
+
+    private final Map<String, Object> envValues;
+
+    private final Future<RenderedFrame>[] futures;
+
+    private final RenderedImage[] frames;
+
+    private int submitted;
+
+    private boolean disposed;
+
+    /**
+     * @param executor The executor rendering the frames
+     * @param window The number of frames rendered ahead of the last one retrieved
+     * @param size The number of frames
+     * @param maxAnimationTimeHelper The animation timeout checker
+     * @param renderer The frame renderer
+     */
+    @SuppressWarnings("unchecked")
+    AnimationFrameList(ExecutorService executor, int window, int size,
+            MaxAnimationTimeHelper maxAnimationTimeHelper, FrameRenderer renderer) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("The animation must have at least one frame");
+        }
+        this.executor = executor;
+        this.window = Math.max(window, 1);
+        this.maxAnimationTimeHelper = maxAnimationTimeHelper;
+        this.renderer = renderer;
+        this.envValues = new HashMap<>(EnvFunction.getLocalValues());
+        this.futures = new Future[size];
+        this.frames = new RenderedImage[size];
+        this.imageCollection = new Frames();
+        submit(this.window);
+    }
+
+    /**
+     * Submits the frames up to the given index, excluded
+     */
+    private void submit(int limit) {
+        limit = Math.min(limit, futures.length);
+        for (; submitted < limit; submitted++) {
+            final int frame = submitted;
+            futures[frame] = executor.submit(() -> renderFrame(frame));
+        }
+    }
+
+    private RenderedFrame renderFrame(int frame) throws Exception {
+        try {
+            threadLocalsTransfer.apply();
+            EnvFunction.setLocalValues(envValues);
+            // no point in rendering frames the encoder won't be allowed to wait for
+            maxAnimationTimeHelper.checkTimeout();
+            RenderedImage image = renderer.render(frame);
+            return new RenderedFrame(image, RasterCleaner.images.get(),
+                    RasterCleaner.coverages.get());
+        } finally {
+            RasterCleaner.images.remove();
+            RasterCleaner.coverages.remove();
+            EnvFunction.clearLocalValues();
+            threadLocalsTransfer.cleanup();
+        }
+    }
+
+    /**
+     * Returns the frame at the given position, waiting for it to be rendered if necessary.
+     * Retrieving a frame releases the ones preceding it, but the first.
+     */
+    @Override
+    public synchronized Object get(int index) {
+        if (index < 0 || index >= frames.length) {
+            throw new IndexOutOfBoundsException("Frame " + index + " is not part of the animation");
+        }
+        if (disposed) {
+            return frames[index];
+        }
+        submit(index + window);
+        if (frames[index] == null && futures[index] != null) {
+            frames[index] = waitFrame(index);
+            futures[index] = null;
+        }
+        for (int i = 1; i < index; i++) {
+            frames[i] = null;
+        }
+
+        return frames[index];
+    }
+
+    private RenderedImage waitFrame(int index) {
+        try {
+            long residual = maxAnimationTimeHelper.getResidualTime();
+            RenderedFrame frame;
+            if (residual < 0) {
+                frame = futures[index].get();
+            } else {
+                frame = futures[index].get(residual, TimeUnit.MILLISECONDS);
+            }
+            // the cleanup happens at the end of the request, in the request thread
+            if (frame.images != null) {
+                for (RenderedImage image : frame.images) {
+                    RasterCleaner.addImage(image);
+                }
+            }
+            if (frame.coverages != null) {
+                for (GridCoverage2D coverage : frame.coverages) {
+                    RasterCleaner.addCoverage(coverage);
+                }
+            }
+            return frame.image;
+        } catch (TimeoutException e) {
+            dispose();
+            maxAnimationTimeHelper.checkTimeout();
+            throw new ServiceException(e);
+        } catch (InterruptedException | CancellationException e) {
+            dispose();
+            throw new ServiceException("Rendering of animation frame " + index
+                    + " has been interrupted", e);
+        } catch (ExecutionException e) {
+            dispose();
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new ServiceException("Failed to render animation frame " + index, cause);
+        }
+    }
+
+    /**
+     * Cancels the frames still being rendered, and releases the ones rendered but not retrieved
+     * yet
+     */
+    synchronized void dispose() {
+        if (disposed) {
+            return;
+        }
+        disposed = true;
+        for (int i = 0; i < futures.length; i++) {
+            Future<RenderedFrame> future = futures[i];
+            if (future == null) {
+                continue;
+            }
+            futures[i] = null;
+            if (!future.cancel(true) && future.isDone()) {
+                try {
+                    disposeImage(future.get().image);
+                } catch (Exception e) {
+                    LOGGER.log(Level.FINE, "Frame " + i + " failed to render", e);
+                }
+            }
+        }
+    }
+
+    private void disposeImage(RenderedImage image) {
+        if (image instanceof PlanarImage) {
+            ImageUtilities.disposePlanarImageChain((PlanarImage) image);
+        } else if (image instanceof BufferedImage) {
+            ((BufferedImage) image).flush();
+        }
+    }
+
+    /**
+     * The frames, as seen by the {@link RenderedImageList} methods
+     */
+    private class Frames extends AbstractList<Object> {
+
+        @Override
+        public Object get(int index) {
+            return AnimationFrameList.this.get(index);
+        }
+
+        @Override
+        public int size() {
+            return frames.length;
+        }
+    }
+
+    /**
+     * A rendered frame, along with the images and coverages scheduled for cleanup while rendering
+     * it
+     */
+    private static class RenderedFrame {
+
+        final RenderedImage image;
+
+        final List<RenderedImage> images;
+
+        final List<GridCoverage2D> coverages;
+
+        RenderedFrame(RenderedImage image, List<RenderedImage> images,
+                List<GridCoverage2D> coverages) {
+            this.image = image;
+            this.images = images == null ? null : new ArrayList<>(images);
+            this.coverages = coverages == null ? null : new ArrayList<>(coverages);
+        }
+    }
+}
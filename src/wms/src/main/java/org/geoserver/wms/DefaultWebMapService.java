@@ -148,6 +148,17 @@ public class DefaultWebMapService implements WebMapService, ApplicationContextAw
      */
     private static Boolean USE_GLOBAL_RENDERING_POOL = null;
 
+    /**
+     * Max number of threads used to render layers in parallel, zero disables parallel layer
+     * rendering
+     */
+    private static Integer PARALLEL_LAYER_RENDERING_THREADS = null;
+
+    /**
+     * The bounded pool used for parallel layer rendering
+     */
+    private static ExecutorService LAYER_RENDERING_POOL;
+
     private GetCapabilities getCapabilities;
 
     private DescribeLayer describeLayer;
@@ -247,6 +258,16 @@ public class DefaultWebMapService implements WebMapService, ApplicationContextAw
             else
                 USE_GLOBAL_RENDERING_POOL = Boolean.valueOf(usePool);
         }
+
+        // parallel layer rendering is opt-in
+        if (PARALLEL_LAYER_RENDERING_THREADS == null) {
+            String threads = GeoServerExtensions.getProperty("PARALLEL_LAYER_RENDERING_THREADS",
+                    context);
+            if (threads == null)
+                PARALLEL_LAYER_RENDERING_THREADS = 0;
+            else
+                PARALLEL_LAYER_RENDERING_THREADS = Integer.valueOf(threads);
+        }
     }
 
     /**
@@ -687,12 +708,38 @@ public class DefaultWebMapService implements WebMapService, ApplicationContextAw
         return RENDERING_POOL;
     }
 
+    /**
+     * Returns the app wide bounded pool used to render the layers of a map in parallel, or null if
+     * parallel layer rendering has not been enabled via the PARALLEL_LAYER_RENDERING_THREADS
+     * property
+     */
+    public static ExecutorService getLayerRenderingPool() {
+        if (PARALLEL_LAYER_RENDERING_THREADS == null || PARALLEL_LAYER_RENDERING_THREADS <= 0) {
+            return null;
+        }
+        if (LAYER_RENDERING_POOL == null) {
+            synchronized (DefaultWebMapService.class) {
+                if (LAYER_RENDERING_POOL == null) {
+                    LAYER_RENDERING_POOL = Executors
+                            .newFixedThreadPool(PARALLEL_LAYER_RENDERING_THREADS);
+                }
+            }
+        }
+
+        return LAYER_RENDERING_POOL;
+    }
+
     public void destroy() throws Exception {
         if (RENDERING_POOL != null) {
             RENDERING_POOL.shutdown();
             RENDERING_POOL.awaitTermination(10, TimeUnit.SECONDS);
             RENDERING_POOL = null;
         }
+        if (LAYER_RENDERING_POOL != null) {
+            LAYER_RENDERING_POOL.shutdown();
+            LAYER_RENDERING_POOL.awaitTermination(10, TimeUnit.SECONDS);
+            LAYER_RENDERING_POOL = null;
+        }
     }
 
 }
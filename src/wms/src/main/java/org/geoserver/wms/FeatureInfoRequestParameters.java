@@ -102,6 +102,33 @@ public class FeatureInfoRequestParameters {
         this.propertyNames = request.getPropertyNames();
     }
 
+    /**
+     * Copies the parameters, positioning the copy on the specified layer, so that layers can be
+     * identified independently of each other
+     */
+    FeatureInfoRequestParameters(FeatureInfoRequestParameters other, int layer) {
+        this.layers = other.layers;
+        this.filters = other.filters;
+        this.sorts = other.sorts;
+        this.styles = other.styles;
+        this.x = other.x;
+        this.y = other.y;
+        this.buffer = other.buffer;
+        this.viewParams = other.viewParams;
+        this.getMapReq = other.getMapReq;
+        this.requestedCRS = other.requestedCRS;
+        this.maxFeatures = other.maxFeatures;
+        this.width = other.width;
+        this.height = other.height;
+        this.bbox = other.bbox;
+        this.scaleDenominator = other.scaleDenominator;
+        this.elevations = other.elevations;
+        this.times = other.times;
+        this.ff = other.ff;
+        this.propertyNames = other.propertyNames;
+        this.currentLayer = layer;
+    }
+
     private double getScaleDenominator(GetMapRequest request) {
         final Envelope envelope = request.getBbox();
         final CoordinateReferenceSystem mapcrs = request.getCrs();
@@ -0,0 +1,192 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.xml.namespace.QName;
+
+import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.FeatureTypeInfo;
+import org.geoserver.catalog.StoreInfo;
+import org.geoserver.catalog.event.CatalogAddEvent;
+import org.geoserver.catalog.event.CatalogEvent;
+import org.geoserver.catalog.event.CatalogListener;
+import org.geoserver.catalog.event.CatalogModifyEvent;
+import org.geoserver.catalog.event.CatalogPostModifyEvent;
+import org.geoserver.catalog.event.CatalogRemoveEvent;
+import org.geoserver.config.impl.GeoServerLifecycleHandler;
+import org.geoserver.wfs.TransactionEvent;
+import org.geoserver.wfs.TransactionListener;
+import org.geoserver.wfs.request.TransactionRequest;
+import org.geotools.feature.NameImpl;
+import org.springframework.beans.factory.DisposableBean;
+
+/**
+ * Base class for the in memory indexes of feature type data kept up to date with WFS
+ * transactions, such as the {@link org.geoserver.wms.dimension.DimensionDomainIndex} and the
+ * {@link org.geoserver.wms.featureinfo.FeatureInfoSpatialIndex}.
+ * <p>
+ * Subclasses collect the changes of each transaction in the request extended properties, see
+ * {@link #getTransactionChanges(TransactionEvent)}, and apply them in
+ * {@link #applyChanges(Map)} once the {@link FeatureTypeIndexTransactionCallback} reports the
+ * transaction as committed. Catalog changes to feature types drop their indexed data, changes to
+ * stores, catalog reloads and configuration resets drop everything.
+ * </p>
+ *
+ * @param <K> The key of the changes collected during a transaction
+ * @param <C> The changes collected for a single key
+ */
+public abstract class FeatureTypeIndex<K, C>
+        implements TransactionListener, GeoServerLifecycleHandler, DisposableBean {
+
+    protected final Catalog catalog;
+
+    protected final boolean enabled;
+
+    /**
+     * Key of the changes collected during a transaction in the request extended properties
+     */
+    private final String changesKey;
+
+    private final CatalogListener catalogListener = new IndexCatalogListener();
+
+    /**
+     * @param catalog The catalog, listened to when the index is enabled
+     * @param enabled Whether the index is enabled
+     * @param changesKey The key of the collected changes in the transaction extended properties
+     */
+    protected FeatureTypeIndex(Catalog catalog, boolean enabled, String changesKey) {
+        this.catalog = catalog;
+        this.enabled = enabled;
+        this.changesKey = changesKey;
+        if (enabled && catalog != null) {
+            catalog.addListener(catalogListener);
+        }
+    }
+
+    /**
+     * Returns true if the index is enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns the changes collected so far by the transaction the event belongs to
+     */
+    @SuppressWarnings("unchecked")
+    protected Map<K, C> getTransactionChanges(TransactionEvent event) {
+        // the event exposes the unadapted request
+        Map<Object, Object> properties = TransactionRequest.adapt(event.getRequest())
+                .getExtendedProperties();
+        Map<K, C> changes = (Map<K, C>) properties.get(changesKey);
+        if (changes == null) {
+            changes = new HashMap<>();
+            properties.put(changesKey, changes);
+        }
+        return changes;
+    }
+
+    /**
+     * Applies the changes collected during the transaction, if it got committed
+     */
+    @SuppressWarnings("unchecked")
+    public void transactionEnded(TransactionRequest request, boolean committed) {
+        Map<K, C> changes = (Map<K, C>) request.getExtendedProperties().remove(changesKey);
+        if (changes != null && committed) {
+            applyChanges(changes);
+        }
+    }
+
+    /**
+     * Applies the changes of a committed transaction
+     */
+    protected abstract void applyChanges(Map<K, C> changes);
+
+    protected FeatureTypeInfo getFeatureType(QName name) {
+        return catalog.getFeatureTypeByName(
+                new NameImpl(name.getNamespaceURI(), name.getLocalPart()));
+    }
+
+    /**
+     * Removes the indexed data of the given feature type
+     */
+    protected abstract void remove(String typeId);
+
+    /**
+     * Removes all the indexed data
+     */
+    protected abstract void clear();
+
+    @Override
+    public void onReset() {
+        // data might have changed in the meantime
+        clear();
+    }
+
+    @Override
+    public void onDispose() {
+        // nothing to do
+    }
+
+    @Override
+    public void beforeReload() {
+        // nothing to do
+    }
+
+    @Override
+    public void onReload() {
+        clear();
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        if (catalog != null) {
+            catalog.removeListener(catalogListener);
+        }
+    }
+
+    /**
+     * Drops the indexed data of the modified or removed feature types and stores
+     */
+    class IndexCatalogListener implements CatalogListener {
+
+        @Override
+        public void handleAddEvent(CatalogAddEvent event) {
+            // new feature types are not indexed yet
+        }
+
+        @Override
+        public void handleRemoveEvent(CatalogRemoveEvent event) {
+            handleChange(event);
+        }
+
+        @Override
+        public void handleModifyEvent(CatalogModifyEvent event) {
+            // wait for the change to be applied
+        }
+
+        @Override
+        public void handlePostModifyEvent(CatalogPostModifyEvent event) {
+            handleChange(event);
+        }
+
+        private void handleChange(CatalogEvent event) {
+            Object source = event.getSource();
+            if (source instanceof FeatureTypeInfo) {
+                remove(((FeatureTypeInfo) source).getId());
+            } else if (source instanceof StoreInfo) {
+                clear();
+            }
+        }
+
+        @Override
+        public void reloaded() {
+            clear();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms;
+
+import org.geoserver.wfs.TransactionCallback;
+import org.geoserver.wfs.WFSException;
+import org.geoserver.wfs.request.TransactionRequest;
+import org.geoserver.wfs.request.TransactionResponse;
+
+/**
+ * Tells a {@link FeatureTypeIndex} how a transaction ended, so that the changes collected during
+ * the transaction get applied only if committed. A separate bean since transaction callbacks are
+ * not notified of the single data changes.
+ */
+public class FeatureTypeIndexTransactionCallback implements TransactionCallback {
+
+    private final FeatureTypeIndex<?, ?> index;
+
+    public FeatureTypeIndexTransactionCallback(FeatureTypeIndex<?, ?> index) {
+        this.index = index;
+    }
+
+    @Override
+    public TransactionRequest beforeTransaction(TransactionRequest request) throws WFSException {
+        return request;
+    }
+
+    @Override
+    public void beforeCommit(TransactionRequest request) throws WFSException {
+        // nothing to do
+    }
+
+    @Override
+    public void afterTransaction(TransactionRequest request, TransactionResponse result,
+            boolean committed) {
+        index.transactionEnded(request, committed);
+    }
+}
@@ -9,6 +9,13 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 import net.opengis.wfs.FeatureCollectionType;
@@ -16,6 +23,7 @@ import net.opengis.wfs.WfsFactory;
 
 import org.geoserver.platform.GeoServerExtensions;
 import org.geoserver.platform.ServiceException;
+import org.geoserver.threadlocals.ThreadLocalsTransfer;
 import org.geoserver.wms.featureinfo.FeatureCollectionDecorator;
 import org.geoserver.wms.featureinfo.LayerIdentifier;
 import org.geotools.data.DataUtilities;
@@ -23,20 +31,67 @@ import org.geotools.data.Query;
 import org.geotools.data.simple.SimpleFeatureCollection;
 import org.geotools.feature.FeatureCollection;
 import org.geotools.feature.NameImpl;
+import org.geotools.feature.collection.MaxSimpleFeatureCollection;
 import org.geotools.util.logging.Logging;
 import org.opengis.feature.simple.SimpleFeatureType;
 import org.opengis.feature.type.Name;
 import org.opengis.filter.Filter;
+import org.springframework.beans.factory.DisposableBean;
 
 /**
  * WMS GetFeatureInfo operation
+ * <p>
+ * When multiple layers are queried they can be identified in parallel, on a pool of
+ * {@value #THREADS_PROPERTY} threads (by default one, that is, layers are identified
+ * sequentially). The results are collected in request order, the
+ * FEATURE_COUNT limit being applied across layers as the sequential identification would. If
+ * {@value #TIMEOUT_PROPERTY} is set, the layers not identified within that many milliseconds are
+ * left out of the response, which then contains only the results of the layers that completed in
+ * time.
+ * </p>
  * 
  * @author Gabriel Roldan
  */
-public class GetFeatureInfo {
+public class GetFeatureInfo implements DisposableBean {
 
     private static final Logger LOGGER = Logging.getLogger(GetFeatureInfo.class);
 
+    /**
+     * Property setting the number of threads used to identify layers in parallel
+     */
+    public static final String THREADS_PROPERTY = "GEOSERVER_FEATUREINFO_THREADS";
+
+    /**
+     * Property setting the time allowed to identify the layers, in milliseconds
+     */
+    public static final String TIMEOUT_PROPERTY = "GEOSERVER_FEATUREINFO_TIMEOUT";
+
+    private static final AtomicInteger POOL_COUNTER = new AtomicInteger();
+
+    private final int threads;
+
+    private final long timeout;
+
+    private ExecutorService executor;
+
+    private boolean disposed;
+
+    public GetFeatureInfo() {
+        this(GeoServerExtensions.getIntegerProperty(THREADS_PROPERTY, 1),
+                GeoServerExtensions.getIntegerProperty(TIMEOUT_PROPERTY, 0));
+    }
+
+    /**
+     * @param threads The number of threads used to identify layers, one or less to identify them
+     *        sequentially
+     * @param timeout The time allowed to identify the layers, in milliseconds, zero or less to
+     *        wait for all of them
+     */
+    public GetFeatureInfo(int threads, long timeout) {
+        this.threads = threads;
+        this.timeout = timeout;
+    }
+
     @SuppressWarnings({ "unchecked", "rawtypes" })
     public FeatureCollectionType run(final GetFeatureInfoRequest request) throws ServiceException {
         List<FeatureCollection> results;
@@ -67,10 +122,17 @@ public class GetFeatureInfo {
         final List<MapLayerInfo> requestedLayers = request.getQueryLayers();
         FeatureInfoRequestParameters requestParams = new FeatureInfoRequestParameters(request);
 
+        List<LayerIdentifier> identifiers = getLayerIdentifiers();
+        if (requestedLayers.size() > 1) {
+            ExecutorService executor = getExecutor();
+            if (executor != null) {
+                return executeParallel(request, requestParams, identifiers, executor);
+            }
+        }
+
         List<FeatureCollection> results = new ArrayList<FeatureCollection>(requestedLayers.size());
 
         int maxFeatures = request.getFeatureCount();
-        List<LayerIdentifier> identifiers = GeoServerExtensions.extensions(LayerIdentifier.class);
         for (int i = 0; i < requestedLayers.size(); i++) {
             final MapLayerInfo layer = requestedLayers.get(i);
             try {
@@ -97,6 +159,137 @@ public class GetFeatureInfo {
         return results;
     }
 
+    /**
+     * Identifies all the layers in parallel, then collects the results in request order
+     */
+    @SuppressWarnings("rawtypes")
+    private List<FeatureCollection> executeParallel(GetFeatureInfoRequest request,
+            FeatureInfoRequestParameters requestParams, List<LayerIdentifier> identifiers,
+            ExecutorService executor) throws Exception {
+        final List<MapLayerInfo> requestedLayers = request.getQueryLayers();
+        final int featureCount = request.getFeatureCount();
+        final long deadline = timeout > 0 ? System.currentTimeMillis() + timeout : 0;
+
+        // each layer is identified with the full FEATURE_COUNT, as we don't know yet how many
+        // features the layers before it will return
+        List<FeatureInfoRequestParameters> layerParams = new ArrayList<>(requestedLayers.size());
+        List<Future<List<FeatureCollection>>> futures = new ArrayList<>(requestedLayers.size());
+        try {
+            for (int i = 0; i < requestedLayers.size(); i++) {
+                final FeatureInfoRequestParameters params = new FeatureInfoRequestParameters(
+                        requestParams, i);
+                final LayerIdentifier identifier = getLayerIdentifier(requestedLayers.get(i),
+                        identifiers);
+                final ThreadLocalsTransfer threadLocalsTransfer = new ThreadLocalsTransfer();
+                layerParams.add(params);
+                futures.add(executor.submit(() -> {
+                    try {
+                        threadLocalsTransfer.apply();
+                        return identifier.identify(params, featureCount);
+                    } finally {
+                        threadLocalsTransfer.cleanup();
+                    }
+                }));
+            }
+
+            List<FeatureCollection> results = new ArrayList<FeatureCollection>(
+                    requestedLayers.size());
+            int maxFeatures = featureCount;
+            for (int i = 0; i < futures.size() && maxFeatures > 0; i++) {
+                final MapLayerInfo layer = requestedLayers.get(i);
+                List<FeatureCollection> identifiedCollections;
+                try {
+                    identifiedCollections = getResult(futures.get(i), deadline);
+                } catch (TimeoutException e) {
+                    LOGGER.warning("GetFeatureInfo on layer " + layer.getName()
+                            + " did not complete within " + timeout
+                            + "ms, leaving it out of the response");
+                    continue;
+                } catch (ExecutionException e) {
+                    throw new ServiceException(
+                            "Failed to run GetFeatureInfo on layer " + layer.getName(), e.getCause());
+                }
+                if (identifiedCollections != null) {
+                    for (FeatureCollection identifierCollection : identifiedCollections) {
+                        FeatureCollection fc = selectProperties(layerParams.get(i),
+                                identifierCollection);
+                        // count once, the limited collection would count again
+                        int size = fc == null ? 0 : fc.size();
+                        if (fc instanceof SimpleFeatureCollection && size > maxFeatures) {
+                            fc = limit((SimpleFeatureCollection) fc, maxFeatures);
+                            size = maxFeatures;
+                        }
+                        maxFeatures = addToResults(fc, size, results, layer, request,
+                                maxFeatures);
+                        if (maxFeatures <= 0) {
+                            break;
+                        }
+                    }
+                }
+            }
+            return results;
+        } finally {
+            // stop the identifications whose results are not needed anymore, without
+            // interrupting the running ones, file based stores would close their channels
+            for (Future<List<FeatureCollection>> future : futures) {
+                future.cancel(false);
+            }
+        }
+    }
+
+    private <T> T getResult(Future<T> future, long deadline) throws InterruptedException,
+            ExecutionException, TimeoutException {
+        if (deadline <= 0) {
+            return future.get();
+        }
+        long remaining = deadline - System.currentTimeMillis();
+        if (remaining <= 0 && !future.isDone()) {
+            throw new TimeoutException();
+        }
+        return future.get(Math.max(remaining, 0), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Limits a collection to the features still allowed by FEATURE_COUNT
+     */
+    private SimpleFeatureCollection limit(SimpleFeatureCollection collection, int maxFeatures) {
+        return new MaxSimpleFeatureCollection(collection, 0, maxFeatures);
+    }
+
+    /**
+     * Returns the executor identifying layers in parallel, or {@code null} if layers have to be
+     * identified sequentially
+     */
+    synchronized ExecutorService getExecutor() {
+        if (threads <= 1 || disposed) {
+            return null;
+        }
+        if (executor == null) {
+            final int pool = POOL_COUNTER.incrementAndGet();
+            final AtomicInteger counter = new AtomicInteger();
+            executor = Executors.newFixedThreadPool(threads, r -> {
+                Thread thread = new Thread(r,
+                        "GetFeatureInfo-" + pool + "-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return executor;
+    }
+
+    @Override
+    public synchronized void destroy() throws Exception {
+        disposed = true;
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    List<LayerIdentifier> getLayerIdentifiers() {
+        return GeoServerExtensions.extensions(LayerIdentifier.class);
+    }
+
     private LayerIdentifier getLayerIdentifier(MapLayerInfo layer, List<LayerIdentifier> identifiers) {
         for (LayerIdentifier identifier : identifiers) {
             if (identifier.canHandle(layer)) {
@@ -110,6 +303,19 @@ public class GetFeatureInfo {
 
     private int addToResults(FeatureCollection collection, List<FeatureCollection> results,
             final MapLayerInfo layer, GetFeatureInfoRequest request, int maxFeatures) {
+        int size = collection == null ? 0 : collection.size();
+        return addToResults(collection, size, results, layer, request, maxFeatures);
+    }
+
+    /**
+     * Adds the collection to the results, if not empty, returning the number of features still
+     * allowed by FEATURE_COUNT
+     *
+     * @param size The number of features in the collection
+     */
+    private int addToResults(FeatureCollection collection, int size,
+            List<FeatureCollection> results, final MapLayerInfo layer,
+            GetFeatureInfoRequest request, int maxFeatures) {
         if (collection != null) {
             if (!(collection.getSchema() instanceof SimpleFeatureType)) {
                 // put wrapper around it with layer name
@@ -118,7 +324,6 @@ public class GetFeatureInfo {
                 collection = new FeatureCollectionDecorator(name, collection);
             }
 
-            int size = collection.size();
             if (size != 0) {
 
                 // HACK HACK HACK
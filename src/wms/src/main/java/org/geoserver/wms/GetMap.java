@@ -19,6 +19,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.TimeZone;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -34,6 +35,7 @@ import org.geoserver.platform.ServiceException;
 import org.geoserver.wms.map.MetatileMapOutputFormat;
 import org.geoserver.wms.map.RenderedImageMap;
 import org.geoserver.wms.map.RenderedImageMapOutputFormat;
+import org.geotools.coverage.grid.GridCoverage2D;
 import org.geotools.coverage.grid.io.GridCoverage2DReader;
 import org.geotools.data.FeatureSource;
 import org.geotools.data.Query;
@@ -74,12 +76,24 @@ import org.geoserver.ows.Dispatcher;
 
 /**
  * WMS GetMap operation default implementation.
+ * <p>
+ * The frames of time and elevation animations are rendered in parallel on the WMS animator
+ * executor, up to {@value #FRAMES_WINDOW_PROPERTY} frames (8 by default, one disables parallel
+ * rendering) ahead of the one being encoded.
+ * </p>
  * 
  * @author Gabriel Roldan
  */
 public class GetMap {
 
     private static final Logger LOGGER = Logging.getLogger(GetMap.class);
+
+    /**
+     * Property setting how many animation frames can be rendered ahead of the one being encoded
+     */
+    public static final String FRAMES_WINDOW_PROPERTY = "GEOSERVER_ANIMATION_FRAMES_WINDOW";
+
+    static final int DEFAULT_FRAMES_WINDOW = 8;
     
     private FilterFactory ff;
 
@@ -87,10 +101,14 @@ public class GetMap {
     
     private List<GetMapCallback> callbacks;
 
+    private int framesWindow;
+
     public GetMap(final WMS wms) {
         this.wms = wms;
         this.ff = CommonFactoryFinder.getFilterFactory(GeoTools.getDefaultHints());
         this.callbacks = GeoServerExtensions.extensions(GetMapCallback.class);
+        this.framesWindow = GeoServerExtensions.getIntegerProperty(FRAMES_WINDOW_PROPERTY,
+                DEFAULT_FRAMES_WINDOW);
     }
 
     public void setFilterFactory(final FilterFactory filterFactory) {
@@ -102,6 +120,14 @@ public class GetMap {
         this.callbacks.addAll(callbacks);
     }
 
+    /**
+     * Sets how many animation frames can be rendered ahead of the one being encoded, one or less
+     * renders the frames one after the other
+     */
+    public void setFramesWindow(int framesWindow) {
+        this.framesWindow = framesWindow;
+    }
+
     /**
      * Implements the map production logic for a WMS GetMap request, delegating the encoding to the
      * appropriate output format to a {@link GetMapOutputFormat} appropriate for the required
@@ -236,8 +262,6 @@ public class GetMap {
         MaxAnimationTimeHelper maxAnimationTimeHelper = new MaxAnimationTimeHelper(wms, request);
         int maxAllowedFrames = wms.getMaxAllowedFrames();
         if((numTimes > 1 || singleTimeRange) && isMultivaluedSupported) {
-            WebMap map = null;
-            List<RenderedImage> images = new ArrayList<RenderedImage>();
             if(singleTimeRange) {
                 List<Object> expandTimeList = expandTimeList((DateRange) times.get(0), request, maxAllowedFrames);
                 if(expandTimeList.size() == 0) {
@@ -245,33 +269,52 @@ public class GetMap {
                 } else {
                     times = expandTimeList;
                 }
+            } else if (times.size() > maxAllowedFrames) {
+                throw new ServiceException("Too many steps in the animation");
             }
-            for (Object currentTime : times) {
-                maxAnimationTimeHelper.checkTimeout();
-                map = executeInternal(mapContent, request, delegate, Arrays.asList(currentTime), elevations);
-                
-                // remove layers to start over again
-                mapContent.layers().clear();
-                
-                // collect the layer
-                images.add(((RenderedImageMap)map).getImage());
-            }
-            RenderedImageList imageList = new RenderedImageList(images);
-            return new  RenderedImageMap(mapContent, imageList , map.getMimeType());
+            return executeAnimation(mapContent, request, delegate, times, elevations, true,
+                    maxAnimationTimeHelper);
         } else if((numElevations > 1 || singleElevationRange) && isMultivaluedSupported) {
-            WebMap map = null;
-            List<RenderedImage> images = new ArrayList<RenderedImage>();
             if(singleElevationRange) {
                 List<Object> expandElevationList = expandElevationList((NumberRange) elevations.get(0), request, maxAllowedFrames);
                 if(expandElevationList.size() == 0) {
-                    map = executeInternal(mapContent, request, delegate, times, Arrays.asList(elevations.get(0)));
+                    return executeInternal(mapContent, request, delegate, times, Arrays.asList(elevations.get(0)));
                 } else {
                     elevations = expandElevationList;
                 }
+            } else if (elevations.size() > maxAllowedFrames) {
+                throw new ServiceException("Too many steps in the animation");
             }
-            for (Object currentElevation : elevations) {
+            return executeAnimation(mapContent, request, delegate, times, elevations, false,
+                    maxAnimationTimeHelper);
+        } else {
+            return executeInternal(mapContent, request, delegate, times, elevations);    
+        }
+
+    }
+
+    /**
+     * Renders the frames of a time or elevation animation, one for each time (or elevation) value.
+     * The frames are rendered in parallel, each one in its own map content, and handed over in
+     * order to the encoder as it walks the frame list, unless the animator executor is not
+     * available or the frames window is set to one, in which case they are rendered one after
+     * the other reusing the request map content
+     */
+    private WebMap executeAnimation(final WMSMapContent mapContent, final GetMapRequest request,
+            final GetMapOutputFormat delegate, final List<Object> times,
+            final List<Object> elevations, final boolean timeAnimation,
+            MaxAnimationTimeHelper maxAnimationTimeHelper) throws IOException {
+        final List<Object> values = timeAnimation ? times : elevations;
+        final ExecutorService executor = wms.getAnimatorExecutorService();
+        if (framesWindow <= 1 || values.size() == 1 || executor == null || executor.isShutdown()
+                || delegate instanceof MetatileMapOutputFormat) {
+            WebMap map = null;
+            List<RenderedImage> images = new ArrayList<RenderedImage>();
+            for (Object value : values) {
                 maxAnimationTimeHelper.checkTimeout();
-                map = executeInternal(mapContent, request, delegate, times, Arrays.asList(currentElevation));
+                map = executeInternal(mapContent, request, delegate,
+                        timeAnimation ? Arrays.asList(value) : times,
+                        timeAnimation ? elevations : Arrays.asList(value));
                 
                 // remove layers to start over again
                 mapContent.layers().clear();
@@ -281,10 +324,37 @@ public class GetMap {
             }
             RenderedImageList imageList = new RenderedImageList(images);
             return new  RenderedImageMap(mapContent, imageList , map.getMimeType());
-        } else {
-            return executeInternal(mapContent, request, delegate, times, elevations);    
         }
 
+        // the request map content is not rendered, but the encoder still looks at its setup
+        setupMapContent(mapContent, request);
+        AnimationFrameList frames = new AnimationFrameList(executor, framesWindow,
+                values.size(), maxAnimationTimeHelper, frame -> {
+                    WMSMapContent frameContent = new WMSMapContent(request);
+                    frameContent.setGetMapCallbacks(callbacks);
+                    try {
+                        Object value = values.get(frame);
+                        WebMap map = executeInternal(frameContent, request, delegate,
+                                timeAnimation ? Arrays.asList(value) : times,
+                                timeAnimation ? elevations : Arrays.asList(value));
+                        RenderedImageMap imageMap = (RenderedImageMap) map;
+                        for (GridCoverage2D coverage : imageMap.getRenderedCoverages()) {
+                            RasterCleaner.addCoverage(coverage);
+                        }
+                        return imageMap.getImage();
+                    } finally {
+                        frameContent.layers().clear();
+                        frameContent.dispose();
+                    }
+                });
+        try {
+            // wait for the first frame, so that failures are reported before encoding starts
+            frames.get(0);
+        } catch (RuntimeException e) {
+            frames.dispose();
+            throw e;
+        }
+        return new RenderedImageMap(mapContent, frames, delegate.getMimeType());
     }
 
     private List<Object> expandTimeList(DateRange queryRange, GetMapRequest request, int maxAllowedFrames) {
@@ -376,25 +446,10 @@ public class GetMap {
     }
 
     /**
-     * Actually computes the WebMap, either in a single shot, or for a particular
-     * time/elevation value should there be a list of them
-     * @param request
-     * @param mapContent
-     * @param delegate
-     * @param env
-     *
-     * @throws IOException
+     * Sets up the map content area, size and background from the request
      */
-    WebMap executeInternal(WMSMapContent mapContent, final GetMapRequest request,
-            GetMapOutputFormat delegate, List<Object> times, List<Object> elevations) throws IOException {
-        final Envelope envelope = request.getBbox();       
-        final List<MapLayerInfo> layers = request.getLayers();
-        final List<Map<String, String>> viewParams = request.getViewParams();
-        
-        final Style[] styles = request.getStyles().toArray(new Style[] {});
-        final Filter[] filters = buildLayersFilters(request.getFilter(), layers);
-        final List<SortBy[]> sorts = request.getSortByArrays();
-        
+    private void setupMapContent(WMSMapContent mapContent, final GetMapRequest request) {
+        final Envelope envelope = request.getBbox();
 
         // if there's a crs in the request, use that. If not, assume its 4326
         final CoordinateReferenceSystem mapcrs = request.getCrs();
@@ -413,6 +468,28 @@ public class GetMap {
         mapContent.setTransparent(request.isTransparent());
         mapContent.setBuffer(request.getBuffer());
         mapContent.setPalette(request.getPalette());
+    }
+
+    /**
+     * Actually computes the WebMap, either in a single shot, or for a particular
+     * time/elevation value should there be a list of them
+     * @param request
+     * @param mapContent
+     * @param delegate
+     * @param env
+     *
+     * @throws IOException
+     */
+    WebMap executeInternal(WMSMapContent mapContent, final GetMapRequest request,
+            GetMapOutputFormat delegate, List<Object> times, List<Object> elevations) throws IOException {
+        final List<MapLayerInfo> layers = request.getLayers();
+        final List<Map<String, String>> viewParams = request.getViewParams();
+        
+        final Style[] styles = request.getStyles().toArray(new Style[] {});
+        final Filter[] filters = buildLayersFilters(request.getFilter(), layers);
+        final List<SortBy[]> sorts = request.getSortByArrays();
+        
+        setupMapContent(mapContent, request);
 
         // //
         //
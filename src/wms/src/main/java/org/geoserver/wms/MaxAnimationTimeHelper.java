@@ -28,16 +28,23 @@ class MaxAnimationTimeHelper {
      * If the timeout has been reached, a {@link ServiceException} will be returned instead
      */
     public void checkTimeout() throws ServiceException {
-        if (maxRenderingTime <= 0) {
-            return;
-        }
-        final int elapsed = (int) (System.currentTimeMillis() - requestStart);
-        int residual = maxRenderingTime - elapsed;
-        if (residual <= 0) {
+        if (getResidualTime() == 0) {
             throw new ServiceException(
                     "This animation request used more time than allowed and has been forcefully stopped. "
                             + "The max animation rendering time is " + (maxRenderingTime / 1000.0) + "s");
         }
     }
 
+    /**
+     * Returns the time left before the timeout, in milliseconds, zero if the timeout has been
+     * reached, or -1 if there is no timeout
+     */
+    public long getResidualTime() {
+        if (maxRenderingTime <= 0) {
+            return -1;
+        }
+        final long elapsed = System.currentTimeMillis() - requestStart;
+        return Math.max(maxRenderingTime - elapsed, 0);
+    }
+
 }
@@ -70,6 +70,10 @@ public class RasterCleaner extends AbstractDispatcherCallback {
         if (list != null) {
             images.remove();
             for (RenderedImage image : list) {
+                if (image instanceof AnimationFrameList) {
+                    // stop rendering the frames nobody is going to encode
+                    ((AnimationFrameList) image).dispose();
+                }
                 if (image instanceof RenderedImageList) {
                     RenderedImageList ril = (RenderedImageList) image;
                     for (int i = 0; i < ril.size(); i++) {
@@ -35,6 +35,8 @@ import org.geoserver.wms.WMSInfo.WMSInterpolation;
 import org.geoserver.wms.WatermarkInfo.Position;
 import org.geoserver.wms.dimension.DimensionDefaultValueSelectionStrategy;
 import org.geoserver.wms.dimension.DimensionDefaultValueSelectionStrategyFactory;
+import org.geoserver.wms.dimension.DimensionDomain;
+import org.geoserver.wms.dimension.DimensionDomainIndex;
 import org.geoserver.wms.dimension.DimensionFilterBuilder;
 import org.geoserver.wms.featureinfo.GetFeatureInfoOutputFormat;
 import org.geoserver.wms.map.RenderedImageMapOutputFormat;
@@ -1294,9 +1296,23 @@ public class WMS implements ApplicationContextAware {
                     + " does not have time support enabled");
         }
 
-        FeatureCollection collection = getDimensionCollection(typeInfo, time);
-
         TreeSet<Date> result = new TreeSet<Date>();
+        DimensionDomain domain = getIndexedDomain(typeInfo, ResourceInfo.TIME, time);
+        if (domain != null) {
+            if (domain.size() == 0) {
+                return time.getPresentation() == DimensionPresentation.LIST ? null : result;
+            } else if (time.getPresentation() == DimensionPresentation.LIST) {
+                for (Object value : domain.getValues()) {
+                    result.add((Date) value);
+                }
+            } else {
+                result.add((Date) domain.getMin());
+                result.add((Date) domain.getMax());
+            }
+            return result;
+        }
+
+        FeatureCollection collection = getDimensionCollection(typeInfo, time);
         if (time.getPresentation() == DimensionPresentation.LIST) {
             final UniqueVisitor visitor = new UniqueVisitor(time.getAttribute());
             collection.accepts(visitor, null);
@@ -1369,12 +1385,27 @@ public class WMS implements ApplicationContextAware {
                     + " does not have elevation support enabled");
         }
 
-        FeatureCollection collection = getDimensionCollection(typeInfo, elevation);
-
         TreeSet<Double> result = new TreeSet<Double>();
-        if (elevation.getPresentation() == DimensionPresentation.LIST
+        boolean list = elevation.getPresentation() == DimensionPresentation.LIST
                 || (elevation.getPresentation() == DimensionPresentation.DISCRETE_INTERVAL && elevation
-                        .getResolution() == null)) {
+                        .getResolution() == null);
+        DimensionDomain domain = getIndexedDomain(typeInfo, ResourceInfo.ELEVATION, elevation);
+        if (domain != null) {
+            if (domain.size() == 0) {
+                return list ? null : result;
+            } else if (list) {
+                for (Object value : domain.getValues()) {
+                    result.add(((Number) value).doubleValue());
+                }
+            } else {
+                result.add(((Number) domain.getMin()).doubleValue());
+                result.add(((Number) domain.getMax()).doubleValue());
+            }
+            return result;
+        }
+
+        FeatureCollection collection = getDimensionCollection(typeInfo, elevation);
+        if (list) {
             final UniqueVisitor visitor = new UniqueVisitor(elevation.getAttribute());
             collection.accepts(visitor, null);
 
@@ -1421,6 +1452,11 @@ public class WMS implements ApplicationContextAware {
                     + " does not have " + dimensionName + " support enabled");
         }
 
+        DimensionDomain domain = getIndexedDomain(typeInfo, dimensionName, di);
+        if (domain != null) {
+            return domain.getValues(range.getMinValue(), range.getMaxValue(), maxItems);
+        }
+
         // filter by date range
         FeatureSource fs = getFeatureSource(typeInfo);
         // build query to grab the time values
@@ -1518,6 +1554,29 @@ public class WMS implements ApplicationContextAware {
          }
     }
 
+    /**
+     * Returns the {@link DimensionDomainIndex}, or {@code null} if not available
+     */
+    public DimensionDomainIndex getDimensionDomainIndex() {
+        if (applicationContext == null) {
+            return null;
+        }
+        return GeoServerExtensions.bean(DimensionDomainIndex.class, applicationContext);
+    }
+
+    /**
+     * Returns the indexed domain of the given dimension, or {@code null} if the data has to be
+     * scanned instead
+     */
+    DimensionDomain getIndexedDomain(FeatureTypeInfo typeInfo, String dimensionName,
+            DimensionInfo dimension) {
+        DimensionDomainIndex index = getDimensionDomainIndex();
+        if (index == null) {
+            return null;
+        }
+        return index.getDomain(typeInfo, dimensionName, dimension);
+    }
+
     /**
      * Returns the collection of all values of the dimension attribute, eventually sorted if the
      * native capabilities allow for it
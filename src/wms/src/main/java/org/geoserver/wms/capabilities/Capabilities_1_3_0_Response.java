@@ -10,6 +10,7 @@ import java.io.OutputStream;
 
 import javax.xml.transform.TransformerException;
 
+import org.geoserver.catalog.impl.ModificationProxy;
 import org.geoserver.ows.Response;
 import org.geoserver.platform.Operation;
 import org.geoserver.platform.ServiceException;
@@ -46,7 +47,11 @@ public class Capabilities_1_3_0_Response extends BaseCapabilitiesResponse {
 
         try {
             GetCapabilitiesRequest request = (GetCapabilitiesRequest) operation.getParameters()[0];
-            transformer.transform(request, output);
+            // the catalog is only read while encoding, skip the modification proxies
+            ModificationProxy.readOnly(() -> {
+                transformer.transform(request, output);
+                return null;
+            });
         } catch (TransformerException e) {
             throw new ServiceException(e);
         }
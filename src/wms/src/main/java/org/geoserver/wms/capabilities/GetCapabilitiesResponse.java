@@ -27,6 +27,7 @@ import javax.xml.transform.sax.SAXSource;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
 
+import org.geoserver.catalog.impl.ModificationProxy;
 import org.geoserver.ows.Response;
 import org.geoserver.platform.Operation;
 import org.geoserver.platform.ServiceException;
@@ -113,9 +114,12 @@ public class GetCapabilitiesResponse extends BaseCapabilitiesResponse {
         final String internalDTDDeclaration = getInternalDTDDeclaration(request);
 
         if (internalDTDDeclaration == null) {
-            // transform directly to output
+            // transform directly to output, the catalog is only read while encoding
             try {
-                transformer.transform(request, output);
+                ModificationProxy.readOnly(() -> {
+                    transformer.transform(request, output);
+                    return null;
+                });
             } catch (TransformerException e) {
                 throw new ServiceException(e);
             }
@@ -127,7 +131,10 @@ public class GetCapabilitiesResponse extends BaseCapabilitiesResponse {
             {
                 ByteArrayOutputStream target = new ByteArrayOutputStream();
                 try {
-                    transformer.transform(request, target);
+                    ModificationProxy.readOnly(() -> {
+                        transformer.transform(request, target);
+                        return null;
+                    });
                 } catch (TransformerException e) {
                     throw new ServiceException(e);
                 }
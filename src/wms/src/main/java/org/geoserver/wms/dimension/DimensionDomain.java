@@ -0,0 +1,139 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.dimension;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.geotools.util.Converters;
+
+/**
+ * The domain of a vector dimension, as maintained by the {@link DimensionDomainIndex}: the
+ * sorted distinct values of the dimension attribute, each one with the number of features having
+ * it, which is enough to answer min/max, list and histogram requests without touching the data.
+ * <p>
+ * Instances are thread safe, the accessors return copies of the domain.
+ * </p>
+ */
+public class DimensionDomain implements Serializable {
+
+    private static final long serialVersionUID = -5170829735634014562L;
+
+    private final String attribute;
+
+    private final TreeMap<Object, Long> counts;
+
+    /**
+     * Number of changes applied since creation, not persisted
+     */
+    private transient long modifications;
+
+    /**
+     * @param attribute The dimension attribute
+     * @param counts The feature count for each distinct value of the attribute
+     */
+    public DimensionDomain(String attribute, Map<Object, Long> counts) {
+        this.attribute = attribute;
+        this.counts = new TreeMap<>(counts);
+    }
+
+    /**
+     * The dimension attribute this domain has been built from
+     */
+    public String getAttribute() {
+        return attribute;
+    }
+
+    /**
+     * Returns the smallest value in the domain, or {@code null} if the domain is empty
+     */
+    public synchronized Object getMin() {
+        return counts.isEmpty() ? null : counts.firstKey();
+    }
+
+    /**
+     * Returns the largest value in the domain, or {@code null} if the domain is empty
+     */
+    public synchronized Object getMax() {
+        return counts.isEmpty() ? null : counts.lastKey();
+    }
+
+    /**
+     * Returns the number of distinct values in the domain
+     */
+    public synchronized int size() {
+        return counts.size();
+    }
+
+    /**
+     * Returns the distinct values of the domain
+     */
+    public synchronized TreeSet<Object> getValues() {
+        return new TreeSet<>(counts.keySet());
+    }
+
+    /**
+     * Returns at most {@code maxItems} distinct values between {@code min} and {@code max},
+     * both included
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized TreeSet<Object> getValues(Object min, Object max, int maxItems) {
+        TreeSet<Object> result = new TreeSet<>();
+        if (counts.isEmpty()) {
+            return result;
+        }
+        // the range might come with a different type than the domain (e.g., double vs integer)
+        Class<?> binding = counts.firstKey().getClass();
+        min = Converters.convert(min, binding);
+        max = Converters.convert(max, binding);
+        if (min == null || max == null || ((Comparable<Object>) min).compareTo(max) > 0) {
+            return result;
+        }
+        for (Object value : counts.subMap(min, true, max, true).keySet()) {
+            if (maxItems > 0 && result.size() >= maxItems) {
+                break;
+            }
+            result.add(value);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the feature count for each distinct value in the domain, sorted by value, the base
+     * to compute histograms
+     */
+    public synchronized NavigableMap<Object, Long> getCounts() {
+        return new TreeMap<>(counts);
+    }
+
+    /**
+     * Applies the changes made to the data, a positive count for each value added, a negative
+     * one for each value removed
+     */
+    synchronized void apply(Map<Object, Long> deltas) {
+        for (Map.Entry<Object, Long> delta : deltas.entrySet()) {
+            long count = counts.getOrDefault(delta.getKey(), 0l) + delta.getValue();
+            if (count > 0) {
+                counts.put(delta.getKey(), count);
+            } else {
+                counts.remove(delta.getKey());
+            }
+        }
+        modifications++;
+    }
+
+    synchronized long getModifications() {
+        return modifications;
+    }
+
+    private synchronized void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+    }
+}
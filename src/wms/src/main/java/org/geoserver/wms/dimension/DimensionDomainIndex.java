@@ -0,0 +1,484 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.dimension;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.DimensionInfo;
+import org.geoserver.catalog.FeatureTypeInfo;
+import org.geoserver.platform.GeoServerExtensions;
+import org.geoserver.platform.GeoServerResourceLoader;
+import org.geoserver.platform.resource.Paths;
+import org.geoserver.platform.resource.Resource;
+import org.geoserver.security.decorators.SecuredFeatureTypeInfo;
+import org.geoserver.wfs.TransactionEvent;
+import org.geoserver.wfs.TransactionEventType;
+import org.geoserver.wfs.WFSException;
+import org.geoserver.wms.FeatureTypeIndex;
+import org.geoserver.wms.FeatureTypeIndexTransactionCallback;
+import org.geotools.data.FeatureSource;
+import org.geotools.data.Query;
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.factory.CommonFactoryFinder;
+import org.geotools.factory.GeoTools;
+import org.geotools.feature.visitor.Aggregate;
+import org.geotools.feature.visitor.GroupByVisitor;
+import org.geotools.feature.visitor.GroupByVisitorBuilder;
+import org.geotools.util.Converters;
+import org.geotools.util.logging.Logging;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.type.FeatureType;
+import org.opengis.feature.type.PropertyDescriptor;
+import org.opengis.filter.FilterFactory2;
+import org.opengis.filter.expression.PropertyName;
+
+/**
+ * Keeps the domains of the vector time and elevation dimensions, so that capabilities documents,
+ * animations and multidimensional WMTS requests do not need a full scan of the data to list the
+ * dimension values.
+ * <p>
+ * Each domain is computed with a single aggregate query the first time it is requested, persisted
+ * in the {@value #INDEX_DIRECTORY} directory of the data directory, and then kept up to date by
+ * applying the changes performed by committed WFS transactions (see
+ * {@link FeatureTypeIndexTransactionCallback}) and by a full rescan every
+ * {@value #RESCAN_PERIOD_PROPERTY} seconds, which also catches changes performed outside of
+ * GeoServer. Catalog changes to the feature types, or their stores, drop the affected domains.
+ * </p>
+ * <p>
+ * The index is disabled by default, set the {@value #ENABLED_PROPERTY} property to true to enable
+ * it. Domains with more than {@value #MAX_VALUES_PROPERTY} distinct values are not indexed, and
+ * feature types subject to data security limits are never served from the index, as the same
+ * domain would be shared among users seeing different data.
+ * </p>
+ */
+public class DimensionDomainIndex
+        extends FeatureTypeIndex<DimensionDomainIndex.DomainKey, Map<Object, Long>> {
+
+    static final Logger LOGGER = Logging.getLogger(DimensionDomainIndex.class);
+
+    /**
+     * Property enabling the index
+     */
+    public static final String ENABLED_PROPERTY = "org.geoserver.wms.dimensionIndex.enabled";
+
+    /**
+     * Property setting the period of the full rescans of the indexed domains, in seconds, zero or
+     * a negative value disables the rescans
+     */
+    public static final String RESCAN_PERIOD_PROPERTY = "org.geoserver.wms.dimensionIndex.rescanPeriod";
+
+    /**
+     * Property setting the maximum number of distinct values of an indexed domain
+     */
+    public static final String MAX_VALUES_PROPERTY = "org.geoserver.wms.dimensionIndex.maxValues";
+
+    /**
+     * Default rescan period, ten minutes
+     */
+    static final long DEFAULT_RESCAN_PERIOD = 600;
+
+    static final long DEFAULT_MAX_VALUES = 100000;
+
+    /**
+     * The data directory folder holding the persisted domains
+     */
+    static final String INDEX_DIRECTORY = "dimension-index";
+
+    /**
+     * Key of the changes collected during a transaction in the request extended properties
+     */
+    static final String TRANSACTION_CHANGES = "DIMENSION_DOMAIN_INDEX_CHANGES";
+
+    static final FilterFactory2 FF = CommonFactoryFinder.getFilterFactory2();
+
+    private final GeoServerResourceLoader resourceLoader;
+
+    private final long maxValues;
+
+    private final Map<DomainKey, DimensionDomain> domains = new ConcurrentHashMap<>();
+
+    /**
+     * Domains with too many values, or failing to load, not tried again until the next rescan
+     */
+    private final Set<DomainKey> unindexable = ConcurrentHashMap.newKeySet();
+
+    private final Map<DomainKey, Object> locks = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService scheduler;
+
+    public DimensionDomainIndex(Catalog catalog, GeoServerResourceLoader resourceLoader) {
+        this(catalog, resourceLoader,
+                Boolean.parseBoolean(GeoServerExtensions.getProperty(ENABLED_PROPERTY)),
+                GeoServerExtensions.getLongProperty(RESCAN_PERIOD_PROPERTY, DEFAULT_RESCAN_PERIOD),
+                GeoServerExtensions.getLongProperty(MAX_VALUES_PROPERTY, DEFAULT_MAX_VALUES));
+    }
+
+    DimensionDomainIndex(Catalog catalog, GeoServerResourceLoader resourceLoader,
+            boolean enabled, long rescanPeriod, long maxValues) {
+        super(catalog, enabled, TRANSACTION_CHANGES);
+        this.resourceLoader = resourceLoader;
+        this.maxValues = maxValues;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "DimensionDomainIndexRescan");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (enabled && rescanPeriod > 0) {
+            scheduler.scheduleWithFixedDelay(this::rescan, rescanPeriod, rescanPeriod,
+                    TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Returns the domain of the given feature type dimension, computing it if necessary
+     *
+     * @param typeInfo The feature type
+     * @param dimensionName The dimension name, e.g., {@code time} or {@code elevation}
+     * @param dimension The dimension configuration
+     * @return The domain, or {@code null} if the index is disabled or cannot be used for this
+     *         feature type, in that case the caller has to scan the data
+     */
+    public DimensionDomain getDomain(FeatureTypeInfo typeInfo, String dimensionName,
+            DimensionInfo dimension) {
+        if (!enabled || typeInfo == null || typeInfo.getId() == null || dimension == null
+                || dimension.getAttribute() == null) {
+            return null;
+        }
+        // the security subsystem might be filtering the data, the domain would differ by user
+        if (typeInfo instanceof SecuredFeatureTypeInfo) {
+            return null;
+        }
+
+        DomainKey key = new DomainKey(typeInfo.getId(), dimensionName, dimension.getAttribute());
+        DimensionDomain domain = domains.get(key);
+        if (domain != null || unindexable.contains(key)) {
+            return domain;
+        }
+        synchronized (locks.computeIfAbsent(key, k -> new Object())) {
+            domain = domains.get(key);
+            if (domain != null || unindexable.contains(key)) {
+                return domain;
+            }
+            domain = load(key);
+            if (domain != null) {
+                // the data might have changed while the domain was on disk
+                domains.put(key, domain);
+                scheduler.execute(() -> rescan(key));
+            } else {
+                domain = build(typeInfo, key.attribute);
+                if (domain != null) {
+                    domains.put(key, domain);
+                    save(key, domain);
+                } else {
+                    unindexable.add(key);
+                }
+            }
+            return domain;
+        }
+    }
+
+    /**
+     * Computes the domain with an aggregate query, returns {@code null} if the domain has too
+     * many values or cannot be computed
+     */
+    DimensionDomain build(FeatureTypeInfo typeInfo, String attribute) {
+        try {
+            FeatureSource<?, ?> source = typeInfo.getFeatureSource(null,
+                    GeoTools.getDefaultHints());
+            Query query = new Query(source.getSchema().getName().getLocalPart());
+            query.setPropertyNames(Arrays.asList(attribute));
+            PropertyName property = FF.property(attribute);
+            GroupByVisitorBuilder builder = new GroupByVisitorBuilder();
+            builder.withAggregateVisitor(Aggregate.COUNT);
+            builder.withAggregateAttribute(property);
+            builder.withGroupByAttribute(property);
+            GroupByVisitor visitor = builder.build();
+            source.getFeatures(query).accepts(visitor, null);
+
+            Class<?> binding = getBinding(source.getSchema(), attribute);
+            Map<Object, Long> counts = new HashMap<>();
+            for (Map.Entry<List<Object>, Object> entry : visitor.getResult().toMap()
+                    .entrySet()) {
+                Object value = normalize(entry.getKey().get(0), binding);
+                if (value != null) {
+                    counts.merge(value, ((Number) entry.getValue()).longValue(), Long::sum);
+                }
+                if (counts.size() > maxValues) {
+                    LOGGER.fine("Not indexing the " + attribute + " domain of "
+                            + typeInfo.prefixedName() + ", it has more than " + maxValues
+                            + " values");
+                    return null;
+                }
+            }
+            return new DimensionDomain(attribute, counts);
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Failed to compute the " + attribute + " domain of "
+                    + typeInfo.prefixedName(), e);
+            return null;
+        }
+    }
+
+    static Class<?> getBinding(FeatureType schema, String attribute) {
+        PropertyDescriptor descriptor = schema.getDescriptor(attribute);
+        return descriptor == null ? null : descriptor.getType().getBinding();
+    }
+
+    /**
+     * Makes sure all values in a domain have the same type, aggregate results and features might
+     * use different ones (e.g., long vs integer)
+     */
+    static Object normalize(Object value, Class<?> binding) {
+        if (value == null || binding == null || binding.isInstance(value)) {
+            return value;
+        }
+        return Converters.convert(value, binding);
+    }
+
+    /**
+     * Rescans all the indexed domains
+     */
+    void rescan() {
+        unindexable.clear();
+        for (DomainKey key : new ArrayList<>(domains.keySet())) {
+            try {
+                rescan(key);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Failed to rescan the dimension domain " + key, e);
+            }
+        }
+    }
+
+    void rescan(DomainKey key) {
+        DimensionDomain current = domains.get(key);
+        if (current == null) {
+            return;
+        }
+        FeatureTypeInfo typeInfo = catalog.getFeatureType(key.typeId);
+        if (typeInfo == null) {
+            remove(key);
+            return;
+        }
+        long modifications = current.getModifications();
+        DimensionDomain rescanned = build(typeInfo, key.attribute);
+        if (rescanned == null) {
+            remove(key);
+            unindexable.add(key);
+        } else if (current.getModifications() == modifications
+                && domains.replace(key, current, rescanned)) {
+            // if a transaction got applied meanwhile we cannot tell if the scan saw it, keep
+            // the current domain and wait for the next rescan
+            save(key, rescanned);
+        }
+    }
+
+    public void dataStoreChange(TransactionEvent event) throws WFSException {
+        if (!enabled || domains.isEmpty() || event.getLayerName() == null
+                || event.getRequest() == null) {
+            return;
+        }
+        try {
+            collectChanges(event);
+        } catch (RuntimeException e) {
+            // do not make the transaction fail, drop the domains instead
+            LOGGER.log(Level.WARNING, "Failed to collect the dimension changes of "
+                    + event.getLayerName() + ", dropping its dimension domains", e);
+            FeatureTypeInfo typeInfo = getFeatureType(event.getLayerName());
+            if (typeInfo != null) {
+                remove(typeInfo.getId());
+            }
+        }
+    }
+
+    private void collectChanges(TransactionEvent event) {
+        // updates are notified as the removal of the old values and the addition of the new ones
+        final TransactionEventType type = event.getType();
+        final long sign;
+        if (TransactionEventType.PRE_INSERT.equals(type)
+                || TransactionEventType.POST_UPDATE.equals(type)) {
+            sign = 1;
+        } else if (TransactionEventType.PRE_UPDATE.equals(type)
+                || TransactionEventType.PRE_DELETE.equals(type)) {
+            sign = -1;
+        } else {
+            return;
+        }
+
+        FeatureTypeInfo typeInfo = getFeatureType(event.getLayerName());
+        if (typeInfo == null) {
+            return;
+        }
+        List<DomainKey> keys = getKeys(typeInfo.getId());
+        if (keys.isEmpty()) {
+            return;
+        }
+
+        Map<DomainKey, Map<Object, Long>> changes = getTransactionChanges(event);
+        SimpleFeatureCollection features = event.getAffectedFeatures();
+        try (SimpleFeatureIterator it = features.features()) {
+            while (it.hasNext()) {
+                SimpleFeature feature = it.next();
+                for (DomainKey key : keys) {
+                    Object value = feature.getAttribute(key.attribute);
+                    value = normalize(value,
+                            getBinding(feature.getFeatureType(), key.attribute));
+                    if (value != null) {
+                        changes.computeIfAbsent(key, k -> new HashMap<>()).merge(value, sign,
+                                Long::sum);
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    protected void applyChanges(Map<DomainKey, Map<Object, Long>> changes) {
+        for (Map.Entry<DomainKey, Map<Object, Long>> entry : changes.entrySet()) {
+            DimensionDomain domain = domains.get(entry.getKey());
+            if (domain != null) {
+                domain.apply(entry.getValue());
+                save(entry.getKey(), domain);
+            }
+        }
+    }
+
+    private List<DomainKey> getKeys(String typeId) {
+        List<DomainKey> keys = new ArrayList<>();
+        for (DomainKey key : domains.keySet()) {
+            if (key.typeId.equals(typeId)) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Removes all the domains of the given feature type
+     */
+    @Override
+    protected void remove(String typeId) {
+        for (DomainKey key : getKeys(typeId)) {
+            remove(key);
+        }
+        unindexable.removeIf(key -> key.typeId.equals(typeId));
+    }
+
+    private void remove(DomainKey key) {
+        domains.remove(key);
+        Resource resource = getResource(key);
+        if (resource != null) {
+            resource.delete();
+        }
+    }
+
+    /**
+     * Removes all the domains
+     */
+    @Override
+    public void clear() {
+        domains.clear();
+        unindexable.clear();
+        if (resourceLoader != null) {
+            resourceLoader.get(INDEX_DIRECTORY).delete();
+        }
+    }
+
+    private Resource getResource(DomainKey key) {
+        if (resourceLoader == null) {
+            return null;
+        }
+        return resourceLoader.get(Paths.path(INDEX_DIRECTORY, key.getFileName()));
+    }
+
+    DimensionDomain load(DomainKey key) {
+        Resource resource = getResource(key);
+        if (resource == null || resource.getType() != Resource.Type.RESOURCE) {
+            return null;
+        }
+        try (ObjectInputStream in = new ObjectInputStream(resource.in())) {
+            DimensionDomain domain = (DimensionDomain) in.readObject();
+            return key.attribute.equals(domain.getAttribute()) ? domain : null;
+        } catch (Exception e) {
+            LOGGER.log(Level.FINE, "Could not load the dimension domain " + key, e);
+            return null;
+        }
+    }
+
+    void save(DomainKey key, DimensionDomain domain) {
+        Resource resource = getResource(key);
+        if (resource == null) {
+            return;
+        }
+        try (ObjectOutputStream out = new ObjectOutputStream(resource.out())) {
+            out.writeObject(domain);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not save the dimension domain " + key, e);
+        }
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        scheduler.shutdownNow();
+        super.destroy();
+    }
+
+    /**
+     * Identifies a domain
+     */
+    static final class DomainKey {
+
+        final String typeId;
+
+        final String dimensionName;
+
+        final String attribute;
+
+        DomainKey(String typeId, String dimensionName, String attribute) {
+            this.typeId = typeId;
+            this.dimensionName = dimensionName;
+            this.attribute = attribute;
+        }
+
+        String getFileName() {
+            return (typeId + "_" + dimensionName).replaceAll("[^\\w\\-]", "_") + ".domain";
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(typeId, dimensionName, attribute);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof DomainKey)) {
+                return false;
+            }
+            DomainKey other = (DomainKey) obj;
+            return typeId.equals(other.typeId) && Objects.equals(dimensionName, other.dimensionName)
+                    && attribute.equals(other.attribute);
+        }
+
+        @Override
+        public String toString() {
+            return typeId + "/" + dimensionName + "/" + attribute;
+        }
+    }
+}
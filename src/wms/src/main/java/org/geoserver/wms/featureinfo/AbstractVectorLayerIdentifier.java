@@ -9,9 +9,11 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.geoserver.wms.MapLayerInfo;
+import org.geotools.filter.visitor.SimplifyingFilterVisitor;
 import org.geotools.styling.FeatureTypeStyle;
 import org.geotools.styling.Rule;
 import org.geotools.styling.Style;
+import org.opengis.filter.Filter;
 
 abstract class AbstractVectorLayerIdentifier implements LayerIdentifier {
 
@@ -44,4 +46,23 @@ abstract class AbstractVectorLayerIdentifier implements LayerIdentifier {
         return result;
     }
 
+    /**
+     * Builds the OR of the filters of the given rules, or {@link Filter#INCLUDE} if any of them
+     * matches all features
+     */
+    protected Filter buildRulesFilter(org.opengis.filter.FilterFactory ff, List<Rule> rules) {
+        // build up a or of all the rule filters
+        List<Filter> filters = new ArrayList<Filter>();
+        for (Rule rule : rules) {
+            if (rule.getFilter() == null || rule.isElseFilter())
+                return Filter.INCLUDE;
+            filters.add(rule.getFilter());
+        }
+        // not or and and simplify (if there is any include/exclude we'll get
+        // a very simple result ;-)
+        Filter or = ff.or(filters);
+        SimplifyingFilterVisitor simplifier = new SimplifyingFilterVisitor();
+        return (Filter) or.accept(simplifier, null);
+    }
+
 }
@@ -0,0 +1,197 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.featureinfo;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.index.quadtree.Quadtree;
+import com.vividsolutions.jts.index.strtree.STRtree;
+
+/**
+ * The envelopes of the features of a layer, by feature id.
+ * <p>
+ * The bulk of the envelopes is kept in a packed {@link STRtree}, which cannot be modified once
+ * built, the changes are kept on the side, in a {@link Quadtree} for the added/updated features
+ * and in a set of the removed ids, until they grow to a fraction of the tree and the tree gets
+ * rebuilt in memory.
+ * </p>
+ */
+final class FeatureEnvelopeIndex {
+
+    /**
+     * The fraction of changes, over the size of the tree, triggering a rebuild
+     */
+    static final double REBUILD_RATIO = 0.1;
+
+    /**
+     * Changes below this count never trigger a rebuild, rebuilding small trees is cheap but
+     * pointless
+     */
+    static final int MIN_REBUILD_CHANGES = 1000;
+
+    /**
+     * A feature id and its envelope
+     */
+    static final class Entry {
+
+        final String id;
+
+        final Envelope envelope;
+
+        Entry(String id, Envelope envelope) {
+            this.id = id;
+            this.envelope = envelope;
+        }
+    }
+
+    private final CoordinateReferenceSystem crs;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private List<Entry> entries;
+
+    private STRtree tree;
+
+    private Quadtree added;
+
+    private Map<String, Entry> addedEntries;
+
+    private Set<String> removed;
+
+    /**
+     * @param crs The coordinate reference system of the envelopes
+     * @param entries The feature envelopes
+     */
+    FeatureEnvelopeIndex(CoordinateReferenceSystem crs, List<Entry> entries) {
+        this.crs = crs;
+        build(entries);
+    }
+
+    private void build(List<Entry> entries) {
+        STRtree tree = new STRtree();
+        for (Entry entry : entries) {
+            tree.insert(entry.envelope, entry);
+        }
+        tree.build();
+        this.entries = entries;
+        this.tree = tree;
+        this.added = new Quadtree();
+        this.addedEntries = new HashMap<>();
+        this.removed = new HashSet<>();
+    }
+
+    /**
+     * The coordinate reference system of the envelopes
+     */
+    CoordinateReferenceSystem getCoordinateReferenceSystem() {
+        return crs;
+    }
+
+    /**
+     * Returns the ids of the features whose envelope intersects the given area
+     */
+    Set<String> query(Envelope area) {
+        lock.readLock().lock();
+        try {
+            Set<String> result = new LinkedHashSet<>();
+            for (Object item : tree.query(area)) {
+                Entry entry = (Entry) item;
+                if (!removed.contains(entry.id)) {
+                    result.add(entry.id);
+                }
+            }
+            // the quadtree returns candidates, not matches
+            for (Object item : added.query(area)) {
+                Entry entry = (Entry) item;
+                if (entry.envelope.intersects(area)) {
+                    result.add(entry.id);
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Applies the changes made to the data
+     *
+     * @param removedIds The ids of the features deleted, or updated
+     * @param addedEntries The inserted features, and the new version of the updated ones
+     */
+    void apply(Collection<String> removedIds, Collection<Entry> addedEntries) {
+        lock.writeLock().lock();
+        try {
+            for (String id : removedIds) {
+                removeAdded(id);
+                removed.add(id);
+            }
+            for (Entry entry : addedEntries) {
+                // hide the version in the tree, if any
+                removeAdded(entry.id);
+                removed.add(entry.id);
+                added.insert(entry.envelope, entry);
+                this.addedEntries.put(entry.id, entry);
+            }
+            int changes = removed.size() + this.addedEntries.size();
+            if (changes > MIN_REBUILD_CHANGES && changes > entries.size() * REBUILD_RATIO) {
+                rebuild();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void removeAdded(String id) {
+        Entry previous = addedEntries.remove(id);
+        if (previous != null) {
+            added.remove(previous.envelope, previous);
+        }
+    }
+
+    /**
+     * Merges the changes into a new tree
+     */
+    private void rebuild() {
+        List<Entry> merged = new ArrayList<>(entries.size() + addedEntries.size());
+        for (Entry entry : entries) {
+            if (!removed.contains(entry.id)) {
+                merged.add(entry);
+            }
+        }
+        merged.addAll(addedEntries.values());
+        build(merged);
+    }
+
+    /**
+     * The number of features in the index
+     */
+    int size() {
+        lock.readLock().lock();
+        try {
+            int size = addedEntries.size();
+            for (Entry entry : entries) {
+                if (!removed.contains(entry.id)) {
+                    size++;
+                }
+            }
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,345 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.featureinfo;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.FeatureTypeInfo;
+import org.geoserver.platform.GeoServerExtensions;
+import org.geoserver.wfs.TransactionEvent;
+import org.geoserver.wfs.TransactionEventType;
+import org.geoserver.wfs.WFSException;
+import org.geoserver.wms.FeatureTypeIndex;
+import org.geoserver.wms.FeatureTypeIndexTransactionCallback;
+import org.geoserver.wms.featureinfo.FeatureEnvelopeIndex.Entry;
+import org.geotools.data.FeatureSource;
+import org.geotools.data.Query;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.factory.GeoTools;
+import org.geotools.feature.FeatureIterator;
+import org.geotools.util.logging.Logging;
+import org.opengis.feature.Feature;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.type.GeometryDescriptor;
+
+import com.vividsolutions.jts.geom.Geometry;
+
+/**
+ * Keeps in memory the envelopes of the features of the layers identified by the
+ * {@link VectorIndexLayerIdentifier}, so that GetFeatureInfo on dense layers can locate the
+ * features around the clicked point without querying the store spatially.
+ * <p>
+ * The index of a layer is built in the background the first time it's requested, and then kept up
+ * to date with the changes performed by committed WFS transactions (see
+ * {@link FeatureTypeIndexTransactionCallback}). Catalog changes to the feature types, or their
+ * stores, drop the affected indexes. Changes performed outside of GeoServer are not tracked, the
+ * index is meant for layers edited only via WFS-T, or not edited at all.
+ * </p>
+ * <p>
+ * The index is disabled by default, set the {@value #ENABLED_PROPERTY} property to true to enable
+ * it. Only the layers having between {@value #MIN_FEATURES_PROPERTY} and
+ * {@value #MAX_FEATURES_PROPERTY} features get indexed, smaller ones are identified quickly enough
+ * without it, larger ones would take too much memory.
+ * </p>
+ */
+public class FeatureInfoSpatialIndex
+        extends FeatureTypeIndex<String, FeatureInfoSpatialIndex.Changes> {
+
+    static final Logger LOGGER = Logging.getLogger(FeatureInfoSpatialIndex.class);
+
+    /**
+     * Property enabling the index
+     */
+    public static final String ENABLED_PROPERTY = "org.geoserver.wms.featureinfo.index.enabled";
+
+    /**
+     * Property setting the minimum number of features of an indexed layer
+     */
+    public static final String MIN_FEATURES_PROPERTY = "org.geoserver.wms.featureinfo.index.minFeatures";
+
+    /**
+     * Property setting the maximum number of features of an indexed layer
+     */
+    public static final String MAX_FEATURES_PROPERTY = "org.geoserver.wms.featureinfo.index.maxFeatures";
+
+    static final long DEFAULT_MIN_FEATURES = 10000;
+
+    static final long DEFAULT_MAX_FEATURES = 5000000;
+
+    /**
+     * Key of the changes collected during a transaction in the request extended properties
+     */
+    static final String TRANSACTION_CHANGES = "FEATURE_INFO_INDEX_CHANGES";
+
+    private final long minFeatures;
+
+    private final long maxFeatures;
+
+    private final Map<String, FeatureEnvelopeIndex> indexes = new ConcurrentHashMap<>();
+
+    /**
+     * Feature types too small or too large to be indexed, or failing to load, not tried again
+     * until the next catalog change
+     */
+    private final Set<String> unindexable = ConcurrentHashMap.newKeySet();
+
+    private final Set<String> building = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Feature types modified while their index was being built, guarded by this
+     */
+    private final Set<String> stale = new HashSet<>();
+
+    private final ExecutorService builder;
+
+    public FeatureInfoSpatialIndex(Catalog catalog) {
+        this(catalog, Boolean.parseBoolean(GeoServerExtensions.getProperty(ENABLED_PROPERTY)),
+                GeoServerExtensions.getLongProperty(MIN_FEATURES_PROPERTY, DEFAULT_MIN_FEATURES),
+                GeoServerExtensions.getLongProperty(MAX_FEATURES_PROPERTY, DEFAULT_MAX_FEATURES));
+    }
+
+    FeatureInfoSpatialIndex(Catalog catalog, boolean enabled, long minFeatures,
+            long maxFeatures) {
+        super(catalog, enabled, TRANSACTION_CHANGES);
+        this.minFeatures = minFeatures;
+        this.maxFeatures = maxFeatures;
+        this.builder = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "FeatureInfoSpatialIndexBuilder");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Returns the index of the given feature type, scheduling its build if missing
+     *
+     * @return The index, or {@code null} if not available (yet), in that case the caller has to
+     *         query the data
+     */
+    FeatureEnvelopeIndex getIndex(FeatureTypeInfo typeInfo) {
+        if (!enabled || typeInfo == null || typeInfo.getId() == null) {
+            return null;
+        }
+        final String typeId = typeInfo.getId();
+        FeatureEnvelopeIndex index = indexes.get(typeId);
+        if (index == null && !unindexable.contains(typeId) && building.add(typeId)) {
+            try {
+                builder.execute(() -> {
+                    try {
+                        build(typeId);
+                    } finally {
+                        building.remove(typeId);
+                    }
+                });
+            } catch (RuntimeException e) {
+                // shutting down
+                building.remove(typeId);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Builds the index of a feature type and makes it available, unless the feature type got
+     * modified in the meantime
+     */
+    void build(String typeId) {
+        FeatureTypeInfo typeInfo = catalog.getFeatureType(typeId);
+        if (typeInfo == null) {
+            return;
+        }
+        synchronized (this) {
+            stale.remove(typeId);
+        }
+        FeatureEnvelopeIndex index = load(typeInfo);
+        synchronized (this) {
+            if (index == null) {
+                unindexable.add(typeId);
+            } else if (!stale.remove(typeId)) {
+                indexes.put(typeId, index);
+            }
+        }
+    }
+
+    /**
+     * Reads the feature envelopes, returns {@code null} if the feature type has too few or too
+     * many features, or cannot be read
+     */
+    FeatureEnvelopeIndex load(FeatureTypeInfo typeInfo) {
+        try {
+            FeatureSource<?, ?> source = typeInfo.getFeatureSource(null,
+                    GeoTools.getDefaultHints());
+            GeometryDescriptor geometry = source.getSchema().getGeometryDescriptor();
+            if (geometry == null) {
+                return null;
+            }
+            int count = source.getCount(Query.ALL);
+            if (count >= 0 && (count < minFeatures || count > maxFeatures)) {
+                LOGGER.fine("Not indexing " + typeInfo.prefixedName() + ", it has " + count
+                        + " features");
+                return null;
+            }
+
+            Query query = new Query(source.getSchema().getName().getLocalPart());
+            query.setPropertyNames(new String[] { geometry.getLocalName() });
+            List<Entry> entries = new ArrayList<>(Math.max(count, 16));
+            try (FeatureIterator<?> it = source.getFeatures(query).features()) {
+                while (it.hasNext()) {
+                    Entry entry = toEntry(it.next());
+                    if (entry != null) {
+                        entries.add(entry);
+                    }
+                    if (entries.size() > maxFeatures) {
+                        LOGGER.fine("Not indexing " + typeInfo.prefixedName()
+                                + ", it has more than " + maxFeatures + " features");
+                        return null;
+                    }
+                }
+            }
+            if (entries.size() < minFeatures) {
+                return null;
+            }
+            return new FeatureEnvelopeIndex(geometry.getCoordinateReferenceSystem(), entries);
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Failed to index the feature envelopes of "
+                    + typeInfo.prefixedName(), e);
+            return null;
+        }
+    }
+
+    static Entry toEntry(Feature feature) {
+        Object geometry = feature.getDefaultGeometryProperty() == null ? null
+                : feature.getDefaultGeometryProperty().getValue();
+        if (!(geometry instanceof Geometry) || ((Geometry) geometry).isEmpty()) {
+            return null;
+        }
+        return new Entry(feature.getIdentifier().getID(),
+                ((Geometry) geometry).getEnvelopeInternal());
+    }
+
+    @Override
+    public void dataStoreChange(TransactionEvent event) throws WFSException {
+        if (!enabled || (indexes.isEmpty() && building.isEmpty())
+                || event.getLayerName() == null || event.getRequest() == null) {
+            return;
+        }
+        FeatureTypeInfo typeInfo = getFeatureType(event.getLayerName());
+        if (typeInfo == null) {
+            return;
+        }
+        String typeId = typeInfo.getId();
+        if (!indexes.containsKey(typeId) && !building.contains(typeId)) {
+            return;
+        }
+        try {
+            collectChanges(event,
+                    getTransactionChanges(event).computeIfAbsent(typeId, k -> new Changes()));
+        } catch (RuntimeException e) {
+            // do not make the transaction fail, drop the index instead
+            LOGGER.log(Level.WARNING, "Failed to collect the changes of " + event.getLayerName()
+                    + ", dropping its feature info index", e);
+            remove(typeId);
+        }
+    }
+
+    private void collectChanges(TransactionEvent event, Changes changes) {
+        // updates are notified as the removal of the old features and the addition of the new
+        // ones, inserts only after the insert, when the feature ids are known
+        final TransactionEventType type = event.getType();
+        final boolean adding;
+        if (TransactionEventType.POST_INSERT.equals(type)
+                || TransactionEventType.POST_UPDATE.equals(type)) {
+            adding = true;
+        } else if (TransactionEventType.PRE_UPDATE.equals(type)
+                || TransactionEventType.PRE_DELETE.equals(type)) {
+            adding = false;
+        } else {
+            return;
+        }
+
+        try (SimpleFeatureIterator it = event.getAffectedFeatures().features()) {
+            while (it.hasNext()) {
+                SimpleFeature feature = it.next();
+                if (adding) {
+                    Entry entry = toEntry(feature);
+                    if (entry != null) {
+                        changes.added.add(entry);
+                    }
+                } else {
+                    changes.removed.add(feature.getID());
+                }
+            }
+        }
+    }
+
+    @Override
+    protected void applyChanges(Map<String, Changes> changes) {
+        for (Map.Entry<String, Changes> entry : changes.entrySet()) {
+            String typeId = entry.getKey();
+            synchronized (this) {
+                FeatureEnvelopeIndex index = indexes.get(typeId);
+                if (index != null) {
+                    index.apply(entry.getValue().removed, entry.getValue().added);
+                } else if (building.contains(typeId)) {
+                    // the index being built might have missed the changes
+                    stale.add(typeId);
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes the index of the given feature type
+     */
+    @Override
+    protected synchronized void remove(String typeId) {
+        indexes.remove(typeId);
+        unindexable.remove(typeId);
+        if (building.contains(typeId)) {
+            stale.add(typeId);
+        }
+    }
+
+    /**
+     * Removes all the indexes
+     */
+    @Override
+    protected synchronized void clear() {
+        indexes.clear();
+        unindexable.clear();
+        stale.addAll(building);
+    }
+
+    @Override
+    public void onDispose() {
+        clear();
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        builder.shutdownNow();
+        super.destroy();
+    }
+
+    /**
+     * The changes made by a transaction to a feature type
+     */
+    static final class Changes {
+
+        final List<String> removed = new ArrayList<>();
+
+        final List<Entry> added = new ArrayList<>();
+    }
+}
@@ -205,21 +205,6 @@ public class VectorBasicLayerIdentifier extends AbstractVectorLayerIdentifier {
         return radius;
     }
 
-    private Filter buildRulesFilter(org.opengis.filter.FilterFactory ff, List<Rule> rules) {
-        // build up a or of all the rule filters
-        List<Filter> filters = new ArrayList<Filter>();
-        for (Rule rule : rules) {
-            if (rule.getFilter() == null || rule.isElseFilter())
-                return Filter.INCLUDE;
-            filters.add(rule.getFilter());
-        }
-        // not or and and simplify (if there is any include/exclude we'll get
-        // a very simple result ;-)
-        Filter or = ff.or(filters);
-        SimplifyingFilterVisitor simplifier = new SimplifyingFilterVisitor();
-        return (Filter) or.accept(simplifier, null);
-    }
-
    
     private ReferencedEnvelope getEnvelopeFilter(FeatureInfoRequestParameters params, double radius) {
         final int x = params.getX();
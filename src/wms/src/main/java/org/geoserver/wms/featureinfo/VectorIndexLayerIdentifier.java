@@ -0,0 +1,279 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.featureinfo;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geoserver.catalog.LayerInfo;
+import org.geoserver.platform.ExtensionPriority;
+import org.geoserver.wms.FeatureInfoRequestParameters;
+import org.geoserver.wms.GetMapRequest;
+import org.geoserver.wms.MapLayerInfo;
+import org.geoserver.wms.WMS;
+import org.geotools.data.FeatureSource;
+import org.geotools.data.Query;
+import org.geotools.feature.FeatureCollection;
+import org.geotools.filter.Filters;
+import org.geotools.filter.visitor.SimplifyingFilterVisitor;
+import org.geotools.geometry.jts.JTS;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.referencing.CRS;
+import org.geotools.renderer.lite.MetaBufferEstimator;
+import org.geotools.styling.FeatureTypeStyle;
+import org.geotools.styling.LineSymbolizer;
+import org.geotools.styling.PointSymbolizer;
+import org.geotools.styling.Rule;
+import org.geotools.styling.Style;
+import org.geotools.styling.Symbolizer;
+import org.geotools.util.logging.Logging;
+import org.opengis.feature.Feature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.FeatureType;
+import org.opengis.feature.type.GeometryDescriptor;
+import org.opengis.filter.Filter;
+import org.opengis.filter.FilterFactory2;
+import org.opengis.filter.identity.FeatureId;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.MultiLineString;
+import com.vividsolutions.jts.geom.MultiPoint;
+import com.vividsolutions.jts.geom.Point;
+
+/**
+ * Identifier for dense point and line layers with simple styles: instead of rendering the area
+ * around the clicked point, it looks up the candidate features in the in memory
+ * {@link FeatureInfoSpatialIndex}, using the symbol size as the search tolerance, and then fetches
+ * only those from the store.
+ * <p>
+ * Layers that are not indexed (yet), or whose styles make the symbol size hard to predict (dynamic
+ * sizes, units of measure, geometry or rendering transformations, polygon or text symbolizers),
+ * are handed over to the rendering based identifier.
+ * </p>
+ */
+public class VectorIndexLayerIdentifier extends AbstractVectorLayerIdentifier implements
+        ExtensionPriority {
+
+    static final Logger LOGGER = Logging.getLogger(VectorIndexLayerIdentifier.class);
+
+    /**
+     * Past this number of candidates the identification is left to the rendering based identifier,
+     * the id filter would get too large
+     */
+    static final int MAX_CANDIDATES = 1000;
+
+    private final WMS wms;
+
+    private final FeatureInfoSpatialIndex index;
+
+    private final VectorRenderingLayerIdentifier renderingIdentifier;
+
+    private final VectorBasicLayerIdentifier basicIdentifier;
+
+    public VectorIndexLayerIdentifier(WMS wms, FeatureInfoSpatialIndex index,
+            VectorRenderingLayerIdentifier renderingIdentifier,
+            VectorBasicLayerIdentifier basicIdentifier) {
+        this.wms = wms;
+        this.index = index;
+        this.renderingIdentifier = renderingIdentifier;
+        this.basicIdentifier = basicIdentifier;
+    }
+
+    @Override
+    public boolean canHandle(MapLayerInfo layer) {
+        return index.isEnabled() && layer.getType() == MapLayerInfo.TYPE_VECTOR
+                && layer.getLayerInfo() != null;
+    }
+
+    @Override
+    public List<FeatureCollection> identify(FeatureInfoRequestParameters params, int maxFeatures)
+            throws Exception {
+        final MapLayerInfo layer = params.getLayer();
+        final List<Rule> rules = getActiveRules(params.getStyle(), params.getScaleDenominator());
+        if (rules.size() == 0) {
+            return null;
+        }
+
+        FeatureSource<? extends FeatureType, ? extends Feature> featureSource = layer
+                .getFeatureSource(true);
+        FeatureEnvelopeIndex envelopes = null;
+        if (isIndexable(params, featureSource.getSchema(), rules)) {
+            envelopes = index.getIndex(layer.getFeature());
+        }
+        if (envelopes == null) {
+            return fallback(params, maxFeatures);
+        }
+        LOGGER.log(Level.FINER, "Applying spatial index based feature info identifier");
+
+        // look up the candidates
+        ReferencedEnvelope searchArea = getSearchArea(params, getSearchRadius(params, rules));
+        ReferencedEnvelope indexArea = transform(searchArea,
+                envelopes.getCoordinateReferenceSystem());
+        Set<String> candidates = envelopes.query(indexArea);
+        if (candidates.isEmpty()) {
+            return Collections.emptyList();
+        } else if (candidates.size() > MAX_CANDIDATES) {
+            return fallback(params, maxFeatures);
+        }
+
+        // fetch them, the envelope check is not enough for lines, and the usual filters apply
+        FilterFactory2 ff = params.getFilterFactory();
+        FeatureType schema = featureSource.getSchema();
+        Set<FeatureId> ids = new HashSet<FeatureId>();
+        for (String id : candidates) {
+            ids.add(ff.featureId(id));
+        }
+        ReferencedEnvelope queryArea = transform(searchArea,
+                schema.getCoordinateReferenceSystem());
+        Filter filter = ff.and(ff.id(ids),
+                ff.intersects(ff.property(schema.getGeometryDescriptor().getLocalName()),
+                        ff.literal(JTS.toGeometry(queryArea))));
+        if (params.getFilter() != null) {
+            filter = ff.and(filter, params.getFilter());
+        }
+        filter = ff.and(filter, buildRulesFilter(ff, rules));
+        Filter timeElevationFilter = wms.getTimeElevationToFilter(params.getTimes(),
+                params.getElevations(), layer.getFeature());
+        filter = Filters.and(ff, filter, timeElevationFilter);
+        filter = (Filter) filter.accept(new SimplifyingFilterVisitor(), null);
+
+        Query q = new Query(schema.getName().getLocalPart(), null, filter, maxFeatures,
+                params.getPropertyNames(), null);
+        q.setSortBy(params.getSort());
+        if (!wms.isFeaturesReprojectionDisabled()) {
+            q.setCoordinateSystemReproject(params.getRequestedCRS());
+        }
+        LOGGER.log(Level.FINE, q.toString());
+        return Collections.singletonList(featureSource.getFeatures(q));
+    }
+
+    private List<FeatureCollection> fallback(FeatureInfoRequestParameters params,
+            int maxFeatures) throws Exception {
+        if (renderingIdentifier.canHandle(params.getLayer())) {
+            return renderingIdentifier.identify(params, maxFeatures);
+        } else {
+            return basicIdentifier.identify(params, maxFeatures);
+        }
+    }
+
+    /**
+     * Checks the layer and the request can be served using the index: simple point or line
+     * features, a style whose symbols have a fixed size in pixels, no options changing the set of
+     * rendered features
+     */
+    boolean isIndexable(FeatureInfoRequestParameters params, FeatureType schema,
+            List<Rule> rules) {
+        if (!(schema instanceof SimpleFeatureType)) {
+            return false;
+        }
+        GeometryDescriptor geometry = schema.getGeometryDescriptor();
+        if (geometry == null) {
+            return false;
+        }
+        Class<?> binding = geometry.getType().getBinding();
+        if (!Point.class.isAssignableFrom(binding) && !MultiPoint.class.isAssignableFrom(binding)
+                && !LineString.class.isAssignableFrom(binding)
+                && !MultiLineString.class.isAssignableFrom(binding)) {
+            return false;
+        }
+
+        GetMapRequest getMap = params.getGetMapRequest();
+        Map<String, String> viewParams = params.getViewParams();
+        if ((viewParams != null && !viewParams.isEmpty()) || getMap.getStartIndex() != null
+                || getMap.getMaxFeatures() != null || getMap.getFeatureVersion() != null
+                || getMap.getFormatOptions().get("dpi") != null) {
+            return false;
+        }
+
+        for (FeatureTypeStyle fts : params.getStyle().featureTypeStyles()) {
+            if (fts.getTransformation() != null) {
+                return false;
+            }
+        }
+        MetaBufferEstimator estimator = new MetaBufferEstimator();
+        for (Rule rule : rules) {
+            for (Symbolizer symbolizer : rule.symbolizers()) {
+                if (!(symbolizer instanceof PointSymbolizer)
+                        && !(symbolizer instanceof LineSymbolizer)) {
+                    return false;
+                }
+                if (symbolizer.getGeometry() != null || symbolizer.getUnitOfMeasure() != null) {
+                    return false;
+                }
+            }
+            rule.accept(estimator);
+        }
+        return estimator.isEstimateAccurate();
+    }
+
+    /**
+     * Returns the search radius in pixels, the user or layer buffer if set, half of the symbol
+     * size otherwise
+     */
+    int getSearchRadius(FeatureInfoRequestParameters params, List<Rule> rules) {
+        int radius = params.getBuffer();
+        if (radius <= 0) {
+            Integer layerBuffer = null;
+            final LayerInfo layerInfo = params.getLayer().getLayerInfo();
+            if (layerInfo != null) {
+                layerBuffer = layerInfo.getMetadata().get(LayerInfo.BUFFER, Integer.class);
+            }
+            if (layerBuffer != null && layerBuffer > 0) {
+                radius = layerBuffer;
+            } else {
+                // the sizes are static, evaluating them without a feature is enough
+                DynamicBufferEstimator estimator = new DynamicBufferEstimator();
+                for (Rule rule : rules) {
+                    rule.accept(estimator);
+                }
+                radius = Math.max(estimator.getBuffer() / 2,
+                        VectorRenderingLayerIdentifier.MIN_BUFFER_SIZE);
+            }
+        }
+
+        int maxRadius = wms.getMaxBuffer();
+        if (maxRadius > 0 && radius > maxRadius) {
+            radius = maxRadius;
+        }
+        return radius;
+    }
+
+    private ReferencedEnvelope getSearchArea(FeatureInfoRequestParameters params, int radius) {
+        final int x = params.getX();
+        final int y = params.getY();
+        final ReferencedEnvelope bbox = params.getRequestedBounds();
+        final int width = params.getWidth();
+        final int height = params.getHeight();
+        Coordinate upperLeft = WMS.pixelToWorld(x - radius, y - radius, bbox, width, height);
+        Coordinate lowerRight = WMS.pixelToWorld(x + radius, y + radius, bbox, width, height);
+
+        return new ReferencedEnvelope(upperLeft.x, lowerRight.x, lowerRight.y, upperLeft.y,
+                bbox.getCoordinateReferenceSystem());
+    }
+
+    private ReferencedEnvelope transform(ReferencedEnvelope envelope,
+            CoordinateReferenceSystem crs) throws Exception {
+        CoordinateReferenceSystem sourceCRS = envelope.getCoordinateReferenceSystem();
+        if (crs == null || sourceCRS == null || CRS.equalsIgnoreMetadata(sourceCRS, crs)) {
+            return envelope;
+        }
+        return envelope.transform(crs, true);
+    }
+
+    /**
+     * Returns a priority higher than the rendering based identifier, which is used as a fallback
+     */
+    @Override
+    public int getPriority() {
+        return (ExtensionPriority.LOWEST + ExtensionPriority.HIGHEST) / 2 - 1;
+    }
+}
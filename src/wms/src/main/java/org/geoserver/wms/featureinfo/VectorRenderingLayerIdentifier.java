@@ -28,6 +28,7 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -255,6 +256,12 @@ public class VectorRenderingLayerIdentifier extends AbstractVectorLayerIdentifie
                 featureInfoListener.setRenderer(renderer);
                 renderer.addRenderListener(featureInfoListener);
             }
+
+            @Override
+            protected ExecutorService getLayerRenderingPool() {
+                // the listener checks the graphics after each feature is painted
+                return null;
+            }
         };
     }
 
@@ -11,6 +11,7 @@ import java.awt.image.IndexColorModel;
 import java.awt.image.RenderedImage;
 import java.util.Arrays;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.function.Function;
@@ -124,6 +125,12 @@ class FeatureCountProcessor {
                 }
             });
         }
+
+        @Override
+        protected ExecutorService getLayerRenderingPool() {
+            // the consumer is not thread safe
+            return null;
+        }
     }
     
     /**
@@ -0,0 +1,97 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.map;
+
+import java.awt.Rectangle;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.geoserver.wms.WMSMapContent;
+import org.geoserver.wms.WebMap;
+
+/**
+ * A {@link WebMap} made of a grid of tiles, each one already encoded on its own, produced by map
+ * output formats that cannot be split after encoding (e.g., vector tiles) when asked to build a
+ * meta tile.
+ * <p>
+ * Formats supporting it produce this map when the request contains the {@link #TILE_SIZE_KVP}
+ * parameter, which is meant for the tile cache only, a {@code MetaTileMap} cannot be written out
+ * as a GetMap response.
+ * </p>
+ */
+public class MetaTileMap extends WebMap {
+
+    /**
+     * Raw KVP parameter containing the size of the tiles in the meta tile, as
+     * {@code width,height}
+     */
+    public static final String TILE_SIZE_KVP = "GWC_METATILE_TILESIZE";
+
+    private final Map<Rectangle, WebMap> tiles = new LinkedHashMap<>();
+
+    public MetaTileMap(WMSMapContent mapContent, String mimeType) {
+        super(mapContent);
+        setMimeType(mimeType);
+    }
+
+    /**
+     * Parses the tile size out of the {@link #TILE_SIZE_KVP} value
+     *
+     * @return the tile size, or {@code null} if the value is missing or invalid
+     */
+    public static Rectangle parseTileSize(Object value) {
+        if (value == null) {
+            return null;
+        }
+        String[] split = value.toString().split(",");
+        if (split.length != 2) {
+            return null;
+        }
+        try {
+            int width = Integer.parseInt(split[0].trim());
+            int height = Integer.parseInt(split[1].trim());
+            if (width <= 0 || height <= 0) {
+                return null;
+            }
+            return new Rectangle(width, height);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Adds a tile
+     *
+     * @param area The area of the tile in the meta tile, in pixels, with the origin at the
+     *        top-left corner
+     * @param tile The encoded tile
+     */
+    public void addTile(Rectangle area, WebMap tile) {
+        tiles.put(new Rectangle(area), tile);
+    }
+
+    /**
+     * Returns the tile covering the given area, or {@code null} if not found
+     */
+    public WebMap getTile(Rectangle area) {
+        return tiles.get(area);
+    }
+
+    /**
+     * The tiles, keyed by their area in the meta tile
+     */
+    public Map<Rectangle, WebMap> getTiles() {
+        return Collections.unmodifiableMap(tiles);
+    }
+
+    @Override
+    protected void disposeInternal() {
+        for (WebMap tile : tiles.values()) {
+            tile.dispose();
+        }
+        tiles.clear();
+    }
+}
@@ -0,0 +1,17 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.map;
+
+import org.geoserver.wms.GetMapOutputFormat;
+
+/**
+ * Marks the {@link GetMapOutputFormat} implementations honouring the
+ * {@link MetaTileMap#TILE_SIZE_KVP} parameter, that is, producing a {@link MetaTileMap} when asked
+ * to build a meta tile. The tile cache only meta tiles encoded formats that cannot be split after
+ * encoding if their output format implements this interface.
+ */
+public interface MetaTileMapOutputFormat extends GetMapOutputFormat {
+
+}
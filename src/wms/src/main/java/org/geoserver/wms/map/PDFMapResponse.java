@@ -88,6 +88,15 @@ public class PDFMapResponse extends AbstractMapResponse {
         this.wms = wms;
     }
 
+    /**
+     * The PDF is written straight to the client, rendering errors occurring before the first
+     * flush are still reported as service exceptions
+     */
+    @Override
+    public boolean isStreamable(Object value, Operation operation) {
+        return true;
+    }
+
     /**
      * Writes the PDF.
      * <p>
@@ -0,0 +1,288 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.map;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.map.Layer;
+import org.geotools.map.MapContent;
+import org.geotools.renderer.RenderListener;
+import org.geotools.renderer.lite.StreamingRenderer;
+import org.geotools.styling.FeatureTypeStyle;
+import org.geotools.styling.Rule;
+import org.geotools.styling.Style;
+import org.geotools.styling.Symbolizer;
+import org.geotools.styling.TextSymbolizer;
+import org.geotools.util.logging.Logging;
+import org.opengis.feature.simple.SimpleFeature;
+
+/**
+ * A {@link StreamingRenderer} that splits the layers of the map content in groups and renders each
+ * group concurrently with its own renderer, the first group straight on the target graphics, the
+ * others on transparent surfaces that are composited in z-order once all groups are done.
+ * <p>
+ * Layers are only split where painting them separately cannot change the output: as soon as a
+ * layer with labels or cross layer z-ordering is found all the following layers end up in the same
+ * group (labels are painted on top of everything that follows, using a single label cache), and a
+ * layer using composition pulls all the layers below it in its group, as it blends with everything
+ * painted before it.
+ * </p>
+ * <p>
+ * Listeners registered on this renderer are notified of the events of all the group renderers, one
+ * at a time, and {@link #stopRendering()} stops all of them, so {@link MaxErrorEnforcer},
+ * {@link RenderExceptionStrategy} and {@link RenderingTimeoutEnforcer} work unmodified.
+ * </p>
+ */
+public class ParallelLayerRenderer extends StreamingRenderer {
+
+    static final Logger LOGGER = Logging.getLogger(ParallelLayerRenderer.class);
+
+    List<List<Layer>> groups;
+
+    ExecutorService executor;
+
+    Supplier<StreamingRenderer> rendererFactory;
+
+    List<RenderListener> listeners = new CopyOnWriteArrayList<>();
+
+    List<StreamingRenderer> renderers = new CopyOnWriteArrayList<>();
+
+    volatile boolean stopped;
+
+    /**
+     * Builds a new parallel renderer
+     *
+     * @param groups The layer groups, as returned by {@link #groupLayers(List, int)}
+     * @param executor The pool running the groups beyond the first one
+     * @param rendererFactory Builds the renderers for the single groups
+     */
+    public ParallelLayerRenderer(List<List<Layer>> groups, ExecutorService executor,
+            Supplier<StreamingRenderer> rendererFactory) {
+        this.groups = groups;
+        this.executor = executor;
+        this.rendererFactory = rendererFactory;
+    }
+
+    /**
+     * Splits the layers in groups that can be safely painted on separate surfaces, returning at
+     * most {@code maxGroups} of them
+     */
+    public static List<List<Layer>> groupLayers(List<Layer> layers, int maxGroups) {
+        List<List<Layer>> groups = new ArrayList<>();
+        List<Layer> current = null;
+        boolean bound = false;
+        for (Layer layer : layers) {
+            Style style = layer.getStyle();
+            boolean composited = isComposited(style);
+            if (composited && groups.size() > 1) {
+                // the layer blends with the whole map painted so far, which has to be on the
+                // same surface
+                List<Layer> merged = new ArrayList<>();
+                for (List<Layer> group : groups) {
+                    merged.addAll(group);
+                }
+                groups.clear();
+                groups.add(merged);
+                current = merged;
+            } else if (current == null
+                    || (!bound && !composited && groups.size() < maxGroups)) {
+                current = new ArrayList<>();
+                groups.add(current);
+            }
+            current.add(layer);
+            bound |= isBinding(style);
+        }
+        return groups;
+    }
+
+    /**
+     * Returns true if the style paints labels or sorts features across layers, in both cases the
+     * layers that follow need to be painted by the same renderer
+     */
+    static boolean isBinding(Style style) {
+        if (style == null) {
+            return false;
+        }
+        for (FeatureTypeStyle fts : style.featureTypeStyles()) {
+            if (fts.getOptions().containsKey(FeatureTypeStyle.SORT_BY_GROUP)) {
+                return true;
+            }
+            for (Rule rule : fts.rules()) {
+                for (Symbolizer symbolizer : rule.symbolizers()) {
+                    if (symbolizer instanceof TextSymbolizer) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if the style composites its output with the layers below
+     */
+    static boolean isComposited(Style style) {
+        if (style == null) {
+            return false;
+        }
+        for (FeatureTypeStyle fts : style.featureTypeStyles()) {
+            if (fts.getOptions().containsKey(FeatureTypeStyle.COMPOSITE)
+                    || fts.getOptions().containsKey(FeatureTypeStyle.COMPOSITE_BASE)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void addRenderListener(RenderListener listener) {
+        super.addRenderListener(listener);
+        listeners.add(listener);
+    }
+
+    @Override
+    public void removeRenderListener(RenderListener listener) {
+        super.removeRenderListener(listener);
+        listeners.remove(listener);
+    }
+
+    @Override
+    public void stopRendering() {
+        stopped = true;
+        super.stopRendering();
+        for (StreamingRenderer renderer : renderers) {
+            renderer.stopRendering();
+        }
+    }
+
+    @Override
+    public void paint(Graphics2D graphics, Rectangle paintArea, ReferencedEnvelope mapArea,
+            AffineTransform worldToScreen) {
+        if (groups.size() == 1) {
+            paintGroup(groups.get(0), graphics, paintArea, mapArea, worldToScreen);
+            return;
+        }
+
+        // submit all but the first group, which is painted by the calling thread
+        List<BufferedImage> surfaces = new ArrayList<>();
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (List<Layer> group : groups.subList(1, groups.size())) {
+                BufferedImage surface = new BufferedImage(paintArea.width, paintArea.height,
+                        BufferedImage.TYPE_INT_ARGB_PRE);
+                surfaces.add(surface);
+                futures.add(executor.submit(() -> {
+                    Graphics2D g = surface.createGraphics();
+                    try {
+                        g.setRenderingHints(graphics.getRenderingHints());
+                        paintGroup(group, g, new Rectangle(paintArea.width, paintArea.height),
+                                mapArea, worldToScreen);
+                    } finally {
+                        g.dispose();
+                    }
+                }));
+            }
+            paintGroup(groups.get(0), graphics, paintArea, mapArea, worldToScreen);
+
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    fireErrorOccurred(cause instanceof Exception ? (Exception) cause
+                            : new RuntimeException(cause));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            stopRendering();
+        } finally {
+            if (stopped) {
+                for (Future<?> future : futures) {
+                    future.cancel(true);
+                }
+            }
+        }
+
+        // the graphics has been disposed of if the rendering timed out, nothing to do
+        if (stopped) {
+            return;
+        }
+        for (BufferedImage surface : surfaces) {
+            graphics.drawImage(surface, paintArea.x, paintArea.y, null);
+        }
+    }
+
+    void paintGroup(List<Layer> group, Graphics2D graphics, Rectangle paintArea,
+            ReferencedEnvelope mapArea, AffineTransform worldToScreen) {
+        if (stopped) {
+            return;
+        }
+        StreamingRenderer renderer = rendererFactory.get();
+        renderer.setJava2DHints(getJava2DHints());
+        renderer.setRendererHints(getRendererHints());
+        renderer.addRenderListener(new RenderListener() {
+
+            @Override
+            public void featureRenderer(SimpleFeature feature) {
+                fireFeatureRenderer(feature);
+            }
+
+            @Override
+            public void errorOccurred(Exception e) {
+                fireErrorOccurred(e);
+            }
+        });
+
+        MapContent content = new MapContent();
+        content.addLayers(group);
+        renderer.setMapContent(content);
+        renderers.add(renderer);
+        try {
+            // the renderer might have been added after a stop request
+            if (!stopped) {
+                renderer.paint(graphics, paintArea, mapArea, worldToScreen);
+            }
+        } finally {
+            renderers.remove(renderer);
+            // do not dispose the content, it would dispose the layers too
+            for (Layer layer : group) {
+                content.removeLayer(layer);
+            }
+        }
+    }
+
+    void fireFeatureRenderer(SimpleFeature feature) {
+        synchronized (listeners) {
+            for (RenderListener listener : listeners) {
+                listener.featureRenderer(feature);
+            }
+        }
+    }
+
+    void fireErrorOccurred(Exception e) {
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.log(Level.FINE, "Error during parallel layer rendering", e);
+        }
+        synchronized (listeners) {
+            for (RenderListener listener : listeners) {
+                listener.errorOccurred(e);
+            }
+        }
+    }
+}
@@ -7,35 +7,102 @@ package org.geoserver.wms.map;
 
 import java.awt.Point;
 import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DataBufferUShort;
+import java.awt.image.Raster;
 import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.WeakHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.xml.namespace.QName;
 
 import org.apache.commons.lang.builder.EqualsBuilder;
 import org.apache.commons.lang.builder.HashCodeBuilder;
+import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.CatalogInfo;
+import org.geoserver.catalog.ConcurrentResourceCache;
+import org.geoserver.catalog.ConcurrentResourceCache.Statistics;
+import org.geoserver.catalog.LayerGroupInfo;
+import org.geoserver.catalog.LayerInfo;
+import org.geoserver.catalog.ResourceInfo;
+import org.geoserver.catalog.StoreInfo;
+import org.geoserver.catalog.StyleInfo;
+import org.geoserver.catalog.event.CatalogAddEvent;
+import org.geoserver.catalog.event.CatalogListener;
+import org.geoserver.catalog.event.CatalogModifyEvent;
+import org.geoserver.catalog.event.CatalogPostModifyEvent;
+import org.geoserver.catalog.event.CatalogRemoveEvent;
 import org.geoserver.config.ConfigurationListenerAdapter;
 import org.geoserver.config.GeoServer;
 import org.geoserver.config.GeoServerInfo;
 import org.geoserver.config.ServiceInfo;
 import org.geoserver.config.impl.GeoServerLifecycleHandler;
+import org.geoserver.platform.GeoServerExtensions;
 import org.geoserver.platform.ServiceException;
 import org.geoserver.wfs.TransactionEvent;
 import org.geoserver.wfs.TransactionListener;
 import org.geoserver.wfs.WFSException;
 import org.geoserver.wms.GetMapRequest;
+import org.geoserver.wms.MapLayerInfo;
+import org.geoserver.wms.WMSInfo;
+import org.geotools.data.simple.SimpleFeatureCollection;
 import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geotools.referencing.CRS;
 import org.geotools.referencing.CRS.AxisOrder;
-import org.geotools.util.CanonicalSet;
+import org.geotools.util.logging.Logging;
+import org.opengis.feature.type.Name;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
 
 import com.vividsolutions.jts.geom.Envelope;
 
+/**
+ * Caches the tiles of the meta-tiles built for tiled WMS requests, so that the other eight
+ * requests hitting the same meta-tile do not have to render it again.
+ * <p>
+ * The cache is concurrent and bounded by the size of the cached tiles, set with the
+ * {@value #MAX_SIZE_PROPERTY} property (in bytes), the least recently used meta-tiles are evicted
+ * first. Setting {@value #OFF_HEAP_PROPERTY} to true stores the tiles pixels in direct buffers,
+ * outside of the Java heap. WFS transactions only remove the meta-tiles of the modified layers
+ * that intersect the modified features, WMS configuration and catalog changes clear the cache.
+ * </p>
+ */
 public class QuickTileCache implements TransactionListener, GeoServerLifecycleHandler {
+
+    static final Logger LOGGER = Logging.getLogger(QuickTileCache.class);
+
+    /**
+     * Property setting the max size of the cached tiles, in bytes
+     */
+    public static final String MAX_SIZE_PROPERTY = "org.geoserver.wms.metaTileCache.maxSize";
+
+    /**
+     * Property enabling the off heap storage of the cached tiles
+     */
+    public static final String OFF_HEAP_PROPERTY = "org.geoserver.wms.metaTileCache.offHeap";
+
+    /**
+     * Default max size of the cached tiles, a 3x3 meta-tile of 256x256 RGBA tiles takes a bit
+     * more than 2MB
+     */
+    static final long DEFAULT_MAX_SIZE = 64 * 1024 * 1024;
+
     /**
      * Set of parameters that we can ignore, since they do not define a map, are either unrelated,
      * or define the tiling instead
@@ -55,24 +122,73 @@ public class QuickTileCache implements TransactionListener, GeoServerLifecycleHa
     }
 
     /**
-     * Canonicalizer used to return the same object when two threads ask for the same meta-tile
+     * Builds the meta-tile on a cache miss
      */
-    private CanonicalSet<MetaTileKey> metaTileKeys = CanonicalSet.newInstance(MetaTileKey.class);
+    public interface MetaTileRenderer {
+        RenderedImage[] render() throws IOException;
+    }
 
-    private WeakHashMap tileCache = new WeakHashMap();
+    private final ConcurrentResourceCache<MetaTileKey, CacheElement> tileCache;
+
+    private final boolean offHeap;
 
     public QuickTileCache(GeoServer geoServer) {
+        this();
         geoServer.addListener(new ConfigurationListenerAdapter() {
             public void handleGlobalChange(GeoServerInfo global, List<String> propertyNames,
                     List<Object> oldValues, List<Object> newValues) {
-                tileCache.clear();
+                // the update sequence gets bumped on every catalog change, the catalog events
+                // already took care of the affected meta-tiles
+                for (String property : propertyNames) {
+                    if (!"updateSequence".equalsIgnoreCase(property)) {
+                        tileCache.clear();
+                        break;
+                    }
+                }
             }
 
             public void handleServiceChange(ServiceInfo service, List<String> propertyNames,
                     List<Object> oldValues, List<Object> newValues) {
+                // only the WMS configuration affects the map rendering
+                if (service instanceof WMSInfo) {
+                    tileCache.clear();
+                }
+            }
+
+            public void reloaded() {
                 tileCache.clear();
             }
+        });
+        // styles, layers and layer groups changes affect the cached maps
+        Catalog catalog = geoServer.getCatalog();
+        if (catalog == null) {
+            return;
+        }
+        catalog.addListener(new CatalogListener() {
+
+            @Override
+            public void handleAddEvent(CatalogAddEvent event) {
+                // new objects are not in any cached map yet
+            }
+
+            @Override
+            public void handleRemoveEvent(CatalogRemoveEvent event) {
+                invalidate(catalog, event.getSource());
+            }
+
+            @Override
+            public void handleModifyEvent(CatalogModifyEvent event) {
+                // the object is not modified yet, catch the maps using it under its old name
+                // (and its old layers, for groups), the post modify event will catch the new ones
+                invalidate(catalog, event.getSource());
+            }
 
+            @Override
+            public void handlePostModifyEvent(CatalogPostModifyEvent event) {
+                invalidate(catalog, event.getSource());
+            }
+
+            @Override
             public void reloaded() {
                 tileCache.clear();
             }
@@ -80,16 +196,24 @@ public class QuickTileCache implements TransactionListener, GeoServerLifecycleHa
     }
 
     /**
-     * For testing only
+     * Builds a cache not listening to configuration changes, for testing
      */
     QuickTileCache() {
+        this(GeoServerExtensions.getLongProperty(MAX_SIZE_PROPERTY, DEFAULT_MAX_SIZE),
+                Boolean.parseBoolean(GeoServerExtensions.getProperty(OFF_HEAP_PROPERTY)));
+    }
+
+    QuickTileCache(long maxSize, boolean offHeap) {
+        this.offHeap = offHeap;
+        this.tileCache = new ConcurrentResourceCache<>("metaTiles");
+        this.tileCache.setWeigher((key, element) -> element.getSize());
+        this.tileCache.setMaxWeight(maxSize);
     }
 
     /**
      * Given a tiled request, builds a key that can be used to access the cache looking for a
-     * specific meta-tile, and also as a synchronization tool to avoid multiple requests to trigger
-     * parallel computation of the same meta-tile
-     * 
+     * specific meta-tile
+     *
      * @param request
      *
      */
@@ -99,7 +223,7 @@ public class QuickTileCache implements TransactionListener, GeoServerLifecycleHa
         Point2D origin = request.getTilesOrigin();
         if(CRS.getAxisOrder(request.getCrs()) == AxisOrder.NORTH_EAST) {
             try {
-                bbox = new ReferencedEnvelope(bbox.getMinY(), bbox.getMaxY(), bbox.getMinX(), bbox.getMaxX(), 
+                bbox = new ReferencedEnvelope(bbox.getMinY(), bbox.getMaxY(), bbox.getMinX(), bbox.getMaxX(),
                         CRS.decode("EPSG:" + CRS.lookupEpsgCode(request.getCrs(), false)));
                 origin = new Point2D.Double(origin.getY(), origin.getX());
             } catch(Exception e) {
@@ -108,15 +232,25 @@ public class QuickTileCache implements TransactionListener, GeoServerLifecycleHa
         }
         MapKey mapKey = new MapKey(mapDefinition, normalize(bbox.getWidth() / request.getWidth()),
                 origin);
+        mapKey.layerNames = getLayerNames(request);
         Point tileCoords = getTileCoordinates(bbox, origin);
         Point metaTileCoords = getMetaTileCoordinates(tileCoords);
         ReferencedEnvelope metaTileEnvelope = getMetaTileEnvelope(bbox, tileCoords, metaTileCoords);
-        MetaTileKey key = new MetaTileKey(mapKey, metaTileCoords, metaTileEnvelope);
+        return new MetaTileKey(mapKey, metaTileCoords, metaTileEnvelope);
+    }
 
-        // since this will be used for thread synchronization, we have to make
-        // sure two thread asking for the same meta tile will get the same key
-        // object
-        return metaTileKeys.unique(key);
+    /**
+     * Returns the qualified names of the resources in the map, as the WFS transaction events
+     * report them
+     */
+    Set<String> getLayerNames(GetMapRequest request) {
+        Set<String> names = new HashSet<>();
+        if (request.getLayers() != null) {
+            for (MapLayerInfo layer : request.getLayers()) {
+                addName(names, layer.getResource());
+            }
+        }
+        return names;
     }
 
     private ReferencedEnvelope getMetaTileEnvelope(ReferencedEnvelope bbox, Point tileCoords, Point metaTileCoords) {
@@ -130,7 +264,7 @@ public class QuickTileCache implements TransactionListener, GeoServerLifecycleHa
     /**
      * Given a tile, returns the coordinates of the meta-tile that contains it (where the meta-tile
      * coordinate is the coordinate of its lower left subtile)
-     * 
+     *
      * @param tileCoords
      *
      */
@@ -147,7 +281,7 @@ public class QuickTileCache implements TransactionListener, GeoServerLifecycleHa
 
     /**
      * Given an envelope and origin, find the tile coordinate (row,col)
-     * 
+     *
      * @param env
      * @param origin
      *
@@ -163,10 +297,10 @@ public class QuickTileCache implements TransactionListener, GeoServerLifecycleHa
 
         return new Point(x, y);
     }
-    
+
     /**
      * Given an envelope and the metatile envelope, locate the tile inside the metatile
-     * 
+     *
      * @param env
      * @param origin
      *
@@ -189,7 +323,7 @@ public class QuickTileCache implements TransactionListener, GeoServerLifecycleHa
      * of 52 bits, and throw away the 20 more significant ones, which means we're dealing with 12
      * significant decimal digits (2^40 -> more or less one billion million). See also <a
      * href="http://en.wikipedia.org/wiki/IEEE_754">IEEE 754</a> on Wikipedia.
-     * 
+     *
      * @param d
      *
      */
@@ -203,7 +337,7 @@ public class QuickTileCache implements TransactionListener, GeoServerLifecycleHa
 
     /**
      * Turns the request back into a sort of GET request (not url-encoded) for fast comparison
-     * 
+     *
      * @param map
      *
      */
@@ -242,6 +376,11 @@ public class QuickTileCache implements TransactionListener, GeoServerLifecycleHa
 
         Point2D origin;
 
+        /**
+         * The qualified names of the layers in the map, used for invalidation only
+         */
+        Set<String> layerNames = Collections.emptySet();
+
         public MapKey(String mapDefinition, double resolution, Point2D origin) {
             super();
             this.mapDefinition = mapDefinition;
@@ -330,71 +469,355 @@ public class QuickTileCache implements TransactionListener, GeoServerLifecycleHa
 
     /**
      * Gathers a tile from the cache, if available
-     * 
+     *
      * @param key
      * @param request
      *
      */
-    public synchronized RenderedImage getTile(MetaTileKey key, GetMapRequest request) {
-        CacheElement ce = (CacheElement) tileCache.get(key);
+    public RenderedImage getTile(MetaTileKey key, GetMapRequest request) {
+        CacheElement ce = tileCache.get(key);
 
         if (ce == null) {
             return null;
         }
 
-        return getTile(key, request, ce.tiles);
+        return ce.getTile(getTileIndex(key, request));
     }
 
     /**
-     * 
+     * Gathers a tile from the cache, building and caching its meta-tile with the renderer if
+     * missing. Concurrent requests for tiles of the same meta-tile wait for the first one to
+     * build it, requests for other meta-tiles proceed in parallel.
+     *
+     * @param key
+     * @param request
+     * @param renderer
+     *
+     */
+    public RenderedImage getTile(MetaTileKey key, GetMapRequest request,
+            MetaTileRenderer renderer) throws IOException {
+        CacheElement ce;
+        try {
+            ce = tileCache.getOrLoad(key, k -> createElement(renderer.render()));
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+
+        return ce.getTile(getTileIndex(key, request));
+    }
+
+    /**
+     *
      * @param key
      * @param request
      * @param tiles
      *
      */
     public RenderedImage getTile(MetaTileKey key, GetMapRequest request, RenderedImage[] tiles) {
+        return tiles[getTileIndex(key, request)];
+    }
+
+    int getTileIndex(MetaTileKey key, GetMapRequest request) {
         Envelope bbox = request.getBbox();
         if(CRS.getAxisOrder(request.getCrs()) == AxisOrder.NORTH_EAST) {
             bbox = new Envelope(bbox.getMinY(), bbox.getMaxY(), bbox.getMinX(), bbox.getMaxX());
         }
-        
+
         Point tileCoord = getTileOffsetsInMeta(bbox, key.getMetaTileEnvelope());
 
-        return tiles[tileCoord.x + (tileCoord.y * key.getMetaFactor())];
+        return tileCoord.x + (tileCoord.y * key.getMetaFactor());
     }
 
     /**
      * Puts the specified tile array in the cache, and returns the tile the request was looking for
-     * 
+     *
      * @param key
      * @param request
      * @param tiles
      *
      */
-    public synchronized void storeTiles(MetaTileKey key, RenderedImage[] tiles) {
-        tileCache.put(key, new CacheElement(tiles));
+    public void storeTiles(MetaTileKey key, RenderedImage[] tiles) {
+        tileCache.put(key, createElement(tiles));
     }
 
-    class CacheElement {
+    CacheElement createElement(RenderedImage[] tiles) {
+        if (offHeap) {
+            return new OffHeapCacheElement(tiles);
+        }
+        return new CacheElement(tiles);
+    }
+
+    /**
+     * Returns the hit/miss/eviction statistics of the cache
+     */
+    public Statistics getStatistics() {
+        return tileCache.getStatistics();
+    }
+
+    /**
+     * Estimates the memory used by the tile pixels
+     */
+    static long getSize(RenderedImage tile) {
+        SampleModel sm = tile.getSampleModel();
+        int bits = 0;
+        for (int size : sm.getSampleSize()) {
+            bits += size;
+        }
+        return (long) tile.getWidth() * tile.getHeight() * ((bits + 7) / 8);
+    }
+
+    static class CacheElement {
         RenderedImage[] tiles;
 
         public CacheElement(RenderedImage[] tiles) {
             this.tiles = tiles;
         }
+
+        RenderedImage getTile(int index) {
+            return tiles[index];
+        }
+
+        long getSize() {
+            long size = 0;
+            for (RenderedImage tile : tiles) {
+                size += QuickTileCache.getSize(tile);
+            }
+            return size;
+        }
+    }
+
+    /**
+     * Keeps the tiles pixels in direct buffers, tiles are rebuilt on the heap when requested.
+     * Tiles whose raster cannot be copied in a single buffer stay on the heap.
+     */
+    static class OffHeapCacheElement extends CacheElement {
+
+        OffHeapTile[] offHeapTiles;
+
+        public OffHeapCacheElement(RenderedImage[] tiles) {
+            super(tiles.clone());
+            offHeapTiles = new OffHeapTile[tiles.length];
+            for (int i = 0; i < tiles.length; i++) {
+                offHeapTiles[i] = OffHeapTile.create(tiles[i]);
+                if (offHeapTiles[i] != null) {
+                    this.tiles[i] = null;
+                }
+            }
+        }
+
+        @Override
+        RenderedImage getTile(int index) {
+            OffHeapTile tile = offHeapTiles[index];
+            return tile != null ? tile.toImage() : tiles[index];
+        }
+
+        @Override
+        long getSize() {
+            long size = 0;
+            for (int i = 0; i < tiles.length; i++) {
+                size += offHeapTiles[i] != null ? offHeapTiles[i].data.capacity()
+                        : QuickTileCache.getSize(tiles[i]);
+            }
+            return size;
+        }
+    }
+
+    static class OffHeapTile {
+        ColorModel colorModel;
+
+        SampleModel sampleModel;
+
+        int dataType;
+
+        int length;
+
+        ByteBuffer data;
+
+        /**
+         * Copies the tile pixels off heap, returns null if the raster layout is not supported
+         */
+        static OffHeapTile create(RenderedImage image) {
+            // getData returns a copy of the raster, starting at 0,0 with a fresh data buffer
+            Raster raster = image.getData();
+            DataBuffer buffer = raster.getDataBuffer();
+            if (buffer.getNumBanks() != 1 || buffer.getOffset() != 0
+                    || raster.getMinX() != 0 || raster.getMinY() != 0) {
+                return null;
+            }
+
+            OffHeapTile tile = new OffHeapTile();
+            tile.colorModel = image.getColorModel();
+            tile.sampleModel = raster.getSampleModel();
+            tile.dataType = buffer.getDataType();
+            tile.length = buffer.getSize();
+            if (buffer instanceof DataBufferByte) {
+                tile.data = allocate(tile.length);
+                tile.data.put(((DataBufferByte) buffer).getData(), 0, tile.length);
+            } else if (buffer instanceof DataBufferUShort) {
+                tile.data = allocate(tile.length * 2);
+                tile.data.asShortBuffer().put(((DataBufferUShort) buffer).getData(), 0,
+                        tile.length);
+            } else if (buffer instanceof DataBufferInt) {
+                tile.data = allocate(tile.length * 4);
+                tile.data.asIntBuffer().put(((DataBufferInt) buffer).getData(), 0, tile.length);
+            } else {
+                return null;
+            }
+            return tile;
+        }
+
+        static ByteBuffer allocate(int bytes) {
+            return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+        }
+
+        BufferedImage toImage() {
+            // work on a duplicate, the tile can be read by many threads at the same time
+            ByteBuffer source = data.duplicate().order(ByteOrder.nativeOrder());
+            source.clear();
+            DataBuffer buffer;
+            if (dataType == DataBuffer.TYPE_BYTE) {
+                byte[] pixels = new byte[length];
+                source.get(pixels);
+                buffer = new DataBufferByte(pixels, length);
+            } else if (dataType == DataBuffer.TYPE_USHORT) {
+                short[] pixels = new short[length];
+                source.asShortBuffer().get(pixels);
+                buffer = new DataBufferUShort(pixels, length);
+            } else {
+                int[] pixels = new int[length];
+                source.asIntBuffer().get(pixels);
+                buffer = new DataBufferInt(pixels, length);
+            }
+            WritableRaster raster = Raster.createWritableRaster(sampleModel, buffer, null);
+            return new BufferedImage(colorModel, raster, colorModel.isAlphaPremultiplied(), null);
+        }
+    }
+
+    /**
+     * Removes the meta-tiles of the maps containing the layers affected by a catalog object
+     */
+    void invalidate(Catalog catalog, CatalogInfo info) {
+        Set<String> names = getAffectedLayerNames(catalog, info);
+        if (names == null) {
+            tileCache.clear();
+        } else if (!names.isEmpty()) {
+            tileCache.keySet().removeIf(
+                    key -> !Collections.disjoint(key.mapKey.layerNames, names));
+        }
+    }
+
+    /**
+     * Returns the qualified names of the resources affected by a change in the given catalog
+     * object, or null if all the maps are affected
+     */
+    Set<String> getAffectedLayerNames(Catalog catalog, CatalogInfo info) {
+        Set<String> names = new HashSet<>();
+        if (info instanceof ResourceInfo) {
+            addName(names, (ResourceInfo) info);
+        } else if (info instanceof LayerInfo) {
+            addName(names, ((LayerInfo) info).getResource());
+        } else if (info instanceof LayerGroupInfo) {
+            addNames(names, ((LayerGroupInfo) info).layers());
+        } else if (info instanceof StyleInfo) {
+            StyleInfo style = (StyleInfo) info;
+            addNames(names, catalog.getLayers(style));
+            for (LayerGroupInfo group : catalog.getLayerGroups()) {
+                if (group.getStyles().contains(style)) {
+                    addNames(names, group.layers());
+                }
+            }
+        } else if (info instanceof StoreInfo) {
+            for (ResourceInfo resource : catalog.getResourcesByStore((StoreInfo) info,
+                    ResourceInfo.class)) {
+                addName(names, resource);
+            }
+        } else {
+            // workspaces, namespaces and the like
+            return null;
+        }
+        return names;
+    }
+
+    private void addNames(Set<String> names, List<LayerInfo> layers) {
+        for (LayerInfo layer : layers) {
+            if (layer != null) {
+                addName(names, layer.getResource());
+            }
+        }
+    }
+
+    private void addName(Set<String> names, ResourceInfo resource) {
+        if (resource != null) {
+            Name name = resource.getQualifiedName();
+            names.add(new QName(name.getNamespaceURI(), name.getLocalPart()).toString());
+        }
     }
 
     public void dataStoreChange(TransactionEvent event) throws WFSException {
-        // if anything changes we just wipe out the cache. the mapkey
-        // contains a string with part of the map request where the layer
-        // name is included, but we would have to parse it and consider
-        // also that the namespace may be missing in the getmap request
-        tileCache.clear();
+        // only remove the meta-tiles of the modified layer that touch the modified features
+        if (event.getLayerName() == null) {
+            tileCache.clear();
+            return;
+        }
+        String layerName = event.getLayerName().toString();
+        ReferencedEnvelope bounds = null;
+        try {
+            SimpleFeatureCollection features = event.getAffectedFeatures();
+            if (features != null) {
+                bounds = features.getBounds();
+            }
+        } catch (Exception e) {
+            LOGGER.log(Level.FINE, "Could not compute the modified area, "
+                    + "removing all the meta-tiles of " + layerName, e);
+        }
+
+        Map<CoordinateReferenceSystem, ReferencedEnvelope> transformed = new HashMap<>();
+        for (Iterator<MetaTileKey> it = tileCache.keySet().iterator(); it.hasNext();) {
+            MetaTileKey key = it.next();
+            if (!key.mapKey.layerNames.contains(layerName)) {
+                continue;
+            }
+            if (bounds == null || intersects(key, bounds, transformed)) {
+                it.remove();
+            }
+        }
+    }
+
+    boolean intersects(MetaTileKey key, ReferencedEnvelope bounds,
+            Map<CoordinateReferenceSystem, ReferencedEnvelope> transformed) {
+        if (bounds.isNull()) {
+            // nothing was modified, e.g., an update with a filter that matches no feature
+            return false;
+        }
+        ReferencedEnvelope envelope = key.getMetaTileEnvelope();
+        CoordinateReferenceSystem crs = envelope.getCoordinateReferenceSystem();
+        Envelope target = bounds;
+        if (crs != null && bounds.getCoordinateReferenceSystem() != null) {
+            target = transformed.computeIfAbsent(crs, c -> {
+                try {
+                    return bounds.transform(c, true);
+                } catch (Exception e) {
+                    // play it safe, drop the tile
+                    return null;
+                }
+            });
+            if (target == null) {
+                return true;
+            }
+        }
+        // a feature symbolized with a large point, or a label, can spill into the nearby
+        // meta-tiles, hence the buffer of one tile
+        Envelope expanded = new Envelope(target);
+        expanded.expandBy(envelope.getWidth() / key.getMetaFactor());
+        return envelope.intersects(expanded);
     }
 
     @Override
     public void onReset() {
         // data might have changed in the meantime
-        tileCache.clear();        
+        tileCache.clear();
     }
 
     @Override
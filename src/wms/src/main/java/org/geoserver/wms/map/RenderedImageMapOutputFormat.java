@@ -29,6 +29,7 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -164,6 +165,7 @@ public class RenderedImageMapOutputFormat extends AbstractMapOutputFormat {
 
     private static final String MAP_WRAPPING_FORMAT_OPTION = "mapWrapping";
     private static final String ADV_PROJECTION_HANDLING_FORMAT_OPTION = "advancedProjectionHandling";
+    private static final String PARALLEL_LAYERS_FORMAT_OPTION = "parallelLayers";
 
     /**
      * The size of a megabyte
@@ -179,6 +181,8 @@ public class RenderedImageMapOutputFormat extends AbstractMapOutputFormat {
     
     private Function<WMSMapContent, LabelCache> labelCache = null;
 
+    private ExecutorService layerRenderingPool = null;
+
     private static byte[] getTable() {
         byte[] arr = new byte[256];
         for (int i = 0; i < arr.length; i++) {
@@ -279,6 +283,16 @@ public class RenderedImageMapOutputFormat extends AbstractMapOutputFormat {
         this.labelCache = labelCache;
     }
 
+    /**
+     * Sets the pool used to render the map layers in parallel, overriding the global one returned
+     * by {@link DefaultWebMapService#getLayerRenderingPool()}
+     * 
+     * @param layerRenderingPool
+     */
+    public void setLayerRenderingPool(ExecutorService layerRenderingPool) {
+        this.layerRenderingPool = layerRenderingPool;
+    }
+
     /**
      * @see org.geoserver.wms.GetMapOutputFormat#produceMap(org.geoserver.wms.WMSMapContent)
      */
@@ -337,13 +351,32 @@ public class RenderedImageMapOutputFormat extends AbstractMapOutputFormat {
         // multiple featureTypeStyles against the same layer
         StreamingRenderer testRenderer = buildRenderer();
         testRenderer.setMapContent(mapContent);
-        memory += testRenderer.getMaxBackBufferMemory(paintArea.width, paintArea.height);
+        long backBufferMemory = testRenderer.getMaxBackBufferMemory(paintArea.width,
+                paintArea.height);
+        memory += backBufferMemory;
         if (maxMemory > 0 && memory > maxMemory) {
             long kbUsed = memory / KB;
             long kbMax = maxMemory / KB;
             throw new ServiceException("Rendering request would use " + kbUsed + "KB, whilst the "
                     + "maximum memory allowed is " + kbMax + "KB");
         }
+
+        // see if the layers can be rendered in parallel, each extra group of layers
+        // uses its own transparent surface and back buffers, so fit them in the memory limits
+        List<List<Layer>> layerGroups = null;
+        final ExecutorService layerPool = getLayerRenderingPool();
+        if (layerPool != null && labelCache == null && mapContent.layers().size() > 1
+                && getFormatOptionAsBoolean(request, PARALLEL_LAYERS_FORMAT_OPTION)) {
+            int maxGroups = mapContent.layers().size();
+            if (maxMemory > 0) {
+                long groupMemory = getDrawingSurfaceMemoryUse(paintArea.width, paintArea.height,
+                        null, true) + backBufferMemory;
+                maxGroups = (int) Math.min(maxGroups, 1 + (maxMemory - memory) / groupMemory);
+            }
+            if (maxGroups > 1) {
+                layerGroups = ParallelLayerRenderer.groupLayers(mapContent.layers(), maxGroups);
+            }
+        }
         
         final MapDecorationLayout layout = findDecorationLayout(request, tiled);
 
@@ -435,7 +468,20 @@ public class RenderedImageMapOutputFormat extends AbstractMapOutputFormat {
         graphic.setRenderingHints(hintsMap);
 
         RenderingHints hints = new RenderingHints(hintsMap);
-        StreamingRenderer renderer = buildRenderer();
+        StreamingRenderer renderer;
+        if (layerGroups != null && layerGroups.size() > 1) {
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine("Rendering " + mapContent.layers().size() + " layers in "
+                        + layerGroups.size() + " parallel groups");
+            }
+            renderer = new ParallelLayerRenderer(layerGroups, layerPool, () -> {
+                StreamingRenderer groupRenderer = buildRenderer();
+                groupRenderer.setThreadPool(DefaultWebMapService.getRenderingPool());
+                return groupRenderer;
+            });
+        } else {
+            renderer = buildRenderer();
+        }
         renderer.setThreadPool(DefaultWebMapService.getRenderingPool());
         renderer.setMapContent(mapContent);
         renderer.setJava2DHints(hints);
@@ -678,6 +724,18 @@ public class RenderedImageMapOutputFormat extends AbstractMapOutputFormat {
         // TODO Auto-generated method stub
     }
 
+    /**
+     * Returns the pool used to render the map layers in parallel, or null if layers should be
+     * rendered sequentially. Subclasses that need to follow the painting of each feature on the
+     * target graphics should return null.
+     */
+    protected ExecutorService getLayerRenderingPool() {
+        if (layerRenderingPool != null) {
+            return layerRenderingPool;
+        }
+        return DefaultWebMapService.getLayerRenderingPool();
+    }
+
     protected RenderedImageMap buildMap(final WMSMapContent mapContent, RenderedImage image) {
         RenderedImageMap map = new RenderedImageMap(mapContent, image, getMimeType());
         if(extension != null) {
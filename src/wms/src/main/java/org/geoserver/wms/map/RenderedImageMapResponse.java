@@ -100,6 +100,15 @@ public abstract class RenderedImageMapResponse extends AbstractMapResponse {
     public abstract void formatImageOutputStream(RenderedImage image, OutputStream outStream,
             WMSMapContent mapContent) throws ServiceException, IOException;
 
+    /**
+     * Encoded images are written straight to the client, encoding errors occurring before the
+     * first flush are still reported as service exceptions
+     */
+    @Override
+    public boolean isStreamable(Object value, Operation operation) {
+        return true;
+    }
+
     /**
      * Writes the image to the given destination.
      * 
@@ -45,6 +45,18 @@ public class PNGJWriter {
             image = new ImageWorker(image).rescaleToBytes().forceComponentColorModel().getRenderedImage();           
         }
         
+        // large images are filtered and compressed in parallel row bands
+        if (ParallelPNGEncoder.isParallelizable(image)) {
+            try {
+                new ParallelPNGEncoder(image, quality, filterType != FilterType.FILTER_NONE)
+                        .encode(outStream);
+                return image;
+            } catch (Exception e) {
+                LOGGER.log(Level.SEVERE, "Failed to encode the PNG", e);
+                throw new ServiceException(e);
+            }
+        }
+
         RenderedImage output = null;
         // Image writing
         try {
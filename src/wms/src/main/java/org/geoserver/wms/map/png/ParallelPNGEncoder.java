@@ -0,0 +1,628 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.map.png;
+
+import java.awt.Rectangle;
+import java.awt.color.ColorSpace;
+import java.awt.image.ColorModel;
+import java.awt.image.IndexColorModel;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import org.geoserver.platform.GeoServerExtensions;
+
+/**
+ * A PNG encoder that splits the image in bands of rows, filters and deflates them concurrently, and
+ * joins the results in a single zlib stream.
+ * <p>
+ * Each band is compressed into a sequence of raw deflate blocks terminated by a sync flush (the
+ * last one is finished instead), using the tail of the previous band as the dictionary so that
+ * compression is close to a sequential encoder. The zlib header and the Adler-32 of the whole
+ * stream, combined from the per band checksums, are added around the bands. The {@link Deflater}
+ * and row buffers are reused across bands and requests on a per thread basis.
+ * </p>
+ * <p>
+ * Supports 8 bit gray, gray/alpha, RGB and RGBA images, as well as 1, 2, 4 and 8 bits palette ones,
+ * with a non premultiplied color model, see {@link #isSupported(RenderedImage)}.
+ * </p>
+ */
+public class ParallelPNGEncoder {
+
+    /**
+     * System/context/environment property setting the number of threads used for encoding, zero or
+     * one disables parallel encoding
+     */
+    public static final String THREADS_PROPERTY = "org.geoserver.wms.png.encoderThreads";
+
+    /**
+     * Images smaller than this are better off encoded in a single band
+     */
+    static final int MIN_BAND_BYTES = 128 * 1024;
+
+    /**
+     * The max size of a deflate dictionary
+     */
+    static final int DICTIONARY_SIZE = 32 * 1024;
+
+    static final byte[] SIGNATURE = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' };
+
+    static final int FILTER_NONE = 0;
+
+    static final int FILTER_SUB = 1;
+
+    static final int FILTER_UP = 2;
+
+    static final int FILTER_AVERAGE = 3;
+
+    static final int FILTER_PAETH = 4;
+
+    static final int THREADS = getThreads();
+
+    static volatile ExecutorService POOL;
+
+    static final ThreadLocal<EncoderState> STATE = new ThreadLocal<EncoderState>() {
+        protected EncoderState initialValue() {
+            return new EncoderState();
+        }
+    };
+
+    final RenderedImage image;
+
+    final int width;
+
+    final int height;
+
+    final int bitDepth;
+
+    final int colorType;
+
+    final int bitsPerPixel;
+
+    final int rowBytes;
+
+    /**
+     * Distance in bytes between a byte and the matching one in the previous pixel
+     */
+    final int filterOffset;
+
+    final boolean adaptive;
+
+    final int level;
+
+    /**
+     * Builds a new encoder for the given image
+     *
+     * @param image The image to be encoded, must be {@link #isSupported(RenderedImage) supported}
+     * @param quality The quality, in the [0,1] range, one means no compression
+     * @param adaptive If true the filter is chosen row by row using the minimum sum of absolute
+     *        differences heuristic, otherwise no filter is applied. Palette images are never
+     *        filtered.
+     */
+    public ParallelPNGEncoder(RenderedImage image, float quality, boolean adaptive) {
+        if (!isSupported(image)) {
+            throw new IllegalArgumentException("Unsupported image layout " + image);
+        }
+        this.image = image;
+        this.width = image.getWidth();
+        this.height = image.getHeight();
+        ColorModel cm = image.getColorModel();
+        SampleModel sm = image.getSampleModel();
+        if (cm instanceof IndexColorModel) {
+            this.bitDepth = sm.getSampleSize(0);
+            this.colorType = 3;
+            this.bitsPerPixel = bitDepth;
+            this.adaptive = false;
+        } else {
+            this.bitDepth = 8;
+            boolean gray = cm.getNumColorComponents() == 1;
+            this.colorType = gray ? (cm.hasAlpha() ? 4 : 0) : (cm.hasAlpha() ? 6 : 2);
+            this.bitsPerPixel = 8 * sm.getNumBands();
+            this.adaptive = adaptive;
+        }
+        this.rowBytes = (width * bitsPerPixel + 7) / 8;
+        this.filterOffset = Math.max(1, bitsPerPixel / 8);
+        this.level = Math.max(0, Math.min(9, Math.round(9 * (1 - quality))));
+    }
+
+    /**
+     * Returns true if the image can be handled by this encoder
+     */
+    public static boolean isSupported(RenderedImage image) {
+        ColorModel cm = image.getColorModel();
+        SampleModel sm = image.getSampleModel();
+        if (cm == null || cm.isAlphaPremultiplied()) {
+            return false;
+        }
+        if (cm instanceof IndexColorModel) {
+            int bits = sm.getSampleSize(0);
+            return sm.getNumBands() == 1 && (bits == 1 || bits == 2 || bits == 4 || bits == 8);
+        }
+        int type = cm.getColorSpace().getType();
+        if (type != ColorSpace.TYPE_RGB && type != ColorSpace.TYPE_GRAY) {
+            return false;
+        }
+        int bands = sm.getNumBands();
+        if (bands != cm.getNumComponents() || bands < 1 || bands > 4) {
+            return false;
+        }
+        for (int i = 0; i < bands; i++) {
+            if (sm.getSampleSize(i) != 8) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns true if the image is supported and large enough to benefit from parallel encoding
+     */
+    public static boolean isParallelizable(RenderedImage image) {
+        if (THREADS <= 1 || !isSupported(image)) {
+            return false;
+        }
+        long bits = (long) image.getWidth() * image.getSampleModel().getSampleSize(0)
+                * image.getSampleModel().getNumBands();
+        long bytes = (bits + 7) / 8 * image.getHeight();
+        return bytes >= 2L * MIN_BAND_BYTES;
+    }
+
+    /**
+     * Encodes the image to the output stream, using the shared encoding pool for all bands but the
+     * first, which is encoded by the calling thread
+     */
+    public void encode(OutputStream out) throws IOException {
+        encode(out, computeBands(THREADS));
+    }
+
+    void encode(OutputStream out, List<int[]> bands) throws IOException {
+        out.write(SIGNATURE);
+        writeHeader(out);
+        if (colorType == 3) {
+            writePalette(out, (IndexColorModel) image.getColorModel());
+        }
+
+        List<Future<CompressedBand>> futures = new ArrayList<>();
+        try {
+            if (bands.size() > 1) {
+                ExecutorService pool = getPool();
+                for (int i = 1; i < bands.size(); i++) {
+                    int[] band = bands.get(i);
+                    boolean last = i == bands.size() - 1;
+                    futures.add(pool.submit(() -> compress(band[0], band[1], last)));
+                }
+            }
+            CompressedBand first = compress(bands.get(0)[0], bands.get(0)[1], bands.size() == 1);
+
+            // zlib header, deflate with a 32k window and default compression
+            byte[] zlibHeader = { 0x78, (byte) 0x9C };
+            long adler = 1;
+            writeChunk(out, "IDAT", zlibHeader, 0, zlibHeader.length);
+            writeChunk(out, "IDAT", first.data, 0, first.length);
+            adler = adler32Combine(adler, first.adler, first.rawLength);
+            for (Future<CompressedBand> future : futures) {
+                CompressedBand band = future.get();
+                writeChunk(out, "IDAT", band.data, 0, band.length);
+                adler = adler32Combine(adler, band.adler, band.rawLength);
+            }
+            byte[] trailer = { (byte) (adler >>> 24), (byte) (adler >>> 16),
+                    (byte) (adler >>> 8), (byte) adler };
+            writeChunk(out, "IDAT", trailer, 0, trailer.length);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while encoding the PNG", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to encode the PNG", e.getCause());
+        } finally {
+            for (Future<CompressedBand> future : futures) {
+                future.cancel(true);
+            }
+        }
+
+        writeChunk(out, "IEND", new byte[0], 0, 0);
+        out.flush();
+    }
+
+    /**
+     * Splits the image rows in bands, as start (inclusive) and end (exclusive) row pairs
+     */
+    List<int[]> computeBands(int threads) {
+        int bands = Math.max(1, threads);
+        int minRows = Math.max(1, MIN_BAND_BYTES / (rowBytes + 1));
+        int rows = Math.max(minRows, (height + bands - 1) / bands);
+        List<int[]> result = new ArrayList<>();
+        for (int start = 0; start < height; start += rows) {
+            result.add(new int[] { start, Math.min(height, start + rows) });
+        }
+        return result;
+    }
+
+    /**
+     * Filters and compresses the rows between start and end
+     */
+    CompressedBand compress(int start, int end, boolean last) {
+        EncoderState state = STATE.get();
+        state.ensureCapacity(rowBytes, width * Math.max(1, bitsPerPixel / 8));
+        Deflater deflater = state.getDeflater(level);
+
+        // grab enough rows before the band to build the dictionary, plus one for the filtering
+        int dictionaryRows = Math.min(start, (DICTIONARY_SIZE + rowBytes) / (rowBytes + 1));
+        int first = Math.max(0, start - dictionaryRows - 1);
+        Raster raster = image.getData(new Rectangle(image.getMinX(), image.getMinY() + first,
+                width, end - first));
+        int rasterY = image.getMinY() + first;
+
+        // prepare the previous row, and the dictionary
+        Arrays.fill(state.previous, 0, rowBytes, (byte) 0);
+        if (first < start - dictionaryRows) {
+            readRow(raster, rasterY, state, state.previous);
+        }
+        if (dictionaryRows > 0) {
+            byte[] dictionary = new byte[dictionaryRows * (rowBytes + 1)];
+            for (int y = start - dictionaryRows; y < start; y++) {
+                readRow(raster, image.getMinY() + y, state, state.current);
+                filterRow(state, dictionary, (y - start + dictionaryRows) * (rowBytes + 1));
+                state.swapRows();
+            }
+            int length = Math.min(DICTIONARY_SIZE, dictionary.length);
+            deflater.setDictionary(dictionary, dictionary.length - length, length);
+        }
+
+        // filter and compress the band
+        Adler32 adler = new Adler32();
+        ByteSink sink = new ByteSink(Math.max(1024, (end - start) * rowBytes / 4));
+        byte[] filtered = state.filtered;
+        for (int y = start; y < end; y++) {
+            readRow(raster, image.getMinY() + y, state, state.current);
+            filterRow(state, filtered, 0);
+            state.swapRows();
+            adler.update(filtered, 0, rowBytes + 1);
+            deflater.setInput(filtered, 0, rowBytes + 1);
+            while (!deflater.needsInput()) {
+                sink.deflate(deflater, state.buffer, Deflater.NO_FLUSH);
+            }
+        }
+        if (last) {
+            deflater.finish();
+            while (!deflater.finished()) {
+                sink.deflate(deflater, state.buffer, Deflater.NO_FLUSH);
+            }
+        } else {
+            // sync flush until the deflater has nothing more to say
+            int count;
+            do {
+                count = sink.deflate(deflater, state.buffer, Deflater.SYNC_FLUSH);
+            } while (count == state.buffer.length);
+        }
+
+        return new CompressedBand(sink.data, sink.length, adler.getValue(),
+                (long) (end - start) * (rowBytes + 1));
+    }
+
+    /**
+     * Reads one row of the image and packs it in PNG layout
+     */
+    void readRow(Raster raster, int y, EncoderState state, byte[] row) {
+        int[] samples = raster.getPixels(raster.getMinX(), y, width, 1, state.samples);
+        if (bitDepth == 8) {
+            int n = rowBytes;
+            for (int i = 0; i < n; i++) {
+                row[i] = (byte) samples[i];
+            }
+        } else {
+            int perByte = 8 / bitDepth;
+            int mask = (1 << bitDepth) - 1;
+            Arrays.fill(row, 0, rowBytes, (byte) 0);
+            for (int x = 0; x < width; x++) {
+                int shift = 8 - bitDepth * (x % perByte + 1);
+                row[x / perByte] |= (samples[x] & mask) << shift;
+            }
+        }
+    }
+
+    /**
+     * Filters the current row against the previous one, writing the filter type followed by the
+     * filtered bytes in the target array
+     */
+    void filterRow(EncoderState state, byte[] target, int offset) {
+        byte[] current = state.current;
+        byte[] previous = state.previous;
+        if (!adaptive) {
+            target[offset] = FILTER_NONE;
+            System.arraycopy(current, 0, target, offset + 1, rowBytes);
+            return;
+        }
+
+        // minimum sum of absolute differences, the usual libpng heuristic
+        int best = FILTER_NONE;
+        long bestSum = Long.MAX_VALUE;
+        byte[] candidate = state.candidate;
+        for (int filter = FILTER_NONE; filter <= FILTER_PAETH; filter++) {
+            long sum = filterCost(filter, current, previous, candidate, bestSum);
+            if (sum < bestSum) {
+                bestSum = sum;
+                best = filter;
+            }
+        }
+        target[offset] = (byte) best;
+        applyFilter(best, current, previous, target, offset + 1);
+    }
+
+    /**
+     * Applies the filter to the row, returning the sum of absolute values of the output, or a value
+     * larger than the limit as soon as the limit is exceeded
+     */
+    long filterCost(int filter, byte[] current, byte[] previous, byte[] out, long limit) {
+        long sum = 0;
+        int bpp = filterOffset;
+        for (int i = 0; i < rowBytes; i++) {
+            byte value = filter(filter, current, previous, i, bpp);
+            out[i] = value;
+            sum += Math.abs(value);
+            if (sum >= limit) {
+                return sum;
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Applies the filter to the row, writing the output in the target array at the given offset
+     */
+    void applyFilter(int filter, byte[] current, byte[] previous, byte[] out, int offset) {
+        int bpp = filterOffset;
+        for (int i = 0; i < rowBytes; i++) {
+            out[offset + i] = filter(filter, current, previous, i, bpp);
+        }
+    }
+
+    static byte filter(int filter, byte[] current, byte[] previous, int i, int bpp) {
+        int x = current[i] & 0xFF;
+        int a = i >= bpp ? current[i - bpp] & 0xFF : 0;
+        int b = previous[i] & 0xFF;
+        switch (filter) {
+        case FILTER_SUB:
+            return (byte) (x - a);
+        case FILTER_UP:
+            return (byte) (x - b);
+        case FILTER_AVERAGE:
+            return (byte) (x - ((a + b) >> 1));
+        case FILTER_PAETH:
+            int c = i >= bpp ? previous[i - bpp] & 0xFF : 0;
+            return (byte) (x - paeth(a, b, c));
+        default:
+            return (byte) x;
+        }
+    }
+
+    static int paeth(int a, int b, int c) {
+        int p = a + b - c;
+        int pa = Math.abs(p - a);
+        int pb = Math.abs(p - b);
+        int pc = Math.abs(p - c);
+        if (pa <= pb && pa <= pc) {
+            return a;
+        } else if (pb <= pc) {
+            return b;
+        }
+        return c;
+    }
+
+    void writeHeader(OutputStream out) throws IOException {
+        byte[] header = new byte[13];
+        putInt(header, 0, width);
+        putInt(header, 4, height);
+        header[8] = (byte) bitDepth;
+        header[9] = (byte) colorType;
+        // compression, filter and interlace methods
+        header[10] = 0;
+        header[11] = 0;
+        header[12] = 0;
+        writeChunk(out, "IHDR", header, 0, header.length);
+    }
+
+    void writePalette(OutputStream out, IndexColorModel icm) throws IOException {
+        int size = Math.min(icm.getMapSize(), 1 << bitDepth);
+        byte[] palette = new byte[size * 3];
+        byte[] alpha = new byte[size];
+        int alphaLength = 0;
+        for (int i = 0; i < size; i++) {
+            palette[i * 3] = (byte) icm.getRed(i);
+            palette[i * 3 + 1] = (byte) icm.getGreen(i);
+            palette[i * 3 + 2] = (byte) icm.getBlue(i);
+            alpha[i] = (byte) icm.getAlpha(i);
+            if (icm.getAlpha(i) != 255) {
+                alphaLength = i + 1;
+            }
+        }
+        writeChunk(out, "PLTE", palette, 0, palette.length);
+        if (alphaLength > 0) {
+            writeChunk(out, "tRNS", alpha, 0, alphaLength);
+        }
+    }
+
+    static void writeChunk(OutputStream out, String type, byte[] data, int offset, int length)
+            throws IOException {
+        byte[] header = new byte[8];
+        putInt(header, 0, length);
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(typeBytes, 0, header, 4, 4);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, offset, length);
+        out.write(header);
+        out.write(data, offset, length);
+        byte[] trailer = new byte[4];
+        putInt(trailer, 0, (int) crc.getValue());
+        out.write(trailer);
+    }
+
+    static void putInt(byte[] target, int offset, int value) {
+        target[offset] = (byte) (value >>> 24);
+        target[offset + 1] = (byte) (value >>> 16);
+        target[offset + 2] = (byte) (value >>> 8);
+        target[offset + 3] = (byte) value;
+    }
+
+    /**
+     * Combines the Adler-32 checksums of two consecutive byte sequences, the second one being
+     * {@code length2} bytes long (same as zlib adler32_combine)
+     */
+    static long adler32Combine(long adler1, long adler2, long length2) {
+        final long base = 65521;
+        long remainder = length2 % base;
+        long sum1 = adler1 & 0xFFFF;
+        long sum2 = (remainder * sum1) % base;
+        sum1 += (adler2 & 0xFFFF) + base - 1;
+        sum2 += ((adler1 >> 16) & 0xFFFF) + ((adler2 >> 16) & 0xFFFF) + base - remainder;
+        if (sum1 >= base) {
+            sum1 -= base;
+        }
+        if (sum1 >= base) {
+            sum1 -= base;
+        }
+        if (sum2 >= (base << 1)) {
+            sum2 -= (base << 1);
+        }
+        if (sum2 >= base) {
+            sum2 -= base;
+        }
+        return sum1 | (sum2 << 16);
+    }
+
+    static int getThreads() {
+        return GeoServerExtensions.getIntegerProperty(THREADS_PROPERTY,
+                Runtime.getRuntime().availableProcessors());
+    }
+
+    static ExecutorService getPool() {
+        if (POOL == null) {
+            synchronized (ParallelPNGEncoder.class) {
+                if (POOL == null) {
+                    AtomicInteger counter = new AtomicInteger();
+                    POOL = Executors.newFixedThreadPool(Math.max(1, THREADS), r -> {
+                        Thread t = new Thread(r, "PNGEncoder-" + counter.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    });
+                }
+            }
+        }
+        return POOL;
+    }
+
+    /**
+     * The per thread reusable state
+     */
+    static class EncoderState {
+
+        Deflater deflater;
+
+        int level = -1;
+
+        byte[] previous = new byte[0];
+
+        byte[] current = new byte[0];
+
+        byte[] candidate = new byte[0];
+
+        byte[] filtered = new byte[0];
+
+        byte[] buffer = new byte[64 * 1024];
+
+        int[] samples = new int[0];
+
+        void ensureCapacity(int rowBytes, int numSamples) {
+            if (current.length < rowBytes) {
+                previous = new byte[rowBytes];
+                current = new byte[rowBytes];
+                candidate = new byte[rowBytes];
+                filtered = new byte[rowBytes + 1];
+            }
+            if (samples.length < numSamples) {
+                samples = new int[numSamples];
+            }
+        }
+
+        /**
+         * Returns a reset raw deflater, changing the level of a used deflater is not safe once a
+         * dictionary is set, so a new one is created when the level changes
+         */
+        Deflater getDeflater(int level) {
+            if (deflater == null || this.level != level) {
+                if (deflater != null) {
+                    deflater.end();
+                }
+                deflater = new Deflater(level, true);
+                this.level = level;
+            } else {
+                deflater.reset();
+            }
+            return deflater;
+        }
+
+        void swapRows() {
+            byte[] temp = previous;
+            previous = current;
+            current = temp;
+        }
+    }
+
+    /**
+     * A growable byte array receiving the deflater output
+     */
+    static class ByteSink {
+
+        byte[] data;
+
+        int length;
+
+        ByteSink(int capacity) {
+            data = new byte[capacity];
+        }
+
+        int deflate(Deflater deflater, byte[] buffer, int flush) {
+            int count = deflater.deflate(buffer, 0, buffer.length, flush);
+            if (length + count > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, length + count));
+            }
+            System.arraycopy(buffer, 0, data, length, count);
+            length += count;
+            return count;
+        }
+    }
+
+    static class CompressedBand {
+
+        final byte[] data;
+
+        final int length;
+
+        final long adler;
+
+        final long rawLength;
+
+        CompressedBand(byte[] data, int length, long adler, long rawLength) {
+            this.data = data;
+            this.length = length;
+            this.adler = adler;
+            this.rawLength = rawLength;
+        }
+    }
+}
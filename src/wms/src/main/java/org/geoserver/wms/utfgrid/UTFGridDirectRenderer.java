@@ -0,0 +1,434 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.utfgrid;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geoserver.wms.WMS;
+import org.geoserver.wms.WMSMapContent;
+import org.geotools.data.FeatureSource;
+import org.geotools.data.Query;
+import org.geotools.factory.CommonFactoryFinder;
+import org.geotools.feature.FeatureCollection;
+import org.geotools.feature.FeatureIterator;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.map.FeatureLayer;
+import org.geotools.map.Layer;
+import org.geotools.referencing.CRS;
+import org.geotools.renderer.lite.RendererUtilities;
+import org.geotools.styling.Displacement;
+import org.geotools.styling.Fill;
+import org.geotools.styling.FeatureTypeStyle;
+import org.geotools.styling.Graphic;
+import org.geotools.styling.LineSymbolizer;
+import org.geotools.styling.Mark;
+import org.geotools.styling.PointSymbolizer;
+import org.geotools.styling.PolygonSymbolizer;
+import org.geotools.styling.Rule;
+import org.geotools.styling.SLDStyleFactory;
+import org.geotools.styling.Stroke;
+import org.geotools.styling.Symbolizer;
+import org.geotools.util.logging.Logging;
+import org.opengis.feature.Feature;
+import org.opengis.feature.GeometryAttribute;
+import org.opengis.feature.type.FeatureType;
+import org.opengis.feature.type.GeometryDescriptor;
+import org.opengis.filter.Filter;
+import org.opengis.filter.FilterFactory2;
+import org.opengis.filter.expression.Expression;
+import org.opengis.filter.expression.Literal;
+import org.opengis.geometry.BoundingBox;
+import org.opengis.geometry.Envelope;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.opengis.style.GraphicalSymbol;
+
+import com.vividsolutions.jts.geom.Geometry;
+
+/**
+ * Paints the features of a {@link UTFGridMapContent} straight into a grid of feature keys, using
+ * a {@link UTFGridRasterizer}, instead of rendering them into an image and decoding the colors
+ * back into keys.
+ * <p>
+ * Only plain vector layers with simple styles can be painted this way, see
+ * {@link #canRender(UTFGridMapContent)}, the other maps have to go through the renderer.
+ * </p>
+ */
+class UTFGridDirectRenderer {
+
+    static final Logger LOGGER = Logging.getLogger(UTFGridDirectRenderer.class);
+
+    static final FilterFactory2 FF = CommonFactoryFinder.getFilterFactory2();
+
+    private final UTFGridMapContent mapContent;
+
+    /**
+     * The factor turning symbol sizes in pixels into grid cells
+     */
+    private final double sizeScale;
+
+    private final double scaleDenominator;
+
+    UTFGridDirectRenderer(UTFGridMapContent mapContent) {
+        this.mapContent = mapContent;
+        WMSMapContent original = mapContent.other;
+        this.sizeScale = getDpi(original) / RendererUtilities.getDpi(Collections.emptyMap())
+                * mapContent.getMapWidth() / original.getMapWidth();
+        this.scaleDenominator = original.getScaleDenominator(true);
+    }
+
+    private static double getDpi(WMSMapContent mapContent) {
+        Object dpi = mapContent.getRequest().getFormatOptions().get("dpi");
+        if (dpi != null) {
+            try {
+                return Double.parseDouble(dpi.toString());
+            } catch (NumberFormatException e) {
+                // the renderer would not use it either
+            }
+        }
+        return RendererUtilities.getDpi(Collections.emptyMap());
+    }
+
+    /**
+     * Checks the map can be painted directly: feature layers only, no map rotation, no rendering
+     * transformations nor feature type style options, points, lines and polygons styled with
+     * static fills and strokes, square or circle marks, no geometry functions or units of
+     * measure. Layers whose data cannot be reprojected in a straightforward way, because the map
+     * extends past the valid area of its CRS, are left to the renderer too.
+     */
+    static boolean canRender(UTFGridMapContent mapContent) {
+        if (mapContent.getAngle() != 0) {
+            return false;
+        }
+        ReferencedEnvelope area = mapContent.getRenderingArea();
+        for (Layer layer : mapContent.layers()) {
+            if (!(layer instanceof FeatureLayer)) {
+                LOGGER.log(Level.FINE, "Cannot paint directly layer {0}, not a feature layer",
+                        layer.getTitle());
+                return false;
+            }
+            if (!canReproject(area, layer.getFeatureSource().getSchema())) {
+                return false;
+            }
+            for (FeatureTypeStyle fts : layer.getStyle().featureTypeStyles()) {
+                if (!canRender(fts)) {
+                    LOGGER.log(Level.FINE, "Cannot paint directly layer {0}, unsupported style",
+                            layer.getTitle());
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean canReproject(ReferencedEnvelope area, FeatureType schema) {
+        CoordinateReferenceSystem mapCRS = area.getCoordinateReferenceSystem();
+        CoordinateReferenceSystem dataCRS = schema.getCoordinateReferenceSystem();
+        if (mapCRS == null || dataCRS == null || CRS.equalsIgnoreMetadata(mapCRS, dataCRS)) {
+            return true;
+        }
+        // past the CRS valid area the renderer would have to wrap, or cut, the geometries
+        Envelope validArea = CRS.getEnvelope(mapCRS);
+        return validArea != null
+                && ReferencedEnvelope.reference(validArea).contains((BoundingBox) area);
+    }
+
+    private static boolean canRender(FeatureTypeStyle fts) {
+        if (fts.getTransformation() != null) {
+            return false;
+        }
+        for (String option : fts.getOptions().keySet()) {
+            if (!FeatureTypeStyle.KEY_EVALUATION_MODE.equals(option)) {
+                return false;
+            }
+        }
+        for (Rule rule : fts.rules()) {
+            for (Symbolizer symbolizer : rule.symbolizers()) {
+                if (!canRender(symbolizer)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean canRender(Symbolizer symbolizer) {
+        if (symbolizer.getGeometry() != null || symbolizer.getUnitOfMeasure() != null) {
+            return false;
+        }
+        if (symbolizer instanceof PolygonSymbolizer) {
+            PolygonSymbolizer ps = (PolygonSymbolizer) symbolizer;
+            return ps.getDisplacement() == null && isZero(ps.getPerpendicularOffset());
+        } else if (symbolizer instanceof LineSymbolizer) {
+            return isZero(((LineSymbolizer) symbolizer).getPerpendicularOffset());
+        } else if (symbolizer instanceof PointSymbolizer) {
+            Graphic graphic = ((PointSymbolizer) symbolizer).getGraphic();
+            if (graphic == null) {
+                return true;
+            }
+            for (GraphicalSymbol symbol : graphic.graphicalSymbols()) {
+                // external graphics have been turned into squares already
+                if (!(symbol instanceof Mark)) {
+                    return false;
+                }
+                Mark mark = (Mark) symbol;
+                // hollow marks leave the interior out
+                if (mark.getFill() == null) {
+                    return false;
+                }
+                Expression name = mark.getWellKnownName();
+                if (name != null && !(name instanceof Literal)) {
+                    return false;
+                }
+                String wkn = name == null ? null : name.evaluate(null, String.class);
+                if (wkn != null && !"square".equalsIgnoreCase(wkn)
+                        && !"circle".equalsIgnoreCase(wkn)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private static boolean isZero(Expression expression) {
+        if (expression == null || Expression.NIL.equals(expression)) {
+            return true;
+        }
+        if (!(expression instanceof Literal)) {
+            return false;
+        }
+        Double value = expression.evaluate(null, Double.class);
+        return value == null || value == 0;
+    }
+
+    /**
+     * Paints the features, layer by layer, feature type style by feature type style, and returns
+     * the grid of feature keys
+     */
+    int[] render() throws IOException {
+        ReferencedEnvelope area = mapContent.getRenderingArea();
+        UTFGridRasterizer rasterizer = new UTFGridRasterizer(mapContent.getMapWidth(),
+                mapContent.getMapHeight(),
+                WMS.worldToScreenTransform(area, mapContent.getMapWidth(),
+                        mapContent.getMapHeight()));
+        UTFGridEntries entries = mapContent.getEntries();
+        for (Layer layer : mapContent.layers()) {
+            FeatureLayer featureLayer = (FeatureLayer) layer;
+            for (FeatureTypeStyle fts : layer.getStyle().featureTypeStyles()) {
+                List<Rule> rules = new ArrayList<>();
+                List<Rule> elseRules = new ArrayList<>();
+                for (Rule rule : fts.rules()) {
+                    if (rule.getMinScaleDenominator() <= scaleDenominator
+                            && rule.getMaxScaleDenominator() > scaleDenominator) {
+                        if (rule.isElseFilter()) {
+                            elseRules.add(rule);
+                        } else {
+                            rules.add(rule);
+                        }
+                    }
+                }
+                if (rules.isEmpty() && elseRules.isEmpty()) {
+                    continue;
+                }
+                boolean matchFirst = FeatureTypeStyle.VALUE_EVALUATION_MODE_FIRST
+                        .equals(fts.getOptions().get(FeatureTypeStyle.KEY_EVALUATION_MODE));
+                paint(rasterizer, entries, featureLayer, rules, elseRules, matchFirst, area);
+            }
+        }
+
+        return rasterizer.getGrid();
+    }
+
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private void paint(UTFGridRasterizer rasterizer, UTFGridEntries entries, FeatureLayer layer,
+            List<Rule> rules, List<Rule> elseRules, boolean matchFirst, ReferencedEnvelope area)
+            throws IOException {
+        FeatureSource source = layer.getFeatureSource();
+        Query query = getQuery(layer, area, getBuffer(rules, elseRules));
+        FeatureCollection features = source.getFeatures(query);
+        try (FeatureIterator it = features.features()) {
+            while (it.hasNext()) {
+                Feature feature = (Feature) it.next();
+                GeometryAttribute property = feature.getDefaultGeometryProperty();
+                if (property == null || !(property.getValue() instanceof Geometry)) {
+                    continue;
+                }
+                Geometry geometry = (Geometry) property.getValue();
+                boolean matched = false;
+                for (Rule rule : rules) {
+                    Filter filter = rule.getFilter();
+                    if (filter == null || filter.evaluate(feature)) {
+                        matched = true;
+                        paint(rasterizer, entries, feature, geometry, rule);
+                        if (matchFirst) {
+                            break;
+                        }
+                    }
+                }
+                if (!matched) {
+                    for (Rule rule : elseRules) {
+                        paint(rasterizer, entries, feature, geometry, rule);
+                        if (matchFirst) {
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The layer query, restricted to the map area, expanded by the given buffer in grid cells,
+     * and reprojected into the map CRS, if needed
+     */
+    private Query getQuery(FeatureLayer layer, ReferencedEnvelope area, double buffer)
+            throws IOException {
+        FeatureType schema = layer.getFeatureSource().getSchema();
+        ReferencedEnvelope queryArea = new ReferencedEnvelope(area);
+        queryArea.expandBy(buffer * area.getWidth() / mapContent.getMapWidth(),
+                buffer * area.getHeight() / mapContent.getMapHeight());
+        CoordinateReferenceSystem mapCRS = area.getCoordinateReferenceSystem();
+        CoordinateReferenceSystem dataCRS = schema.getCoordinateReferenceSystem();
+        boolean reproject = mapCRS != null && dataCRS != null
+                && !CRS.equalsIgnoreMetadata(mapCRS, dataCRS);
+        if (reproject) {
+            try {
+                queryArea = queryArea.transform(dataCRS, true);
+            } catch (Exception e) {
+                throw new IOException("Failed to reproject the map area to the layer CRS", e);
+            }
+        }
+
+        Query query = new Query(layer.getQuery());
+        query.setTypeName(schema.getName().getLocalPart());
+        GeometryDescriptor geometry = schema.getGeometryDescriptor();
+        if (geometry != null) {
+            Filter bbox = FF.bbox(FF.property(geometry.getName()), queryArea);
+            Filter filter = query.getFilter();
+            query.setFilter(filter == null || filter == Filter.INCLUDE ? bbox
+                    : FF.and(filter, bbox));
+        }
+        if (reproject) {
+            query.setCoordinateSystemReproject(mapCRS);
+        }
+        return query;
+    }
+
+    /**
+     * The map buffer, if set, or the largest static symbol size in the rules, in grid cells
+     */
+    private double getBuffer(List<Rule> rules, List<Rule> elseRules) {
+        if (mapContent.other.getBuffer() > 0) {
+            return mapContent.other.getBuffer() * sizeScale;
+        }
+        double buffer = 0;
+        List<Rule> allRules = new ArrayList<>(rules);
+        allRules.addAll(elseRules);
+        for (Rule rule : allRules) {
+            for (Symbolizer symbolizer : rule.symbolizers()) {
+                Double size = null;
+                if (symbolizer instanceof PointSymbolizer) {
+                    Graphic graphic = ((PointSymbolizer) symbolizer).getGraphic();
+                    size = graphic == null ? null : evaluate(graphic.getSize(), null);
+                } else if (symbolizer instanceof LineSymbolizer) {
+                    Stroke stroke = ((LineSymbolizer) symbolizer).getStroke();
+                    size = stroke == null ? null : evaluate(stroke.getWidth(), null);
+                } else if (symbolizer instanceof PolygonSymbolizer) {
+                    Stroke stroke = ((PolygonSymbolizer) symbolizer).getStroke();
+                    size = stroke == null ? null : evaluate(stroke.getWidth(), null);
+                }
+                if (size != null) {
+                    buffer = Math.max(buffer, size * sizeScale / 2);
+                }
+            }
+        }
+        return Math.ceil(buffer);
+    }
+
+    private void paint(UTFGridRasterizer rasterizer, UTFGridEntries entries, Feature feature,
+            Geometry geometry, Rule rule) {
+        for (Symbolizer symbolizer : rule.symbolizers()) {
+            if (symbolizer instanceof PolygonSymbolizer) {
+                PolygonSymbolizer ps = (PolygonSymbolizer) symbolizer;
+                Fill fill = ps.getFill();
+                if (fill != null) {
+                    rasterizer.fill(geometry, entries.getKeyForFeature(feature));
+                }
+                Stroke stroke = ps.getStroke();
+                if (stroke != null) {
+                    rasterizer.stroke(geometry, getStrokeWidth(stroke, feature),
+                            entries.getKeyForFeature(feature));
+                }
+            } else if (symbolizer instanceof LineSymbolizer) {
+                Stroke stroke = ((LineSymbolizer) symbolizer).getStroke();
+                if (stroke != null) {
+                    rasterizer.stroke(geometry, getStrokeWidth(stroke, feature),
+                            entries.getKeyForFeature(feature));
+                }
+            } else if (symbolizer instanceof PointSymbolizer) {
+                paintMark(rasterizer, entries, feature, geometry,
+                        ((PointSymbolizer) symbolizer).getGraphic());
+            }
+        }
+    }
+
+    private double getStrokeWidth(Stroke stroke, Feature feature) {
+        Double width = evaluate(stroke.getWidth(), feature);
+        return (width == null ? 1 : width) * sizeScale;
+    }
+
+    private void paintMark(UTFGridRasterizer rasterizer, UTFGridEntries entries,
+            Feature feature, Geometry geometry, Graphic graphic) {
+        double size = SLDStyleFactory.DEFAULT_MARK_SIZE;
+        double rotation = 0;
+        double dx = 0;
+        double dy = 0;
+        boolean circle = false;
+        if (graphic != null) {
+            Double value = evaluate(graphic.getSize(), feature);
+            if (value != null) {
+                size = value;
+            }
+            value = evaluate(graphic.getRotation(), feature);
+            if (value != null) {
+                rotation = value;
+            }
+            Displacement displacement = graphic.getDisplacement();
+            if (displacement != null) {
+                Double x = evaluate(displacement.getDisplacementX(), feature);
+                Double y = evaluate(displacement.getDisplacementY(), feature);
+                dx = x == null ? 0 : x;
+                dy = y == null ? 0 : -y;
+            }
+            if (graphic.getAnchorPoint() != null) {
+                Double x = evaluate(graphic.getAnchorPoint().getAnchorPointX(), feature);
+                Double y = evaluate(graphic.getAnchorPoint().getAnchorPointY(), feature);
+                dx += (0.5 - (x == null ? 0.5 : x)) * size;
+                dy -= (0.5 - (y == null ? 0.5 : y)) * size;
+            }
+            // the first symbol is the one the renderer picks
+            for (GraphicalSymbol symbol : graphic.graphicalSymbols()) {
+                Expression name = ((Mark) symbol).getWellKnownName();
+                circle = name != null
+                        && "circle".equalsIgnoreCase(name.evaluate(null, String.class));
+                break;
+            }
+        }
+        rasterizer.mark(geometry, size * sizeScale, circle, rotation, dx * sizeScale,
+                dy * sizeScale, entries.getKeyForFeature(feature));
+    }
+
+    private Double evaluate(Expression expression, Feature feature) {
+        if (expression == null || Expression.NIL.equals(expression)) {
+            return null;
+        }
+        return expression.evaluate(feature, Double.class);
+    }
+}
@@ -31,11 +31,21 @@ public class UTFGridMap extends RawMap {
 
     private RenderedImage image;
 
+    private int[] grid;
+
 
     public UTFGridMap(final UTFGridMapContent mapContent, RenderedImage image) {
         super(mapContent, (byte[]) null, UTFGridMapOutputFormat.MIME_TYPE);
         this.image = image;
     }
+
+    /**
+     * Builds a map out of a grid of feature values, row by row, as big as the map content
+     */
+    public UTFGridMap(final UTFGridMapContent mapContent, int[] grid) {
+        super(mapContent, (byte[]) null, UTFGridMapOutputFormat.MIME_TYPE);
+        this.grid = grid;
+    }
     
     public void writeTo(java.io.OutputStream out) throws java.io.IOException {
         UTFGridEntries entries = getEntries();
@@ -43,7 +53,7 @@ public class UTFGridMap extends RawMap {
         PrintWriter pw = new PrintWriter(out);
         pw.println("{");
         pw.println("\"grid\": [");
-        List<UTFGridEntry> encodedEntries = writeGrid(pw, image, entries);
+        List<UTFGridEntry> encodedEntries = writeGrid(pw, entries);
         pw.println("],");
         pw.println("\"keys\": [");
         if(encodedEntries.isEmpty()) {
@@ -119,22 +129,31 @@ public class UTFGridMap extends RawMap {
      * overwritten by other features)
      * 
      * @param pw
-     * @param image
      * @param entries
      *
      */
-    private List<UTFGridEntry> writeGrid(PrintWriter pw, RenderedImage image,
-            UTFGridEntries entries) {
+    private List<UTFGridEntry> writeGrid(PrintWriter pw, UTFGridEntries entries) {
         Map<Integer, UTFGridEntry> keyToFeature = entries.getEntryMap();
         List<UTFGridEntry> result = new ArrayList<UTFGridEntry>();
 
         int key = 1;
-        Raster data = getData(image);
-        int width = data.getWidth();
+        Raster data = null;
+        int width, height;
+        if (grid != null) {
+            width = mapContent.getMapWidth();
+            height = grid.length / width;
+        } else {
+            data = getData(image);
+            width = data.getWidth();
+            height = data.getHeight();
+        }
         int[] pixels = new int[width];
-        int height = data.getHeight();
         for (int r = 0; r < height; r++) {
-            data.getDataElements(0, r, width, 1, pixels);
+            if (data != null) {
+                data.getDataElements(0, r, width, 1, pixels);
+            } else {
+                System.arraycopy(grid, r * width, pixels, 0, width);
+            }
             pw.print("\"");
             for (int i = 0; i < pixels.length; i++) {
                 int pixel = pixels[i] & 0xFFFFFF;
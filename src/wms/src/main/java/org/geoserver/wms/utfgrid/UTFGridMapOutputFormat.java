@@ -12,9 +12,11 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.geoserver.platform.GeoServerExtensions;
 import org.geoserver.platform.ServiceException;
 import org.geoserver.wms.CachedGridReaderLayer;
 import org.geoserver.wms.MapProducerCapabilities;
@@ -38,6 +40,11 @@ import org.geotools.util.logging.Logging;
 
 /**
  * Handles a GetMap request that spects a map in UTFGrid format.
+ * <p>
+ * When {@value #RASTERIZER_KEY} is set to true, maps made of plain vector layers with simple
+ * styles are scan converted straight into the grid by the {@link UTFGridDirectRenderer}, the
+ * others are painted into an image by the renderer, one color per feature.
+ * </p>
  * 
  * @author Andrea Aime - GeoSolutions
  */
@@ -55,6 +62,11 @@ public class UTFGridMapOutputFormat extends AbstractMapOutputFormat {
      */
     static final int DEFAULT_UTFRESOLUTION = 4; 
 
+    /**
+     * System property enabling the direct scan conversion of features into the grid
+     */
+    public static final String RASTERIZER_KEY = "org.geoserver.wms.utfgrid.rasterizer";
+
     /**
      * Default capabilities for UTFGrid format.
      * 
@@ -71,9 +83,24 @@ public class UTFGridMapOutputFormat extends AbstractMapOutputFormat {
 
     private WMS wms;
 
+    private boolean rasterizerEnabled;
+
     public UTFGridMapOutputFormat(WMS wms) {
         super(MIME_TYPE, new String[] { OUTPUT_FORMAT_NAME });
         this.wms = wms;
+        this.rasterizerEnabled = Boolean
+                .parseBoolean(GeoServerExtensions.getProperty(RASTERIZER_KEY));
+    }
+
+    /**
+     * Enables or disables the direct scan conversion of features into the grid
+     */
+    public void setRasterizerEnabled(boolean rasterizerEnabled) {
+        this.rasterizerEnabled = rasterizerEnabled;
+    }
+
+    public boolean isRasterizerEnabled() {
+        return rasterizerEnabled;
     }
 
     public MapProducerCapabilities getCapabilities(String format) {
@@ -82,6 +109,13 @@ public class UTFGridMapOutputFormat extends AbstractMapOutputFormat {
 
     @Override
     public WebMap produceMap(WMSMapContent mapContent) throws ServiceException, IOException {
+        UTFGridEntries entries = new UTFGridEntries();
+        UTFGridMapContent utfGridMapContent = buildUTFGridMapContent(mapContent, entries);
+        if (rasterizerEnabled && UTFGridDirectRenderer.canRender(utfGridMapContent)) {
+            int[] grid = new UTFGridDirectRenderer(utfGridMapContent).render();
+            return new UTFGridMap(utfGridMapContent, grid);
+        }
+
         RenderedImageMapOutputFormat of = new RenderedImageMapOutputFormat(wms) {
             @Override
             protected StreamingRenderer buildRenderer() {
@@ -108,10 +142,14 @@ public class UTFGridMapOutputFormat extends AbstractMapOutputFormat {
                 hints.put(StreamingRenderer.DPI_KEY, dpi);
             }
 
+            @Override
+            protected ExecutorService getLayerRenderingPool() {
+                // the feature ids are assigned while painting, keep it sequential
+                return null;
+            }
+
         };
 
-        UTFGridEntries entries = new UTFGridEntries();
-        UTFGridMapContent utfGridMapContent = buildUTFGridMapContent(mapContent, entries);
         RenderedImageMap map = of.produceMap(utfGridMapContent);
         return new UTFGridMap(utfGridMapContent, map.getImage());
     }
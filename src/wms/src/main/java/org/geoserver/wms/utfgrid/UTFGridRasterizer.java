@@ -0,0 +1,402 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.utfgrid;
+
+import java.awt.geom.AffineTransform;
+import java.util.Arrays;
+
+import com.vividsolutions.jts.algorithm.locate.SimplePointInAreaLocator;
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.CoordinateSequence;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryCollection;
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.Location;
+import com.vividsolutions.jts.geom.MultiPoint;
+import com.vividsolutions.jts.geom.Point;
+import com.vividsolutions.jts.geom.Polygon;
+import com.vividsolutions.jts.linearref.LengthIndexedLine;
+
+/**
+ * Scan converts geometries straight into a grid of feature values, without going through an
+ * image.
+ * <p>
+ * A cell is painted when its center falls inside the shape being drawn, as a non antialiased
+ * Java2D rendering would do. Lines are drawn as a sequence of segments with square caps, at least
+ * one cell wide, marks are either squares or circles.
+ * </p>
+ */
+final class UTFGridRasterizer {
+
+    /**
+     * Lines thinner than this are still drawn one cell wide, so that they don't break up
+     */
+    static final double MIN_LINE_WIDTH = 1;
+
+    private final int width;
+
+    private final int height;
+
+    private final int[] grid;
+
+    private final AffineTransform worldToGrid;
+
+    /**
+     * Coordinates of the edges of the shape being filled, as x0, y0, x1, y1 sequences
+     */
+    private double[] edges = new double[64];
+
+    private int edgeCount;
+
+    private double[] crossings = new double[16];
+
+    private final double[] point = new double[2];
+
+    /**
+     * @param width The grid width
+     * @param height The grid height
+     * @param worldToGrid The transformation from the geometries coordinates to the grid ones
+     */
+    UTFGridRasterizer(int width, int height, AffineTransform worldToGrid) {
+        this.width = width;
+        this.height = height;
+        this.grid = new int[width * height];
+        this.worldToGrid = worldToGrid;
+    }
+
+    int getWidth() {
+        return width;
+    }
+
+    int getHeight() {
+        return height;
+    }
+
+    /**
+     * The grid values, row by row, zero where nothing has been painted
+     */
+    int[] getGrid() {
+        return grid;
+    }
+
+    /**
+     * Fills the polygons in the geometry with the given value
+     */
+    void fill(Geometry geometry, int value) {
+        for (int i = 0; i < geometry.getNumGeometries(); i++) {
+            Geometry g = geometry.getGeometryN(i);
+            if (g instanceof Polygon) {
+                Polygon polygon = (Polygon) g;
+                edgeCount = 0;
+                addRing(polygon.getExteriorRing().getCoordinateSequence());
+                for (int j = 0; j < polygon.getNumInteriorRing(); j++) {
+                    addRing(polygon.getInteriorRingN(j).getCoordinateSequence());
+                }
+                fillEdges(value);
+            } else if (g instanceof GeometryCollection) {
+                fill(g, value);
+            }
+        }
+    }
+
+    /**
+     * Draws the lines in the geometry, and the boundaries of its polygons, with the given value
+     *
+     * @param lineWidth The line width, in grid cells
+     */
+    void stroke(Geometry geometry, double lineWidth, int value) {
+        double halfWidth = Math.max(lineWidth, MIN_LINE_WIDTH) / 2;
+        for (int i = 0; i < geometry.getNumGeometries(); i++) {
+            Geometry g = geometry.getGeometryN(i);
+            if (g instanceof LineString) {
+                strokeLine(((LineString) g).getCoordinateSequence(), halfWidth, value);
+            } else if (g instanceof Polygon) {
+                Polygon polygon = (Polygon) g;
+                strokeLine(polygon.getExteriorRing().getCoordinateSequence(), halfWidth, value);
+                for (int j = 0; j < polygon.getNumInteriorRing(); j++) {
+                    strokeLine(polygon.getInteriorRingN(j).getCoordinateSequence(), halfWidth,
+                            value);
+                }
+            } else if (g instanceof GeometryCollection) {
+                stroke(g, lineWidth, value);
+            }
+        }
+    }
+
+    /**
+     * Draws a mark for each point in the geometry, or a single one in the middle of lines and
+     * polygons (of the largest one, for collections)
+     *
+     * @param size The mark size, in grid cells
+     * @param circle If true the mark is a circle, a square otherwise
+     * @param rotation The rotation of square marks, in degrees, clockwise
+     * @param dx The mark displacement from the anchor point, in grid cells
+     * @param dy The mark displacement from the anchor point, in grid cells, downwards
+     */
+    void mark(Geometry geometry, double size, boolean circle, double rotation, double dx,
+            double dy, int value) {
+        if (geometry instanceof MultiPoint) {
+            for (int i = 0; i < geometry.getNumGeometries(); i++) {
+                mark(geometry.getGeometryN(i), size, circle, rotation, dx, dy, value);
+            }
+            return;
+        }
+        Coordinate anchor = getAnchor(geometry);
+        if (anchor != null) {
+            point[0] = anchor.x;
+            point[1] = anchor.y;
+            worldToGrid.transform(point, 0, point, 0, 1);
+            double x = point[0] + dx;
+            double y = point[1] + dy;
+            double radius = size / 2;
+            if (circle) {
+                fillCircle(x, y, radius, value);
+            } else if (rotation % 90 == 0) {
+                fillRectangle(x - radius, y - radius, x + radius, y + radius, value);
+            } else {
+                double theta = Math.toRadians(rotation);
+                double cos = Math.cos(theta) * radius;
+                double sin = Math.sin(theta) * radius;
+                edgeCount = 0;
+                addQuad(x - cos + sin, y - sin - cos, x + cos + sin, y + sin - cos, x + cos - sin,
+                        y + sin + cos, x - cos - sin, y - sin + cos);
+                fillEdges(value);
+            }
+            // tiny marks are still visible
+            paintCell(x, y, value);
+        }
+    }
+
+    private Coordinate getAnchor(Geometry g) {
+        if (g instanceof GeometryCollection) {
+            g = getLargest((GeometryCollection) g);
+        }
+        if (g == null || g.isEmpty()) {
+            return null;
+        } else if (g instanceof Point) {
+            return g.getCoordinate();
+        } else if (g instanceof LineString) {
+            LengthIndexedLine line = new LengthIndexedLine(g);
+            return line.extractPoint(g.getLength() / 2);
+        } else {
+            Coordinate centroid = g.getCentroid().getCoordinate();
+            if (g instanceof Polygon
+                    && SimplePointInAreaLocator.locate(centroid, g) == Location.EXTERIOR) {
+                return g.getInteriorPoint().getCoordinate();
+            }
+            return centroid;
+        }
+    }
+
+    private Geometry getLargest(GeometryCollection collection) {
+        Geometry largest = null;
+        double largestSize = -1;
+        for (int i = 0; i < collection.getNumGeometries(); i++) {
+            Geometry g = collection.getGeometryN(i);
+            if (g instanceof GeometryCollection) {
+                g = getLargest((GeometryCollection) g);
+            }
+            if (g == null || g.isEmpty()) {
+                continue;
+            }
+            double size = g.getDimension() == 2 ? g.getArea() : g.getLength();
+            if (size > largestSize) {
+                largest = g;
+                largestSize = size;
+            }
+        }
+        return largest;
+    }
+
+    private void strokeLine(CoordinateSequence cs, double halfWidth, int value) {
+        int size = cs.size();
+        if (size == 0) {
+            return;
+        }
+        point[0] = cs.getX(0);
+        point[1] = cs.getY(0);
+        worldToGrid.transform(point, 0, point, 0, 1);
+        double x0 = point[0];
+        double y0 = point[1];
+        if (size == 1) {
+            fillRectangle(x0 - halfWidth, y0 - halfWidth, x0 + halfWidth, y0 + halfWidth, value);
+            return;
+        }
+        for (int i = 1; i < size; i++) {
+            point[0] = cs.getX(i);
+            point[1] = cs.getY(i);
+            worldToGrid.transform(point, 0, point, 0, 1);
+            double x1 = point[0];
+            double y1 = point[1];
+            strokeSegment(x0, y0, x1, y1, halfWidth, value);
+            x0 = x1;
+            y0 = y1;
+        }
+    }
+
+    /**
+     * Fills the rectangle around the segment, extended by half the line width at both ends, so
+     * that the joins between segments are covered
+     */
+    private void strokeSegment(double x0, double y0, double x1, double y1, double halfWidth,
+            int value) {
+        double dx = x1 - x0;
+        double dy = y1 - y0;
+        double length = Math.sqrt(dx * dx + dy * dy);
+        if (length == 0) {
+            fillRectangle(x0 - halfWidth, y0 - halfWidth, x0 + halfWidth, y0 + halfWidth, value);
+            return;
+        }
+        // skip segments that are fully outside of the grid
+        if (Math.max(x0, x1) + halfWidth < 0 || Math.min(x0, x1) - halfWidth > width
+                || Math.max(y0, y1) + halfWidth < 0 || Math.min(y0, y1) - halfWidth > height) {
+            return;
+        }
+        double ux = dx / length * halfWidth;
+        double uy = dy / length * halfWidth;
+        // the normal is (-uy, ux)
+        edgeCount = 0;
+        addQuad(x0 - ux - uy, y0 - uy + ux, x1 + ux - uy, y1 + uy + ux, x1 + ux + uy,
+                y1 + uy - ux, x0 - ux + uy, y0 - uy - ux);
+        fillEdges(value);
+    }
+
+    private void addRing(CoordinateSequence cs) {
+        int size = cs.size();
+        if (size < 3) {
+            return;
+        }
+        point[0] = cs.getX(0);
+        point[1] = cs.getY(0);
+        worldToGrid.transform(point, 0, point, 0, 1);
+        double firstX = point[0];
+        double firstY = point[1];
+        double x0 = firstX;
+        double y0 = firstY;
+        for (int i = 1; i < size; i++) {
+            point[0] = cs.getX(i);
+            point[1] = cs.getY(i);
+            worldToGrid.transform(point, 0, point, 0, 1);
+            addEdge(x0, y0, point[0], point[1]);
+            x0 = point[0];
+            y0 = point[1];
+        }
+        // close the ring, in case it's not
+        addEdge(x0, y0, firstX, firstY);
+    }
+
+    private void addQuad(double x0, double y0, double x1, double y1, double x2, double y2,
+            double x3, double y3) {
+        addEdge(x0, y0, x1, y1);
+        addEdge(x1, y1, x2, y2);
+        addEdge(x2, y2, x3, y3);
+        addEdge(x3, y3, x0, y0);
+    }
+
+    private void addEdge(double x0, double y0, double x1, double y1) {
+        if (y0 == y1) {
+            // horizontal edges never cross a scan line
+            return;
+        }
+        int offset = edgeCount * 4;
+        if (offset + 4 > edges.length) {
+            edges = Arrays.copyOf(edges, edges.length * 2);
+        }
+        edges[offset] = x0;
+        edges[offset + 1] = y0;
+        edges[offset + 2] = x1;
+        edges[offset + 3] = y1;
+        edgeCount++;
+    }
+
+    /**
+     * Fills the shape described by the collected edges, using the even-odd rule
+     */
+    private void fillEdges(int value) {
+        if (edgeCount == 0) {
+            return;
+        }
+        double minY = Double.POSITIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < edgeCount; i++) {
+            double y0 = edges[i * 4 + 1];
+            double y1 = edges[i * 4 + 3];
+            minY = Math.min(minY, Math.min(y0, y1));
+            maxY = Math.max(maxY, Math.max(y0, y1));
+        }
+        // the rows whose center is within the shape vertical extent
+        int firstRow = Math.max(0, (int) Math.ceil(minY - 0.5));
+        int lastRow = Math.min(height - 1, (int) Math.floor(maxY - 0.5));
+        for (int row = firstRow; row <= lastRow; row++) {
+            double cy = row + 0.5;
+            int count = 0;
+            for (int i = 0; i < edgeCount; i++) {
+                int offset = i * 4;
+                double y0 = edges[offset + 1];
+                double y1 = edges[offset + 3];
+                if ((y0 <= cy && y1 > cy) || (y1 <= cy && y0 > cy)) {
+                    double x0 = edges[offset];
+                    double x1 = edges[offset + 2];
+                    if (count == crossings.length) {
+                        crossings = Arrays.copyOf(crossings, count * 2);
+                    }
+                    crossings[count++] = x0 + (cy - y0) * (x1 - x0) / (y1 - y0);
+                }
+            }
+            if (count > 2) {
+                Arrays.sort(crossings, 0, count);
+            } else if (count == 2 && crossings[0] > crossings[1]) {
+                double tmp = crossings[0];
+                crossings[0] = crossings[1];
+                crossings[1] = tmp;
+            }
+            for (int i = 0; i + 1 < count; i += 2) {
+                fillSpan(row, crossings[i], crossings[i + 1], value);
+            }
+        }
+    }
+
+    /**
+     * Paints the cells in the row whose center is between the two given x ordinates
+     */
+    private void fillSpan(int row, double minX, double maxX, int value) {
+        int first = Math.max(0, (int) Math.ceil(minX - 0.5));
+        int last = Math.min(width - 1, (int) Math.ceil(maxX - 0.5) - 1);
+        if (first <= last) {
+            int offset = row * width;
+            Arrays.fill(grid, offset + first, offset + last + 1, value);
+        }
+    }
+
+    private void fillRectangle(double minX, double minY, double maxX, double maxY, int value) {
+        int firstRow = Math.max(0, (int) Math.ceil(minY - 0.5));
+        int lastRow = Math.min(height - 1, (int) Math.ceil(maxY - 0.5) - 1);
+        for (int row = firstRow; row <= lastRow; row++) {
+            fillSpan(row, minX, maxX, value);
+        }
+    }
+
+    private void fillCircle(double x, double y, double radius, int value) {
+        int firstRow = Math.max(0, (int) Math.ceil(y - radius - 0.5));
+        int lastRow = Math.min(height - 1, (int) Math.floor(y + radius - 0.5));
+        for (int row = firstRow; row <= lastRow; row++) {
+            double dy = row + 0.5 - y;
+            double dx = Math.sqrt(Math.max(radius * radius - dy * dy, 0));
+            // include the cells touching the circle boundary
+            int first = Math.max(0, (int) Math.ceil(x - dx - 0.5));
+            int last = Math.min(width - 1, (int) Math.floor(x + dx - 0.5));
+            if (first <= last) {
+                int offset = row * width;
+                Arrays.fill(grid, offset + first, offset + last + 1, value);
+            }
+        }
+    }
+
+    private void paintCell(double x, double y, int value) {
+        if (x >= 0 && x < width && y >= 0 && y < height) {
+            grid[(int) y * width + (int) x] = value;
+        }
+    }
+}
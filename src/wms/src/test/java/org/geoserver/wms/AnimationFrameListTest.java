@@ -0,0 +1,120 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.RenderedImage;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.geoserver.platform.ServiceException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AnimationFrameListTest extends WMSTestSupport {
+
+    ExecutorService executor;
+
+    @Before
+    public void setupExecutor() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void shutdownExecutor() {
+        executor.shutdownNow();
+    }
+
+    MaxAnimationTimeHelper getTimeHelper(Integer timeout) {
+        GetMapRequest request = new GetMapRequest();
+        Map<String, Object> formatOptions = new HashMap<String, Object>();
+        if (timeout != null) {
+            formatOptions.put("timeout", timeout);
+        }
+        request.setFormatOptions(formatOptions);
+        return new MaxAnimationTimeHelper(getWMS(), request);
+    }
+
+    @Test
+    public void testFramesInOrderWithinWindow() throws Exception {
+        final int window = 2;
+        final AtomicInteger maxStarted = new AtomicInteger(-1);
+        AnimationFrameList frames = new AnimationFrameList(executor, window, 10,
+                getTimeHelper(null), frame -> {
+                    maxStarted.accumulateAndGet(frame, Math::max);
+                    // make the later frames complete first
+                    Thread.sleep(10 * (10 - frame));
+                    return new BufferedImage(frame + 1, 1, BufferedImage.TYPE_INT_ARGB);
+                });
+
+        assertEquals(10, frames.size());
+        for (int i = 0; i < 10; i++) {
+            RenderedImage image = (RenderedImage) frames.get(i);
+            assertEquals(i + 1, image.getWidth());
+            assertTrue(maxStarted.get() < i + window);
+        }
+        // the first frame is kept, the others are released once past them
+        assertNotNull(frames.get(0));
+        assertEquals(1, frames.getWidth());
+        assertNull(frames.get(5));
+        assertNotNull(frames.get(9));
+    }
+
+    @Test
+    public void testFrameFailure() throws Exception {
+        final AtomicInteger rendered = new AtomicInteger();
+        AnimationFrameList frames = new AnimationFrameList(executor, 2, 10, getTimeHelper(null),
+                frame -> {
+                    if (frame == 2) {
+                        throw new IOException("Frame 2 is broken");
+                    }
+                    rendered.incrementAndGet();
+                    return new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+                });
+
+        frames.get(0);
+        frames.get(1);
+        try {
+            frames.get(2);
+            fail("Should have failed rendering frame 2");
+        } catch (ServiceException e) {
+            assertEquals("Failed to render animation frame 2", e.getMessage());
+        }
+        // the frames past the window were never rendered
+        assertTrue(rendered.get() <= 3);
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        AnimationFrameList frames = new AnimationFrameList(executor, 4, 4, getTimeHelper(200),
+                frame -> {
+                    if (frame == 1) {
+                        Thread.sleep(10000);
+                    }
+                    return new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+                });
+
+        frames.get(0);
+        long start = System.currentTimeMillis();
+        try {
+            frames.get(1);
+            fail("Should have timed out");
+        } catch (ServiceException e) {
+            assertTrue(e.getMessage().contains("This animation request used more time"));
+        }
+        assertTrue(System.currentTimeMillis() - start < 5000);
+    }
+}
@@ -0,0 +1,144 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+
+import net.opengis.wfs.FeatureCollectionType;
+
+import org.geoserver.data.test.MockData;
+import org.geoserver.wms.featureinfo.LayerIdentifier;
+import org.geotools.feature.FeatureCollection;
+import org.geotools.referencing.CRS;
+import org.junit.Test;
+
+import com.vividsolutions.jts.geom.Envelope;
+
+public class GetFeatureInfoParallelTest extends WMSTestSupport {
+
+    /**
+     * Builds a request hitting two overlapping features, a forest and a lake
+     */
+    GetFeatureInfoRequest buildRequest(int featureCount, QName... layerNames) throws Exception {
+        List<MapLayerInfo> layers = new ArrayList<MapLayerInfo>();
+        for (QName layerName : layerNames) {
+            layers.add(new MapLayerInfo(getCatalog().getLayerByName(getLayerId(layerName))));
+        }
+        GetMapRequest getMapRequest = new GetMapRequest();
+        getMapRequest.setLayers(layers);
+        getMapRequest.setSRS("EPSG:4326");
+        getMapRequest.setCrs(CRS.decode("EPSG:4326"));
+        getMapRequest.setBbox(new Envelope(-0.002356, 0.005631, -0.004819, 0.004781));
+        getMapRequest.setWidth(426);
+        getMapRequest.setHeight(512);
+
+        GetFeatureInfoRequest request = new GetFeatureInfoRequest();
+        request.setGetMapRequest(getMapRequest);
+        request.setQueryLayers(layers);
+        request.setXPixel(267);
+        request.setYPixel(325);
+        request.setFeatureCount(featureCount);
+        return request;
+    }
+
+    @SuppressWarnings("rawtypes")
+    List<String> getTypeNames(FeatureCollectionType results) {
+        List<String> names = new ArrayList<String>();
+        for (Object fc : results.getFeature()) {
+            names.add(((FeatureCollection) fc).getSchema().getName().getLocalPart());
+        }
+        return names;
+    }
+
+    @Test
+    public void testParallelKeepsRequestOrder() throws Exception {
+        GetFeatureInfo sequential = new GetFeatureInfo(1, 0);
+        GetFeatureInfo parallel = new GetFeatureInfo(4, 0);
+        try {
+            for (QName[] layers : new QName[][] { { MockData.FORESTS, MockData.LAKES },
+                    { MockData.LAKES, MockData.FORESTS } }) {
+                GetFeatureInfoRequest request = buildRequest(2, layers);
+                List<String> expected = getTypeNames(sequential.run(request));
+                assertEquals(2, expected.size());
+                assertEquals(layers[0].getLocalPart(), expected.get(0));
+                assertEquals(expected, getTypeNames(parallel.run(request)));
+            }
+        } finally {
+            parallel.destroy();
+        }
+    }
+
+    @Test
+    public void testParallelFeatureCount() throws Exception {
+        GetFeatureInfo parallel = new GetFeatureInfo(4, 0);
+        try {
+            // FEATURE_COUNT applies across layers, the first one uses it up
+            GetFeatureInfoRequest request = buildRequest(1, MockData.FORESTS, MockData.LAKES);
+            FeatureCollectionType results = parallel.run(request);
+            assertEquals(1, results.getFeature().size());
+            assertEquals(1, ((FeatureCollection<?, ?>) results.getFeature().get(0)).size());
+            assertEquals(MockData.FORESTS.getLocalPart(), getTypeNames(results).get(0));
+        } finally {
+            parallel.destroy();
+        }
+    }
+
+    @Test
+    public void testTimeoutPartialResults() throws Exception {
+        GetFeatureInfo parallel = new GetFeatureInfo(4, 500) {
+            @Override
+            List<LayerIdentifier> getLayerIdentifiers() {
+                List<LayerIdentifier> identifiers = new ArrayList<LayerIdentifier>();
+                for (LayerIdentifier identifier : super.getLayerIdentifiers()) {
+                    identifiers.add(new SlowForestsIdentifier(identifier));
+                }
+                return identifiers;
+            }
+        };
+        try {
+            GetFeatureInfoRequest request = buildRequest(2, MockData.FORESTS, MockData.LAKES);
+            FeatureCollectionType results = parallel.run(request);
+            // the forests did not make it in time, the lakes are still there
+            List<String> names = getTypeNames(results);
+            assertEquals(1, names.size());
+            assertEquals(MockData.LAKES.getLocalPart(), names.get(0));
+        } finally {
+            parallel.destroy();
+        }
+    }
+
+    /**
+     * Makes the identification of the forests layer take way longer than the request timeout
+     */
+    static class SlowForestsIdentifier implements LayerIdentifier {
+
+        LayerIdentifier delegate;
+
+        SlowForestsIdentifier(LayerIdentifier delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public boolean canHandle(MapLayerInfo layer) {
+            return delegate.canHandle(layer);
+        }
+
+        @SuppressWarnings("rawtypes")
+        @Override
+        public List<FeatureCollection> identify(FeatureInfoRequestParameters params,
+                int maxFeatures) throws Exception {
+            String name = params.getLayer().getFeature().getName();
+            if (MockData.FORESTS.getLocalPart().equals(name)) {
+                Thread.sleep(10000);
+            }
+            return delegate.identify(params, maxFeatures);
+        }
+    }
+}
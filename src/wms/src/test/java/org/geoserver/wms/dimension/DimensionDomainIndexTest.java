@@ -0,0 +1,178 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.dimension;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+import net.opengis.wfs.WfsFactory;
+
+import org.geoserver.catalog.DimensionInfo;
+import org.geoserver.catalog.DimensionPresentation;
+import org.geoserver.catalog.FeatureTypeInfo;
+import org.geoserver.catalog.ResourceInfo;
+import org.geoserver.wfs.TransactionEvent;
+import org.geoserver.wfs.TransactionEventType;
+import org.geoserver.wfs.request.TransactionRequest;
+import org.geoserver.wms.WMSDimensionsTestSupport;
+import org.geotools.data.DataUtilities;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+public class DimensionDomainIndexTest extends WMSDimensionsTestSupport {
+
+    DimensionDomainIndex index;
+
+    FeatureTypeInfo typeInfo;
+
+    DimensionInfo elevation;
+
+    @Before
+    public void setupIndex() throws Exception {
+        setupVectorDimension(ResourceInfo.ELEVATION, "elevation", DimensionPresentation.LIST,
+                null, UNITS, UNIT_SYMBOL);
+        typeInfo = getCatalog().getFeatureTypeByName(V_TIME_ELEVATION.getLocalPart());
+        elevation = typeInfo.getMetadata().get(ResourceInfo.ELEVATION, DimensionInfo.class);
+        index = new DimensionDomainIndex(getCatalog(), getResourceLoader(), true, 0, 1000);
+    }
+
+    @After
+    public void disposeIndex() throws Exception {
+        index.clear();
+        index.destroy();
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        DimensionDomainIndex disabled = new DimensionDomainIndex(getCatalog(),
+                getResourceLoader(), false, 0, 1000);
+        try {
+            assertNull(disabled.getDomain(typeInfo, ResourceInfo.ELEVATION, elevation));
+        } finally {
+            disabled.destroy();
+        }
+    }
+
+    @Test
+    public void testBuildDomain() throws Exception {
+        DimensionDomain domain = index.getDomain(typeInfo, ResourceInfo.ELEVATION, elevation);
+        assertNotNull(domain);
+        assertEquals(new TreeSet<>(Arrays.asList(0d, 1d, 2d, 3d)), domain.getValues());
+        assertEquals(0d, domain.getMin());
+        assertEquals(3d, domain.getMax());
+        assertEquals(Long.valueOf(1), domain.getCounts().get(2d));
+        // same instance until something changes
+        assertSame(domain, index.getDomain(typeInfo, ResourceInfo.ELEVATION, elevation));
+
+        // range bounds of a different type than the values
+        assertEquals(new TreeSet<>(Arrays.asList(1d, 2d)), domain.getValues(1, 2.5, 0));
+        assertEquals(new TreeSet<>(Arrays.asList(1d)), domain.getValues(1, 2.5, 1));
+        assertTrue(domain.getValues(3, 1, 0).isEmpty());
+    }
+
+    @Test
+    public void testTooManyValues() throws Exception {
+        DimensionDomainIndex small = new DimensionDomainIndex(getCatalog(), getResourceLoader(),
+                true, 0, 2);
+        try {
+            assertNull(small.getDomain(typeInfo, ResourceInfo.ELEVATION, elevation));
+        } finally {
+            small.destroy();
+        }
+    }
+
+    @Test
+    public void testPersistence() throws Exception {
+        index.getDomain(typeInfo, ResourceInfo.ELEVATION, elevation);
+        index.destroy();
+
+        index = new DimensionDomainIndex(getCatalog(), getResourceLoader(), true, 0, 1000);
+        DimensionDomainIndex.DomainKey key = new DimensionDomainIndex.DomainKey(typeInfo.getId(),
+                ResourceInfo.ELEVATION, "elevation");
+        DimensionDomain loaded = index.load(key);
+        assertNotNull(loaded);
+        assertEquals(new TreeSet<>(Arrays.asList(0d, 1d, 2d, 3d)), loaded.getValues());
+    }
+
+    @Test
+    public void testTransaction() throws Exception {
+        DimensionDomain domain = index.getDomain(typeInfo, ResourceInfo.ELEVATION, elevation);
+
+        // insert a new elevation and delete the feature at zero
+        TransactionRequest request = TransactionRequest
+                .adapt(WfsFactory.eINSTANCE.createTransactionType());
+        index.dataStoreChange(event(TransactionEventType.PRE_INSERT, request, 5d));
+        index.dataStoreChange(event(TransactionEventType.PRE_DELETE, request, 0d));
+        // move the feature at one to two
+        index.dataStoreChange(event(TransactionEventType.PRE_UPDATE, request, 1d));
+        index.dataStoreChange(event(TransactionEventType.POST_UPDATE, request, 2d));
+
+        // nothing changes until commit
+        assertEquals(new TreeSet<>(Arrays.asList(0d, 1d, 2d, 3d)), domain.getValues());
+        index.transactionEnded(request, true);
+        assertEquals(new TreeSet<>(Arrays.asList(2d, 3d, 5d)), domain.getValues());
+        assertEquals(Long.valueOf(2), domain.getCounts().get(2d));
+        assertEquals(1, domain.getModifications());
+    }
+
+    @Test
+    public void testRollback() throws Exception {
+        DimensionDomain domain = index.getDomain(typeInfo, ResourceInfo.ELEVATION, elevation);
+
+        TransactionRequest request = TransactionRequest
+                .adapt(WfsFactory.eINSTANCE.createTransactionType());
+        index.dataStoreChange(event(TransactionEventType.PRE_INSERT, request, 5d));
+        index.transactionEnded(request, false);
+
+        assertEquals(new TreeSet<>(Arrays.asList(0d, 1d, 2d, 3d)), domain.getValues());
+        assertEquals(0, domain.getModifications());
+    }
+
+    @Test
+    public void testCatalogChangeDropsDomain() throws Exception {
+        DimensionDomain domain = index.getDomain(typeInfo, ResourceInfo.ELEVATION, elevation);
+        typeInfo.setTitle("Another title");
+        getCatalog().save(typeInfo);
+        typeInfo = getCatalog().getFeatureTypeByName(V_TIME_ELEVATION.getLocalPart());
+
+        DimensionDomain rebuilt = index.getDomain(typeInfo, ResourceInfo.ELEVATION, elevation);
+        assertNotNull(rebuilt);
+        assertTrue(domain != rebuilt);
+    }
+
+    @Test
+    public void testApplyChanges() throws Exception {
+        Map<Object, Long> counts = new HashMap<>();
+        counts.put(10d, 1l);
+        counts.put(20d, 2l);
+        DimensionDomain domain = new DimensionDomain("elevation", counts);
+        assertEquals(new TreeSet<>(Arrays.asList(10d, 20d)), domain.getValues());
+        domain.apply(Collections.singletonMap(20d, -2l));
+        assertEquals(new TreeSet<>(Arrays.asList(10d)), domain.getValues());
+    }
+
+    TransactionEvent event(TransactionEventType type, TransactionRequest request,
+            double elevation) throws Exception {
+        SimpleFeatureType featureType = DataUtilities.createType(V_TIME_ELEVATION.getLocalPart(),
+                "elevation:double");
+        SimpleFeature feature = SimpleFeatureBuilder.build(featureType,
+                new Object[] { elevation }, null);
+        return new TransactionEvent(type, request, V_TIME_ELEVATION,
+                DataUtilities.collection(feature));
+    }
+}
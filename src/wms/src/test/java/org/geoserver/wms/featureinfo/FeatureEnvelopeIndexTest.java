@@ -0,0 +1,86 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.featureinfo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import org.geoserver.wms.featureinfo.FeatureEnvelopeIndex.Entry;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.junit.Test;
+
+import com.vividsolutions.jts.geom.Envelope;
+
+public class FeatureEnvelopeIndexTest {
+
+    /**
+     * A grid of points, one per unit, with ids "x_y"
+     */
+    static List<Entry> grid(int size) {
+        List<Entry> entries = new ArrayList<>();
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                entries.add(new Entry(x + "_" + y, new Envelope(x, x, y, y)));
+            }
+        }
+        return entries;
+    }
+
+    @Test
+    public void testQuery() {
+        FeatureEnvelopeIndex index = new FeatureEnvelopeIndex(DefaultGeographicCRS.WGS84,
+                grid(10));
+        assertEquals(100, index.size());
+        assertEquals(Collections.singleton("3_4"), index.query(new Envelope(2.5, 3.5, 3.5, 4.5)));
+        assertEquals(4, index.query(new Envelope(2, 3, 2, 3)).size());
+        assertTrue(index.query(new Envelope(20, 30, 20, 30)).isEmpty());
+    }
+
+    @Test
+    public void testApplyChanges() {
+        FeatureEnvelopeIndex index = new FeatureEnvelopeIndex(DefaultGeographicCRS.WGS84,
+                grid(10));
+        // delete one, move another, add a new one
+        index.apply(Arrays.asList("1_1", "2_2"), Arrays.asList(
+                new Entry("2_2", new Envelope(50, 50, 50, 50)),
+                new Entry("new", new Envelope(1, 1, 1, 1))));
+        assertEquals(100, index.size());
+        assertEquals(Collections.singleton("new"), index.query(new Envelope(0.5, 1.5, 0.5, 1.5)));
+        assertTrue(index.query(new Envelope(1.5, 2.5, 1.5, 2.5)).isEmpty());
+        assertEquals(Collections.singleton("2_2"), index.query(new Envelope(49, 51, 49, 51)));
+
+        // move the new one again, the old position has to go
+        index.apply(Collections.singletonList("new"),
+                Collections.singletonList(new Entry("new", new Envelope(60, 60, 60, 60))));
+        assertTrue(index.query(new Envelope(0.5, 1.5, 0.5, 1.5)).isEmpty());
+        assertEquals(Collections.singleton("new"), index.query(new Envelope(59, 61, 59, 61)));
+    }
+
+    @Test
+    public void testRebuild() {
+        FeatureEnvelopeIndex index = new FeatureEnvelopeIndex(DefaultGeographicCRS.WGS84,
+                grid(10));
+        // enough changes to trigger a rebuild of the tree
+        List<String> removed = new ArrayList<>();
+        List<Entry> added = new ArrayList<>();
+        for (Entry entry : grid(40)) {
+            removed.add(entry.id);
+            added.add(new Entry(entry.id, new Envelope(entry.envelope.getMinX() + 100,
+                    entry.envelope.getMaxX() + 100, entry.envelope.getMinY(),
+                    entry.envelope.getMaxY())));
+        }
+        index.apply(removed, added);
+        assertEquals(1600, index.size());
+        assertTrue(index.query(new Envelope(0, 9, 0, 9)).isEmpty());
+        Set<String> moved = index.query(new Envelope(102.5, 103.5, 3.5, 4.5));
+        assertEquals(Collections.singleton("3_4"), moved);
+    }
+}
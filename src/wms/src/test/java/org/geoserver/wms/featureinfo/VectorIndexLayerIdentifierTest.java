@@ -0,0 +1,157 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.featureinfo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.geoserver.catalog.FeatureTypeInfo;
+import org.geoserver.data.test.MockData;
+import org.geoserver.wms.FeatureInfoRequestParameters;
+import org.geoserver.wms.GetFeatureInfoRequest;
+import org.geoserver.wms.GetMapRequest;
+import org.geoserver.wms.MapLayerInfo;
+import org.geoserver.wms.WMSTestSupport;
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.feature.FeatureCollection;
+import org.geotools.referencing.CRS;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vividsolutions.jts.geom.Envelope;
+
+public class VectorIndexLayerIdentifierTest extends WMSTestSupport {
+
+    FeatureInfoSpatialIndex index;
+
+    VectorIndexLayerIdentifier identifier;
+
+    @Before
+    public void setupIdentifier() {
+        index = new FeatureInfoSpatialIndex(getCatalog(), true, 0, 1000);
+        VectorBasicLayerIdentifier basic = new VectorBasicLayerIdentifier(getWMS());
+        identifier = new VectorIndexLayerIdentifier(getWMS(), index,
+                new VectorRenderingLayerIdentifier(getWMS(), basic), basic);
+    }
+
+    @After
+    public void disposeIndex() throws Exception {
+        index.destroy();
+    }
+
+    /**
+     * Builds a request on the points layer, its only point is at the center of the map
+     */
+    FeatureInfoRequestParameters buildParams(int x, int y) throws Exception {
+        List<MapLayerInfo> layers = new ArrayList<MapLayerInfo>();
+        layers.add(new MapLayerInfo(getCatalog().getLayerByName(getLayerId(MockData.POINTS))));
+        GetMapRequest getMapRequest = new GetMapRequest();
+        getMapRequest.setLayers(layers);
+        getMapRequest.setSRS("EPSG:32615");
+        getMapRequest.setCrs(CRS.decode("EPSG:32615"));
+        getMapRequest.setBbox(new Envelope(500000, 500100, 500000, 500100));
+        getMapRequest.setWidth(100);
+        getMapRequest.setHeight(100);
+
+        GetFeatureInfoRequest request = new GetFeatureInfoRequest();
+        request.setGetMapRequest(getMapRequest);
+        request.setQueryLayers(layers);
+        request.setXPixel(x);
+        request.setYPixel(y);
+        request.setFeatureCount(10);
+        return new FeatureInfoRequestParameters(request);
+    }
+
+    FeatureTypeInfo getPoints() {
+        return getCatalog().getFeatureTypeByName(getLayerId(MockData.POINTS));
+    }
+
+    @Test
+    public void testIndexBuiltOnDemand() throws Exception {
+        FeatureTypeInfo points = getPoints();
+        assertNull(index.getIndex(points));
+        // the index gets built in the background
+        long start = System.currentTimeMillis();
+        while (index.getIndex(points) == null && System.currentTimeMillis() - start < 10000) {
+            Thread.sleep(10);
+        }
+        assertNotNull(index.getIndex(points));
+        assertEquals(1, index.getIndex(points).size());
+    }
+
+    @Test
+    public void testSmallLayersNotIndexed() throws Exception {
+        FeatureInfoSpatialIndex large = new FeatureInfoSpatialIndex(getCatalog(), true, 100,
+                1000);
+        try {
+            assertNull(large.load(getPoints()));
+        } finally {
+            large.destroy();
+        }
+    }
+
+    @Test
+    public void testIdentify() throws Exception {
+        index.build(getPoints().getId());
+
+        FeatureInfoRequestParameters params = buildParams(50, 50);
+        assertTrue(identifier.isIndexable(params,
+                params.getLayer().getFeatureSource(true).getSchema(),
+                identifier.getActiveRules(params.getStyle(), params.getScaleDenominator())));
+        List<FeatureCollection> results = identifier.identify(params, 10);
+        assertEquals(1, results.size());
+        SimpleFeatureCollection fc = (SimpleFeatureCollection) results.get(0);
+        assertEquals(1, fc.size());
+        assertEquals("Points.0", fc.features().next().getID());
+
+        // away from the point, nothing found
+        assertTrue(identifier.identify(buildParams(10, 10), 10).isEmpty());
+    }
+
+    @Test
+    public void testIdentifyUsesIndex() throws Exception {
+        index.build(getPoints().getId());
+        // remove the point from the index only, it's not found anymore
+        index.getIndex(getPoints()).apply(Collections.singletonList("Points.0"),
+                Collections.<FeatureEnvelopeIndex.Entry> emptyList());
+        assertTrue(identifier.identify(buildParams(50, 50), 10).isEmpty());
+    }
+
+    @Test
+    public void testNotIndexableFallsBack() throws Exception {
+        index.build(getPoints().getId());
+        FeatureInfoRequestParameters params = buildParams(50, 50);
+        // a feature version is not something the index can handle
+        params.getGetMapRequest().setFeatureVersion("1");
+        assertFalse(identifier.isIndexable(params,
+                params.getLayer().getFeatureSource(true).getSchema(),
+                identifier.getActiveRules(params.getStyle(), params.getScaleDenominator())));
+    }
+
+    @Test
+    public void testCatalogChangeDropsIndex() throws Exception {
+        FeatureTypeInfo points = getPoints();
+        index.build(points.getId());
+        assertNotNull(index.getIndex(points));
+        String title = points.getTitle();
+        try {
+            points.setTitle("Changed");
+            getCatalog().save(points);
+            assertNull(index.getIndex(points));
+        } finally {
+            points = getPoints();
+            points.setTitle(title);
+            getCatalog().save(points);
+        }
+    }
+}
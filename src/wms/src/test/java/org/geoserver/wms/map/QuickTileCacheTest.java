@@ -6,13 +6,40 @@
 package org.geoserver.wms.map;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
 import java.awt.Point;
 import java.awt.geom.Point2D;
-
+import java.awt.image.BufferedImage;
+import java.awt.image.RenderedImage;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.xml.namespace.QName;
+
+import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.impl.CatalogImpl;
+import org.geoserver.catalog.impl.FeatureTypeInfoImpl;
+import org.geoserver.catalog.impl.NamespaceInfoImpl;
+import org.geoserver.catalog.impl.WorkspaceInfoImpl;
+import org.geoserver.wfs.TransactionEvent;
+import org.geoserver.wfs.TransactionEventType;
+import org.geoserver.wms.GetMapRequest;
+import org.geoserver.wms.map.QuickTileCache.MapKey;
+import org.geoserver.wms.map.QuickTileCache.MetaTileKey;
+import org.geotools.data.DataUtilities;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.referencing.crs.DefaultEngineeringCRS;
 import org.junit.Test;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
 
+import com.vividsolutions.jts.geom.Coordinate;
 import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.GeometryFactory;
 
 public class QuickTileCacheTest {
     QuickTileCache cache = new QuickTileCache();
@@ -67,4 +94,116 @@ public class QuickTileCacheTest {
         assertEquals(new Point(0, 2), cache.getTileOffsetsInMeta(box1, meta));
         assertEquals(new Point(1, 2), cache.getTileOffsetsInMeta(box2, meta));
     }
+
+    @Test
+    public void testRenderOnce() throws Exception {
+        MetaTileKey key = key("layer", 0, 0);
+        AtomicInteger renders = new AtomicInteger();
+        RenderedImage[] tiles = tiles();
+        for (int i = 0; i < 3; i++) {
+            RenderedImage tile = cache.getTile(key, request(0, 0), () -> {
+                renders.incrementAndGet();
+                return tiles;
+            });
+            assertSame(tiles[0], tile);
+        }
+        assertEquals(1, renders.get());
+        assertEquals(2, cache.getStatistics().getHitCount());
+        assertSame(tiles[4], cache.getTile(key, request(10, 10)));
+    }
+
+    @Test
+    public void testSizeBound() throws Exception {
+        // room for a single meta-tile
+        QuickTileCache cache = new QuickTileCache(9 * 256 * 256 * 4, false);
+        MetaTileKey k1 = key("layer", 0, 0);
+        MetaTileKey k2 = key("layer", 3, 0);
+        cache.storeTiles(k1, tiles());
+        cache.storeTiles(k2, tiles());
+        assertNull(cache.getTile(k1, request(0, 0)));
+        assertNotNull(cache.getTile(k2, request(30, 0)));
+        assertEquals(1, cache.getStatistics().getEvictionCount());
+    }
+
+    @Test
+    public void testOffHeap() throws Exception {
+        QuickTileCache cache = new QuickTileCache(QuickTileCache.DEFAULT_MAX_SIZE, true);
+        MetaTileKey key = key("layer", 0, 0);
+        RenderedImage[] tiles = tiles();
+        cache.storeTiles(key, tiles);
+        BufferedImage tile = (BufferedImage) cache.getTile(key, request(10, 10));
+        assertEquals(256, tile.getWidth());
+        assertEquals(tiles[4].getColorModel(), tile.getColorModel());
+        assertEquals(((BufferedImage) tiles[4]).getRGB(10, 10), tile.getRGB(10, 10));
+    }
+
+    @Test
+    public void testTransactionInvalidation() throws Exception {
+        MetaTileKey k1 = key("layer", 0, 0);
+        MetaTileKey k2 = key("layer", 30, 30);
+        MetaTileKey k3 = key("other", 0, 0);
+        cache.storeTiles(k1, tiles());
+        cache.storeTiles(k2, tiles());
+        cache.storeTiles(k3, tiles());
+
+        // a feature in the first meta-tile of the layer, only that one gets removed
+        SimpleFeatureType type = DataUtilities.createType("layer", "geom:Point");
+        SimpleFeature feature = SimpleFeatureBuilder.build(type,
+                new Object[] { new GeometryFactory().createPoint(new Coordinate(15, 15)) }, null);
+        cache.dataStoreChange(new TransactionEvent(TransactionEventType.POST_UPDATE, null,
+                new QName("http://test", "layer"), DataUtilities.collection(feature)));
+
+        assertNull(cache.getTile(k1, request(0, 0)));
+        assertNotNull(cache.getTile(k2, request(300, 300)));
+        assertNotNull(cache.getTile(k3, request(0, 0)));
+    }
+
+    @Test
+    public void testCatalogInvalidation() throws Exception {
+        Catalog catalog = new CatalogImpl();
+        NamespaceInfoImpl ns = new NamespaceInfoImpl();
+        ns.setPrefix("test");
+        ns.setURI("http://test");
+        FeatureTypeInfoImpl resource = new FeatureTypeInfoImpl(catalog);
+        resource.setNamespace(ns);
+        resource.setName("layer");
+
+        MetaTileKey k1 = key("layer", 0, 0);
+        MetaTileKey k2 = key("other", 0, 0);
+        cache.storeTiles(k1, tiles());
+        cache.storeTiles(k2, tiles());
+
+        // only the maps containing the modified layer are affected
+        cache.invalidate(catalog, resource);
+        assertNull(cache.getTile(k1, request(0, 0)));
+        assertNotNull(cache.getTile(k2, request(0, 0)));
+
+        // workspaces might affect anything
+        cache.invalidate(catalog, new WorkspaceInfoImpl());
+        assertNull(cache.getTile(k2, request(0, 0)));
+    }
+
+    MetaTileKey key(String layer, int x, int y) {
+        MapKey mapKey = new MapKey("layers=" + layer, 10d / 256, new Point2D.Double(0, 0));
+        mapKey.layerNames = Collections.singleton(new QName("http://test", layer).toString());
+        return new MetaTileKey(mapKey, new Point(x, y), new ReferencedEnvelope(x * 10,
+                x * 10 + 30, y * 10, y * 10 + 30, DefaultEngineeringCRS.GENERIC_2D));
+    }
+
+    GetMapRequest request(double minx, double miny) {
+        GetMapRequest request = new GetMapRequest();
+        request.setBbox(new Envelope(minx, minx + 10, miny, miny + 10));
+        request.setCrs(DefaultEngineeringCRS.GENERIC_2D);
+        return request;
+    }
+
+    RenderedImage[] tiles() {
+        RenderedImage[] tiles = new RenderedImage[9];
+        for (int i = 0; i < tiles.length; i++) {
+            BufferedImage tile = new BufferedImage(256, 256, BufferedImage.TYPE_INT_ARGB);
+            tile.setRGB(10, 10, 0xFF000000 + i);
+            tiles[i] = tile;
+        }
+        return tiles;
+    }
 }
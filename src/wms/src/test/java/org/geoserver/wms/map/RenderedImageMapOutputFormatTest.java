@@ -31,6 +31,8 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -89,6 +91,7 @@ import org.geotools.resources.coverage.FeatureUtilities;
 import org.geotools.resources.image.ImageUtilities;
 import org.geotools.styling.ChannelSelection;
 import org.geotools.styling.ChannelSelectionImpl;
+import org.geotools.styling.FeatureTypeStyle;
 import org.geotools.styling.RasterSymbolizer;
 import org.geotools.styling.SelectedChannelType;
 import org.geotools.styling.SelectedChannelTypeImpl;
@@ -1180,6 +1183,113 @@ public class RenderedImageMapOutputFormatTest extends WMSTestSupport {
 
     }
 
+    @Test
+    public void testParallelLayerGroups() throws Exception {
+        final FeatureTypeInfo ftInfo = getCatalog().getFeatureTypeByName(
+                MockData.BASIC_POLYGONS.getNamespaceURI(), MockData.BASIC_POLYGONS.getLocalPart());
+        FeatureSource fs = ftInfo.getFeatureSource(null, null);
+        StyleBuilder sb = new StyleBuilder();
+        Style polygon = sb.createStyle(sb.createPolygonSymbolizer());
+        Style label = sb.createStyle(sb.createTextSymbolizer(Color.BLACK,
+                sb.createFont("Serif", 10), "ID"));
+        Style composite = sb.createStyle(sb.createPolygonSymbolizer());
+        composite.featureTypeStyles().get(0).getOptions().put(FeatureTypeStyle.COMPOSITE,
+                "multiply");
+
+        List<Layer> layers = Arrays.asList(new FeatureLayer(fs, polygon),
+                new FeatureLayer(fs, polygon), new FeatureLayer(fs, composite),
+                new FeatureLayer(fs, polygon), new FeatureLayer(fs, label),
+                new FeatureLayer(fs, polygon));
+
+        // composition pulls in all the layers below, labels everything that follows
+        List<List<Layer>> groups = ParallelLayerRenderer.groupLayers(layers, layers.size());
+        assertEquals(3, groups.size());
+        assertEquals(layers.subList(0, 3), groups.get(0));
+        assertEquals(layers.subList(3, 4), groups.get(1));
+        assertEquals(layers.subList(4, 6), groups.get(2));
+
+        // the max groups (memory bound) is honored
+        groups = ParallelLayerRenderer.groupLayers(layers, 2);
+        assertEquals(2, groups.size());
+        assertEquals(layers.subList(0, 3), groups.get(0));
+        assertEquals(layers.subList(3, 6), groups.get(1));
+    }
+
+    @Test
+    public void testParallelLayerRenderingComposite() throws Exception {
+        // a layer multiplied over the two polygon layers below it
+        StyleBuilder sb = new StyleBuilder();
+        Style composite = sb.createStyle(sb.createPolygonSymbolizer(Color.RED));
+        composite.featureTypeStyles().get(0).getOptions().put(FeatureTypeStyle.COMPOSITE,
+                "multiply");
+        List<Layer> layers = Arrays.asList(layer(MockData.LAKES, null),
+                layer(MockData.FORESTS, null), layer(MockData.LAKES, composite),
+                layer(MockData.ROAD_SEGMENTS, null));
+        BufferedImage sequential = renderLayers(layers);
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            this.rasterMapProducer.setLayerRenderingPool(pool);
+            BufferedImage parallel = renderLayers(layers);
+            ImageAssert.assertEquals(sequential, parallel, 50);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private Layer layer(QName typeName, Style style) throws IOException {
+        FeatureTypeInfo ftInfo = getCatalog().getFeatureTypeByName(typeName.getNamespaceURI(),
+                typeName.getLocalPart());
+        if (style == null) {
+            style = getCatalog().getLayers(ftInfo).get(0).getDefaultStyle().getStyle();
+        }
+        return new FeatureLayer(ftInfo.getFeatureSource(null, null), style);
+    }
+
+    @Test
+    public void testParallelLayerRendering() throws Exception {
+        QName[] typeNames = new QName[] { MockData.LAKES, MockData.FORESTS,
+                MockData.STREAMS, MockData.ROAD_SEGMENTS, MockData.BUILDINGS, MockData.BRIDGES };
+        BufferedImage sequential = renderLayers(typeNames);
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            this.rasterMapProducer.setLayerRenderingPool(pool);
+            BufferedImage parallel = renderLayers(typeNames);
+            ImageAssert.assertEquals(sequential, parallel, 50);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private BufferedImage renderLayers(QName... typeNames) throws Exception {
+        List<Layer> layers = new ArrayList<>();
+        for (QName typeName : typeNames) {
+            layers.add(layer(typeName, null));
+        }
+        return renderLayers(layers);
+    }
+
+    private BufferedImage renderLayers(List<Layer> layers) throws Exception {
+        GetMapRequest request = new GetMapRequest();
+        final WMSMapContent map = new WMSMapContent();
+        map.setMapWidth(300);
+        map.setMapHeight(300);
+        map.setBgColor(Color.WHITE);
+        map.setTransparent(false);
+        map.setRequest(request);
+        map.getViewport().setBounds(new ReferencedEnvelope(-0.0042, 0.0042, -0.0024, 0.0024,
+                DefaultGeographicCRS.WGS84));
+        map.addLayers(layers);
+
+        request.setFormat(getMapFormat());
+        RenderedImageMap imageMap = this.rasterMapProducer.produceMap(map);
+        BufferedImage image = (BufferedImage) imageMap.getImage();
+        imageMap.dispose();
+        assertNotBlank("renderLayers", image);
+        return image;
+    }
+
     /**
      * This dummy producer adds no functionality to DefaultRasterMapOutputFormat, just implements a
      * void formatImageOutputStream to have a concrete class over which test that
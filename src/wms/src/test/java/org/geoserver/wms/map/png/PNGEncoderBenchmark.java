@@ -0,0 +1,138 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.map.png;
+
+import it.geosolutions.imageio.plugins.png.PNGWriter;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import ar.com.hjg.pngj.FilterType;
+
+/**
+ * Compares the PNGJ based {@link PNGWriter} with the {@link ParallelPNGEncoder} on images resembling
+ * typical maps: a vector map with lines, polygons and labels, a continuous raster, and a palette
+ * version of the vector map.
+ * <p>
+ * Not a unit test, run it with
+ * <code>mvn test-compile exec:java -Dexec.mainClass=org.geoserver.wms.map.png.PNGEncoderBenchmark -Dexec.classpathScope=test</code>
+ * or from the IDE.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PNGEncoderBenchmark {
+
+    @Param({ "1024", "2048" })
+    int size;
+
+    @Param({ "vector", "raster", "palette" })
+    String type;
+
+    BufferedImage image;
+
+    FilterType filterType;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        if ("raster".equals(type)) {
+            image = raster(size);
+            filterType = FilterType.FILTER_SUB;
+        } else {
+            image = vector(size, "palette".equals(type));
+            filterType = FilterType.FILTER_NONE;
+        }
+    }
+
+    static BufferedImage vector(int size, boolean palette) {
+        BufferedImage image = palette
+                ? new BufferedImage(size, size, BufferedImage.TYPE_BYTE_INDEXED)
+                : new BufferedImage(size, size, BufferedImage.TYPE_4BYTE_ABGR);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                RenderingHints.VALUE_ANTIALIAS_ON);
+        Random random = new Random(0);
+        for (int i = 0; i < 100; i++) {
+            graphics.setColor(new Color(random.nextInt(256), random.nextInt(256),
+                    random.nextInt(256), 160));
+            graphics.fillRect(random.nextInt(size), random.nextInt(size), random.nextInt(size / 4),
+                    random.nextInt(size / 4));
+        }
+        graphics.setStroke(new BasicStroke(2));
+        graphics.setColor(Color.DARK_GRAY);
+        for (int i = 0; i < 1000; i++) {
+            graphics.drawLine(random.nextInt(size), random.nextInt(size), random.nextInt(size),
+                    random.nextInt(size));
+        }
+        graphics.setFont(new Font("SansSerif", Font.PLAIN, 12));
+        graphics.setColor(Color.BLACK);
+        for (int i = 0; i < 200; i++) {
+            graphics.drawString("Label " + i, random.nextInt(size), random.nextInt(size));
+        }
+        graphics.dispose();
+        return image;
+    }
+
+    static BufferedImage raster(int size) {
+        BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_3BYTE_BGR);
+        Random random = new Random(0);
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                // a smooth surface with some noise, like a hillshade or a DEM
+                int v = (int) (128 + 60 * Math.sin(x / 50.0) * Math.cos(y / 70.0))
+                        + random.nextInt(8);
+                image.setRGB(x, y, new Color(v, Math.min(255, v + 20), Math.max(0, v - 30))
+                        .getRGB());
+            }
+        }
+        return image;
+    }
+
+    @Benchmark
+    public byte[] pngj() throws Exception {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        new PNGWriter().writePNG(image, bos, 0.75f, filterType);
+        return bos.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] parallel() throws Exception {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        new ParallelPNGEncoder(image, 0.75f, filterType != FilterType.FILTER_NONE).encode(bos);
+        return bos.toByteArray();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(PNGEncoderBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,126 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.map.png;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.Adler32;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+
+public class ParallelPNGEncoderTest {
+
+    @Test
+    public void testRGBA() throws Exception {
+        assertRoundTrip(paint(new BufferedImage(1024, 512, BufferedImage.TYPE_4BYTE_ABGR)), true);
+        assertRoundTrip(paint(new BufferedImage(1024, 512, BufferedImage.TYPE_INT_ARGB)), false);
+    }
+
+    @Test
+    public void testRGB() throws Exception {
+        assertRoundTrip(paint(new BufferedImage(1024, 512, BufferedImage.TYPE_3BYTE_BGR)), true);
+        assertRoundTrip(paint(new BufferedImage(1024, 512, BufferedImage.TYPE_INT_RGB)), false);
+    }
+
+    @Test
+    public void testGray() throws Exception {
+        assertRoundTrip(paint(new BufferedImage(1024, 512, BufferedImage.TYPE_BYTE_GRAY)), true);
+    }
+
+    @Test
+    public void testPalette() throws Exception {
+        byte[] r = new byte[16], g = new byte[16], b = new byte[16], a = new byte[16];
+        for (int i = 0; i < 16; i++) {
+            r[i] = (byte) (i * 16);
+            g[i] = (byte) (255 - i * 16);
+            b[i] = (byte) (i * 8);
+            a[i] = (byte) 255;
+        }
+        a[0] = 0;
+        IndexColorModel icm = new IndexColorModel(4, 16, r, g, b, a);
+        BufferedImage image = new BufferedImage(2048, 512, BufferedImage.TYPE_BYTE_BINARY, icm);
+        assertRoundTrip(paint(image), false);
+
+        BufferedImage indexed = new BufferedImage(1024, 512, BufferedImage.TYPE_BYTE_INDEXED);
+        assertRoundTrip(paint(indexed), false);
+    }
+
+    @Test
+    public void testUnsupported() throws Exception {
+        assertTrue(!ParallelPNGEncoder.isSupported(
+                new BufferedImage(16, 16, BufferedImage.TYPE_INT_ARGB_PRE)));
+        assertTrue(!ParallelPNGEncoder.isSupported(
+                new BufferedImage(16, 16, BufferedImage.TYPE_USHORT_GRAY)));
+    }
+
+    @Test
+    public void testAdlerCombine() throws Exception {
+        byte[] data = new byte[100000];
+        new Random(0).nextBytes(data);
+        Adler32 all = new Adler32();
+        all.update(data);
+        Adler32 head = new Adler32();
+        head.update(data, 0, 30000);
+        Adler32 tail = new Adler32();
+        tail.update(data, 30000, 70000);
+        assertEquals(all.getValue(),
+                ParallelPNGEncoder.adler32Combine(head.getValue(), tail.getValue(), 70000));
+    }
+
+    BufferedImage paint(BufferedImage image) {
+        Graphics2D graphics = image.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                RenderingHints.VALUE_ANTIALIAS_ON);
+        graphics.setPaint(new GradientPaint(0, 0, new Color(255, 0, 0, 128), image.getWidth(),
+                image.getHeight(), new Color(0, 0, 255, 255)));
+        graphics.fillRect(0, image.getHeight() / 4, image.getWidth(), image.getHeight() / 2);
+        Random random = new Random(0);
+        graphics.setStroke(new BasicStroke(3));
+        for (int i = 0; i < 200; i++) {
+            graphics.setColor(new Color(random.nextInt(256), random.nextInt(256),
+                    random.nextInt(256), random.nextInt(256)));
+            graphics.drawLine(random.nextInt(image.getWidth()), random.nextInt(image.getHeight()),
+                    random.nextInt(image.getWidth()), random.nextInt(image.getHeight()));
+        }
+        graphics.dispose();
+        return image;
+    }
+
+    void assertRoundTrip(BufferedImage image, boolean adaptive) throws Exception {
+        ParallelPNGEncoder encoder = new ParallelPNGEncoder(image, 0.5f, adaptive);
+        // force multiple bands regardless of the number of cores
+        List<int[]> bands = encoder.computeBands(4);
+        assertTrue(bands.size() > 1);
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        encoder.encode(bos, bands);
+
+        BufferedImage read = ImageIO.read(new ByteArrayInputStream(bos.toByteArray()));
+        assertEquals(image.getWidth(), read.getWidth());
+        assertEquals(image.getHeight(), read.getHeight());
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                if (image.getRGB(x, y) != read.getRGB(x, y)) {
+                    assertEquals("Pixel mismatch at " + x + "," + y,
+                            Integer.toHexString(image.getRGB(x, y)),
+                            Integer.toHexString(read.getRGB(x, y)));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.utfgrid;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.vividsolutions.jts.awt.ShapeWriter;
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+
+/**
+ * Compares the two ways of building a UTFGrid: painting the features with Java2D in an RGB image,
+ * one color per feature, and decoding the pixels back into ids, as the renderer based path does,
+ * and scan converting them straight into the grid with the {@link UTFGridRasterizer}.
+ * <p>
+ * Not a unit test, run it with
+ * <code>mvn test-compile exec:java -Dexec.mainClass=org.geoserver.wms.utfgrid.UTFGridBenchmark -Dexec.classpathScope=test</code>
+ * or from the IDE.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UTFGridBenchmark {
+
+    /**
+     * The grid size, a 256 pixels tile gives a 64 cells grid at the default resolution
+     */
+    @Param({ "64", "256" })
+    int size;
+
+    @Param({ "100", "5000" })
+    int features;
+
+    Geometry[] polygons;
+
+    Geometry[] lines;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        GeometryFactory gf = new GeometryFactory();
+        Random random = new Random(0);
+        polygons = new Geometry[features];
+        lines = new Geometry[features];
+        for (int i = 0; i < features; i++) {
+            double x = random.nextDouble() * size;
+            double y = random.nextDouble() * size;
+            polygons[i] = gf.createPoint(new Coordinate(x, y))
+                    .buffer(1 + random.nextDouble() * size / 8, 4);
+            Coordinate[] coordinates = new Coordinate[5];
+            for (int j = 0; j < coordinates.length; j++) {
+                coordinates[j] = new Coordinate(x, y);
+                x = Math.max(0, Math.min(size, x + random.nextGaussian() * size / 10));
+                y = Math.max(0, Math.min(size, y + random.nextGaussian() * size / 10));
+            }
+            lines[i] = gf.createLineString(coordinates);
+        }
+    }
+
+    @Benchmark
+    public int[] java2d() {
+        BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                RenderingHints.VALUE_ANTIALIAS_OFF);
+        graphics.setStroke(new BasicStroke(1));
+        ShapeWriter writer = new ShapeWriter();
+        for (int i = 0; i < features; i++) {
+            graphics.setColor(new Color(i * 2 + 1));
+            graphics.fill(writer.toShape(polygons[i]));
+            graphics.setColor(new Color(i * 2 + 2));
+            graphics.draw(writer.toShape(lines[i]));
+        }
+        graphics.dispose();
+        // decode the colors back into ids, as the UTFGridMap does
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        int[] grid = new int[pixels.length];
+        for (int i = 0; i < pixels.length; i++) {
+            grid[i] = pixels[i] & 0xFFFFFF;
+        }
+        return grid;
+    }
+
+    @Benchmark
+    public int[] rasterizer() {
+        UTFGridRasterizer rasterizer = new UTFGridRasterizer(size, size, new AffineTransform());
+        for (int i = 0; i < features; i++) {
+            rasterizer.fill(polygons[i], i * 2 + 1);
+            rasterizer.stroke(lines[i], 1, i * 2 + 2);
+        }
+        return rasterizer.getGrid();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(UTFGridBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
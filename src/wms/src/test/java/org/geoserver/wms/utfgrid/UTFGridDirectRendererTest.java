@@ -0,0 +1,155 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.utfgrid;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.geoserver.catalog.Catalog;
+import org.geoserver.data.test.MockData;
+import org.geoserver.data.test.SystemTestData;
+import org.geoserver.wms.WMSTestSupport;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import net.sf.json.JSON;
+import net.sf.json.JSONObject;
+
+/**
+ * Checks the maps scan converted straight into the grid by the {@link UTFGridDirectRenderer}
+ * match the ones painted by the renderer
+ */
+public class UTFGridDirectRendererTest extends WMSTestSupport {
+
+    @Override
+    protected void setUpTestData(SystemTestData testData) throws Exception {
+        super.setUpTestData(testData);
+        testData.setUpWcs11RasterLayers();
+    }
+
+    @Override
+    protected void onSetUp(SystemTestData testData) throws Exception {
+        super.onSetUp(testData);
+
+        Catalog catalog = getCatalog();
+        testData.addStyle("circle", "circle.sld", UTFGridIntegrationTest.class, catalog);
+        testData.addStyle("polygonExtract", "polygonExtract.sld", UTFGridIntegrationTest.class,
+                catalog);
+    }
+
+    @Before
+    public void enableRasterizer() {
+        getOutputFormat().setRasterizerEnabled(true);
+    }
+
+    @After
+    public void disableRasterizer() {
+        getOutputFormat().setRasterizerEnabled(false);
+    }
+
+    private UTFGridMapOutputFormat getOutputFormat() {
+        return applicationContext.getBean(UTFGridMapOutputFormat.class);
+    }
+
+    private UTFGridTester getAsGridTester(String request, int width, int height, int resolution)
+            throws Exception {
+        MockHttpServletResponse response = getAsServletResponse(request);
+        if (!response.getContentType().startsWith("application/json")) {
+            fail("Expected json but got " + response.getContentType() + "\n"
+                    + response.getContentAsString());
+        }
+        JSON json = json(response);
+        return new UTFGridTester(json, width, height, resolution);
+    }
+
+    private UTFGridTester getAsGridTester(String request) throws Exception {
+        return getAsGridTester(request, 256, 256, 4);
+    }
+
+    @Test
+    public void testEmptyOutput() throws Exception {
+        UTFGridTester tester = getAsGridTester(
+                "wms?service=WMS&version=1.1.0&request=GetMap&layers=cite:Forests&styles=polygon"
+                        + "&bbox=-10.0028,-0.0028,-9.0048,0.0048&width=256&height=256&srs=EPSG:4326&format=utfgrid");
+        assertEquals(1, tester.getKeyCount());
+        for (int i = 0; i < 64; i++) {
+            for (int j = 0; j < 64; j++) {
+                tester.assertGridPixel(' ', i, j);
+            }
+        }
+    }
+
+    @Test
+    public void testPolygon() throws Exception {
+        UTFGridTester tester = getAsGridTester(
+                "wms?service=WMS&version=1.1.0&request=GetMap&layers=cite:Forests&styles=polygon"
+                        + "&bbox=-0.0028,-0.0028,0.0048,0.0048&width=256&height=256&srs=EPSG:4326&format=utfgrid");
+        tester.assertGridPixel(' ', 10, 20);
+        tester.assertGridPixel('!', 60, 20);
+        JSONObject f = tester.getFeature('!');
+        assertEquals("Green Forest", f.getString("NAME"));
+    }
+
+    @Test
+    public void testPolygonReproject() throws Exception {
+        UTFGridTester tester = getAsGridTester(
+                "wms?service=WMS&version=1.1.0&request=GetMap&layers=cite:Forests"
+                        + "&styles=polygon&bbox=-280,-280,480,480&width=256&height=256&srs=EPSG:3857&format=utfgrid");
+        tester.assertGridPixel(' ', 10, 10);
+        tester.assertGridPixel('!', 60, 10);
+        JSONObject f = tester.getFeature('!');
+        assertEquals("Green Forest", f.getString("NAME"));
+    }
+
+    @Test
+    public void testFilteredLineSymbolizer() throws Exception {
+        UTFGridTester tester = getAsGridTester(
+                "wms?service=WMS&version=1.1.0&request=GetMap&layers=cite:RoadSegments&styles=line"
+                        + "&bbox=-0.0042,-0.0042,0.0042,0.0042&width=256&height=256&srs=EPSG:4326&format=utfgrid"
+                        + "&CQL_FILTER=NAME%3D%27Main Street%27");
+        tester.assertGridPixel(' ', 15, 54);
+        tester.assertGridPixel('!', 22, 49);
+        JSONObject f = tester.getFeature('!');
+        assertEquals("105", f.getString("FID"));
+        assertEquals("Main Street", f.getString("NAME"));
+        tester.assertGridPixel(' ', 36, 1);
+        tester.assertGridPixel(' ', 36, 21);
+    }
+
+    @Test
+    public void testCircle() throws Exception {
+        UTFGridTester tester = getAsGridTester(
+                "wms?service=WMS&version=1.1.0&request=GetMap&layers=cite:Bridges&styles=circle&bbox=0,0.0005,0.0004,0.0009&width=256&height=256&srs=EPSG:4326&format=utfgrid");
+        tester.assertGridPixel(' ', 25, 30);
+        tester.assertGridPixel('!', 32, 32);
+        JSONObject f = tester.getFeature('!');
+        assertEquals("110", f.getString("FID"));
+        assertEquals("Cam Bridge", f.getString("NAME"));
+    }
+
+    @Test
+    public void testLargeCircle() throws Exception {
+        UTFGridTester tester = getAsGridTester(
+                "wms?service=WMS&version=1.1.0&request=GetMap&layers=cite:Bridges&styles=circle&bbox=0,0.0005,0.0004,0.0009&width=256&height=256&srs=EPSG:4326&format=utfgrid"
+                        + "&env=radius:64");
+        tester.assertGridPixel('!', 25, 30);
+        tester.assertGridPixel('!', 32, 32);
+        JSONObject f = tester.getFeature('!');
+        assertEquals("110", f.getString("FID"));
+    }
+
+    @Test
+    public void testRasterFallback() throws Exception {
+        // raster layers are handed over to the renderer
+        String url = "wms?LAYERS=" + getLayerId(MockData.TASMANIA_DEM)
+                + "&styles=polygonExtract&FORMAT=utfgrid&SERVICE=WMS&VERSION=1.1.1"
+                + "&REQUEST=GetMap&SRS=EPSG%3A4326&BBOX=145,-43,146,-41&WIDTH=100&HEIGHT=200";
+        UTFGridTester tester = getAsGridTester(url, 100, 200, 4);
+        assertTrue(tester.getKeyCount() > 0);
+    }
+}
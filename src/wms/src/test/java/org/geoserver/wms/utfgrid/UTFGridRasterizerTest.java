@@ -0,0 +1,125 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.utfgrid;
+
+import static org.junit.Assert.assertEquals;
+
+import java.awt.geom.AffineTransform;
+
+import org.junit.Test;
+
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.io.WKTReader;
+
+public class UTFGridRasterizerTest {
+
+    /**
+     * A 10x10 grid over the 0,0 - 10,10 area, y axis pointing downwards
+     */
+    UTFGridRasterizer buildRasterizer() {
+        AffineTransform worldToGrid = new AffineTransform(1, 0, 0, -1, 0, 10);
+        return new UTFGridRasterizer(10, 10, worldToGrid);
+    }
+
+    Geometry geometry(String wkt) throws Exception {
+        return new WKTReader().read(wkt);
+    }
+
+    int value(UTFGridRasterizer rasterizer, int row, int col) {
+        return rasterizer.getGrid()[row * rasterizer.getWidth() + col];
+    }
+
+    @Test
+    public void testFillPolygonWithHole() throws Exception {
+        UTFGridRasterizer rasterizer = buildRasterizer();
+        rasterizer.fill(geometry("POLYGON((1 1, 9 1, 9 9, 1 9, 1 1), (4 4, 6 4, 6 6, 4 6, 4 4))"),
+                1);
+
+        // outside
+        assertEquals(0, value(rasterizer, 0, 0));
+        assertEquals(0, value(rasterizer, 9, 9));
+        // inside
+        assertEquals(1, value(rasterizer, 1, 1));
+        assertEquals(1, value(rasterizer, 8, 8));
+        assertEquals(1, value(rasterizer, 2, 5));
+        // in the hole
+        assertEquals(0, value(rasterizer, 4, 4));
+        assertEquals(0, value(rasterizer, 5, 5));
+    }
+
+    @Test
+    public void testPaintOrder() throws Exception {
+        UTFGridRasterizer rasterizer = buildRasterizer();
+        rasterizer.fill(geometry("POLYGON((0 0, 6 0, 6 10, 0 10, 0 0))"), 1);
+        rasterizer.fill(geometry("MULTIPOLYGON(((4 0, 10 0, 10 10, 4 10, 4 0)))"), 2);
+
+        assertEquals(1, value(rasterizer, 5, 2));
+        // the last painted feature wins
+        assertEquals(2, value(rasterizer, 5, 5));
+        assertEquals(2, value(rasterizer, 5, 8));
+    }
+
+    @Test
+    public void testStroke() throws Exception {
+        UTFGridRasterizer rasterizer = buildRasterizer();
+        rasterizer.stroke(geometry("LINESTRING(0 5, 10 5)"), 2, 3);
+
+        for (int c = 0; c < 10; c++) {
+            assertEquals(3, value(rasterizer, 4, c));
+            assertEquals(3, value(rasterizer, 5, c));
+            assertEquals(0, value(rasterizer, 2, c));
+            assertEquals(0, value(rasterizer, 7, c));
+        }
+    }
+
+    @Test
+    public void testThinStroke() throws Exception {
+        UTFGridRasterizer rasterizer = buildRasterizer();
+        // a diagonal thinner than a cell still paints a connected line
+        rasterizer.stroke(geometry("LINESTRING(0 10, 10 0)"), 0.1, 1);
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(1, value(rasterizer, i, i));
+        }
+        assertEquals(0, value(rasterizer, 0, 9));
+        assertEquals(0, value(rasterizer, 9, 0));
+    }
+
+    @Test
+    public void testSquareMark() throws Exception {
+        UTFGridRasterizer rasterizer = buildRasterizer();
+        rasterizer.mark(geometry("POINT(5 5)"), 4, false, 0, 0, 0, 1);
+
+        assertEquals(1, value(rasterizer, 3, 3));
+        assertEquals(1, value(rasterizer, 6, 6));
+        assertEquals(0, value(rasterizer, 2, 2));
+        assertEquals(0, value(rasterizer, 7, 7));
+    }
+
+    @Test
+    public void testCircleMark() throws Exception {
+        UTFGridRasterizer rasterizer = buildRasterizer();
+        rasterizer.mark(geometry("POINT(5 5)"), 6, true, 0, 0, 0, 1);
+
+        assertEquals(1, value(rasterizer, 4, 4));
+        assertEquals(1, value(rasterizer, 2, 4));
+        assertEquals(1, value(rasterizer, 4, 7));
+        // the corners of the bounding square are outside of the circle
+        assertEquals(0, value(rasterizer, 2, 2));
+        assertEquals(0, value(rasterizer, 7, 7));
+    }
+
+    @Test
+    public void testTinyMarkAndDisplacement() throws Exception {
+        UTFGridRasterizer rasterizer = buildRasterizer();
+        rasterizer.mark(geometry("MULTIPOINT((1.5 8.5), (8.5 1.5))"), 0.1, false, 0, 0, 0, 1);
+        rasterizer.mark(geometry("POINT(5.5 5.5)"), 1, false, 0, 2, -2, 2);
+
+        assertEquals(1, value(rasterizer, 1, 1));
+        assertEquals(1, value(rasterizer, 8, 8));
+        assertEquals(0, value(rasterizer, 4, 5));
+        assertEquals(2, value(rasterizer, 2, 7));
+    }
+}